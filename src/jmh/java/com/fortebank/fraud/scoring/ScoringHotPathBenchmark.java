@@ -0,0 +1,151 @@
+package com.fortebank.fraud.scoring;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fortebank.fraud.customer.dto.CustomerStats;
+import com.fortebank.fraud.customer.dto.VelocityCounts;
+import com.fortebank.fraud.customer.entity.CustomerBehaviorPattern;
+import com.fortebank.fraud.customer.entity.CustomerProfile;
+import com.fortebank.fraud.customer.service.CustomerStatsService;
+import com.fortebank.fraud.scoring.dto.RuleEvaluation;
+import com.fortebank.fraud.scoring.dto.RuleSetDefinition;
+import com.fortebank.fraud.scoring.dto.ScoringContext;
+import com.fortebank.fraud.scoring.rule.CompiledRuleSet;
+import com.fortebank.fraud.scoring.rule.FeatureVector;
+import com.fortebank.fraud.scoring.rule.LegacyScoringPath;
+import com.fortebank.fraud.scoring.service.FeatureExtractor;
+import com.fortebank.fraud.transaction.dto.RiskFactorDTO;
+import com.fortebank.fraud.transaction.entity.Transaction;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Горячий путь оценки одной транзакции без БД: статистика клиента из профиля,
+ * вектор признаков и набор правил по умолчанию (rules/default-rules.json).
+ * legacy - тот же набор правил по прежнему пути (LegacyScoringPath), база для сравнения.
+ *
+ * Запуск: mvn -Pjmh test-compile exec:exec (с -prof gc - выделение памяти на операцию).
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ScoringHotPathBenchmark {
+
+    private static final int TRANSACTIONS = 1024;   // Степень двойки: индекс по маске
+
+    private CompiledRuleSet ruleSet;
+    private FeatureExtractor featureExtractor;
+    private CustomerStatsService customerStatsService;
+    private LegacyScoringPath legacyPath;
+
+    private Transaction[] transactions;
+    private CustomerProfile profile;
+    private VelocityCounts velocity;
+    private CustomerBehaviorPattern pattern;
+    private int next;
+
+    @Setup
+    public void setup() throws IOException {
+        RuleSetDefinition definition;
+        try (InputStream in = getClass().getResourceAsStream("/rules/default-rules.json")) {
+            definition = new ObjectMapper().readValue(in, RuleSetDefinition.class);
+        }
+        ruleSet = CompiledRuleSet.compile(definition, List.of(), "classpath:rules/default-rules.json");
+        featureExtractor = new FeatureExtractor();
+        // buildStats не обращается к зависимостям сервиса
+        customerStatsService = new CustomerStatsService(null, null, null);
+        legacyPath = new LegacyScoringPath(ruleSet);
+
+        // Суммы и часы разбросаны, чтобы срабатывали разные правила
+        Random random = new Random(42);
+        transactions = new Transaction[TRANSACTIONS];
+        for (int i = 0; i < TRANSACTIONS; i++) {
+            transactions[i] = Transaction.builder()
+                    .transactionId("d" + i)
+                    .customerId("c1")
+                    .recipientId("r" + random.nextInt(20))
+                    .amount(BigDecimal.valueOf(100_000L + random.nextInt(40_000_000), 2))
+                    .transactionDateTime(LocalDateTime.of(2024, 1, 1, random.nextInt(24), random.nextInt(60)))
+                    .build();
+        }
+
+        profile = CustomerProfile.builder()
+                .customerId("c1")
+                .transactionCount(120L)
+                .amountSum(new BigDecimal("6000000.00"))
+                .minAmount(new BigDecimal("1000.00"))
+                .maxAmount(new BigDecimal("250000.00"))
+                .uniqueRecipients(12)
+                .firstTransactionAt(LocalDateTime.of(2023, 6, 1, 10, 0))
+                .lastTransactionAt(LocalDateTime.of(2023, 12, 31, 18, 0))
+                .build();
+        velocity = VelocityCounts.builder().count5m(2).count1h(4).count24h(9).count7d(30).build();
+        pattern = CustomerBehaviorPattern.builder()
+                .customerId("c1")
+                .transDate(LocalDate.of(2024, 1, 1))
+                .uniquePhoneModels30d(2)
+                .uniqueOsVersions30d(3)
+                .loginsLast7Days(20)
+                .loginsLast30Days(40)
+                .loginFreqChangeRatio(new BigDecimal("2.5"))
+                .burstinessScore(new BigDecimal("0.4"))
+                .intervalZscore(new BigDecimal("-1.2"))
+                .build();
+    }
+
+    /**
+     * Только решение (пакетная оценка, POST /api/score?factors=false)
+     */
+    @Benchmark
+    public RuleEvaluation decision() {
+        return ruleSet.evaluateDecision(features());
+    }
+
+    /**
+     * Решение и факторы риска с описаниями (анализ для аналитика)
+     */
+    @Benchmark
+    public List<RiskFactorDTO> withFactors() {
+        return ruleSet.evaluate(features()).getRiskFactors();
+    }
+
+    /**
+     * Прежний путь: BigDecimal.divide и факторы с описаниями при каждом срабатывании
+     */
+    @Benchmark
+    public List<RiskFactorDTO> legacy() {
+        Transaction transaction = transactions[next++ & (TRANSACTIONS - 1)];
+        return legacyPath.score(transaction, profile, velocity, pattern, (next & 7) == 0).riskFactors();
+    }
+
+    private FeatureVector features() {
+        Transaction transaction = transactions[next++ & (TRANSACTIONS - 1)];
+        CustomerStats stats = customerStatsService.buildStats(transaction.getCustomerId(), profile, velocity);
+        ScoringContext context = ScoringContext.builder()
+                .transaction(transaction)
+                .stats(stats)
+                .newRecipient((next & 7) == 0)
+                .behaviorPattern(pattern)
+                .build();
+        return featureExtractor.extract(context);
+    }
+}
@@ -0,0 +1,181 @@
+package com.fortebank.fraud.scoring.rule;
+
+import com.fortebank.fraud.customer.dto.CustomerStats;
+import com.fortebank.fraud.customer.dto.VelocityCounts;
+import com.fortebank.fraud.customer.entity.CustomerBehaviorPattern;
+import com.fortebank.fraud.customer.entity.CustomerProfile;
+import com.fortebank.fraud.scoring.dto.ScoringContext;
+import com.fortebank.fraud.transaction.dto.RiskFactorDTO;
+import com.fortebank.fraud.transaction.entity.Transaction;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Прежний путь оценки (до перевода горячего пути на примитивы) - база для сравнения
+ * в ScoringHotPathBenchmark. Те же правила и тот же план, но:
+ * - средняя сумма и отношение к ней считаются через BigDecimal.divide;
+ * - фактор риска с описанием (String.format) строится сразу при срабатывании правила;
+ * - оценка всегда останавливается на пороге BLOCK.
+ */
+public final class LegacyScoringPath {
+
+    /**
+     * Итог прежней оценки
+     */
+    public record Result(int totalScore, String decision, List<RiskFactorDTO> riskFactors) {
+    }
+
+    private final CompiledRuleSet ruleSet;
+    private final RiskRule[] rules;
+    private final int[] groupIds;
+    private final int groupCount;
+
+    private final LongAdder[] evaluations;
+    private final LongAdder[] hits;
+    private final LongAdder[] nanos;
+
+    public LegacyScoringPath(CompiledRuleSet ruleSet) {
+        this.ruleSet = ruleSet;
+        this.rules = ruleSet.plan();
+        this.groupIds = ruleSet.planGroups();
+        int groups = 0;
+        for (int group : groupIds) {
+            groups = Math.max(groups, group + 1);
+        }
+        this.groupCount = groups;
+        this.evaluations = newAdders(rules.length);
+        this.hits = newAdders(rules.length);
+        this.nanos = newAdders(rules.length);
+    }
+
+    public Result score(Transaction transaction, CustomerProfile profile, VelocityCounts velocity,
+                        CustomerBehaviorPattern pattern, boolean newRecipient) {
+        // Средняя сумма
+        BigDecimal avgAmount = profile.getAmountSum().divide(
+                BigDecimal.valueOf(profile.getTransactionCount()),
+                2,
+                RoundingMode.HALF_UP
+        );
+
+        CustomerStats stats = CustomerStats.builder()
+                .customerId(transaction.getCustomerId())
+                .totalTransactions(profile.getTransactionCount().intValue())
+                .minAmount(profile.getMinAmount())
+                .maxAmount(profile.getMaxAmount())
+                .transactionCount5m(velocity.getCount5m())
+                .transactionCount1h(velocity.getCount1h())
+                .transactionCount24h(velocity.getCount24h())
+                .transactionCount7d(velocity.getCount7d())
+                .lastTransactionDate(profile.getLastTransactionAt())
+                .uniqueRecipients(profile.getUniqueRecipients())
+                .build();
+        ScoringContext context = ScoringContext.builder()
+                .transaction(transaction)
+                .stats(stats)
+                .newRecipient(newRecipient)
+                .behaviorPattern(pattern)
+                .build();
+
+        return evaluate(extract(context, avgAmount));
+    }
+
+    private static FeatureVector extract(ScoringContext context, BigDecimal avgAmount) {
+        Transaction transaction = context.getTransaction();
+        CustomerStats stats = context.getStats();
+        FeatureVector features = new FeatureVector();
+
+        BigDecimal amount = transaction.getAmount();
+
+        features.set(Feature.AMOUNT, amount.doubleValue())
+                .set(Feature.HOUR, transaction.getTransactionDateTime().getHour())
+                .set(Feature.NEW_RECIPIENT, context.isNewRecipient())
+                .set(Feature.HISTORY_SIZE, stats.getTotalTransactions())
+                .set(Feature.AVG_AMOUNT, avgAmount.doubleValue())
+                .set(Feature.UNIQUE_RECIPIENTS, stats.getUniqueRecipients())
+                .set(Feature.COUNT_5M, stats.getTransactionCount5m())
+                .set(Feature.COUNT_1H, stats.getTransactionCount1h())
+                .set(Feature.COUNT_24H, stats.getTransactionCount24h())
+                .set(Feature.COUNT_7D, stats.getTransactionCount7d());
+
+        if (stats.getTotalTransactions() > 0 && avgAmount.compareTo(BigDecimal.ZERO) != 0) {
+            features.set(Feature.AMOUNT_RATIO,
+                    amount.divide(avgAmount, 2, RoundingMode.HALF_UP).doubleValue());
+        }
+
+        CustomerBehaviorPattern pattern = context.getBehaviorPattern();
+        if (pattern != null) {
+            double zScore = toDouble(pattern.getIntervalZscore());
+            features.set(Feature.HAS_BEHAVIOR, true)
+                    .set(Feature.PHONE_MODELS_30D, toInt(pattern.getUniquePhoneModels30d()))
+                    .set(Feature.OS_VERSIONS_30D, toInt(pattern.getUniqueOsVersions30d()))
+                    .set(Feature.LOGINS_7D, toInt(pattern.getLoginsLast7Days()))
+                    .set(Feature.LOGINS_30D, toInt(pattern.getLoginsLast30Days()))
+                    .set(Feature.LOGIN_FREQ_CHANGE, toDouble(pattern.getLoginFreqChangeRatio()))
+                    .set(Feature.BURSTINESS, toDouble(pattern.getBurstinessScore()))
+                    .set(Feature.INTERVAL_ZSCORE, zScore)
+                    .set(Feature.INTERVAL_ZSCORE_ABS, Math.abs(zScore));
+        }
+
+        return features;
+    }
+
+    private Result evaluate(FeatureVector features) {
+        List<RiskFactorDTO> factors = new ArrayList<>();
+        boolean[] groupHit = groupCount > 0 ? new boolean[groupCount] : null;
+        int total = 0;
+
+        for (int i = 0; i < rules.length; i++) {
+            int group = groupIds[i];
+            if (group >= 0 && groupHit[group]) {
+                continue;
+            }
+
+            long start = System.nanoTime();
+            int score = rules[i].evaluate(features);
+            nanos[i].add(System.nanoTime() - start);
+            evaluations[i].increment();
+
+            if (score <= 0) {
+                continue;
+            }
+
+            hits[i].increment();
+            total += score;
+            factors.add(RiskFactorDTO.builder()
+                    .name(rules[i].getName())
+                    .description(rules[i].describe(features))
+                    .score(score)
+                    .weight(score / 100.0)
+                    .build());
+            if (group >= 0) {
+                groupHit[group] = true;
+            }
+
+            if (total >= ruleSet.getBlockScore()) {
+                break;
+            }
+        }
+
+        return new Result(total, ruleSet.decide(total), factors);
+    }
+
+    private static int toInt(Integer value) {
+        return value != null ? value : 0;
+    }
+
+    private static double toDouble(BigDecimal value) {
+        return value != null ? value.doubleValue() : 0;
+    }
+
+    private static LongAdder[] newAdders(int count) {
+        LongAdder[] adders = new LongAdder[count];
+        for (int i = 0; i < count; i++) {
+            adders[i] = new LongAdder();
+        }
+        return adders;
+    }
+}
@@ -5,6 +5,8 @@ import org.springframework.boot.autoconfigure.SpringBootApplication;
 
 import io.github.cdimascio.dotenv.Dotenv;
 
+import java.util.Map;
+
 @SpringBootApplication
 public class FraudDetectionSystemApplication {
 
@@ -15,7 +17,22 @@ public class FraudDetectionSystemApplication {
             System.setProperty(entry.getKey(), entry.getValue())
         );
         
-        SpringApplication.run(FraudDetectionSystemApplication.class, args);
+        SpringApplication application = new SpringApplication(FraudDetectionSystemApplication.class);
+        
+        // Значения по умолчанию (переопределяются application.properties и окружением):
+        // соединение с БД не держится на весь HTTP запрос, в т.ч. на время запросов к LLM;
+        // INSERT/UPDATE пакетной загрузки отправляются JDBC пакетами
+        application.setDefaultProperties(Map.of(
+                "spring.jpa.open-in-view", "false",
+                "spring.jpa.properties.hibernate.jdbc.batch_size", "50",
+                "spring.jpa.properties.hibernate.order_inserts", "true",
+                "spring.jpa.properties.hibernate.order_updates", "true",
+                // Файлы батчей принимаются на диск и обрабатываются асинхронно
+                "spring.servlet.multipart.max-file-size", "2GB",
+                "spring.servlet.multipart.max-request-size", "2GB"
+        ));
+        
+        application.run(args);
     }
 
 }
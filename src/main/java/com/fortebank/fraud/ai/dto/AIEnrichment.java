@@ -0,0 +1,23 @@
+package com.fortebank.fraud.ai.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class AIEnrichment {
+    private String enrichmentId;
+    private Long transactionId;
+    private AIEnrichmentStatus status;
+    private String aiExplanation;
+    private String recommendations;
+    private LocalDateTime createdAt;
+    private LocalDateTime completedAt;
+    private Long latencyMillis;       // Время от постановки в очередь до готовности
+}
@@ -0,0 +1,7 @@
+package com.fortebank.fraud.ai.dto;
+
+public enum AIEnrichmentStatus {
+    PENDING,     // Запросы к LLM ещё выполняются
+    COMPLETED,   // Получены ответы LLM
+    FALLBACK     // LLM недоступна или перегружена - использован шаблонный текст
+}
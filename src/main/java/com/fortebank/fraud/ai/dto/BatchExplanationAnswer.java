@@ -0,0 +1,18 @@
+package com.fortebank.fraud.ai.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.Map;
+
+/**
+ * Ответ на пакетный промпт: объяснения по id транзакций и признак обрезки ответа по max_tokens
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BatchExplanationAnswer {
+    private Map<Long, String> explanations;
+    private boolean truncated;
+}
@@ -0,0 +1,18 @@
+package com.fortebank.fraud.ai.dto;
+
+import com.fortebank.fraud.transaction.dto.TransactionAnalysisDTO;
+import com.fortebank.fraud.transaction.entity.Transaction;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Транзакция и результат её анализа для пакетного AI объяснения
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BatchExplanationItem {
+    private Transaction transaction;
+    private TransactionAnalysisDTO analysis;
+}
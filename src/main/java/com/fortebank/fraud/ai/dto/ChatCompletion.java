@@ -0,0 +1,16 @@
+package com.fortebank.fraud.ai.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Ответ LLM и признак обрезки по max_tokens (finish_reason = length)
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ChatCompletion {
+    private String text;
+    private boolean truncated;
+}
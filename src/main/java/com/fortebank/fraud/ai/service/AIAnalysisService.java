@@ -1,13 +1,24 @@
 package com.fortebank.fraud.ai.service;
 
-import com.fortebank.fraud.customer.service.BehaviorAnalysisService;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fortebank.fraud.ai.dto.BatchExplanationAnswer;
+import com.fortebank.fraud.ai.dto.BatchExplanationItem;
+import com.fortebank.fraud.ai.dto.ChatCompletion;
+import com.fortebank.fraud.scoring.dto.ScoringContext;
 import com.fortebank.fraud.transaction.dto.RiskFactorDTO;
 import com.fortebank.fraud.transaction.dto.TransactionAnalysisDTO;
 import com.fortebank.fraud.transaction.entity.Transaction;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 @Service
@@ -15,75 +26,217 @@ import java.util.stream.Collectors;
 @Slf4j
 public class AIAnalysisService {
     
+    private static final double RECOMMENDATION_BUCKET_PERCENT = 5;
+    
+    // Оценка длины промпта: для русского текста ~2.5 символа на токен
+    private static final double CHARS_PER_TOKEN = 2.5;
+    
+    private static final String BATCH_EXPLANATION_HEADER = """
+            Объясни решение по каждой транзакции из списка (1-2 предложения на русском языке).
+            Ответь строго JSON-объектом без пояснений и разметки:
+            {"<id транзакции>": "объяснение", ...}
+            Ключи - id из списка, каждая транзакция должна быть в ответе.
+            
+            Транзакции (id: данные):
+            """;
+    
     private final OpenAIService openAIService;
-    private final BehaviorAnalysisService behaviorAnalysisService;  // ← НОВОЕ!
+    private final ObjectMapper objectMapper;
+    private final OfflineExplanationService offlineExplanationService;
+    
+    // openai - объяснения от LLM, offline - локально по факторам риска (без сети)
+    @Value("${fraud.ai.mode:openai}")
+    private String mode;
     
     /**
      * Получить AI объяснение мошенничества
      */
     public String explainFraud(Transaction transaction, TransactionAnalysisDTO analysis) {
-        String prompt = buildExplanationPrompt(transaction, analysis);
-        return openAIService.callChatGPT(prompt);
+        if (isOffline()) {
+            return offlineExplanationService.explain(analysis);
+        }
+        return openAIService.callChatGPT(buildExplanationPrompt(analysis)) + explanationDetails(analysis);
+    }
+    
+    /**
+     * Получить AI объяснение по уже загруженному контексту (без повторных запросов к БД)
+     */
+    public String explainFraud(ScoringContext context, TransactionAnalysisDTO analysis) {
+        return explainFraud(context.getTransaction(), analysis);
+    }
+    
+    /**
+     * AI объяснение в потоковом режиме: фрагменты текста передаются в onToken по мере генерации
+     *
+     * @return полный текст объяснения
+     */
+    public String streamExplanation(ScoringContext context, TransactionAnalysisDTO analysis,
+                                    Consumer<String> onToken) {
+        if (isOffline()) {
+            String explanation = offlineExplanationService.explain(analysis);
+            onToken.accept(explanation);
+            return explanation;
+        }
+        String explanation = openAIService.streamChatGPT(buildExplanationPrompt(analysis), onToken);
+        String details = explanationDetails(analysis);
+        if (!details.isEmpty()) {
+            onToken.accept(details);
+        }
+        return explanation + details;
     }
     
     /**
      * Получить AI рекомендации
      */
     public String getRecommendations(Transaction transaction, TransactionAnalysisDTO analysis) {
+        if (isOffline()) {
+            return offlineExplanationService.recommend(analysis);
+        }
         String prompt = buildRecommendationPrompt(transaction, analysis);
         return openAIService.callChatGPT(prompt);
     }
     
     /**
-     * Построить промпт для объяснения
+     * Пакетное AI объяснение: один запрос к LLM на несколько транзакций,
+     * ответ - JSON по id транзакций.
+     *
+     * @param maxTokens лимит токенов ответа
+     * @return объяснения по id (транзакций, которых нет в ответе - обрезан, не разобран, пропущен LLM, -
+     *         в нём нет) и признак обрезки ответа по maxTokens
+     */
+    public BatchExplanationAnswer explainBatch(List<BatchExplanationItem> items, int maxTokens) {
+        if (isOffline()) {
+            Map<Long, String> explanations = new HashMap<>();
+            for (BatchExplanationItem item : items) {
+                explanations.put(item.getTransaction().getId(), offlineExplanationService.explain(item.getAnalysis()));
+            }
+            return new BatchExplanationAnswer(explanations, false);
+        }
+        
+        StringBuilder prompt = new StringBuilder(BATCH_EXPLANATION_HEADER);
+        for (BatchExplanationItem item : items) {
+            prompt.append(batchLine(item)).append('\n');
+        }
+        
+        ChatCompletion answer = openAIService.callChatGPTUncached(prompt.toString(), maxTokens);
+        return new BatchExplanationAnswer(parseBatchAnswer(answer.getText(), items), answer.isTruncated());
+    }
+    
+    /**
+     * Оценка токенов промпта: общая часть пакетного промпта
+     */
+    public int estimateBatchHeaderTokens() {
+        return estimateTokens(BATCH_EXPLANATION_HEADER);
+    }
+    
+    /**
+     * Оценка токенов промпта: строка одной транзакции в пакете
      */
-    private String buildExplanationPrompt(Transaction transaction, TransactionAnalysisDTO analysis) {
+    public int estimateBatchItemTokens(BatchExplanationItem item) {
+        return estimateTokens(batchLine(item));
+    }
+    
+    private String batchLine(BatchExplanationItem item) {
+        Transaction transaction = item.getTransaction();
+        TransactionAnalysisDTO analysis = item.getAnalysis();
+        String factors = analysis.getRiskFactors().stream()
+                .map(RiskFactorDTO::getDescription)
+                .collect(Collectors.joining("; "));
+        return String.format("%d: сумма %.2f₸, время %s, решение %s, вероятность %.0f%%, факторы: %s",
+                transaction.getId(),
+                transaction.getAmount(),
+                transaction.getTransactionDateTime(),
+                analysis.getDecision(),
+                analysis.getFraudProbability() * 100,
+                factors.isEmpty() ? "нет" : factors);
+    }
+    
+    private Map<Long, String> parseBatchAnswer(String answer, List<BatchExplanationItem> items) {
+        Map<Long, String> explanations = new HashMap<>();
+        int start = answer.indexOf('{');
+        int end = answer.lastIndexOf('}');
+        if (start < 0 || end <= start) {
+            log.warn("Пакетный ответ LLM не содержит JSON ({} транзакций)", items.size());
+            return explanations;
+        }
+        
+        JsonNode root;
+        try {
+            root = objectMapper.readTree(answer.substring(start, end + 1));
+        } catch (JsonProcessingException e) {
+            // Обычно - ответ обрезан по max_tokens
+            log.warn("Пакетный ответ LLM не разобран ({} транзакций): {}", items.size(), e.getOriginalMessage());
+            return explanations;
+        }
+        
+        for (BatchExplanationItem item : items) {
+            Long id = item.getTransaction().getId();
+            JsonNode text = root.get(String.valueOf(id));
+            if (text != null && text.isTextual() && !text.asText().isBlank()) {
+                explanations.put(id, text.asText().strip());
+            }
+        }
+        return explanations;
+    }
+    
+    private boolean isOffline() {
+        return "offline".equalsIgnoreCase(mode);
+    }
+    
+    private static int estimateTokens(String text) {
+        return (int) Math.ceil(text.length() / CHARS_PER_TOKEN);
+    }
+    
+    /**
+     * Построить промпт для объяснения.
+     * Зависит только от решения, корзины вероятности и набора сработавших правил
+     * (без сумм, времени, клиента и получателя), поэтому транзакции с одинаковыми
+     * факторами отвечаются из кэша. Значения конкретной транзакции добавляет explanationDetails.
+     */
+    private String buildExplanationPrompt(TransactionAnalysisDTO analysis) {
         String riskFactorsText = analysis.getRiskFactors().stream()
-                .map(rf -> String.format("- %s: %s (вес: %.0f%%)", 
-                        rf.getName(), rf.getDescription(), rf.getWeight() * 100))
+                .map(RiskFactorDTO::getName)
+                .distinct()
+                .sorted()
+                .map(name -> "- " + name)
                 .collect(Collectors.joining("\n"));
         
-        // ✨ НОВОЕ: Добавляем поведенческие данные клиента
-        String behaviorSummary = behaviorAnalysisService.getBehaviorSummary(
-                transaction.getCustomerId());
-        
         return String.format("""
-                Проанализируй эту транзакцию и объясни, почему она %s.
-                
-                Данные транзакции:
-                - Сумма: %.2f₸
-                - Время: %s
-                - Клиент: %s
-                - Получатель: %s
+                Объясни, почему транзакция с такими признаками %s.
                 
                 Результат анализа:
-                - Вероятность мошенничества: %.0f%%
-                - Risk Score: %d/100
+                - Вероятность мошенничества: около %.0f%%
                 - Решение: %s
                 
-                Факторы риска:
-                %s
-                
+                Сработавшие факторы риска:
                 %s
                 
-                Объясни на русском языке (2-3 предложения), учитывая как финансовое поведение, 
+                Объясни на русском языке (2-3 предложения), учитывая как финансовое поведение,
                 так и поведенческие паттерны входа в систему (смена устройств, частота логинов).
+                Не называй конкретных сумм, дат, клиентов и счетов: объяснение общее
+                для всех транзакций с этими факторами.
                 """,
                 analysis.getIsFraud() ? "подозрительная" : "безопасная",
-                transaction.getAmount(),
-                transaction.getTransactionDateTime(),
-                transaction.getCustomerId(),
-                transaction.getRecipientId(),
-                analysis.getFraudProbability() * 100,
-                analysis.getRiskScore(),
+                probabilityBucket(analysis.getFraudProbability()),
                 analysis.getDecision(),
-                riskFactorsText.isEmpty() ? "Нет факторов риска" : riskFactorsText,
-                behaviorSummary
+                riskFactorsText.isEmpty() ? "Нет факторов риска" : riskFactorsText
         );
     }
     
     /**
-     * Построить промпт для рекомендаций
+     * Значения конкретной транзакции - добавляются к закэшированному объяснению
+     */
+    private static String explanationDetails(TransactionAnalysisDTO analysis) {
+        String factors = analysis.getRiskFactors().stream()
+                .map(RiskFactorDTO::getDescription)
+                .collect(Collectors.joining("; "));
+        return factors.isEmpty() ? "" : "\n\nФакторы по этой транзакции: " + factors + ".";
+    }
+    
+    /**
+     * Построить промпт для рекомендаций.
+     * Зависит только от вероятности и решения, поэтому вероятность округляется
+     * до корзины в 5% - одинаковые промпты отвечаются из кэша.
      */
     private String buildRecommendationPrompt(Transaction transaction, TransactionAnalysisDTO analysis) {
         return String.format("""
@@ -97,8 +250,12 @@ public class AIAnalysisService {
                 
                 Ответь кратко, 3-4 пункта на русском языке.
                 """,
-                analysis.getFraudProbability() * 100,
+                probabilityBucket(analysis.getFraudProbability()),
                 analysis.getDecision()
         );
     }
+    
+    private static double probabilityBucket(double probability) {
+        return Math.round(probability * 100 / RECOMMENDATION_BUCKET_PERCENT) * RECOMMENDATION_BUCKET_PERCENT;
+    }
 }
\ No newline at end of file
@@ -0,0 +1,206 @@
+package com.fortebank.fraud.ai.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Адаптивный лимит одновременных запросов к LLM (AIMD).
+ *
+ * Пока задержка ответа близка к базовой, лимит растёт на 1/limit за ответ -
+ * примерно на единицу за "окно". При ошибке или задержке больше tolerance * базовая
+ * лимит умножается на backoff (не чаще раза за среднюю задержку).
+ * Базовая задержка - долгое скользящее среднее (~500 ответов): рост задержки
+ * от перегрузки виден сразу, а стабильно медленная LLM со временем становится нормой.
+ * Если лимит исчерпан, запрос не ставится в очередь - вызывающий сразу
+ * использует шаблонный текст.
+ *
+ * Задержка зависит от вида вызова, поэтому средняя и базовая задержка ведутся
+ * отдельно по каждому виду (CallType), а лимит одновременных запросов - общий.
+ * Для потоковых ответов задержка - до первого фрагмента: длина генерации
+ * зависит от ответа, а не от загрузки LLM.
+ */
+@Service
+@Slf4j
+public class AIConcurrencyLimiter {
+
+    private static final double RTT_SMOOTHING = 0.05;
+    private static final double BASELINE_SMOOTHING = 0.002;
+
+    private final double minLimit;
+    private final double maxLimit;
+    private final double backoff;
+    private final double tolerance;
+
+    private double limit;
+    private int inFlight;
+    private final double[] averageRttNanos = new double[CallType.values().length];
+    private final double[] baselineRttNanos = new double[CallType.values().length];
+    private long lastDecreaseNanos;
+
+    private final Counter rejected;
+    private final Counter decreases;
+    private final Timer[] latency = new Timer[CallType.values().length];
+
+    /**
+     * Вид вызова LLM: у каждого своя базовая задержка
+     */
+    public enum CallType {
+        /** Короткий ответ (объяснение, рекомендация) */
+        COMPLETION,
+        /** Потоковый ответ - задержка до первого фрагмента */
+        STREAM,
+        /** Пакетный промпт с большим max_tokens */
+        BATCH
+    }
+
+    public AIConcurrencyLimiter(MeterRegistry meterRegistry,
+                                @Value("${fraud.ai.limit.initial:8}") int initialLimit,
+                                @Value("${fraud.ai.limit.min:1}") int minLimit,
+                                @Value("${fraud.ai.limit.max:64}") int maxLimit,
+                                @Value("${fraud.ai.limit.backoff:0.8}") double backoff,
+                                @Value("${fraud.ai.limit.latency-tolerance:2.0}") double tolerance) {
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.backoff = backoff;
+        this.tolerance = tolerance;
+        this.limit = Math.max(minLimit, Math.min(maxLimit, initialLimit));
+
+        Gauge.builder("fraud.ai.limit", this, AIConcurrencyLimiter::getLimit)
+                .description("Текущий лимит одновременных запросов к LLM")
+                .register(meterRegistry);
+        Gauge.builder("fraud.ai.limit.inflight", this, AIConcurrencyLimiter::getInFlight)
+                .description("Запросов к LLM в работе")
+                .register(meterRegistry);
+        this.rejected = Counter.builder("fraud.ai.limit.rejected")
+                .description("Запросов к LLM, отклонённых лимитом (использован шаблонный текст)")
+                .register(meterRegistry);
+        this.decreases = Counter.builder("fraud.ai.limit.decreases")
+                .description("Снижений лимита из-за ошибок или роста задержки")
+                .register(meterRegistry);
+        for (CallType type : CallType.values()) {
+            this.latency[type.ordinal()] = Timer.builder("fraud.ai.llm.latency")
+                    .description("Задержка запросов к LLM (для потоковых - до первого фрагмента)")
+                    .tag("call", type.name().toLowerCase())
+                    .publishPercentiles(0.5, 0.99)
+                    .register(meterRegistry);
+        }
+    }
+
+    /**
+     * Занять место под запрос к LLM
+     *
+     * @return разрешение или null, если лимит исчерпан
+     */
+    public synchronized Permit tryAcquire(CallType type) {
+        if (inFlight >= (int) limit) {
+            rejected.increment();
+            return null;
+        }
+        inFlight++;
+        return new Permit(type, nanoTime());
+    }
+
+    /**
+     * Лимит исчерпан - новый запрос будет отклонён (проверка перед постановкой в очередь)
+     */
+    public synchronized boolean isSaturated() {
+        return inFlight >= (int) limit;
+    }
+
+    /**
+     * Учесть отказ, принятый до вызова tryAcquire (по isSaturated)
+     */
+    public void recordRejected() {
+        rejected.increment();
+    }
+
+    public synchronized double getLimit() {
+        return limit;
+    }
+
+    public synchronized int getInFlight() {
+        return inFlight;
+    }
+
+    /**
+     * Текущее время для задержек и окна снижения (переопределяется в тестах)
+     */
+    long nanoTime() {
+        return System.nanoTime();
+    }
+
+    private synchronized void release(CallType type, long rtt, boolean success) {
+        long now = nanoTime();
+        int index = type.ordinal();
+        inFlight--;
+        latency[index].record(rtt, TimeUnit.NANOSECONDS);
+
+        double baseline = baselineRttNanos[index];
+        double average = averageRttNanos[index];
+        boolean slow = baseline > 0 && rtt > baseline * tolerance;
+        if (!success || slow) {
+            // Один раз за "окно": одновременные ошибки одной волны не обрушивают лимит до минимума
+            if (lastDecreaseNanos == 0 || now - lastDecreaseNanos > average) {
+                double previous = limit;
+                limit = Math.max(minLimit, limit * backoff);
+                lastDecreaseNanos = now;
+                decreases.increment();
+                log.debug("Лимит запросов к LLM снижен: {} -> {} ({}, ошибка: {}, задержка {} мс)",
+                        String.format("%.1f", previous), String.format("%.1f", limit), type, !success,
+                        TimeUnit.NANOSECONDS.toMillis(rtt));
+            }
+        } else if (inFlight + 1 >= limit / 2) {
+            // Растём, только если лимит действительно используется
+            limit = Math.min(maxLimit, limit + 1 / limit);
+        }
+
+        if (success) {
+            averageRttNanos[index] = average == 0
+                    ? rtt
+                    : average + RTT_SMOOTHING * (rtt - average);
+            baselineRttNanos[index] = baseline == 0
+                    ? rtt
+                    : baseline + BASELINE_SMOOTHING * (rtt - baseline);
+        }
+    }
+
+    /**
+     * Разрешение на один запрос; release вызывается ровно один раз
+     */
+    public final class Permit {
+
+        private final CallType type;
+        private final long startNanos;
+        private long firstFragmentNanos;
+        private boolean released;
+
+        private Permit(CallType type, long startNanos) {
+            this.type = type;
+            this.startNanos = startNanos;
+        }
+
+        /**
+         * Получен первый фрагмент потокового ответа (последующие вызовы игнорируются)
+         */
+        public void firstFragment() {
+            if (firstFragmentNanos == 0) {
+                firstFragmentNanos = nanoTime();
+            }
+        }
+
+        public void release(boolean success) {
+            if (!released) {
+                released = true;
+                long end = firstFragmentNanos != 0 ? firstFragmentNanos : nanoTime();
+                AIConcurrencyLimiter.this.release(type, end - startNanos, success);
+            }
+        }
+    }
+}
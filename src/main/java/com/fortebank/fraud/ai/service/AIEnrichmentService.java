@@ -0,0 +1,208 @@
+package com.fortebank.fraud.ai.service;
+
+import com.fortebank.fraud.ai.dto.AIEnrichment;
+import com.fortebank.fraud.ai.dto.AIEnrichmentStatus;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Фоновое AI обогащение результата анализа.
+ *
+ * Решение по правилам отдаётся клиенту сразу вместе с идентификатором обогащения,
+ * а объяснение и рекомендации запрашиваются у LLM в пуле aiExecutor (очередь ограничена).
+ * Результат забирается через статус или Server-Sent Events; при отказе LLM,
+ * переполнении очереди или исчерпанном лимите запросов к LLM (AIConcurrencyLimiter)
+ * обогащение завершается шаблонным текстом.
+ */
+@Service
+@Slf4j
+public class AIEnrichmentService {
+
+    private final ExecutorService aiExecutor;
+    private final AIConcurrencyLimiter concurrencyLimiter;
+    private final long sseTimeoutMillis;
+    private final Cache<String, Ticket> tickets;
+
+    private final AtomicInteger pending = new AtomicInteger();
+    private final Timer latencyTimer;
+    private final Counter fallbackCounter;
+
+    public AIEnrichmentService(@Qualifier("aiExecutor") ExecutorService aiExecutor,
+                               AIConcurrencyLimiter concurrencyLimiter,
+                               @Value("${fraud.ai.enrichment.ttl-minutes:30}") long ttlMinutes,
+                               @Value("${fraud.ai.enrichment.max-entries:10000}") long maxEntries,
+                               @Value("${fraud.ai.enrichment.sse-timeout-ms:60000}") long sseTimeoutMillis,
+                               MeterRegistry meterRegistry) {
+        this.aiExecutor = aiExecutor;
+        this.concurrencyLimiter = concurrencyLimiter;
+        this.sseTimeoutMillis = sseTimeoutMillis;
+        this.tickets = CacheBuilder.newBuilder()
+                .expireAfterWrite(ttlMinutes, TimeUnit.MINUTES)
+                .maximumSize(maxEntries)
+                .build();
+
+        Gauge.builder("fraud.ai.enrichment.pending", pending, AtomicInteger::get)
+                .description("AI обогащений в работе")
+                .register(meterRegistry);
+        this.latencyTimer = Timer.builder("fraud.ai.enrichment")
+                .description("Время от постановки AI обогащения в очередь до готовности")
+                .publishPercentiles(0.5, 0.99)
+                .register(meterRegistry);
+        this.fallbackCounter = Counter.builder("fraud.ai.enrichment.fallbacks")
+                .description("AI обогащений, завершённых шаблонным текстом")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Поставить обогащение в очередь. Объяснение и рекомендации запрашиваются параллельно;
+     * при ошибке или отказе пула вместо ответа LLM используется фолбэк-текст.
+     */
+    public AIEnrichment submit(Long transactionId,
+                               Supplier<String> explanation, String fallbackExplanation,
+                               Supplier<String> recommendations, String fallbackRecommendations) {
+        String enrichmentId = UUID.randomUUID().toString();
+        LocalDateTime createdAt = LocalDateTime.now();
+        long start = System.nanoTime();
+        pending.incrementAndGet();
+
+        CompletableFuture<Part> explanationPart = call(explanation, fallbackExplanation, "объяснения", transactionId);
+        CompletableFuture<Part> recommendationsPart = call(recommendations, fallbackRecommendations, "рекомендаций", transactionId);
+
+        CompletableFuture<AIEnrichment> result = explanationPart
+                .thenCombine(recommendationsPart, (e, r) -> {
+                    long elapsed = System.nanoTime() - start;
+                    latencyTimer.record(elapsed, TimeUnit.NANOSECONDS);
+                    boolean fallback = e.fallback() || r.fallback();
+                    if (fallback) {
+                        fallbackCounter.increment();
+                    }
+                    return AIEnrichment.builder()
+                            .enrichmentId(enrichmentId)
+                            .transactionId(transactionId)
+                            .status(fallback ? AIEnrichmentStatus.FALLBACK : AIEnrichmentStatus.COMPLETED)
+                            .aiExplanation(e.text())
+                            .recommendations(r.text())
+                            .createdAt(createdAt)
+                            .completedAt(LocalDateTime.now())
+                            .latencyMillis(TimeUnit.NANOSECONDS.toMillis(elapsed))
+                            .build();
+                })
+                .whenComplete((enrichment, e) -> pending.decrementAndGet());
+
+        tickets.put(enrichmentId, new Ticket(enrichmentId, transactionId, createdAt, result));
+
+        return AIEnrichment.builder()
+                .enrichmentId(enrichmentId)
+                .transactionId(transactionId)
+                .status(AIEnrichmentStatus.PENDING)
+                .createdAt(createdAt)
+                .build();
+    }
+
+    /**
+     * Дождаться готовности обогащения (синхронный режим)
+     */
+    public AIEnrichment await(String enrichmentId) {
+        return ticket(enrichmentId).result().join();
+    }
+
+    /**
+     * Текущее состояние обогащения
+     */
+    public AIEnrichment getStatus(String enrichmentId) {
+        Ticket ticket = ticket(enrichmentId);
+        AIEnrichment ready = ticket.result().getNow(null);
+        if (ready != null) {
+            return ready;
+        }
+        return AIEnrichment.builder()
+                .enrichmentId(ticket.enrichmentId())
+                .transactionId(ticket.transactionId())
+                .status(AIEnrichmentStatus.PENDING)
+                .createdAt(ticket.createdAt())
+                .build();
+    }
+
+    /**
+     * Подписка на обогащение через Server-Sent Events: одно событие "enrichment"
+     * по готовности, после чего поток закрывается
+     */
+    public SseEmitter subscribe(String enrichmentId) {
+        Ticket ticket = ticket(enrichmentId);
+        SseEmitter emitter = new SseEmitter(sseTimeoutMillis);
+        ticket.result().whenComplete((enrichment, e) -> {
+            try {
+                emitter.send(SseEmitter.event()
+                        .id(ticket.enrichmentId())
+                        .name("enrichment")
+                        .data(enrichment));
+                emitter.complete();
+            } catch (IOException | IllegalStateException ex) {
+                // Клиент отключился или истёк таймаут - результат остаётся доступен через статус
+                log.debug("SSE обогащения {} не доставлено: {}", enrichmentId, ex.getMessage());
+                emitter.completeWithError(ex);
+            }
+        });
+        return emitter;
+    }
+
+    private CompletableFuture<Part> call(Supplier<String> supplier, String fallback,
+                                         String what, Long transactionId) {
+        if (concurrencyLimiter.isSaturated()) {
+            // Лимит запросов к LLM исчерпан - не ставим в очередь, сразу шаблонный текст
+            concurrencyLimiter.recordRejected();
+            log.debug("Лимит AI исчерпан, AI {} для транзакции {} не запрошено", what, transactionId);
+            return CompletableFuture.completedFuture(new Part(fallback, true));
+        }
+        try {
+            return CompletableFuture.supplyAsync(() -> new Part(supplier.get(), false), aiExecutor)
+                    .exceptionally(e -> {
+                        log.error("Ошибка получения AI {} для транзакции {}: {}", what, transactionId, rootMessage(e));
+                        return new Part(fallback, true);
+                    });
+        } catch (RuntimeException e) {
+            // Очередь пула переполнена - не ждём, сразу отдаём шаблонный текст
+            log.warn("Пул AI перегружен, AI {} для транзакции {} не запрошено: {}", what, transactionId, e.getMessage());
+            return CompletableFuture.completedFuture(new Part(fallback, true));
+        }
+    }
+
+    private Ticket ticket(String enrichmentId) {
+        Ticket ticket = tickets.getIfPresent(enrichmentId);
+        if (ticket == null) {
+            throw new RuntimeException("AI обогащение не найдено: " + enrichmentId);
+        }
+        return ticket;
+    }
+
+    private static String rootMessage(Throwable e) {
+        Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+        return cause.getMessage();
+    }
+
+    private record Part(String text, boolean fallback) {
+    }
+
+    private record Ticket(String enrichmentId, Long transactionId, LocalDateTime createdAt,
+                          CompletableFuture<AIEnrichment> result) {
+    }
+}
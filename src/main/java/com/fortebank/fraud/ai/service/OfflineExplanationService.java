@@ -0,0 +1,75 @@
+package com.fortebank.fraud.ai.service;
+
+import com.fortebank.fraud.transaction.dto.RiskFactorDTO;
+import com.fortebank.fraud.transaction.dto.TransactionAnalysisDTO;
+import org.springframework.stereotype.Service;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Детерминированные объяснения и рекомендации без LLM - по решению
+ * и списку факторов риска. Используется в режиме fraud.ai.mode=offline
+ * (нагрузочные тесты, изолированные стенды) и как шаблонный текст при недоступности LLM.
+ */
+@Service
+public class OfflineExplanationService {
+
+    private static final int MAX_FACTORS = 3;
+
+    /**
+     * Объяснение решения по факторам риска
+     */
+    public String explain(TransactionAnalysisDTO analysis) {
+        StringBuilder text = new StringBuilder(decisionText(analysis.getDecision()))
+                .append(String.format(". Вероятность мошенничества %.0f%%, risk score %d/100.",
+                        analysis.getFraudProbability() * 100, analysis.getRiskScore()));
+
+        List<RiskFactorDTO> factors = analysis.getRiskFactors() == null ? List.of() : analysis.getRiskFactors();
+        if (factors.isEmpty()) {
+            text.append(" Факторов риска не обнаружено.");
+        } else {
+            String top = factors.stream()
+                    .sorted(Comparator.comparing(RiskFactorDTO::getScore, Comparator.nullsLast(Comparator.reverseOrder())))
+                    .limit(MAX_FACTORS)
+                    .map(RiskFactorDTO::getDescription)
+                    .collect(Collectors.joining("; "));
+            text.append(" Основные факторы: ").append(top).append('.');
+            if (factors.size() > MAX_FACTORS) {
+                text.append(String.format(" Всего факторов риска: %d.", factors.size()));
+            }
+        }
+
+        if (analysis.getMlProbability() != null) {
+            text.append(String.format(" Оценка ML модели: %.0f%%.", analysis.getMlProbability() * 100));
+        }
+        return text.toString();
+    }
+
+    /**
+     * Рекомендации по решению
+     */
+    public String recommend(TransactionAnalysisDTO analysis) {
+        return switch (analysis.getDecision()) {
+            case "BLOCK" -> "1. Заблокировать транзакцию\n" +
+                            "2. Отправить SMS-уведомление клиенту\n" +
+                            "3. Временно заморозить карту\n" +
+                            "4. Связаться с клиентом для подтверждения";
+            case "REVIEW" -> "1. Приостановить транзакцию до ручной проверки\n" +
+                             "2. Позвонить клиенту для подтверждения операции\n" +
+                             "3. Проверить историю входов и смену устройств";
+            default -> "1. Одобрить транзакцию\n" +
+                       "2. Продолжить мониторинг активности клиента";
+        };
+    }
+
+    private static String decisionText(String decision) {
+        return switch (decision) {
+            case "BLOCK" -> "Транзакция заблокирована";
+            case "REVIEW" -> "Транзакция отправлена на ручную проверку";
+            case "APPROVE" -> "Транзакция одобрена";
+            default -> "Транзакция проанализирована";
+        };
+    }
+}
@@ -1,77 +1,239 @@
 package com.fortebank.fraud.ai.service;
 
-import lombok.RequiredArgsConstructor;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fortebank.fraud.ai.dto.ChatCompletion;
+import com.fortebank.fraud.ai.service.AIConcurrencyLimiter.CallType;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.*;
+import org.springframework.http.client.ClientHttpResponse;
 import org.springframework.stereotype.Service;
 import org.springframework.web.client.RestTemplate;
 
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Consumer;
+import java.util.function.Function;
 
 @Service
-@RequiredArgsConstructor
 @Slf4j
 public class OpenAIService {
-    
+
+    public static final int DEFAULT_MAX_TOKENS = 800;
+
+    private static final String STREAM_DATA_PREFIX = "data:";
+    private static final String STREAM_DONE = "[DONE]";
+    private static final String FINISH_LENGTH = "length";      // Ответ обрезан по max_tokens
+
     @Value("${openai.api.key}")
     private String apiKey;
-    
+
     @Value("${openai.api.url}")
     private String apiUrl;
-    
+
     @Value("${openai.api.model:gpt-4}")
     private String model;
-    
-    private final RestTemplate restTemplate = new RestTemplate();
-    
+
+    private final RestTemplate restTemplate;
+    private final PromptCacheService promptCache;
+    private final ObjectMapper objectMapper;
+    private final AIConcurrencyLimiter concurrencyLimiter;
+
     /**
-     * Вызвать ChatGPT API
+     * @param restTemplate клиент с пулом keep-alive соединений (см. RestTemplateConfig)
+     */
+    public OpenAIService(@Qualifier("openAIRestTemplate") RestTemplate restTemplate,
+                         PromptCacheService promptCache,
+                         ObjectMapper objectMapper,
+                         AIConcurrencyLimiter concurrencyLimiter) {
+        this.restTemplate = restTemplate;
+        this.promptCache = promptCache;
+        this.objectMapper = objectMapper;
+        this.concurrencyLimiter = concurrencyLimiter;
+    }
+
+    /**
+     * Вызвать ChatGPT API (ответ берётся из кэша промптов, если он уже был получен).
+     *
+     * @throws RuntimeException если API недоступно или вернуло пустой ответ
      */
     public String callChatGPT(String prompt) {
+        return promptCache.get(model, prompt,
+                () -> requestCompletion(prompt, DEFAULT_MAX_TOKENS, CallType.COMPLETION).getText());
+    }
+
+    /**
+     * Вызвать ChatGPT API с заданным лимитом токенов ответа, минуя кэш промптов
+     * (пакетные промпты уникальны, а неполный ответ нельзя закэшировать)
+     *
+     * @return текст ответа и признак обрезки по maxTokens
+     */
+    public ChatCompletion callChatGPTUncached(String prompt, int maxTokens) {
+        return requestCompletion(prompt, maxTokens, CallType.BATCH);
+    }
+
+    /**
+     * Вызвать ChatGPT API в потоковом режиме (stream=true): фрагменты ответа
+     * передаются в onToken по мере генерации. Ответ из кэша отдаётся одним фрагментом.
+     *
+     * @return полный текст ответа (сохраняется в кэш промптов)
+     * @throws RuntimeException если API недоступно, вернуло пустой ответ или onToken прервал передачу
+     */
+    public String streamChatGPT(String prompt, Consumer<String> onToken) {
+        String cached = promptCache.getIfPresent(model, prompt);
+        if (cached != null) {
+            onToken.accept(cached);
+            return cached;
+        }
+
+        Map<String, Object> requestBody = requestBody(prompt, DEFAULT_MAX_TOKENS);
+        requestBody.put("stream", true);
+
+        String text;
+        try {
+            text = limited(CallType.STREAM, permit -> restTemplate.execute(
+                    apiUrl + "/chat/completions",
+                    HttpMethod.POST,
+                    request -> {
+                        request.getHeaders().setContentType(MediaType.APPLICATION_JSON);
+                        request.getHeaders().setAccept(List.of(MediaType.TEXT_EVENT_STREAM));
+                        request.getHeaders().setBearerAuth(apiKey);
+                        objectMapper.writeValue(request.getBody(), requestBody);
+                    },
+                    response -> readStream(response, onToken, permit)
+            ));
+        } catch (UncheckedIOException e) {
+            // Получатель фрагментов прервал передачу (например, клиент отключился)
+            throw e;
+        } catch (Exception e) {
+            log.error("Ошибка потокового вызова ChatGPT: {}", e.getMessage());
+            throw new RuntimeException("Ошибка анализа AI: " + e.getMessage(), e);
+        }
+
+        if (text == null || text.isEmpty()) {
+            throw new RuntimeException("Не удалось получить ответ от AI");
+        }
+        promptCache.put(model, prompt, text);
+        return text;
+    }
+
+    private ChatCompletion requestCompletion(String prompt, int maxTokens, CallType type) {
+        return limited(type, permit -> doRequestCompletion(prompt, maxTokens));
+    }
+
+    /**
+     * Выполнить запрос в пределах адаптивного лимита; при исчерпанном лимите - сразу ошибка,
+     * вызывающий использует шаблонный текст
+     */
+    private <T> T limited(CallType type, Function<AIConcurrencyLimiter.Permit, T> call) {
+        AIConcurrencyLimiter.Permit permit = concurrencyLimiter.tryAcquire(type);
+        if (permit == null) {
+            throw new RuntimeException("Превышен лимит одновременных запросов к AI");
+        }
+        boolean success = false;
+        try {
+            T result = call.apply(permit);
+            success = true;
+            return result;
+        } catch (UncheckedIOException e) {
+            // Отключился наш клиент, а не LLM - на лимит не влияет
+            success = true;
+            throw e;
+        } finally {
+            permit.release(success);
+        }
+    }
+
+    private ChatCompletion doRequestCompletion(String prompt, int maxTokens) {
         try {
             HttpHeaders headers = new HttpHeaders();
             headers.setContentType(MediaType.APPLICATION_JSON);
             headers.setBearerAuth(apiKey);
-            
-            Map<String, Object> requestBody = new HashMap<>();
-            requestBody.put("model", model);
-            requestBody.put("messages", List.of(
-                    Map.of("role", "system", "content", 
-                           "Ты эксперт по противодействию мошенничеству в банке. " +
-                           "Отвечай на русском языке, кратко и понятно."),
-                    Map.of("role", "user", "content", prompt)
-            ));
-            requestBody.put("temperature", 0.7);
-            requestBody.put("max_tokens", 800);
-            
-            HttpEntity<Map<String, Object>> entity = new HttpEntity<>(requestBody, headers);
-            
+
+            HttpEntity<Map<String, Object>> entity = new HttpEntity<>(requestBody(prompt, maxTokens), headers);
+
             ResponseEntity<Map> response = restTemplate.exchange(
                     apiUrl + "/chat/completions",
                     HttpMethod.POST,
                     entity,
                     Map.class
             );
-            
+
             if (response.getStatusCode() == HttpStatus.OK && response.getBody() != null) {
-                List<Map<String, Object>> choices = 
+                List<Map<String, Object>> choices =
                         (List<Map<String, Object>>) response.getBody().get("choices");
-                
+
                 if (choices != null && !choices.isEmpty()) {
-                    Map<String, Object> message = 
+                    Map<String, Object> message =
                             (Map<String, Object>) choices.get(0).get("message");
-                    return (String) message.get("content");
+                    String content = message != null ? (String) message.get("content") : null;
+                    if (content != null) {
+                        return new ChatCompletion(content, FINISH_LENGTH.equals(choices.get(0).get("finish_reason")));
+                    }
                 }
             }
-            
-            return "Не удалось получить ответ от AI";
-            
+
         } catch (Exception e) {
-            log.error("Ошибка вызова ChatGPT: {}", e.getMessage(), e);
-            return "Ошибка анализа AI: " + e.getMessage();
+            log.error("Ошибка вызова ChatGPT: {}", e.getMessage());
+            throw new RuntimeException("Ошибка анализа AI: " + e.getMessage(), e);
+        }
+
+        throw new RuntimeException("Не удалось получить ответ от AI");
+    }
+
+    private Map<String, Object> requestBody(String prompt, int maxTokens) {
+        Map<String, Object> requestBody = new HashMap<>();
+        requestBody.put("model", model);
+        requestBody.put("messages", List.of(
+                Map.of("role", "system", "content",
+                       "Ты эксперт по противодействию мошенничеству в банке. " +
+                       "Отвечай на русском языке, кратко и понятно."),
+                Map.of("role", "user", "content", prompt)
+        ));
+        requestBody.put("temperature", 0.7);
+        requestBody.put("max_tokens", maxTokens);
+        return requestBody;
+    }
+
+    /**
+     * Разобрать поток Server-Sent Events: строки "data: {json}" с choices[0].delta.content,
+     * завершение - "data: [DONE]". Первый фрагмент отмечается в разрешении лимита
+     * (задержка потокового ответа - до него)
+     */
+    private String readStream(ClientHttpResponse response, Consumer<String> onToken,
+                              AIConcurrencyLimiter.Permit permit) throws IOException {
+        if (!response.getStatusCode().is2xxSuccessful()) {
+            throw new IOException("HTTP " + response.getStatusCode().value());
+        }
+
+        StringBuilder text = new StringBuilder();
+        BufferedReader reader = new BufferedReader(
+                new InputStreamReader(response.getBody(), StandardCharsets.UTF_8));
+        String line;
+        while ((line = reader.readLine()) != null) {
+            if (!line.startsWith(STREAM_DATA_PREFIX)) {
+                continue;
+            }
+            String data = line.substring(STREAM_DATA_PREFIX.length()).strip();
+            if (STREAM_DONE.equals(data)) {
+                break;
+            }
+            JsonNode content = objectMapper.readTree(data)
+                    .path("choices").path(0).path("delta").path("content");
+            if (content.isTextual() && !content.asText().isEmpty()) {
+                permit.firstFragment();
+                text.append(content.asText());
+                onToken.accept(content.asText());
+            }
         }
+        return text.toString();
     }
 }
@@ -0,0 +1,283 @@
+package com.fortebank.fraud.ai.service;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.GuavaCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.HexFormat;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+/**
+ * Кэш ответов LLM по нормализованному промпту.
+ *
+ * Два уровня:
+ * - в памяти: LRU с ограничением числа записей и TTL;
+ * - на диске: файл на промпт (имя - SHA-256 ключа), переживает перезапуск.
+ *   Включается только явным абсолютным путём fraud.ai.cache.dir; ответы могут содержать
+ *   данные клиентов, поэтому каталог и файлы доступны только владельцу процесса (POSIX).
+ *
+ * Ключ - модель + промпт со схлопнутыми пробелами. Одновременные запросы
+ * одного промпта ждут один вызов LLM. Ошибки LLM не кэшируются.
+ */
+@Service
+@Slf4j
+public class PromptCacheService {
+
+    private static final Set<PosixFilePermission> OWNER_DIRECTORY = PosixFilePermissions.fromString("rwx------");
+    private static final Set<PosixFilePermission> OWNER_FILE = PosixFilePermissions.fromString("rw-------");
+
+    private final Cache<String, String> memory;
+    private final Path directory;
+    private final Duration ttl;
+    private final boolean enabled;
+
+    private final Counter memoryHits;
+    private final Counter diskHits;
+    private final Counter misses;
+
+    public PromptCacheService(MeterRegistry meterRegistry,
+                              @Value("${fraud.ai.cache.enabled:true}") boolean enabled,
+                              @Value("${fraud.ai.cache.max-entries:10000}") long maxEntries,
+                              @Value("${fraud.ai.cache.ttl-hours:24}") long ttlHours,
+                              @Value("${fraud.ai.cache.dir:}") String directory) {
+        this.enabled = enabled;
+        this.ttl = Duration.ofHours(ttlHours);
+        this.directory = diskDirectory(directory);
+        this.memory = CacheBuilder.newBuilder()
+                .maximumSize(maxEntries)
+                .expireAfterWrite(ttlHours, TimeUnit.HOURS)
+                .recordStats()
+                .build();
+
+        GuavaCacheMetrics.monitor(meterRegistry, memory, "fraud.ai.prompts");
+        this.memoryHits = Counter.builder("fraud.ai.cache.hits").tag("tier", "memory")
+                .description("Ответов LLM, взятых из кэша")
+                .register(meterRegistry);
+        this.diskHits = Counter.builder("fraud.ai.cache.hits").tag("tier", "disk")
+                .description("Ответов LLM, взятых из кэша")
+                .register(meterRegistry);
+        this.misses = Counter.builder("fraud.ai.cache.misses")
+                .description("Промптов, отправленных в LLM")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Каталог дискового уровня или null, если он не задан (только память)
+     */
+    private static Path diskDirectory(String location) {
+        if (location == null || location.isBlank()) {
+            return null;
+        }
+        Path path = Paths.get(location);
+        if (!path.isAbsolute()) {
+            throw new IllegalArgumentException(
+                    "fraud.ai.cache.dir должен быть абсолютным путём: " + location);
+        }
+        try {
+            createPrivateDirectories(path);
+            if (isPosix(path)) {
+                Files.setPosixFilePermissions(path, OWNER_DIRECTORY);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Не удалось подготовить каталог кэша промптов " + path, e);
+        }
+        log.info("Дисковый кэш ответов LLM: {}", path);
+        return path;
+    }
+
+    /**
+     * Ответ из кэша или результат loader (сохраняется в оба уровня).
+     * Исключение loader пробрасывается как есть.
+     */
+    public String get(String model, String prompt, Supplier<String> loader) {
+        if (!enabled) {
+            return loader.get();
+        }
+
+        String key = key(model, prompt);
+        String cached = memory.getIfPresent(key);
+        if (cached != null) {
+            memoryHits.increment();
+            return cached;
+        }
+
+        try {
+            return memory.get(key, () -> {
+                String fromDisk = readDisk(key);
+                if (fromDisk != null) {
+                    diskHits.increment();
+                    return fromDisk;
+                }
+                misses.increment();
+                String answer = loader.get();
+                writeDisk(key, answer);
+                return answer;
+            });
+        } catch (ExecutionException | UncheckedExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            throw new RuntimeException("Ошибка получения ответа LLM", e.getCause());
+        }
+    }
+
+    /**
+     * Ответ из кэша (память, затем диск) или null - без вызова LLM
+     */
+    public String getIfPresent(String model, String prompt) {
+        if (!enabled) {
+            return null;
+        }
+
+        String key = key(model, prompt);
+        String cached = memory.getIfPresent(key);
+        if (cached != null) {
+            memoryHits.increment();
+            return cached;
+        }
+        String fromDisk = readDisk(key);
+        if (fromDisk != null) {
+            diskHits.increment();
+            memory.put(key, fromDisk);
+            return fromDisk;
+        }
+        misses.increment();
+        return null;
+    }
+
+    /**
+     * Сохранить ответ, полученный в обход get (например, потоковый)
+     */
+    public void put(String model, String prompt, String answer) {
+        if (!enabled) {
+            return;
+        }
+        String key = key(model, prompt);
+        memory.put(key, answer);
+        writeDisk(key, answer);
+    }
+
+    /**
+     * Удаление просроченных файлов дискового уровня
+     */
+    @Scheduled(fixedDelayString = "${fraud.ai.cache.cleanup-interval-ms:3600000}")
+    public void purgeExpired() {
+        if (!enabled || directory == null || !Files.isDirectory(directory)) {
+            return;
+        }
+        long deadline = System.currentTimeMillis() - ttl.toMillis();
+        int removed = 0;
+        try (Stream<Path> files = Files.walk(directory, 2)) {
+            for (Path file : (Iterable<Path>) files.filter(Files::isRegularFile)::iterator) {
+                if (Files.getLastModifiedTime(file).toMillis() < deadline) {
+                    Files.deleteIfExists(file);
+                    removed++;
+                }
+            }
+        } catch (IOException e) {
+            log.warn("Ошибка очистки кэша промптов {}: {}", directory, e.getMessage());
+        }
+        if (removed > 0) {
+            log.info("Из кэша промптов удалено просроченных ответов: {}", removed);
+        }
+    }
+
+    /**
+     * Ключ: SHA-256 от модели и промпта с нормализованными пробелами
+     */
+    static String key(String model, String prompt) {
+        String normalized = model + "\n" + prompt.strip().replaceAll("\\s+", " ");
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(normalized.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private Path file(String key) {
+        // Подкаталог по первым двум символам - чтобы не держать все файлы в одном каталоге
+        return directory.resolve(key.substring(0, 2)).resolve(key + ".txt");
+    }
+
+    private String readDisk(String key) {
+        if (directory == null) {
+            return null;
+        }
+        Path file = file(key);
+        try {
+            if (!Files.exists(file)) {
+                return null;
+            }
+            FileTime modified = Files.getLastModifiedTime(file);
+            if (modified.toMillis() < System.currentTimeMillis() - ttl.toMillis()) {
+                Files.deleteIfExists(file);
+                return null;
+            }
+            return Files.readString(file, StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            log.warn("Не удалось прочитать кэш промпта {}: {}", file, e.getMessage());
+            return null;
+        }
+    }
+
+    private void writeDisk(String key, String answer) {
+        if (directory == null) {
+            return;
+        }
+        Path file = file(key);
+        try {
+            createPrivateDirectories(file.getParent());
+            Path tmp = isPosix(directory)
+                    ? Files.createTempFile(file.getParent(), key, ".tmp",
+                            PosixFilePermissions.asFileAttribute(OWNER_FILE))
+                    : Files.createTempFile(file.getParent(), key, ".tmp");
+            Files.writeString(tmp, answer, StandardCharsets.UTF_8);
+            try {
+                Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException e) {
+            // Диск - не критичный уровень: ответ остаётся в памяти
+            log.warn("Не удалось сохранить кэш промпта {}: {}", file, e.getMessage());
+        }
+    }
+
+    private static void createPrivateDirectories(Path path) throws IOException {
+        if (isPosix(path.getRoot())) {
+            Files.createDirectories(path, PosixFilePermissions.asFileAttribute(OWNER_DIRECTORY));
+        } else {
+            Files.createDirectories(path);
+        }
+    }
+
+    private static boolean isPosix(Path path) {
+        return path.getFileSystem().supportedFileAttributeViews().contains("posix");
+    }
+}
@@ -0,0 +1,246 @@
+package com.fortebank.fraud.ai.stub;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Заглушка OpenAI-совместимого /chat/completions для нагрузочных тестов без внешнего API.
+ *
+ * Задержка ответа - нормальное распределение (latency ± jitter, не меньше нуля),
+ * доля ответов 500 - errorRate, доля "зависших" запросов - timeoutRate (ответ через timeoutMillis).
+ * Поддерживает stream=true (фрагменты с задержкой tokenDelayMillis), ограничение max_tokens
+ * (finish_reason=length) и пакетные промпты: строки "id: ..." получают ответ в JSON по id.
+ *
+ * Запуск вместе с приложением - fraud.ai.stub.enabled=true (см. LlmStubConfig) и
+ * openai.api.url=http://localhost:{port}; отдельно - через main.
+ */
+@Slf4j
+public class LlmStubServer {
+
+    private static final Pattern BATCH_LINE = Pattern.compile("(?m)^(\\d+): ");
+    private static final double CHARS_PER_TOKEN = 2.5;
+    private static final String ANSWER =
+            "Операция нетипична для клиента: сумма и время отличаются от его обычного поведения, " +
+            "получатель ранее не встречался. Рекомендуется подтвердить операцию у клиента.";
+
+    private final int port;
+    private final long latencyMillis;
+    private final long jitterMillis;
+    private final double errorRate;
+    private final double timeoutRate;
+    private final long timeoutMillis;
+    private final long tokenDelayMillis;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong errors = new AtomicLong();
+    private final AtomicLong timeouts = new AtomicLong();
+
+    private HttpServer server;
+    private ExecutorService executor;
+
+    public LlmStubServer(int port, long latencyMillis, long jitterMillis,
+                         double errorRate, double timeoutRate, long timeoutMillis,
+                         long tokenDelayMillis) {
+        this.port = port;
+        this.latencyMillis = latencyMillis;
+        this.jitterMillis = jitterMillis;
+        this.errorRate = errorRate;
+        this.timeoutRate = timeoutRate;
+        this.timeoutMillis = timeoutMillis;
+        this.tokenDelayMillis = tokenDelayMillis;
+    }
+
+    public synchronized void start() throws IOException {
+        server = HttpServer.create(new InetSocketAddress(port), 0);
+        // Поток на запрос: задержки заглушки не должны ограничивать число одновременных запросов
+        AtomicInteger counter = new AtomicInteger();
+        executor = Executors.newCachedThreadPool(r -> {
+            Thread thread = new Thread(r, "llm-stub-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        server.setExecutor(executor);
+        server.createContext("/chat/completions", this::handle);
+        server.start();
+        log.info("LLM заглушка запущена на порту {}: задержка {}±{} мс, ошибки {}%, таймауты {}%",
+                getPort(), latencyMillis, jitterMillis, errorRate * 100, timeoutRate * 100);
+    }
+
+    public synchronized void stop() {
+        if (server != null) {
+            server.stop(0);
+            executor.shutdownNow();
+            log.info("LLM заглушка остановлена: запросов {}, ошибок {}, таймаутов {}",
+                    requests.get(), errors.get(), timeouts.get());
+            server = null;
+        }
+    }
+
+    public int getPort() {
+        return server != null ? server.getAddress().getPort() : port;
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            if (!"POST".equals(exchange.getRequestMethod())) {
+                exchange.sendResponseHeaders(405, -1);
+                return;
+            }
+            requests.incrementAndGet();
+            JsonNode request = objectMapper.readTree(exchange.getRequestBody());
+
+            double outcome = ThreadLocalRandom.current().nextDouble();
+            if (outcome < timeoutRate) {
+                timeouts.incrementAndGet();
+                sleep(timeoutMillis);
+                sendJson(exchange, 504, Map.of("error", Map.of("message", "stub timeout")));
+                return;
+            }
+            sleep(sampleLatency());
+            if (outcome < timeoutRate + errorRate) {
+                errors.incrementAndGet();
+                sendJson(exchange, 500, Map.of("error", Map.of("message", "stub error")));
+                return;
+            }
+
+            String prompt = lastMessage(request);
+            String content = answer(prompt);
+            int maxTokens = request.path("max_tokens").asInt(0);
+            String finishReason = "stop";
+            if (maxTokens > 0 && content.length() > maxTokens * CHARS_PER_TOKEN) {
+                content = content.substring(0, (int) (maxTokens * CHARS_PER_TOKEN));
+                finishReason = "length";
+            }
+
+            if (request.path("stream").asBoolean(false)) {
+                stream(exchange, content, finishReason);
+            } else {
+                sendJson(exchange, 200, Map.of(
+                        "id", "stub-" + requests.get(),
+                        "object", "chat.completion",
+                        "model", request.path("model").asText("stub"),
+                        "choices", List.of(Map.of(
+                                "index", 0,
+                                "message", Map.of("role", "assistant", "content", content),
+                                "finish_reason", finishReason))));
+            }
+        } catch (IOException e) {
+            // Клиент закрыл соединение (например, по своему таймауту)
+            log.debug("LLM заглушка: соединение прервано: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Ответ на промпт: для пакетного - JSON по id транзакций, иначе - типовое объяснение
+     */
+    private String answer(String prompt) throws IOException {
+        Matcher matcher = BATCH_LINE.matcher(prompt);
+        Map<String, String> batch = new LinkedHashMap<>();
+        while (matcher.find()) {
+            batch.put(matcher.group(1), ANSWER);
+        }
+        return batch.isEmpty() ? ANSWER : objectMapper.writeValueAsString(batch);
+    }
+
+    private void stream(HttpExchange exchange, String content, String finishReason) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", "text/event-stream; charset=UTF-8");
+        exchange.sendResponseHeaders(200, 0);
+        OutputStream out = exchange.getResponseBody();
+        for (String token : tokens(content)) {
+            writeEvent(out, Map.of("choices", List.of(Map.of(
+                    "index", 0, "delta", Map.of("content", token)))));
+            sleep(tokenDelayMillis);
+        }
+        writeEvent(out, Map.of("choices", List.of(Map.of(
+                "index", 0, "delta", Map.of(), "finish_reason", finishReason))));
+        out.write("data: [DONE]\n\n".getBytes(StandardCharsets.UTF_8));
+        out.flush();
+    }
+
+    private void writeEvent(OutputStream out, Object data) throws IOException {
+        out.write(("data: " + objectMapper.writeValueAsString(data) + "\n\n").getBytes(StandardCharsets.UTF_8));
+        out.flush();
+    }
+
+    private void sendJson(HttpExchange exchange, int status, Object body) throws IOException {
+        byte[] bytes = objectMapper.writeValueAsBytes(body);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, bytes.length);
+        exchange.getResponseBody().write(bytes);
+    }
+
+    private long sampleLatency() {
+        double latency = latencyMillis + ThreadLocalRandom.current().nextGaussian() * jitterMillis;
+        return Math.max(0, Math.round(latency));
+    }
+
+    private static String lastMessage(JsonNode request) {
+        JsonNode messages = request.path("messages");
+        return messages.isArray() && !messages.isEmpty()
+                ? messages.get(messages.size() - 1).path("content").asText("")
+                : "";
+    }
+
+    /**
+     * Фрагменты потока - слова вместе с последующим пробелом
+     */
+    private static List<String> tokens(String content) {
+        List<String> tokens = new ArrayList<>();
+        int start = 0;
+        for (int i = 1; i <= content.length(); i++) {
+            if (i == content.length() || content.charAt(i - 1) == ' ') {
+                tokens.add(content.substring(start, i));
+                start = i;
+            }
+        }
+        return tokens;
+    }
+
+    private static void sleep(long millis) {
+        if (millis <= 0) {
+            return;
+        }
+        try {
+            TimeUnit.MILLISECONDS.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Отдельный запуск: LlmStubServer [port] [latencyMs] [jitterMs] [errorRate] [timeoutRate]
+     */
+    public static void main(String[] args) throws IOException {
+        LlmStubServer stub = new LlmStubServer(
+                args.length > 0 ? Integer.parseInt(args[0]) : 8099,
+                args.length > 1 ? Long.parseLong(args[1]) : 800,
+                args.length > 2 ? Long.parseLong(args[2]) : 400,
+                args.length > 3 ? Double.parseDouble(args[3]) : 0.0,
+                args.length > 4 ? Double.parseDouble(args[4]) : 0.0,
+                60_000,
+                30);
+        Runtime.getRuntime().addShutdownHook(new Thread(stub::stop));
+        stub.start();
+    }
+}
@@ -1,10 +1,17 @@
 package com.fortebank.fraud.batch.controller;
 
+import com.fortebank.fraud.batch.dto.BatchExplanationResult;
+import com.fortebank.fraud.batch.dto.PipelineStats;
+import com.fortebank.fraud.batch.dto.UpsertResult;
 import com.fortebank.fraud.batch.entity.BatchJob;
+import com.fortebank.fraud.batch.service.BatchExplanationService;
+import com.fortebank.fraud.batch.service.BatchIngestQueueService;
 import com.fortebank.fraud.batch.service.BatchProcessingService;
+import com.fortebank.fraud.batch.service.BatchScoringService;
 import com.fortebank.fraud.common.response.ApiResponse;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
@@ -19,9 +26,13 @@ import java.util.List;
 public class BatchController {
     
     private final BatchProcessingService batchProcessingService;
+    private final BatchIngestQueueService batchIngestQueueService;
+    private final BatchScoringService batchScoringService;
+    private final BatchExplanationService batchExplanationService;
     
     /**
-     * Загрузить Excel файл с транзакциями
+     * Загрузить файл с транзакциями (.xlsx, .csv или .csv.gz).
+     * Файл ставится в очередь обработки - ответ 202, прогресс - в /status/{batchId}
      */
     @PostMapping("/upload")
     public ResponseEntity<ApiResponse<BatchJob>> uploadTransactions(
@@ -31,11 +42,11 @@ public class BatchController {
         log.info("Получен файл для загрузки: {}", file.getOriginalFilename());
         
         String username = authentication.getName();
-        BatchJob batchJob = batchProcessingService.processExcelFile(file, username);
+        BatchJob batchJob = batchIngestQueueService.submit(file, username);
         
-        return ResponseEntity.ok(ApiResponse.success(
+        return ResponseEntity.status(HttpStatus.ACCEPTED).body(ApiResponse.success(
             batchJob,
-            "Файл успешно загружен и обработан"
+            "Файл принят в обработку"
         ));
     }
     
@@ -54,6 +65,91 @@ public class BatchController {
         ));
     }
     
+    /**
+     * Продолжить неудавшуюся загрузку файла с контрольной точки (ответ 202, прогресс - в /status/{batchId})
+     */
+    @PostMapping("/{batchId}/resume")
+    public ResponseEntity<ApiResponse<BatchJob>> resumeUpload(
+            @PathVariable Long batchId) {
+        
+        log.info("Продолжение загрузки батча: {}", batchId);
+        
+        BatchJob batchJob = batchIngestQueueService.resume(batchId);
+        
+        return ResponseEntity.status(HttpStatus.ACCEPTED).body(ApiResponse.success(
+            batchJob,
+            "Загрузка продолжена со строки " + (batchJob.getCheckpointRow() + 1)
+        ));
+    }
+    
+    /**
+     * Статистика стадий загрузки файла: пропускная способность, загрузка и очереди
+     * (стадия с наибольшей загрузкой - узкое место)
+     */
+    @GetMapping("/{batchId}/ingest-stats")
+    public ResponseEntity<ApiResponse<PipelineStats>> getIngestStats(
+            @PathVariable Long batchId) {
+        
+        PipelineStats stats = batchProcessingService.getIngestStats(batchId);
+        
+        return ResponseEntity.ok(ApiResponse.success(
+            stats,
+            "Статистика загрузки получена"
+        ));
+    }
+    
+    /**
+     * Запустить оценку всех транзакций батча по правилам (ответ 202, прогресс - в /status/{batchId})
+     */
+    @PostMapping("/{batchId}/score")
+    public ResponseEntity<ApiResponse<BatchJob>> scoreBatch(
+            @PathVariable Long batchId) {
+        
+        log.info("Запуск оценки батча: {}", batchId);
+        
+        BatchJob batchJob = batchScoringService.startScoring(batchId);
+        
+        return ResponseEntity.status(HttpStatus.ACCEPTED).body(ApiResponse.success(
+            batchJob,
+            "Оценка батча запущена"
+        ));
+    }
+    
+    /**
+     * Запустить пакетные AI объяснения заблокированных и подозрительных транзакций батча
+     * (сохраняются в транзакциях; повторный запуск объясняет оставшиеся).
+     * Ответ 202, прогресс и результат - в GET /{batchId}/explain
+     */
+    @PostMapping("/{batchId}/explain")
+    public ResponseEntity<ApiResponse<BatchExplanationResult>> explainBatch(
+            @PathVariable Long batchId,
+            @RequestParam(defaultValue = "200") int limit) {
+        
+        log.info("Пакетные AI объяснения батча: {}, limit={}", batchId, limit);
+        
+        BatchExplanationResult result = batchExplanationService.startExplanation(batchId, limit);
+        
+        return ResponseEntity.status(HttpStatus.ACCEPTED).body(ApiResponse.success(
+            result,
+            "AI объяснения запущены"
+        ));
+    }
+    
+    /**
+     * Прогресс или результат последнего запуска пакетных AI объяснений батча
+     */
+    @GetMapping("/{batchId}/explain")
+    public ResponseEntity<ApiResponse<BatchExplanationResult>> getExplanationProgress(
+            @PathVariable Long batchId) {
+        
+        BatchExplanationResult result = batchExplanationService.getProgress(batchId);
+        
+        return ResponseEntity.ok(ApiResponse.success(
+            result,
+            "Прогресс AI объяснений получен"
+        ));
+    }
+    
     /**
      * Получить историю загрузок
      */
@@ -71,16 +167,17 @@ public class BatchController {
     }
 
     @PostMapping("/upload-behavior")
-    public ResponseEntity<ApiResponse<String>> uploadBehaviorPatterns(
+    public ResponseEntity<ApiResponse<UpsertResult>> uploadBehaviorPatterns(
             @RequestParam("file") MultipartFile file) {
         
         log.info("Загрузка поведенческих паттернов: {}", file.getOriginalFilename());
         
-        int saved = batchProcessingService.processBehaviorPatternsFile(file);
+        UpsertResult result = batchProcessingService.processBehaviorPatternsFile(file);
         
         return ResponseEntity.ok(ApiResponse.success(
-            "Загружено " + saved + " поведенческих паттернов",
-            "Паттерны успешно загружены"
+            result,
+            "Паттерны загружены: новых " + result.getInserted() + ", обновлено " + result.getUpdated()
+                + ", без изменений " + result.getSkipped()
         ));
     }
 }
@@ -0,0 +1,27 @@
+package com.fortebank.fraud.batch.dto;
+
+import com.fortebank.fraud.batch.entity.BatchJobStatus;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.Map;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class BatchExplanationResult {
+    private Long batchId;
+    private BatchJobStatus status;        // PROCESSING - идёт, COMPLETED или FAILED - завершено
+    private String errorMessage;
+    private Integer requested;            // Транзакций без объяснения, взятых в работу
+    private Integer explained;            // Получено и сохранено объяснений
+    private Integer failed;               // Не удалось объяснить (можно запустить повторно)
+    private Integer llmCalls;             // Запросов к LLM
+    private Integer finalBatchSize;       // Размер пакета после адаптации
+    private Long durationMillis;
+    private Double explanationsPerMinute;
+    private Map<Long, String> explanations;   // id транзакции -> объяснение
+}
@@ -0,0 +1,18 @@
+package com.fortebank.fraud.batch.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ParseResult {
+    private Integer rows;             // Строк данных в файле (без заголовка)
+    private Integer parsed;           // Передано в обработку
+    private Integer skipped;          // Пустые и нераспознанные строки
+    private Long durationMillis;      // Чтение вместе с обработкой пачек
+    private Double rowsPerSecond;
+}
@@ -0,0 +1,23 @@
+package com.fortebank.fraud.batch.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class PipelineStageStats {
+    private String stage;                 // parse, transform, write
+    private Integer threads;
+    private Long chunks;                  // Пачек передано дальше (для write - записано)
+    private Long rows;
+    private Long busyMillis;              // Время работы без ожидания очередей (сумма по потокам)
+    private Double utilization;           // busyMillis / (время загрузки * threads)
+    private Double rowsPerSecond;
+    private Integer queueDepth;           // Пачек во входной очереди стадии сейчас
+    private Integer maxQueueDepth;
+    private Integer queueCapacity;
+}
@@ -0,0 +1,30 @@
+package com.fortebank.fraud.batch.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class PipelineStats {
+    private Long batchId;
+    private String filename;
+    private Boolean running;
+    private Integer resumedFromRow;       // Строк до контрольной точки (продолжение загрузки)
+    private Integer rows;                 // Строк данных в файле до прочитанной включительно
+    private Integer invalid;              // Нераспознанные и не прошедшие проверку строки (в этом запуске)
+    private Integer processed;            // Сохранено (с учётом загруженного до контрольной точки)
+    private Integer inserted;             // Из processed: новые транзакции
+    private Integer updated;              // Из processed: уже загруженные с изменившимися значениями
+    private Integer skipped;              // Из processed: уже загруженные без изменений и повторы в файле
+    private Integer failed;               // Не сохранено, включая invalid
+    private Long elapsedMillis;
+    private Double rowsPerSecond;         // Строк, прочитанных в этом запуске
+    private String bottleneck;            // Стадия с наибольшей загрузкой
+    private List<PipelineStageStats> stages;
+}
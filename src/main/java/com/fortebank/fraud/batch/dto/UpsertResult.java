@@ -0,0 +1,16 @@
+package com.fortebank.fraud.batch.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class UpsertResult {
+    private Integer inserted;             // Новые строки
+    private Integer updated;              // Существующие строки с изменившимися значениями
+    private Integer skipped;              // Существующие без изменений и повторы внутри пачки
+}
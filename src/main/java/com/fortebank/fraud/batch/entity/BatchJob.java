@@ -19,6 +19,10 @@ public class BatchJob {
     @Column(name = "filename", nullable = false)
     private String filename;
     
+    // Загруженный файл в локальном хранилище (до успешной обработки)
+    @Column(name = "stored_path", length = 500)
+    private String storedPath;
+    
     @Column(name = "total_records")
     private Integer totalRecords;
     
@@ -30,6 +34,26 @@ public class BatchJob {
     @Builder.Default
     private Integer failedRecords = 0;
     
+    // Итог upsert сохранённых строк (processedRecords = inserted + updated + skipped)
+    @Column(name = "inserted_records")
+    @Builder.Default
+    private Integer insertedRecords = 0;
+    
+    @Column(name = "updated_records")
+    @Builder.Default
+    private Integer updatedRecords = 0;
+    
+    // Уже загруженные без изменений и повторы внутри файла
+    @Column(name = "skipped_records")
+    @Builder.Default
+    private Integer skippedRecords = 0;
+    
+    // Строк данных файла от начала, полностью обработанных и зафиксированных в БД:
+    // продолжение загрузки начинается со следующей строки
+    @Column(name = "checkpoint_row")
+    @Builder.Default
+    private Integer checkpointRow = 0;
+    
     @Column(name = "status", length = 20)
     @Enumerated(EnumType.STRING)
     @Builder.Default
@@ -44,6 +68,31 @@ public class BatchJob {
     @Column(name = "completed_at")
     private LocalDateTime completedAt;
     
+    @Column(name = "ingest_throughput")
+    private Double ingestThroughput; // строк файла в секунду (чтение и сохранение)
+    
+    // Оценка транзакций батча по правилам
+    @Column(name = "scoring_status", length = 20)
+    @Enumerated(EnumType.STRING)
+    private BatchJobStatus scoringStatus;
+    
+    @Column(name = "scored_records")
+    @Builder.Default
+    private Integer scoredRecords = 0;
+    
+    @Column(name = "scoring_failed_records")
+    @Builder.Default
+    private Integer scoringFailedRecords = 0;
+    
+    @Column(name = "scoring_started_at")
+    private LocalDateTime scoringStartedAt;
+    
+    @Column(name = "scoring_completed_at")
+    private LocalDateTime scoringCompletedAt;
+    
+    @Column(name = "scoring_throughput")
+    private Double scoringThroughput; // транзакций в секунду
+    
     @Column(name = "created_at", nullable = false)
     private LocalDateTime createdAt;
     
@@ -3,7 +3,13 @@ package com.fortebank.fraud.batch.repository;
 import com.fortebank.fraud.batch.entity.BatchJob;
 import com.fortebank.fraud.batch.entity.BatchJobStatus;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 
 @Repository
@@ -12,4 +18,120 @@ public interface BatchJobRepository extends JpaRepository<BatchJob, Long> {
     List<BatchJob> findByStatus(BatchJobStatus status);
     
     List<BatchJob> findByCreatedByOrderByCreatedAtDesc(String createdBy);
+    
+    // Точечные обновления загрузки: не затирают поля оценки батча,
+    // которые параллельно сохраняет BatchScoringService
+    
+    @Modifying
+    @Query("UPDATE BatchJob b SET b.status = :status, b.startedAt = :startedAt WHERE b.id = :id")
+    int markStarted(
+        @Param("id") Long id,
+        @Param("status") BatchJobStatus status,
+        @Param("startedAt") LocalDateTime startedAt
+    );
+    
+    @Modifying
+    @Query("UPDATE BatchJob b SET b.checkpointRow = :checkpointRow, " +
+           "b.processedRecords = :processed, b.failedRecords = :failed, b.insertedRecords = :inserted, " +
+           "b.updatedRecords = :updated, b.skippedRecords = :skipped WHERE b.id = :id")
+    int updateCheckpoint(
+        @Param("id") Long id,
+        @Param("checkpointRow") int checkpointRow,
+        @Param("processed") int processed,
+        @Param("failed") int failed,
+        @Param("inserted") int inserted,
+        @Param("updated") int updated,
+        @Param("skipped") int skipped
+    );
+    
+    // Только из ожидаемого статуса: повторный запрос на продолжение не запустит загрузку дважды
+    @Modifying
+    @Query("UPDATE BatchJob b SET b.status = :status, b.errorMessage = null, b.completedAt = null " +
+           "WHERE b.id = :id AND b.status = :expected")
+    int requeue(
+        @Param("id") Long id,
+        @Param("expected") BatchJobStatus expected,
+        @Param("status") BatchJobStatus status
+    );
+    
+    @Modifying
+    @Query("UPDATE BatchJob b SET b.status = :status, b.totalRecords = :total, " +
+           "b.processedRecords = :processed, b.failedRecords = :failed, b.checkpointRow = :total, " +
+           "b.insertedRecords = :inserted, b.updatedRecords = :updated, b.skippedRecords = :skipped, " +
+           "b.ingestThroughput = :throughput, b.completedAt = :completedAt WHERE b.id = :id")
+    int markCompleted(
+        @Param("id") Long id,
+        @Param("status") BatchJobStatus status,
+        @Param("total") int total,
+        @Param("processed") int processed,
+        @Param("failed") int failed,
+        @Param("inserted") int inserted,
+        @Param("updated") int updated,
+        @Param("skipped") int skipped,
+        @Param("throughput") Double throughput,
+        @Param("completedAt") LocalDateTime completedAt
+    );
+    
+    @Modifying
+    @Query("UPDATE BatchJob b SET b.status = :status, b.errorMessage = :message, " +
+           "b.completedAt = :completedAt WHERE b.id = :id")
+    int markFailed(
+        @Param("id") Long id,
+        @Param("status") BatchJobStatus status,
+        @Param("message") String message,
+        @Param("completedAt") LocalDateTime completedAt
+    );
+    
+    List<BatchJob> findByStatusAndScoringStatusIn(BatchJobStatus status, Collection<BatchJobStatus> scoringStatuses);
+    
+    // Точечные обновления оценки батча: не затирают поля загрузки
+    
+    @Modifying
+    @Query("UPDATE BatchJob b SET b.scoringStatus = :status, b.scoredRecords = 0, b.scoringFailedRecords = 0, " +
+           "b.scoringStartedAt = null, b.scoringCompletedAt = null, b.scoringThroughput = null WHERE b.id = :id")
+    int resetScoring(
+        @Param("id") Long id,
+        @Param("status") BatchJobStatus status
+    );
+    
+    @Modifying
+    @Query("UPDATE BatchJob b SET b.scoringStatus = :status, b.scoringStartedAt = :startedAt WHERE b.id = :id")
+    int markScoringStarted(
+        @Param("id") Long id,
+        @Param("status") BatchJobStatus status,
+        @Param("startedAt") LocalDateTime startedAt
+    );
+    
+    @Modifying
+    @Query("UPDATE BatchJob b SET b.scoredRecords = :scored, b.scoringFailedRecords = :failed, " +
+           "b.scoringThroughput = :throughput WHERE b.id = :id")
+    int updateScoringProgress(
+        @Param("id") Long id,
+        @Param("scored") int scored,
+        @Param("failed") int failed,
+        @Param("throughput") Double throughput
+    );
+    
+    @Modifying
+    @Query("UPDATE BatchJob b SET b.scoringStatus = :status, b.scoredRecords = :scored, " +
+           "b.scoringFailedRecords = :failed, b.scoringThroughput = :throughput, " +
+           "b.scoringCompletedAt = :completedAt WHERE b.id = :id")
+    int markScoringFinished(
+        @Param("id") Long id,
+        @Param("status") BatchJobStatus status,
+        @Param("scored") int scored,
+        @Param("failed") int failed,
+        @Param("throughput") Double throughput,
+        @Param("completedAt") LocalDateTime completedAt
+    );
+    
+    @Modifying
+    @Query("UPDATE BatchJob b SET b.scoringStatus = :status, b.errorMessage = :message, " +
+           "b.scoringCompletedAt = :completedAt WHERE b.id = :id")
+    int markScoringFailed(
+        @Param("id") Long id,
+        @Param("status") BatchJobStatus status,
+        @Param("message") String message,
+        @Param("completedAt") LocalDateTime completedAt
+    );
 }
\ No newline at end of file
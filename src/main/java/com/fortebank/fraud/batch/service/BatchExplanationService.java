@@ -0,0 +1,357 @@
+package com.fortebank.fraud.batch.service;
+
+import com.fortebank.fraud.ai.dto.BatchExplanationAnswer;
+import com.fortebank.fraud.ai.dto.BatchExplanationItem;
+import com.fortebank.fraud.ai.service.AIAnalysisService;
+import com.fortebank.fraud.ai.service.AIConcurrencyLimiter;
+import com.fortebank.fraud.batch.dto.BatchExplanationResult;
+import com.fortebank.fraud.batch.entity.BatchJobStatus;
+import com.fortebank.fraud.batch.repository.BatchJobRepository;
+import com.fortebank.fraud.scoring.dto.ScoringContext;
+import com.fortebank.fraud.scoring.service.ScoringContextLoader;
+import com.fortebank.fraud.transaction.entity.Transaction;
+import com.fortebank.fraud.transaction.entity.TransactionStatus;
+import com.fortebank.fraud.transaction.repository.TransactionRepository;
+import com.fortebank.fraud.transaction.service.FraudDetectionService;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+/**
+ * Пакетные AI объяснения для транзакций батча (BLOCKED и REVIEW).
+ *
+ * Несколько транзакций упаковываются в один промпт с ответом в JSON по id.
+ * Размер пакета ограничен бюджетом токенов (промпт + ожидаемый ответ) и подстраивается:
+ * после полного ответа растёт на шаг, после обрезанного по max_tokens - вдвое меньше
+ * (ошибка запроса или пропуск отдельных id размер не меняют).
+ * Пропущенные транзакции повторяются в следующих пакетах. Пакеты одного раунда
+ * отправляются параллельно в пуле aiExecutor, объяснения сохраняются после каждого раунда.
+ *
+ * Запуск - в фоне на batchCoordinatorExecutor (как оценка батча), прогресс последнего
+ * запуска по батчу - в getProgress (в памяти узла).
+ */
+@Service
+@Slf4j
+public class BatchExplanationService {
+
+    private static final List<TransactionStatus> EXPLAINED_STATUSES =
+            List.of(TransactionStatus.BLOCKED, TransactionStatus.REVIEW);
+    private static final int MAX_ATTEMPTS = 3;
+    private static final int GROWTH_STEP = 2;
+
+    private static final String UPDATE_SQL =
+            "UPDATE transactions SET ai_explanation = ?, updated_at = ? WHERE id = ?";
+
+    private final TransactionRepository transactionRepository;
+    private final BatchJobRepository batchJobRepository;
+    private final ScoringContextLoader scoringContextLoader;
+    private final FraudDetectionService fraudDetectionService;
+    private final AIAnalysisService aiAnalysisService;
+    private final JdbcTemplate jdbcTemplate;
+    private final ExecutorService aiExecutor;
+    private final ExecutorService coordinatorExecutor;
+    private final AIConcurrencyLimiter concurrencyLimiter;
+
+    private final int tokenBudget;
+    private final int outputTokensPerItem;
+    private final int maxBatchSize;
+    private final int parallelism;
+
+    // Размер пакета, подобранный по предыдущим ответам (общий для всех запусков)
+    private final AtomicInteger batchSize;
+    private final DistributionSummary batchSizeSummary;
+
+    // Последний запуск по батчу; запись заменяется снимком после каждого раунда
+    private final Map<Long, BatchExplanationResult> progress = new ConcurrentHashMap<>();
+
+    public BatchExplanationService(TransactionRepository transactionRepository,
+                                   BatchJobRepository batchJobRepository,
+                                   ScoringContextLoader scoringContextLoader,
+                                   FraudDetectionService fraudDetectionService,
+                                   AIAnalysisService aiAnalysisService,
+                                   JdbcTemplate jdbcTemplate,
+                                   @Qualifier("aiExecutor") ExecutorService aiExecutor,
+                                   @Qualifier("batchCoordinatorExecutor") ExecutorService coordinatorExecutor,
+                                   AIConcurrencyLimiter concurrencyLimiter,
+                                   MeterRegistry meterRegistry,
+                                   @Value("${fraud.ai.batch.token-budget:8000}") int tokenBudget,
+                                   @Value("${fraud.ai.batch.output-tokens-per-item:120}") int outputTokensPerItem,
+                                   @Value("${fraud.ai.batch.initial-size:10}") int initialBatchSize,
+                                   @Value("${fraud.ai.batch.max-size:40}") int maxBatchSize,
+                                   @Value("${fraud.ai.batch.parallelism:4}") int parallelism) {
+        this.transactionRepository = transactionRepository;
+        this.batchJobRepository = batchJobRepository;
+        this.scoringContextLoader = scoringContextLoader;
+        this.fraudDetectionService = fraudDetectionService;
+        this.aiAnalysisService = aiAnalysisService;
+        this.jdbcTemplate = jdbcTemplate;
+        this.aiExecutor = aiExecutor;
+        this.coordinatorExecutor = coordinatorExecutor;
+        this.concurrencyLimiter = concurrencyLimiter;
+        this.tokenBudget = tokenBudget;
+        this.outputTokensPerItem = outputTokensPerItem;
+        this.maxBatchSize = maxBatchSize;
+        this.parallelism = parallelism;
+        this.batchSize = new AtomicInteger(Math.min(initialBatchSize, maxBatchSize));
+        this.batchSizeSummary = DistributionSummary.builder("fraud.ai.batch.size")
+                .description("Транзакций в одном пакетном запросе к LLM")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Запустить в фоне объяснение до limit подозрительных транзакций батча без AI объяснения
+     *
+     * @return начальный прогресс (status = PROCESSING)
+     */
+    public BatchExplanationResult startExplanation(Long batchId, int limit) {
+        batchJobRepository.findById(batchId)
+                .orElseThrow(() -> new RuntimeException("Batch job не найден: " + batchId));
+
+        BatchExplanationResult started = BatchExplanationResult.builder()
+                .batchId(batchId)
+                .status(BatchJobStatus.PROCESSING)
+                .build();
+        BatchExplanationResult previous = progress.putIfAbsent(batchId, started);
+        if (previous != null) {
+            if (previous.getStatus() == BatchJobStatus.PROCESSING
+                    || !progress.replace(batchId, previous, started)) {
+                throw new RuntimeException("Объяснения батча уже выполняются: " + batchId);
+            }
+        }
+
+        try {
+            coordinatorExecutor.execute(() -> run(batchId, limit));
+        } catch (RejectedExecutionException e) {
+            progress.remove(batchId, started);
+            throw new RuntimeException("Очередь фоновых задач переполнена, повторите позже", e);
+        }
+        return started;
+    }
+
+    /**
+     * Прогресс или результат последнего запуска объяснений батча
+     */
+    public BatchExplanationResult getProgress(Long batchId) {
+        BatchExplanationResult result = progress.get(batchId);
+        if (result == null) {
+            throw new RuntimeException("Объяснения батча не запускались: " + batchId);
+        }
+        return result;
+    }
+
+    private void run(Long batchId, int limit) {
+        try {
+            progress.put(batchId, explainBatch(batchId, limit));
+        } catch (RuntimeException e) {
+            log.error("Ошибка пакетных объяснений батча {}: {}", batchId, e.getMessage(), e);
+            progress.put(batchId, BatchExplanationResult.builder()
+                    .batchId(batchId)
+                    .status(BatchJobStatus.FAILED)
+                    .errorMessage(e.getMessage())
+                    .build());
+        }
+    }
+
+    /**
+     * Объяснить до limit подозрительных транзакций батча, у которых ещё нет AI объяснения
+     */
+    BatchExplanationResult explainBatch(Long batchId, int limit) {
+        long start = System.nanoTime();
+        List<Transaction> transactions = transactionRepository.findUnexplainedByBatchId(
+                batchId, EXPLAINED_STATUSES, PageRequest.of(0, limit));
+
+        Deque<Pending> queue = new ArrayDeque<>(transactions.size());
+        for (BatchExplanationItem item : analyze(transactions)) {
+            queue.add(new Pending(item, aiAnalysisService.estimateBatchItemTokens(item)));
+        }
+
+        Map<Long, String> explanations = new LinkedHashMap<>();
+        int calls = 0;
+        int failed = 0;
+
+        while (!queue.isEmpty()) {
+            // Раунд: до parallelism пакетов параллельно
+            List<List<Pending>> round = new ArrayList<>();
+            List<CompletableFuture<BatchExplanationAnswer>> futures = new ArrayList<>();
+            for (int i = 0; i < parallelism && !queue.isEmpty(); i++) {
+                if (i > 0 && concurrencyLimiter.isSaturated()) {
+                    // Не занимаем весь лимит запросов к LLM - он общий с интерактивным анализом
+                    break;
+                }
+                List<Pending> batch = pack(queue);
+                round.add(batch);
+                futures.add(submit(batch));
+            }
+
+            Map<Long, String> roundExplanations = new LinkedHashMap<>();
+            for (int i = 0; i < round.size(); i++) {
+                List<Pending> batch = round.get(i);
+                BatchExplanationAnswer answer = await(futures.get(i), batch.size());
+                Map<Long, String> answers = answer.getExplanations();
+                calls++;
+                roundExplanations.putAll(answers);
+
+                List<Pending> missing = batch.stream()
+                        .filter(p -> !answers.containsKey(p.item().getTransaction().getId()))
+                        .toList();
+                adapt(batch.size(), missing.isEmpty(), answer.isTruncated());
+
+                for (Pending pending : missing) {
+                    if (pending.attempts().incrementAndGet() < MAX_ATTEMPTS) {
+                        queue.addFirst(pending);
+                    } else {
+                        failed++;
+                    }
+                }
+            }
+
+            save(roundExplanations);
+            explanations.putAll(roundExplanations);
+            progress.put(batchId, BatchExplanationResult.builder()
+                    .batchId(batchId)
+                    .status(BatchJobStatus.PROCESSING)
+                    .requested(transactions.size())
+                    .explained(explanations.size())
+                    .failed(failed)
+                    .llmCalls(calls)
+                    .finalBatchSize(batchSize.get())
+                    .durationMillis((System.nanoTime() - start) / 1_000_000)
+                    .build());
+        }
+
+        long elapsedMillis = Math.max(1, (System.nanoTime() - start) / 1_000_000);
+        double perMinute = explanations.size() * 60_000.0 / elapsedMillis;
+
+        log.info("Пакетные объяснения батча {}: {} из {} за {} мс, {} запросов к LLM, размер пакета {}, {}/мин",
+                batchId, explanations.size(), transactions.size(), elapsedMillis, calls, batchSize.get(),
+                String.format("%.1f", perMinute));
+
+        return BatchExplanationResult.builder()
+                .batchId(batchId)
+                .status(BatchJobStatus.COMPLETED)
+                .requested(transactions.size())
+                .explained(explanations.size())
+                .failed(failed)
+                .llmCalls(calls)
+                .finalBatchSize(batchSize.get())
+                .durationMillis(elapsedMillis)
+                .explanationsPerMinute(perMinute)
+                .explanations(explanations)
+                .build();
+    }
+
+    private List<BatchExplanationItem> analyze(List<Transaction> transactions) {
+        // Контекст клиента загружается один раз на его транзакции
+        Map<String, List<Transaction>> byCustomer = transactions.stream()
+                .collect(Collectors.groupingBy(Transaction::getCustomerId, LinkedHashMap::new, Collectors.toList()));
+
+        List<BatchExplanationItem> items = new ArrayList<>(transactions.size());
+        for (Map.Entry<String, List<Transaction>> group : byCustomer.entrySet()) {
+            for (ScoringContext context : scoringContextLoader.loadForCustomer(group.getKey(), group.getValue())) {
+                items.add(new BatchExplanationItem(
+                        context.getTransaction(),
+                        fraudDetectionService.analyzeTransaction(context)));
+            }
+        }
+        return items;
+    }
+
+    /**
+     * Взять из очереди пакет: не больше текущего размера и в пределах бюджета токенов
+     */
+    private List<Pending> pack(Deque<Pending> queue) {
+        int limit = batchSize.get();
+        int tokens = aiAnalysisService.estimateBatchHeaderTokens();
+        List<Pending> batch = new ArrayList<>(limit);
+        while (!queue.isEmpty() && batch.size() < limit) {
+            Pending next = queue.peekFirst();
+            int withNext = tokens + next.promptTokens() + (batch.size() + 1) * outputTokensPerItem;
+            if (!batch.isEmpty() && withNext > tokenBudget) {
+                break;
+            }
+            batch.add(queue.pollFirst());
+            tokens += next.promptTokens();
+        }
+        return batch;
+    }
+
+    private CompletableFuture<BatchExplanationAnswer> submit(List<Pending> batch) {
+        List<BatchExplanationItem> items = batch.stream().map(Pending::item).toList();
+        int maxTokens = items.size() * outputTokensPerItem;
+        batchSizeSummary.record(items.size());
+        try {
+            return CompletableFuture.supplyAsync(() -> aiAnalysisService.explainBatch(items, maxTokens), aiExecutor);
+        } catch (RejectedExecutionException e) {
+            // Пул AI занят - выполняем пакет в текущем потоке
+            try {
+                return CompletableFuture.completedFuture(aiAnalysisService.explainBatch(items, maxTokens));
+            } catch (RuntimeException ex) {
+                return CompletableFuture.failedFuture(ex);
+            }
+        }
+    }
+
+    private BatchExplanationAnswer await(CompletableFuture<BatchExplanationAnswer> future, int size) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause() != null ? e.getCause() : e;
+            log.warn("Ошибка пакетного запроса к LLM ({} транзакций): {}", size, cause.getMessage());
+            return new BatchExplanationAnswer(Map.of(), false);
+        }
+    }
+
+    /**
+     * Полный ответ - пакет растёт на шаг, обрезанный по max_tokens - уменьшается вдвое.
+     * Ошибка запроса или пропуск отдельных id с размером пакета не связаны - размер не меняется.
+     */
+    private void adapt(int sentSize, boolean complete, boolean truncated) {
+        batchSize.updateAndGet(current -> {
+            if (truncated) {
+                return Math.max(1, Math.min(current, sentSize) / 2);
+            }
+            if (complete) {
+                // Растём, только если пакет действительно был заполнен до лимита
+                return sentSize >= current ? Math.min(maxBatchSize, current + GROWTH_STEP) : current;
+            }
+            return current;
+        });
+    }
+
+    private void save(Map<Long, String> explanations) {
+        if (explanations.isEmpty()) {
+            return;
+        }
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        List<Object[]> args = new ArrayList<>(explanations.size());
+        explanations.forEach((id, text) -> args.add(new Object[]{text, now, id}));
+        jdbcTemplate.batchUpdate(UPDATE_SQL, args);
+    }
+
+    private record Pending(BatchExplanationItem item, int promptTokens, AtomicInteger attempts) {
+        Pending(BatchExplanationItem item, int promptTokens) {
+            this(item, promptTokens, new AtomicInteger());
+        }
+    }
+}
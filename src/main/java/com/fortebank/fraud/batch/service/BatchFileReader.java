@@ -0,0 +1,55 @@
+package com.fortebank.fraud.batch.service;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Locale;
+import java.util.function.Consumer;
+
+/**
+ * Потоковое чтение загруженного файла (см. BatchUploadStorage) по его расширению: .xlsx, .csv или .csv.gz.
+ * Строки передаются парсерам в едином виде (SheetRow), поэтому колонки разбираются одинаково.
+ */
+@Service
+@RequiredArgsConstructor
+public class BatchFileReader {
+
+    private final XlsxStreamReader xlsxReader;
+    private final CsvStreamReader csvReader;
+
+    /**
+     * Прочитать строки файла (включая заголовок) и передать их по одной в rowConsumer
+     *
+     * @return число прочитанных строк
+     */
+    public int read(Path file, Consumer<SheetRow> rowConsumer) throws IOException {
+        String filename = file.getFileName().toString().toLowerCase(Locale.ROOT);
+        if (filename.endsWith(".xlsx")) {
+            return xlsxReader.read(file.toFile(), rowConsumer);
+        }
+        try (InputStream in = Files.newInputStream(file)) {
+            return csvReader.read(in, filename.endsWith(".csv.gz"), rowConsumer);
+        }
+    }
+
+    /**
+     * Поддерживаемый формат: .xlsx, .csv, .csv.gz
+     */
+    public boolean isSupported(MultipartFile file) {
+        if (file == null || file.isEmpty()) {
+            return false;
+        }
+        String filename = filename(file);
+        return filename.endsWith(".xlsx") || filename.endsWith(".csv") || filename.endsWith(".csv.gz");
+    }
+
+    private static String filename(MultipartFile file) {
+        String filename = file.getOriginalFilename();
+        return filename != null ? filename.toLowerCase(Locale.ROOT) : "";
+    }
+}
@@ -0,0 +1,166 @@
+package com.fortebank.fraud.batch.service;
+
+import com.fortebank.fraud.batch.entity.BatchJob;
+import com.fortebank.fraud.batch.entity.BatchJobStatus;
+import com.fortebank.fraud.batch.repository.BatchJobRepository;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+
+/**
+ * Очередь загрузок файлов с транзакциями.
+ *
+ * Запрос загрузки только сохраняет файл в локальное хранилище и создаёт BatchJob в статусе PENDING;
+ * обработка идёт в ограниченном пуле batchIngestExecutor, прогресс - в /api/batch/status/{batchId}.
+ * Файл удаляется после успешной загрузки; после ошибки он остаётся, и загрузку можно продолжить
+ * с контрольной точки (resume). После перезапуска задачи PENDING и прерванные PROCESSING
+ * ставятся в очередь заново - прерванные продолжаются с контрольной точки.
+ */
+@Service
+@Slf4j
+public class BatchIngestQueueService {
+
+    private final BatchProcessingService batchProcessingService;
+    private final BatchJobRepository batchJobRepository;
+    private final BatchJobProgressService progressService;
+    private final BatchUploadStorage storage;
+    private final ExcelParserService excelParser;
+    private final ExecutorService executor;
+
+    public BatchIngestQueueService(BatchProcessingService batchProcessingService,
+                                   BatchJobRepository batchJobRepository,
+                                   BatchJobProgressService progressService,
+                                   BatchUploadStorage storage,
+                                   ExcelParserService excelParser,
+                                   @Qualifier("batchIngestExecutor") ExecutorService executor,
+                                   MeterRegistry meterRegistry) {
+        this.batchProcessingService = batchProcessingService;
+        this.batchJobRepository = batchJobRepository;
+        this.progressService = progressService;
+        this.storage = storage;
+        this.excelParser = excelParser;
+        this.executor = executor;
+
+        if (executor instanceof ThreadPoolExecutor pool) {
+            Gauge.builder("fraud.batch.ingest.queue", pool, p -> p.getQueue().size())
+                    .description("Загрузок батчей в очереди")
+                    .register(meterRegistry);
+        }
+    }
+
+    /**
+     * Принять файл: сохранить, создать задачу PENDING и поставить её в очередь
+     */
+    public BatchJob submit(MultipartFile file, String createdBy) {
+        if (!excelParser.isValidFile(file)) {
+            throw new IllegalArgumentException("Неверный формат файла. Ожидается .xlsx, .csv или .csv.gz");
+        }
+
+        Path stored;
+        try {
+            stored = storage.store(file);
+        } catch (IOException e) {
+            throw new RuntimeException("Не удалось сохранить файл: " + e.getMessage(), e);
+        }
+
+        BatchJob batchJob = batchJobRepository.save(BatchJob.builder()
+                .filename(file.getOriginalFilename())
+                .storedPath(stored.toString())
+                .status(BatchJobStatus.PENDING)
+                .createdBy(createdBy)
+                .build());
+
+        try {
+            enqueue(batchJob);
+        } catch (RejectedExecutionException e) {
+            progressService.failed(batchJob.getId(), "Очередь загрузок переполнена");
+            storage.delete(batchJob.getStoredPath());
+            throw new RuntimeException("Очередь загрузок переполнена, повторите позже");
+        }
+
+        log.info("Файл {} принят в обработку: batch {}", file.getOriginalFilename(), batchJob.getId());
+        return batchJob;
+    }
+
+    /**
+     * Продолжить неудавшуюся загрузку с контрольной точки
+     */
+    public BatchJob resume(Long batchId) {
+        BatchJob batchJob = batchJobRepository.findById(batchId)
+                .orElseThrow(() -> new RuntimeException("BatchJob не найден: " + batchId));
+        if (batchJob.getStatus() != BatchJobStatus.FAILED) {
+            throw new RuntimeException("Продолжить можно только неудавшуюся загрузку, статус: " + batchJob.getStatus());
+        }
+        if (batchJob.getStoredPath() == null || !Files.exists(Paths.get(batchJob.getStoredPath()))) {
+            throw new RuntimeException("Загруженный файл не найден, загрузите файл заново");
+        }
+        if (!progressService.requeue(batchId, BatchJobStatus.FAILED)) {
+            throw new RuntimeException("Загрузка батча уже продолжается: " + batchId);
+        }
+
+        try {
+            enqueue(batchJob);
+        } catch (RejectedExecutionException e) {
+            progressService.failed(batchId, "Очередь загрузок переполнена");
+            throw new RuntimeException("Очередь загрузок переполнена, повторите позже");
+        }
+
+        log.info("Загрузка батча {} продолжается с контрольной точки: строка {}",
+                 batchId, batchJob.getCheckpointRow());
+        return batchJobRepository.findById(batchId).orElse(batchJob);
+    }
+
+    /**
+     * Восстановить очередь после перезапуска
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void recover() {
+        for (BatchJob interrupted : batchJobRepository.findByStatus(BatchJobStatus.PROCESSING)) {
+            log.warn("Загрузка батча {} прервана перезапуском на строке {}",
+                     interrupted.getId(), interrupted.getCheckpointRow());
+            progressService.requeue(interrupted.getId(), BatchJobStatus.PROCESSING);
+        }
+        for (BatchJob pending : batchJobRepository.findByStatus(BatchJobStatus.PENDING)) {
+            if (pending.getStoredPath() == null || !Files.exists(Paths.get(pending.getStoredPath()))) {
+                progressService.failed(pending.getId(), "Загруженный файл не найден");
+                continue;
+            }
+            try {
+                enqueue(pending);
+                log.info("Загрузка батча {} снова поставлена в очередь", pending.getId());
+            } catch (RejectedExecutionException e) {
+                progressService.failed(pending.getId(), "Очередь загрузок переполнена");
+            }
+        }
+    }
+
+    private void enqueue(BatchJob batchJob) {
+        Long batchId = batchJob.getId();
+        String storedPath = batchJob.getStoredPath();
+        executor.execute(() -> run(batchId, storedPath));
+    }
+
+    private void run(Long batchId, String storedPath) {
+        try {
+            batchProcessingService.processStoredFile(batchId);
+            storage.delete(storedPath);
+        } catch (Exception e) {
+            // Файл остаётся для продолжения с контрольной точки
+            log.error("Загрузка батча {} завершилась ошибкой: {}", batchId, e.getMessage());
+            progressService.failed(batchId, e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package com.fortebank.fraud.batch.service;
+
+import com.fortebank.fraud.batch.dto.UpsertResult;
+import com.fortebank.fraud.batch.entity.BatchJobStatus;
+import com.fortebank.fraud.batch.repository.BatchJobRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+
+/**
+ * Состояние загрузки и оценки батча в отдельных транзакциях (REQUIRES_NEW):
+ * прогресс виден в /api/batch/status/{batchId} сразу, независимо от транзакций записи пачек,
+ * и ошибка фиксируется, даже если транзакция пачки откатывается.
+ * Обновления точечные (JPQL UPDATE), без save() всей сущности BatchJob.
+ */
+@Service
+@RequiredArgsConstructor
+public class BatchJobProgressService {
+
+    private final BatchJobRepository batchJobRepository;
+
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    public void started(Long batchId) {
+        batchJobRepository.markStarted(batchId, BatchJobStatus.PROCESSING, LocalDateTime.now());
+    }
+
+    /**
+     * Зафиксировать контрольную точку: первые checkpointRow строк файла обработаны
+     * (written - итог upsert сохранённых строк)
+     */
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    public void checkpoint(Long batchId, int checkpointRow, int processed, int failed, UpsertResult written) {
+        batchJobRepository.updateCheckpoint(batchId, checkpointRow, processed, failed,
+                written.getInserted(), written.getUpdated(), written.getSkipped());
+    }
+
+    /**
+     * Вернуть задачу в очередь (PENDING) из статуса expected
+     *
+     * @return false, если задача не в статусе expected
+     */
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    public boolean requeue(Long batchId, BatchJobStatus expected) {
+        return batchJobRepository.requeue(batchId, expected, BatchJobStatus.PENDING) > 0;
+    }
+
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    public void completed(Long batchId, int total, int processed, int failed, UpsertResult written,
+                          Double throughput) {
+        batchJobRepository.markCompleted(batchId, BatchJobStatus.COMPLETED, total, processed, failed,
+                written.getInserted(), written.getUpdated(), written.getSkipped(), throughput, LocalDateTime.now());
+    }
+
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    public void failed(Long batchId, String message) {
+        batchJobRepository.markFailed(batchId, BatchJobStatus.FAILED, message, LocalDateTime.now());
+    }
+
+    /**
+     * Поставить оценку батча в очередь: счётчики оценки сбрасываются
+     */
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    public void scoringQueued(Long batchId) {
+        batchJobRepository.resetScoring(batchId, BatchJobStatus.PENDING);
+    }
+
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    public void scoringStarted(Long batchId) {
+        batchJobRepository.markScoringStarted(batchId, BatchJobStatus.PROCESSING, LocalDateTime.now());
+    }
+
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    public void scoringProgress(Long batchId, int scored, int failed, Double throughput) {
+        batchJobRepository.updateScoringProgress(batchId, scored, failed, throughput);
+    }
+
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    public void scoringCompleted(Long batchId, int scored, int failed, Double throughput) {
+        batchJobRepository.markScoringFinished(batchId, BatchJobStatus.COMPLETED, scored, failed, throughput,
+                LocalDateTime.now());
+    }
+
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    public void scoringFailed(Long batchId, String message) {
+        batchJobRepository.markScoringFailed(batchId, BatchJobStatus.FAILED, message, LocalDateTime.now());
+    }
+}
@@ -1,141 +1,136 @@
 package com.fortebank.fraud.batch.service;
 
+import com.fortebank.fraud.batch.dto.ParseResult;
+import com.fortebank.fraud.batch.dto.PipelineStats;
+import com.fortebank.fraud.batch.dto.UpsertResult;
 import com.fortebank.fraud.batch.entity.BatchJob;
-import com.fortebank.fraud.batch.entity.BatchJobStatus;
 import com.fortebank.fraud.batch.repository.BatchJobRepository;
 import com.fortebank.fraud.customer.entity.CustomerBehaviorPattern;
-import com.fortebank.fraud.customer.repository.CustomerBehaviorPatternRepository;
-import com.fortebank.fraud.transaction.entity.Transaction;
-import com.fortebank.fraud.transaction.repository.TransactionRepository;
+import com.fortebank.fraud.customer.service.BehaviorPatternCacheService;
+import jakarta.persistence.EntityManager;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.multipart.MultipartFile;
 
-import java.time.LocalDateTime;
+import java.nio.file.Path;
 import java.util.List;
+import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
 @Slf4j
 public class BatchProcessingService {
     
-    private final ExcelParserService excelParser;
     private final BehaviorPatternParserService behaviorPatternParser;
-    private final TransactionRepository transactionRepository;
     private final BatchJobRepository batchJobRepository;
-    private final CustomerBehaviorPatternRepository behaviorPatternRepository;
+    private final BehaviorPatternBulkWriter behaviorPatternWriter;
+    private final BatchScoringService batchScoringService;
+    private final BehaviorPatternCacheService behaviorPatternCache;
+    private final TransactionIngestPipeline ingestPipeline;
+    private final BatchJobProgressService progressService;
+    private final BatchUploadStorage uploadStorage;
+    
+    private final EntityManager entityManager;
+    
+    @Value("${fraud.batch.auto-score:true}")
+    private boolean autoScore;
+    
+    // Строк в пачке: сохраняются вместе, после чего контекст персистентности очищается
+    @Value("${fraud.batch.chunk-size:500}")
+    private int chunkSize;
     
     /**
-     * Обработать Excel файл с транзакциями
+     * Обработать сохранённый файл с транзакциями (.xlsx, .csv или .csv.gz) задачи из очереди
+     * загрузок (см. BatchIngestQueueService).
+     * Файл проходит конвейер TransactionIngestPipeline: чтение, разбор и запись в БД идут
+     * параллельно, каждая пачка фиксируется в своей транзакции. Статус и контрольная точка
+     * пишутся точечными обновлениями в отдельных транзакциях; повторный вызов после сбоя
+     * продолжает загрузку с контрольной точки.
      */
-    @Transactional
-    public BatchJob processExcelFile(MultipartFile file, String createdBy) {
-        // ... (существующий код остается без изменений)
-        if (!excelParser.isValidExcelFile(file)) {
-            throw new IllegalArgumentException("Неверный формат файла. Ожидается .xlsx или .xls");
-        }
+    public void processStoredFile(Long batchId) {
+        BatchJob batchJob = getBatchJobStatus(batchId);
+        progressService.started(batchId);
         
-        BatchJob batchJob = BatchJob.builder()
-                .filename(file.getOriginalFilename())
-                .status(BatchJobStatus.PROCESSING)
-                .startedAt(LocalDateTime.now())
-                .createdBy(createdBy)
-                .build();
+        log.info("Начинаем загрузку файла: {} (batch {})", batchJob.getFilename(), batchId);
+        PipelineStats stats = ingestPipeline.ingest(batchJob);
         
-        batchJob = batchJobRepository.save(batchJob);
+        progressService.completed(batchId, stats.getRows(), stats.getProcessed(), stats.getFailed(),
+                new UpsertResult(stats.getInserted(), stats.getUpdated(), stats.getSkipped()),
+                stats.getRowsPerSecond());
         
-        try {
-            log.info("Начинаем парсинг файла: {}", file.getOriginalFilename());
-            List<Transaction> transactions = excelParser.parseExcelFile(file);
-            
-            batchJob.setTotalRecords(transactions.size());
-            batchJobRepository.save(batchJob);
-            
-            int batchSize = 500;
-            int processed = 0;
-            int failed = 0;
-            
-            for (int i = 0; i < transactions.size(); i += batchSize) {
-                int end = Math.min(i + batchSize, transactions.size());
-                List<Transaction> batch = transactions.subList(i, end);
-                
-                for (Transaction transaction : batch) {
-                    try {
-                        transaction.setBatchId(batchJob.getId());
-                        transactionRepository.save(transaction);
-                        processed++;
-                    } catch (Exception e) {
-                        log.error("Ошибка сохранения транзакции {}: {}", 
-                                 transaction.getTransactionId(), e.getMessage());
-                        failed++;
-                    }
-                }
-                
-                batchJob.setProcessedRecords(processed);
-                batchJob.setFailedRecords(failed);
-                batchJobRepository.save(batchJob);
-                
-                log.info("Обработано {}/{} транзакций", processed, transactions.size());
+        log.info("Обработка файла завершена. Успешно: {} (новых {}, обновлено {}, без изменений {}), Ошибок: {}, {} строк/с",
+                 stats.getProcessed(), stats.getInserted(), stats.getUpdated(), stats.getSkipped(),
+                 stats.getFailed(), String.format("%.0f", stats.getRowsPerSecond()));
+        
+        if (autoScore) {
+            try {
+                batchScoringService.startScoring(batchId);
+            } catch (Exception e) {
+                log.error("Не удалось запустить оценку батча {}: {}", batchId, e.getMessage());
             }
-            
-            batchJob.setStatus(BatchJobStatus.COMPLETED);
-            batchJob.setCompletedAt(LocalDateTime.now());
-            batchJobRepository.save(batchJob);
-            
-            log.info("Обработка файла завершена. Успешно: {}, Ошибок: {}", processed, failed);
-            
-            return batchJob;
-            
-        } catch (Exception e) {
-            log.error("Ошибка обработки файла: {}", e.getMessage(), e);
-            
-            batchJob.setStatus(BatchJobStatus.FAILED);
-            batchJob.setErrorMessage(e.getMessage());
-            batchJob.setCompletedAt(LocalDateTime.now());
-            batchJobRepository.save(batchJob);
-            
-            throw new RuntimeException("Ошибка обработки файла: " + e.getMessage(), e);
         }
     }
     
     /**
-     * Обработать Excel файл с поведенческими паттернами
+     * Статистика стадий загрузки файла (пропускная способность и очереди)
+     */
+    public PipelineStats getIngestStats(Long batchId) {
+        return ingestPipeline.getStats(batchId);
+    }
+    
+    /**
+     * Обработать файл с поведенческими паттернами (.xlsx, .csv или .csv.gz) (потоково, пачками по chunkSize).
+     * Паттерн клиента за день, загруженный ранее, обновляется при изменении значений, иначе пропускается.
      */
     @Transactional
-    public int processBehaviorPatternsFile(MultipartFile file) {
+    public UpsertResult processBehaviorPatternsFile(MultipartFile file) {
         log.info("Начинаем обработку поведенческих паттернов: {}", file.getOriginalFilename());
         
         // Валидация
-        if (!behaviorPatternParser.isValidExcelFile(file)) {
-            throw new IllegalArgumentException("Неверный формат файла. Ожидается .xlsx или .xls");
+        if (!behaviorPatternParser.isValidFile(file)) {
+            throw new IllegalArgumentException("Неверный формат файла. Ожидается .xlsx, .csv или .csv.gz");
         }
         
+        Path stored = null;
         try {
-            // Парсим Excel
-            List<CustomerBehaviorPattern> patterns = behaviorPatternParser.parseExcelFile(file);
+            stored = uploadStorage.store(file);
+            UpsertResult total = new UpsertResult(0, 0, 0);
             
-            // Сохраняем батчами
-            int saved = 0;
-            int batchSize = 500;
-            
-            for (int i = 0; i < patterns.size(); i += batchSize) {
-                int end = Math.min(i + batchSize, patterns.size());
-                List<CustomerBehaviorPattern> batch = patterns.subList(i, end);
+            ParseResult parsed = behaviorPatternParser.parseFile(stored, file.getOriginalFilename(), chunkSize, chunk -> {
+                UpsertResult written = behaviorPatternWriter.upsert(chunk);
+                total.setInserted(total.getInserted() + written.getInserted());
+                total.setUpdated(total.getUpdated() + written.getUpdated());
+                total.setSkipped(total.getSkipped() + written.getSkipped());
                 
-                behaviorPatternRepository.saveAll(batch);
-                saved += batch.size();
+                // Сбросить кэш только для клиентов с новыми и изменёнными паттернами
+                if (written.getInserted() + written.getUpdated() > 0) {
+                    behaviorPatternCache.evict(chunk.stream()
+                            .map(CustomerBehaviorPattern::getCustomerId)
+                            .collect(Collectors.toSet()));
+                }
                 
-                log.info("Сохранено {}/{} паттернов", saved, patterns.size());
-            }
+                entityManager.flush();
+                entityManager.clear();
+                
+                log.info("Паттернов: новых {}, обновлено {}, без изменений {}",
+                         total.getInserted(), total.getUpdated(), total.getSkipped());
+            });
             
-            log.info("Обработка завершена. Сохранено {} поведенческих паттернов", saved);
-            return saved;
+            log.info("Обработка завершена. Поведенческих паттернов: новых {}, обновлено {}, без изменений {}, {} строк/с",
+                     total.getInserted(), total.getUpdated(), total.getSkipped(),
+                     String.format("%.0f", parsed.getRowsPerSecond()));
+            return total;
             
         } catch (Exception e) {
             log.error("Ошибка обработки файла поведенческих паттернов: {}", e.getMessage(), e);
             throw new RuntimeException("Ошибка обработки файла: " + e.getMessage(), e);
+        } finally {
+            if (stored != null) {
+                uploadStorage.delete(stored.toString());
+            }
         }
     }
     
@@ -0,0 +1,325 @@
+package com.fortebank.fraud.batch.service;
+
+import com.fortebank.fraud.batch.entity.BatchJob;
+import com.fortebank.fraud.batch.entity.BatchJobStatus;
+import com.fortebank.fraud.batch.repository.BatchJobRepository;
+import com.fortebank.fraud.scoring.dto.FraudScore;
+import com.fortebank.fraud.scoring.dto.ScoringContext;
+import com.fortebank.fraud.scoring.service.ScoringContextLoader;
+import com.fortebank.fraud.transaction.entity.Transaction;
+import com.fortebank.fraud.transaction.entity.TransactionStatus;
+import com.fortebank.fraud.transaction.repository.TransactionRepository;
+import com.fortebank.fraud.transaction.service.FraudDetectionService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+/**
+ * Оценка всех транзакций батча по правилам после загрузки.
+ *
+ * Транзакции группируются по клиенту: контекст клиента (профиль, паттерн)
+ * загружается один раз на группу. Группы оцениваются параллельно в пуле
+ * scoringExecutor, статусы пишутся пакетными UPDATE через JDBC, без save() по одной.
+ *
+ * Батч читается страницами по fraud.batch.scoring-page-customers клиентов (keyset по customer_id):
+ * следующая страница загружается, пока оценивается предыдущая, в памяти не больше двух страниц.
+ * Оцениваются только транзакции в статусе PENDING, поэтому оценка, прерванная перезапуском,
+ * продолжается с неоценённых транзакций (recover).
+ */
+@Service
+@Slf4j
+public class BatchScoringService {
+
+    private static final int WRITE_CHUNK_SIZE = 1000;
+    private static final int SLICES_PER_THREAD = 4;
+    private static final long PROGRESS_INTERVAL_MS = 1000;
+
+    private static final String UPDATE_SQL =
+            "UPDATE transactions SET status = ?, fraud_probability = ?, updated_at = ? WHERE id = ?";
+
+    private final TransactionRepository transactionRepository;
+    private final BatchJobRepository batchJobRepository;
+    private final BatchJobProgressService progressService;
+    private final ScoringContextLoader scoringContextLoader;
+    private final FraudDetectionService fraudDetectionService;
+    private final JdbcTemplate jdbcTemplate;
+    private final ExecutorService scoringExecutor;
+    private final ExecutorService coordinatorExecutor;
+    private final int pageCustomers;
+
+    // Батчи, которые сейчас оцениваются
+    private final Set<Long> running = ConcurrentHashMap.newKeySet();
+
+    public BatchScoringService(TransactionRepository transactionRepository,
+                               BatchJobRepository batchJobRepository,
+                               BatchJobProgressService progressService,
+                               ScoringContextLoader scoringContextLoader,
+                               FraudDetectionService fraudDetectionService,
+                               JdbcTemplate jdbcTemplate,
+                               @Qualifier("scoringExecutor") ExecutorService scoringExecutor,
+                               @Qualifier("batchCoordinatorExecutor") ExecutorService coordinatorExecutor,
+                               @Value("${fraud.batch.scoring-page-customers:2000}") int pageCustomers) {
+        this.transactionRepository = transactionRepository;
+        this.batchJobRepository = batchJobRepository;
+        this.progressService = progressService;
+        this.scoringContextLoader = scoringContextLoader;
+        this.fraudDetectionService = fraudDetectionService;
+        this.jdbcTemplate = jdbcTemplate;
+        this.scoringExecutor = scoringExecutor;
+        this.coordinatorExecutor = coordinatorExecutor;
+        this.pageCustomers = pageCustomers;
+    }
+
+    /**
+     * Запустить оценку батча в фоне. Прогресс - в полях scoring* у BatchJob.
+     */
+    public BatchJob startScoring(Long batchId) {
+        BatchJob batchJob = batchJobRepository.findById(batchId)
+                .orElseThrow(() -> new RuntimeException("BatchJob не найден: " + batchId));
+
+        if (batchJob.getStatus() != BatchJobStatus.COMPLETED) {
+            throw new RuntimeException("Загрузка батча ещё не завершена: " + batchId);
+        }
+        if (!running.add(batchId)) {
+            throw new RuntimeException("Оценка батча уже выполняется: " + batchId);
+        }
+
+        try {
+            progressService.scoringQueued(batchId);
+            coordinatorExecutor.execute(() -> scoreBatch(batchId, 0));
+            return batchJobRepository.findById(batchId).orElse(batchJob);
+        } catch (RuntimeException e) {
+            running.remove(batchId);
+            throw e;
+        }
+    }
+
+    /**
+     * Продолжить оценки, прерванные перезапуском (scoringStatus PENDING или PROCESSING).
+     * Уже оценённые транзакции не в статусе PENDING и повторно не оцениваются.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void recover() {
+        List<BatchJob> interrupted = batchJobRepository.findByStatusAndScoringStatusIn(BatchJobStatus.COMPLETED,
+                List.of(BatchJobStatus.PENDING, BatchJobStatus.PROCESSING));
+        for (BatchJob batchJob : interrupted) {
+            Long batchId = batchJob.getId();
+            if (!running.add(batchId)) {
+                continue;
+            }
+            int scoredBefore = batchJob.getScoredRecords() != null ? batchJob.getScoredRecords() : 0;
+            log.warn("Оценка батча {} прервана перезапуском после {} транзакций, продолжается", batchId, scoredBefore);
+            try {
+                coordinatorExecutor.execute(() -> scoreBatch(batchId, scoredBefore));
+            } catch (RejectedExecutionException e) {
+                running.remove(batchId);
+                progressService.scoringFailed(batchId, "Очередь оценки переполнена");
+            }
+        }
+    }
+
+    /**
+     * @param scoredBefore транзакций батча, оценённых до перезапуска
+     */
+    private void scoreBatch(Long batchId, int scoredBefore) {
+        AtomicInteger scored = new AtomicInteger(scoredBefore);
+        AtomicInteger failed = new AtomicInteger();
+        Progress progress = new Progress(batchId, scored, failed, scoredBefore, System.nanoTime());
+        CompletableFuture<Void> inFlight = CompletableFuture.completedFuture(null);
+
+        try {
+            progressService.scoringStarted(batchId);
+
+            int customers = 0;
+            List<String> page = nextPage(batchId, "");
+            while (!page.isEmpty()) {
+                List<Transaction> transactions = transactionRepository.findBatchTransactionsOfCustomers(
+                        batchId, TransactionStatus.PENDING, page);
+                Map<String, List<Transaction>> byCustomer = transactions.stream()
+                        .collect(Collectors.groupingBy(Transaction::getCustomerId, LinkedHashMap::new, Collectors.toList()));
+
+                // Страница загружена, пока оценивалась предыдущая
+                await(inFlight, progress);
+                inFlight = submit(byCustomer.values(), scored, failed);
+
+                customers += page.size();
+                page = nextPage(batchId, page.get(page.size() - 1));
+            }
+            await(inFlight, progress);
+
+            progressService.scoringCompleted(batchId, scored.get(), failed.get(), progress.throughput());
+            log.info("Оценка батча {} завершена: {} клиентов, {} оценено, {} ошибок, {} tx/s",
+                    batchId, customers, scored.get(), failed.get(), String.format("%.1f", progress.throughput()));
+
+        } catch (Exception e) {
+            Throwable cause = e instanceof ExecutionException && e.getCause() != null ? e.getCause() : e;
+            log.error("Ошибка оценки батча {}: {}", batchId, cause.getMessage(), cause);
+
+            // Задачи страницы дописывают результаты до фиксации ошибки
+            inFlight.exceptionally(error -> null).join();
+            progress.write();
+            progressService.scoringFailed(batchId, cause.getMessage());
+
+            if (e instanceof InterruptedException) {
+                Thread.currentThread().interrupt();
+            }
+        } finally {
+            running.remove(batchId);
+        }
+    }
+
+    private List<String> nextPage(Long batchId, String after) {
+        return transactionRepository.findBatchCustomerIdsAfter(
+                batchId, TransactionStatus.PENDING, after, PageRequest.of(0, pageCustomers));
+    }
+
+    private CompletableFuture<Void> submit(Collection<List<Transaction>> customers,
+                                           AtomicInteger scored, AtomicInteger failed) {
+        List<CompletableFuture<Void>> tasks = new ArrayList<>();
+        for (List<List<Transaction>> slice : slices(customers)) {
+            tasks.add(CompletableFuture.runAsync(() -> scoreCustomers(slice, scored, failed), scoringExecutor));
+        }
+        return CompletableFuture.allOf(tasks.toArray(new CompletableFuture[0]));
+    }
+
+    /**
+     * Дождаться оценки страницы, записывая прогресс раз в PROGRESS_INTERVAL_MS
+     */
+    private static void await(CompletableFuture<Void> page, Progress progress)
+            throws InterruptedException, ExecutionException {
+        while (true) {
+            try {
+                page.get(PROGRESS_INTERVAL_MS, TimeUnit.MILLISECONDS);
+                return;
+            } catch (TimeoutException e) {
+                progress.write();
+            }
+        }
+    }
+
+    /**
+     * Оценить группы транзакций клиентов и записать результаты пакетами
+     */
+    private void scoreCustomers(List<List<Transaction>> customers, AtomicInteger scored, AtomicInteger failed) {
+        List<Object[]> updates = new ArrayList<>(WRITE_CHUNK_SIZE);
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+
+        for (List<Transaction> group : customers) {
+            String customerId = group.get(0).getCustomerId();
+
+            List<ScoringContext> contexts;
+            try {
+                contexts = scoringContextLoader.loadForCustomer(customerId, group);
+            } catch (Exception e) {
+                log.error("Ошибка загрузки контекста клиента {}: {}", customerId, e.getMessage());
+                failed.addAndGet(group.size());
+                continue;
+            }
+
+            for (ScoringContext context : contexts) {
+                try {
+                    // Описания факторов риска здесь не нужны - только решение
+                    FraudScore score = fraudDetectionService.evaluate(context);
+                    updates.add(new Object[]{
+                            TransactionStatus.fromDecision(score.getDecision()).name(),
+                            score.getFraudProbability(),
+                            now,
+                            context.getTransaction().getId()
+                    });
+                } catch (Exception e) {
+                    log.error("Ошибка оценки транзакции {}: {}",
+                            context.getTransaction().getTransactionId(), e.getMessage());
+                    failed.incrementAndGet();
+                }
+            }
+
+            if (updates.size() >= WRITE_CHUNK_SIZE) {
+                flush(updates, scored);
+            }
+        }
+
+        flush(updates, scored);
+    }
+
+    private void flush(List<Object[]> updates, AtomicInteger scored) {
+        if (updates.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.batchUpdate(UPDATE_SQL, updates);
+        scored.addAndGet(updates.size());
+        updates.clear();
+    }
+
+    /**
+     * Счётчики оценки батча, прогресс пишется точечным UPDATE
+     */
+    private final class Progress {
+
+        private final Long batchId;
+        private final AtomicInteger scored;
+        private final AtomicInteger failed;
+        private final int scoredBefore;
+        private final long start;
+
+        Progress(Long batchId, AtomicInteger scored, AtomicInteger failed, int scoredBefore, long start) {
+            this.batchId = batchId;
+            this.scored = scored;
+            this.failed = failed;
+            this.scoredBefore = scoredBefore;
+            this.start = start;
+        }
+
+        /**
+         * Транзакций в секунду в текущем запуске
+         */
+        double throughput() {
+            double seconds = Duration.ofNanos(System.nanoTime() - start).toMillis() / 1000.0;
+            return seconds > 0 ? (scored.get() - scoredBefore) / seconds : 0;
+        }
+
+        void write() {
+            progressService.scoringProgress(batchId, scored.get(), failed.get(), throughput());
+        }
+    }
+
+    /**
+     * Разбить клиентов на части: по несколько на поток, чтобы потоки нагружались равномерно
+     */
+    private static List<List<List<Transaction>>> slices(Collection<List<Transaction>> customers) {
+        int sliceCount = Math.max(1, Runtime.getRuntime().availableProcessors() * SLICES_PER_THREAD);
+        List<List<List<Transaction>>> slices = new ArrayList<>(sliceCount);
+        for (int i = 0; i < sliceCount; i++) {
+            slices.add(new ArrayList<>());
+        }
+        int i = 0;
+        for (List<Transaction> group : customers) {
+            slices.get(i++ % sliceCount).add(group);
+        }
+        slices.removeIf(List::isEmpty);
+        return slices;
+    }
+}
@@ -0,0 +1,58 @@
+package com.fortebank.fraud.batch.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Locale;
+import java.util.UUID;
+
+/**
+ * Локальное хранилище загруженных файлов батчей (fraud.batch.storage-dir).
+ * Файл сохраняется под случайным именем с расширением исходного - по нему выбирается формат чтения.
+ */
+@Service
+@Slf4j
+public class BatchUploadStorage {
+
+    private final Path directory;
+
+    public BatchUploadStorage(@Value("${fraud.batch.storage-dir:batch-uploads}") String directory) {
+        this.directory = Paths.get(directory).toAbsolutePath();
+    }
+
+    /**
+     * Сохранить файл (multipart уже на диске - переносится без чтения в память)
+     */
+    public Path store(MultipartFile file) throws IOException {
+        Files.createDirectories(directory);
+        Path target = directory.resolve(UUID.randomUUID() + suffix(file.getOriginalFilename()));
+        file.transferTo(target);
+        return target;
+    }
+
+    public void delete(String path) {
+        if (path == null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(Paths.get(path));
+        } catch (IOException e) {
+            log.warn("Не удалось удалить загруженный файл {}: {}", path, e.getMessage());
+        }
+    }
+
+    private static String suffix(String filename) {
+        String name = filename != null ? filename.toLowerCase(Locale.ROOT) : "";
+        if (name.endsWith(".csv.gz")) {
+            return ".csv.gz";
+        }
+        int dot = name.lastIndexOf('.');
+        return dot >= 0 ? name.substring(dot) : "";
+    }
+}
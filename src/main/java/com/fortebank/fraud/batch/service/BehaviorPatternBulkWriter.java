@@ -0,0 +1,182 @@
+package com.fortebank.fraud.batch.service;
+
+import com.fortebank.fraud.batch.dto.UpsertResult;
+import com.fortebank.fraud.customer.entity.CustomerBehaviorPattern;
+import com.fortebank.fraud.customer.repository.CustomerBehaviorPatternRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.BeanUtils;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * Запись пачки поведенческих паттернов как upsert по (customer_id, trans_date):
+ * новые вставляются, существующие обновляются только при изменении значений, остальные пропускаются.
+ *
+ * PostgreSQL - один INSERT ... ON CONFLICT на пачку (PostgresUpsert),
+ * другие БД - сравнение с загруженными сущностями и saveAll.
+ */
+@Service
+@RequiredArgsConstructor
+public class BehaviorPatternBulkWriter {
+
+    private static final String[] COLUMNS = {
+            "id", "trans_date", "customer_id",
+            "unique_os_versions_30d", "unique_phone_models_30d", "latest_phone_model", "latest_os_version",
+            "logins_last_7_days", "logins_last_30_days",
+            "avg_logins_per_day_7d", "avg_logins_per_day_30d", "login_freq_change_ratio", "login_ratio_7d_30d",
+            "avg_session_interval_sec", "session_interval_std", "session_interval_variance",
+            "exp_weighted_avg_interval", "burstiness_score", "fano_factor", "interval_zscore"};
+    private static final String[] TYPES = {
+            "int8", "date", "varchar",
+            "int4", "int4", "varchar", "varchar",
+            "int4", "int4",
+            "numeric", "numeric", "numeric", "numeric",
+            "numeric", "numeric", "numeric",
+            "numeric", "numeric", "numeric", "numeric"};
+
+    // Значения в порядке COLUMNS, начиная с unique_os_versions_30d (обновляемые колонки)
+    private static final List<Function<CustomerBehaviorPattern, Object>> VALUES = List.of(
+            CustomerBehaviorPattern::getUniqueOsVersions30d,
+            CustomerBehaviorPattern::getUniquePhoneModels30d,
+            CustomerBehaviorPattern::getLatestPhoneModel,
+            CustomerBehaviorPattern::getLatestOsVersion,
+            CustomerBehaviorPattern::getLoginsLast7Days,
+            CustomerBehaviorPattern::getLoginsLast30Days,
+            CustomerBehaviorPattern::getAvgLoginsPerDay7d,
+            CustomerBehaviorPattern::getAvgLoginsPerDay30d,
+            CustomerBehaviorPattern::getLoginFreqChangeRatio,
+            CustomerBehaviorPattern::getLoginRatio7d30d,
+            CustomerBehaviorPattern::getAvgSessionIntervalSec,
+            CustomerBehaviorPattern::getSessionIntervalStd,
+            CustomerBehaviorPattern::getSessionIntervalVariance,
+            CustomerBehaviorPattern::getExpWeightedAvgInterval,
+            CustomerBehaviorPattern::getBurstinessScore,
+            CustomerBehaviorPattern::getFanoFactor,
+            CustomerBehaviorPattern::getIntervalZscore);
+
+    // Масштаб numeric колонок: значения файла сравниваются с сохранёнными после такого же округления
+    private static final int SCALE = 4;
+
+    private static final PostgresUpsert UPSERT = new PostgresUpsert("customer_behavior_patterns",
+            COLUMNS, TYPES, "customer_id, trans_date",
+            Arrays.copyOfRange(COLUMNS, 3, COLUMNS.length), null, "customer_id");
+
+    private final CustomerBehaviorPatternRepository behaviorPatternRepository;
+    private final JdbcTemplate jdbcTemplate;
+
+    private volatile Boolean postgres;
+
+    /**
+     * Записать пачку (в текущей транзакции БД).
+     * Повторы (клиент, дата) внутри пачки схлопываются: остаётся последняя строка.
+     */
+    public UpsertResult upsert(List<CustomerBehaviorPattern> patterns) {
+        Map<String, CustomerBehaviorPattern> unique = new LinkedHashMap<>();
+        for (CustomerBehaviorPattern pattern : patterns) {
+            String key = key(pattern.getCustomerId(), pattern.getTransDate());
+            unique.remove(key);
+            unique.put(key, pattern);
+        }
+        List<CustomerBehaviorPattern> rows = new ArrayList<>(unique.values());
+        int duplicates = patterns.size() - rows.size();
+        if (rows.isEmpty()) {
+            return new UpsertResult(0, 0, duplicates);
+        }
+
+        UpsertResult result = isPostgres() ? upsertPostgres(rows) : upsertEntities(unique);
+        result.setSkipped(result.getSkipped() + duplicates);
+        return result;
+    }
+
+    private UpsertResult upsertPostgres(List<CustomerBehaviorPattern> rows) {
+        List<Long> ids = PostgresUpsert.allocateIds(jdbcTemplate, CustomerBehaviorPattern.ID_SEQUENCE,
+                CustomerBehaviorPattern.ID_ALLOCATION_SIZE, rows.size());
+
+        List<Object[]> values = new ArrayList<>(rows.size());
+        for (int i = 0; i < rows.size(); i++) {
+            CustomerBehaviorPattern pattern = rows.get(i);
+            Object[] row = new Object[COLUMNS.length];
+            row[0] = ids.get(i);
+            row[1] = pattern.getTransDate();
+            row[2] = pattern.getCustomerId();
+            for (int column = 0; column < VALUES.size(); column++) {
+                row[column + 3] = VALUES.get(column).apply(pattern);
+            }
+            values.add(row);
+        }
+
+        List<PostgresUpsert.Row> written = UPSERT.execute(jdbcTemplate, values);
+        int inserted = (int) written.stream().filter(PostgresUpsert.Row::inserted).count();
+        return new UpsertResult(inserted, written.size() - inserted, rows.size() - written.size());
+    }
+
+    private UpsertResult upsertEntities(Map<String, CustomerBehaviorPattern> unique) {
+        Set<String> customerIds = new HashSet<>();
+        Set<LocalDate> dates = new HashSet<>();
+        for (CustomerBehaviorPattern pattern : unique.values()) {
+            customerIds.add(pattern.getCustomerId());
+            dates.add(pattern.getTransDate());
+        }
+        Map<String, CustomerBehaviorPattern> existing = new HashMap<>();
+        for (CustomerBehaviorPattern pattern : behaviorPatternRepository.findByCustomerIdInAndTransDateIn(customerIds, dates)) {
+            existing.put(key(pattern.getCustomerId(), pattern.getTransDate()), pattern);
+        }
+
+        List<CustomerBehaviorPattern> inserts = new ArrayList<>();
+        int updated = 0;
+        int skipped = 0;
+        for (Map.Entry<String, CustomerBehaviorPattern> entry : unique.entrySet()) {
+            CustomerBehaviorPattern current = existing.get(entry.getKey());
+            if (current == null) {
+                inserts.add(entry.getValue());
+            } else if (changed(current, entry.getValue())) {
+                BeanUtils.copyProperties(entry.getValue(), current, "id", "customerId", "transDate");
+                updated++;
+            } else {
+                skipped++;
+            }
+        }
+        behaviorPatternRepository.saveAll(inserts);
+        return new UpsertResult(inserts.size(), updated, skipped);
+    }
+
+    private static boolean changed(CustomerBehaviorPattern current, CustomerBehaviorPattern row) {
+        for (Function<CustomerBehaviorPattern, Object> value : VALUES) {
+            Object a = value.apply(current);
+            Object b = value.apply(row);
+            if (a instanceof BigDecimal x && b instanceof BigDecimal y) {
+                if (x.setScale(SCALE, RoundingMode.HALF_UP).compareTo(y.setScale(SCALE, RoundingMode.HALF_UP)) != 0) {
+                    return true;
+                }
+            } else if (!Objects.equals(a, b)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean isPostgres() {
+        if (postgres == null) {
+            postgres = PostgresUpsert.isPostgres(jdbcTemplate);
+        }
+        return postgres;
+    }
+
+    private static String key(String customerId, LocalDate transDate) {
+        return customerId + '|' + transDate;
+    }
+}
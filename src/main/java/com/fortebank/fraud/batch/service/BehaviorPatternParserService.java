@@ -1,24 +1,25 @@
 package com.fortebank.fraud.batch.service;
 
+import com.fortebank.fraud.batch.dto.ParseResult;
 import com.fortebank.fraud.customer.entity.CustomerBehaviorPattern;
+import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.apache.poi.ss.usermodel.*;
-import org.apache.poi.xssf.usermodel.XSSFWorkbook;
-import org.apache.poi.ss.usermodel.DataFormatter;
+import org.apache.poi.ss.usermodel.DateUtil;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
-import java.io.InputStream;
 import java.math.BigDecimal;
+import java.nio.file.Path;
 import java.time.LocalDate;
 import java.time.LocalDateTime; // <-- ДОБАВЛЕН ЭТОТ ИМПОРТ
 import java.time.format.DateTimeFormatter;
-import java.util.ArrayList;
-import java.util.Iterator;
+import java.time.format.DateTimeParseException;
 import java.util.List;
+import java.util.function.Consumer;
 
 @Service
+@RequiredArgsConstructor
 @Slf4j
 public class BehaviorPatternParserService {
     
@@ -26,205 +27,160 @@ public class BehaviorPatternParserService {
     private static final DateTimeFormatter DATE_FORMATTER = 
         DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss.SSS");
     
+    private final BatchFileReader fileReader;
+    
     /**
-     * Парсит Excel файл с поведенческими паттернами
+     * Потоково парсит файл (.xlsx, .csv, .csv.gz) с поведенческими паттернами и передаёт их пачками по chunkSize
      */
-    public List<CustomerBehaviorPattern> parseExcelFile(MultipartFile file) throws IOException {
-        List<CustomerBehaviorPattern> patterns = new ArrayList<>();
-        
-        log.info("Начинаем парсинг Excel файла: {}", file.getOriginalFilename());
+    public ParseResult parseFile(Path file, String filename, int chunkSize,
+                                  Consumer<List<CustomerBehaviorPattern>> chunkConsumer) throws IOException {
+        log.info("Начинаем парсинг Excel файла: {}", filename);
         
-        try (InputStream is = file.getInputStream();
-             Workbook workbook = new XSSFWorkbook(is)) {
-            
-            Sheet sheet = workbook.getSheetAt(0);
-            Iterator<Row> rowIterator = sheet.iterator();
-            
-            // Пропускаем заголовок
-            if (rowIterator.hasNext()) {
-                Row headerRow = rowIterator.next();
-                log.info("Заголовок: первая ячейка = {}", 
-                        getCellValueAsString(headerRow.getCell(0)));
-            }
-            
-            int rowNumber = 1;
-            while (rowIterator.hasNext()) {
-                Row row = rowIterator.next();
-                
-                try {
-                    CustomerBehaviorPattern pattern = parseRow(row, rowNumber);
-                    if (pattern != null) {
-                        patterns.add(pattern);
-                        
-                        if (rowNumber <= 3) {
-                            log.info("Строка {}: customerId={}, date={}", 
-                                    rowNumber, pattern.getCustomerId(), pattern.getTransDate());
-                        }
-                    }
-                } catch (Exception e) {
-                    log.warn("Ошибка парсинга строки {}: {}", rowNumber, e.getMessage());
-                }
-                
-                rowNumber++;
-            }
-        }
+        ChunkedRowHandler<CustomerBehaviorPattern> handler =
+                new ChunkedRowHandler<>(this::parseRow, chunkSize, chunkConsumer);
+        fileReader.read(file, handler);
+        ParseResult result = handler.finish();
         
-        log.info("Успешно распарсено {} поведенческих паттернов из файла {}", 
-                 patterns.size(), file.getOriginalFilename());
+        log.info("Успешно распарсено {} поведенческих паттернов из файла {} ({} строк пропущено, {} строк/с)", 
+                 result.getParsed(), filename, result.getSkipped(),
+                 String.format("%.0f", result.getRowsPerSecond()));
         
-        return patterns;
+        return result;
     }
     
     /**
-     * Парсит одну строку Excel
+     * Парсит одну строку файла
+     *
+     * @throws IllegalArgumentException если дата не заполнена или не разобрана
+     *                                  (строка считается невалидной)
      */
-    private CustomerBehaviorPattern parseRow(Row row, int rowNumber) {
-        try {
-            // Проверяем что строка не пустая
-            if (row.getCell(0) == null && row.getCell(1) == null) {
-                return null;
-            }
-            
-            // Дата (колонка 0)
-            String dateStr = getCellValueAsString(row.getCell(0));
-            LocalDate transDate = parseDate(dateStr);
-            
-            // ID клиента (колонка 1)
-            String customerId = getCellValueAsString(row.getCell(1));
-            if (customerId == null || customerId.trim().isEmpty()) {
-                return null;
-            }
-            
-            return CustomerBehaviorPattern.builder()
-                    .transDate(transDate)
-                    .customerId(customerId)
-                    .uniqueOsVersions30d(getCellValueAsInteger(row.getCell(2)))
-                    .uniquePhoneModels30d(getCellValueAsInteger(row.getCell(3)))
-                    .latestPhoneModel(getCellValueAsString(row.getCell(4)))
-                    .latestOsVersion(getCellValueAsString(row.getCell(5)))
-                    .loginsLast7Days(getCellValueAsInteger(row.getCell(6)))
-                    .loginsLast30Days(getCellValueAsInteger(row.getCell(7)))
-                    .avgLoginsPerDay7d(getCellValueAsBigDecimal(row.getCell(8)))
-                    .avgLoginsPerDay30d(getCellValueAsBigDecimal(row.getCell(9)))
-                    .loginFreqChangeRatio(getCellValueAsBigDecimal(row.getCell(10)))
-                    .loginRatio7d30d(getCellValueAsBigDecimal(row.getCell(11)))
-                    .avgSessionIntervalSec(getCellValueAsBigDecimal(row.getCell(12)))
-                    .sessionIntervalStd(getCellValueAsBigDecimal(row.getCell(13)))
-                    .sessionIntervalVariance(getCellValueAsBigDecimal(row.getCell(14)))
-                    .expWeightedAvgInterval(getCellValueAsBigDecimal(row.getCell(15)))
-                    .burstinessScore(getCellValueAsBigDecimal(row.getCell(16)))
-                    .fanoFactor(getCellValueAsBigDecimal(row.getCell(17)))
-                    .intervalZscore(row.getLastCellNum() > 18 ? 
-                            getCellValueAsBigDecimal(row.getCell(18)) : BigDecimal.ZERO)
-                    .build();
-                    
-        } catch (Exception e) {
-            log.error("Ошибка парсинга строки {}: {}", rowNumber, e.getMessage());
-            throw e;
+    CustomerBehaviorPattern parseRow(SheetRow row) {
+        // Проверяем что строка не пустая
+        if (row.get(0) == null && row.get(1) == null) {
+            return null;
+        }
+        
+        // Дата (колонка 0): текст или дата Excel
+        LocalDate transDate = row.isDate(0)
+                ? DateUtil.getLocalDateTime(row.getNumber(0)).toLocalDate()
+                : parseDate(getCellValueAsString(row, 0));
+        
+        // ID клиента (колонка 1)
+        String customerId = getCellValueAsString(row, 1);
+        if (customerId == null || customerId.trim().isEmpty()) {
+            return null;
+        }
+        
+        if (row.getRowNumber() <= 3) {
+            log.info("Строка {}: customerId={}, date={}", row.getRowNumber(), customerId, transDate);
         }
+        
+        return CustomerBehaviorPattern.builder()
+                .transDate(transDate)
+                .customerId(customerId)
+                .uniqueOsVersions30d(getCellValueAsInteger(row, 2))
+                .uniquePhoneModels30d(getCellValueAsInteger(row, 3))
+                .latestPhoneModel(getCellValueAsString(row, 4))
+                .latestOsVersion(getCellValueAsString(row, 5))
+                .loginsLast7Days(getCellValueAsInteger(row, 6))
+                .loginsLast30Days(getCellValueAsInteger(row, 7))
+                .avgLoginsPerDay7d(getCellValueAsBigDecimal(row, 8))
+                .avgLoginsPerDay30d(getCellValueAsBigDecimal(row, 9))
+                .loginFreqChangeRatio(getCellValueAsBigDecimal(row, 10))
+                .loginRatio7d30d(getCellValueAsBigDecimal(row, 11))
+                .avgSessionIntervalSec(getCellValueAsBigDecimal(row, 12))
+                .sessionIntervalStd(getCellValueAsBigDecimal(row, 13))
+                .sessionIntervalVariance(getCellValueAsBigDecimal(row, 14))
+                .expWeightedAvgInterval(getCellValueAsBigDecimal(row, 15))
+                .burstinessScore(getCellValueAsBigDecimal(row, 16))
+                .fanoFactor(getCellValueAsBigDecimal(row, 17))
+                .intervalZscore(getCellValueAsBigDecimal(row, 18))
+                .build();
     }
     
     /**
      * Получить значение ячейки как String
      */
-    private String getCellValueAsString(Cell cell) {
-        if (cell == null) {
+    private String getCellValueAsString(SheetRow row, int column) {
+        String value = row.get(column);
+        if (value == null) {
             return null;
         }
-        
-        switch (cell.getCellType()) {
-            case STRING:
-                return cell.getStringCellValue().trim();
-            case NUMERIC:
-                if (DateUtil.isCellDateFormatted(cell)) {
-                    return cell.getLocalDateTimeCellValue().toLocalDate().toString();
-                }
-                // Используем DataFormatter для корректного преобразования числовых значений в строки
-                DataFormatter formatter = new DataFormatter();
-                return formatter.formatCellValue(cell);
-            case BOOLEAN:
-                return String.valueOf(cell.getBooleanCellValue());
-            case FORMULA:
-                return cell.getCellFormula();
-            default:
-                return null;
+        if (row.isDate(column)) {
+            return DateUtil.getLocalDateTime(row.getNumber(column)).toLocalDate().toString();
+        }
+        if (row.isNumeric(column)) {
+            // Как в Excel (формат General): целые - без дробной части
+            return new BigDecimal(value).stripTrailingZeros().toPlainString();
         }
+        return value.trim();
     }
     
     /**
      * Получить значение ячейки как BigDecimal
      */
-    private BigDecimal getCellValueAsBigDecimal(Cell cell) {
-        if (cell == null) {
+    private BigDecimal getCellValueAsBigDecimal(SheetRow row, int column) {
+        String value = row.get(column);
+        if (value == null) {
             return BigDecimal.ZERO;
         }
-        
-        if (cell.getCellType() == CellType.NUMERIC) {
-            return BigDecimal.valueOf(cell.getNumericCellValue());
-        } else if (cell.getCellType() == CellType.STRING) {
-            try {
-                String value = cell.getStringCellValue().trim();
-                if (value.isEmpty() || value.equals("-1.0")) {
-                    return BigDecimal.ZERO;
-                }
-                return new BigDecimal(value);
-            } catch (NumberFormatException e) {
+        if (row.isNumeric(column)) {
+            return BigDecimal.valueOf(row.getNumber(column));
+        }
+        try {
+            value = value.trim();
+            if (value.isEmpty() || value.equals("-1.0")) {
                 return BigDecimal.ZERO;
             }
+            return new BigDecimal(value);
+        } catch (NumberFormatException e) {
+            return BigDecimal.ZERO;
         }
-        
-        return BigDecimal.ZERO;
     }
     
     /**
      * Получить значение ячейки как Integer
      */
-    private Integer getCellValueAsInteger(Cell cell) {
-        if (cell == null) {
+    private Integer getCellValueAsInteger(SheetRow row, int column) {
+        String value = row.get(column);
+        if (value == null) {
             return 0;
         }
-        
-        if (cell.getCellType() == CellType.NUMERIC) {
-            return (int) cell.getNumericCellValue();
-        } else if (cell.getCellType() == CellType.STRING) {
-            try {
-                return Integer.parseInt(cell.getStringCellValue().trim());
-            } catch (NumberFormatException e) {
-                return 0;
-            }
+        if (row.isNumeric(column)) {
+            return (int) row.getNumber(column);
+        }
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            return 0;
         }
-        
-        return 0;
     }
     
     /**
-     * Парсит дату
+     * Парсит дату: "yyyy-MM-dd HH:mm:ss.SSS" (время отбрасывается) или "yyyy-MM-dd"
      */
     private LocalDate parseDate(String dateStr) {
+        // Паттерн загружается upsert'ом по (customer_id, trans_date): подставленная
+        // текущая дата сделала бы повторную загрузку файла неидемпотентной
         if (dateStr == null || dateStr.trim().isEmpty()) {
-            return LocalDate.now();
+            throw new IllegalArgumentException("не заполнена дата");
         }
         
+        String cleanedDateStr = dateStr.replace("'", "").trim();
         try {
-            // УДАЛЯЕМ КАВЫЧКИ И ПАРСИМ КАК LocalDateTime, ЗАТЕМ КОНВЕРТИРУЕМ В LocalDate
-            String cleanedDateStr = dateStr.trim().replace("'", "");
-            return LocalDateTime.parse(cleanedDateStr, DATE_FORMATTER).toLocalDate();
-        } catch (Exception e) {
-            log.warn("Не удалось распарсить дату: {}. Используем текущую дату.", dateStr);
-            return LocalDate.now();
+            if (cleanedDateStr.length() > 10) {
+                return LocalDateTime.parse(cleanedDateStr, DATE_FORMATTER).toLocalDate();
+            }
+            return LocalDate.parse(cleanedDateStr);
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("не удалось распарсить дату: " + dateStr, e);
         }
     }
     
     /**
-     * Валидация Excel файла
+     * Валидация файла: .xlsx, .csv или .csv.gz
      */
-    public boolean isValidExcelFile(MultipartFile file) {
-        if (file == null || file.isEmpty()) {
-            return false;
-        }
-        
-        String filename = file.getOriginalFilename();
-        return filename != null && 
-               (filename.endsWith(".xlsx") || filename.endsWith(".xls"));
+    public boolean isValidFile(MultipartFile file) {
+        return fileReader.isSupported(file);
     }
 }
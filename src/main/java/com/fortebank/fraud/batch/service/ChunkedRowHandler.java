@@ -0,0 +1,86 @@
+package com.fortebank.fraud.batch.service;
+
+import com.fortebank.fraud.batch.dto.ParseResult;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Строки файла -> пачки сущностей фиксированного размера.
+ * Заголовок (первая строка) пропускается; строка, которую parser не распознал (null или ошибка),
+ * считается пропущенной. В памяти - не больше одной пачки.
+ */
+@Slf4j
+class ChunkedRowHandler<T> implements Consumer<SheetRow> {
+
+    private final Function<SheetRow, T> parser;
+    private final int chunkSize;
+    private final Consumer<List<T>> chunkConsumer;
+    private final long start = System.nanoTime();
+
+    private List<T> chunk;
+    private boolean headerSkipped;
+    private int rows;
+    private int parsed;
+    private int skipped;
+
+    ChunkedRowHandler(Function<SheetRow, T> parser, int chunkSize, Consumer<List<T>> chunkConsumer) {
+        this.parser = parser;
+        this.chunkSize = chunkSize;
+        this.chunkConsumer = chunkConsumer;
+        this.chunk = new ArrayList<>(chunkSize);
+    }
+
+    @Override
+    public void accept(SheetRow row) {
+        if (!headerSkipped) {
+            headerSkipped = true;
+            return;
+        }
+        rows++;
+
+        T item;
+        try {
+            item = parser.apply(row);
+        } catch (Exception e) {
+            log.warn("Ошибка парсинга строки {}: {}", row.getRowNumber(), e.getMessage());
+            item = null;
+        }
+        if (item == null) {
+            skipped++;
+            return;
+        }
+
+        chunk.add(item);
+        parsed++;
+        if (chunk.size() >= chunkSize) {
+            flush();
+        }
+    }
+
+    /**
+     * Передать неполную последнюю пачку и подвести итог
+     */
+    ParseResult finish() {
+        flush();
+        long elapsedMillis = Math.max(1, (System.nanoTime() - start) / 1_000_000);
+        return ParseResult.builder()
+                .rows(rows)
+                .parsed(parsed)
+                .skipped(skipped)
+                .durationMillis(elapsedMillis)
+                .rowsPerSecond(rows * 1000.0 / elapsedMillis)
+                .build();
+    }
+
+    private void flush() {
+        if (!chunk.isEmpty()) {
+            List<T> full = chunk;
+            chunk = new ArrayList<>(chunkSize);
+            chunkConsumer.accept(full);
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package com.fortebank.fraud.batch.service;
+
+import com.opencsv.CSVReader;
+import com.opencsv.CSVReaderBuilder;
+import com.opencsv.RFC4180ParserBuilder;
+import com.opencsv.exceptions.CsvValidationException;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.function.Consumer;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Потоковое чтение CSV (в том числе сжатого gzip - распаковывается на лету).
+ * Разделитель (',', ';' или табуляция) определяется по строке заголовка.
+ * Пустые поля передаются как отсутствующие ячейки - так же, как пустые ячейки xlsx.
+ */
+@Service
+public class CsvStreamReader {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final char[] SEPARATORS = {',', ';', '\t'};
+
+    /**
+     * Прочитать строки файла (включая заголовок) и передать их по одной в rowConsumer
+     *
+     * @param gzip файл сжат gzip (дополнительно проверяется по сигнатуре)
+     * @return число прочитанных строк
+     */
+    public int read(InputStream input, boolean gzip, Consumer<SheetRow> rowConsumer) throws IOException {
+        InputStream in = new BufferedInputStream(input, BUFFER_SIZE);
+        if (gzip || isGzip(in)) {
+            in = new GZIPInputStream(in, BUFFER_SIZE);
+        }
+
+        BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8), BUFFER_SIZE);
+        skipBom(reader);
+        char separator = detectSeparator(reader);
+
+        try (CSVReader csv = new CSVReaderBuilder(reader)
+                .withCSVParser(new RFC4180ParserBuilder().withSeparator(separator).build())
+                .withKeepCarriageReturn(false)
+                .build()) {
+            int rows = 0;
+            String[] values;
+            while ((values = csv.readNext()) != null) {
+                for (int i = 0; i < values.length; i++) {
+                    if (values[i].isEmpty()) {
+                        values[i] = null;
+                    }
+                }
+                rowConsumer.accept(SheetRow.ofText(rows++, values));
+            }
+            return rows;
+        } catch (CsvValidationException e) {
+            throw new IOException("Ошибка чтения CSV: " + e.getMessage(), e);
+        }
+    }
+
+    private static boolean isGzip(InputStream in) throws IOException {
+        in.mark(2);
+        int b1 = in.read();
+        int b2 = in.read();
+        in.reset();
+        return b1 == 0x1f && b2 == 0x8b;
+    }
+
+    private static void skipBom(BufferedReader reader) throws IOException {
+        reader.mark(1);
+        if (reader.read() != '\uFEFF') {
+            reader.reset();
+        }
+    }
+
+    /**
+     * Разделитель - самый частый из возможных символов в строке заголовка
+     */
+    private static char detectSeparator(BufferedReader reader) throws IOException {
+        reader.mark(BUFFER_SIZE);
+        String header = reader.readLine();
+        reader.reset();
+
+        char best = SEPARATORS[0];
+        long bestCount = 0;
+        if (header != null) {
+            for (char separator : SEPARATORS) {
+                long count = header.chars().filter(c -> c == separator).count();
+                if (count > bestCount) {
+                    best = separator;
+                    bestCount = count;
+                }
+            }
+        }
+        return best;
+    }
+}
@@ -0,0 +1,225 @@
+package com.fortebank.fraud.batch.service;
+
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.openxml4j.opc.PackagePart;
+import org.apache.poi.util.XMLHelper;
+import org.apache.poi.xssf.usermodel.XSSFRelation;
+import org.xml.sax.Attributes;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.XMLReader;
+import org.xml.sax.helpers.DefaultHandler;
+
+import javax.xml.parsers.ParserConfigurationException;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Общая таблица строк .xlsx на диске.
+ *
+ * ReadOnlySharedStringsTable держит все строки в памяти, а docno и id клиентов/получателей
+ * почти все уникальны - таблица растёт с числом строк файла. Здесь строки при открытии
+ * переписываются во временный файл (UTF-8), а индекс (смещение, длина) - во второй файл
+ * по 12 байт на строку; поиск - два позиционных чтения. В памяти - только небольшой кэш
+ * последних строк. Временные файлы удаляются в close().
+ */
+final class DiskSharedStrings implements Closeable {
+
+    private static final int INDEX_ENTRY_BYTES = 12;
+    private static final int CACHE_SIZE = 1024;
+
+    private final Path dataFile;
+    private final Path indexFile;
+    private final FileChannel data;
+    private final FileChannel index;
+    private final int count;
+
+    private final ByteBuffer entry = ByteBuffer.allocate(INDEX_ENTRY_BYTES);
+    private ByteBuffer text = ByteBuffer.allocate(256);
+
+    // Кэш с прямым отображением: повторяющиеся строки (заголовок, частые получатели) не читаются с диска
+    private final int[] cachedIndex = new int[CACHE_SIZE];
+    private final String[] cachedValue = new String[CACHE_SIZE];
+
+    DiskSharedStrings(OPCPackage pkg) throws IOException, SAXException, ParserConfigurationException {
+        this.dataFile = Files.createTempFile("xlsx-strings", ".bin");
+        this.indexFile = Files.createTempFile("xlsx-strings", ".idx");
+        try {
+            this.count = write(pkg);
+            this.data = FileChannel.open(dataFile, StandardOpenOption.READ);
+            this.index = FileChannel.open(indexFile, StandardOpenOption.READ);
+        } catch (IOException | SAXException | ParserConfigurationException | RuntimeException e) {
+            deleteFiles();
+            throw e;
+        }
+        Arrays.fill(cachedIndex, -1);
+    }
+
+    /**
+     * Строка по индексу из ячейки t="s"
+     */
+    String get(int i) {
+        if (i < 0 || i >= count) {
+            throw new IllegalArgumentException("Нет общей строки с индексом " + i + " (всего " + count + ")");
+        }
+        int slot = i & (CACHE_SIZE - 1);
+        if (cachedIndex[slot] == i) {
+            return cachedValue[slot];
+        }
+
+        try {
+            entry.clear();
+            readFully(index, entry, (long) i * INDEX_ENTRY_BYTES);
+            long offset = entry.getLong(0);
+            int length = entry.getInt(8);
+
+            if (text.capacity() < length) {
+                text = ByteBuffer.allocate(Math.max(length, text.capacity() * 2));
+            }
+            text.clear().limit(length);
+            readFully(data, text, offset);
+            String value = new String(text.array(), 0, length, StandardCharsets.UTF_8);
+
+            cachedIndex[slot] = i;
+            cachedValue[slot] = value;
+            return value;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Ошибка чтения общей таблицы строк", e);
+        }
+    }
+
+    int size() {
+        return count;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            if (data != null) {
+                data.close();
+            }
+            if (index != null) {
+                index.close();
+            }
+        } finally {
+            deleteFiles();
+        }
+    }
+
+    private int write(OPCPackage pkg) throws IOException, SAXException, ParserConfigurationException {
+        List<PackagePart> parts = pkg.getPartsByContentType(XSSFRelation.SHARED_STRINGS.getContentType());
+        try (DataOutputStream dataOut = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(dataFile)));
+             DataOutputStream indexOut = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(indexFile)))) {
+            if (parts.isEmpty()) {
+                return 0;
+            }
+            StringsHandler handler = new StringsHandler(dataOut, indexOut);
+            try (InputStream in = parts.get(0).getInputStream()) {
+                XMLReader parser = XMLHelper.newXMLReader();
+                parser.setContentHandler(handler);
+                parser.parse(new InputSource(in));
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            return handler.count;
+        }
+    }
+
+    private void deleteFiles() throws IOException {
+        Files.deleteIfExists(dataFile);
+        Files.deleteIfExists(indexFile);
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position);
+            if (read < 0) {
+                throw new IOException("Неожиданный конец временного файла общей таблицы строк");
+            }
+            position += read;
+        }
+    }
+
+    /**
+     * Разбор sharedStrings.xml: &lt;si&gt;&lt;t&gt;...&lt;/t&gt;&lt;/si&gt; или форматированные части
+     * &lt;si&gt;&lt;r&gt;&lt;t&gt;...&lt;/t&gt;&lt;/r&gt;...&lt;/si&gt;; фонетические подсказки (rPh) пропускаются,
+     * как в ReadOnlySharedStringsTable
+     */
+    private static final class StringsHandler extends DefaultHandler {
+
+        private final DataOutputStream dataOut;
+        private final DataOutputStream indexOut;
+        private final StringBuilder value = new StringBuilder();
+
+        private long offset;
+        private int count;
+        private boolean inItem;
+        private boolean inText;
+        private boolean inPhonetic;
+
+        StringsHandler(DataOutputStream dataOut, DataOutputStream indexOut) {
+            this.dataOut = dataOut;
+            this.indexOut = indexOut;
+        }
+
+        @Override
+        public void startElement(String uri, String localName, String qName, Attributes attributes) {
+            switch (localName) {
+                case "si" -> {
+                    inItem = true;
+                    value.setLength(0);
+                }
+                case "rPh" -> inPhonetic = true;
+                case "t" -> inText = inItem && !inPhonetic;
+                default -> {
+                }
+            }
+        }
+
+        @Override
+        public void characters(char[] ch, int start, int length) {
+            if (inText) {
+                value.append(ch, start, length);
+            }
+        }
+
+        @Override
+        public void endElement(String uri, String localName, String qName) {
+            switch (localName) {
+                case "t" -> inText = false;
+                case "rPh" -> inPhonetic = false;
+                case "si" -> {
+                    inItem = false;
+                    writeItem();
+                }
+                default -> {
+                }
+            }
+        }
+
+        private void writeItem() {
+            byte[] bytes = value.toString().getBytes(StandardCharsets.UTF_8);
+            try {
+                dataOut.write(bytes);
+                indexOut.writeLong(offset);
+                indexOut.writeInt(bytes.length);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            offset += bytes.length;
+            count++;
+        }
+    }
+}
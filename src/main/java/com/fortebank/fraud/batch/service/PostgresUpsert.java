@@ -0,0 +1,183 @@
+package com.fortebank.fraud.batch.service;
+
+import org.postgresql.core.BaseConnection;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.math.BigDecimal;
+import java.sql.Array;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Upsert пачки в PostgreSQL одним запросом:
+ * INSERT ... SELECT FROM unnest(массив на колонку) ON CONFLICT (ключ) DO UPDATE,
+ * причём обновляются только строки с изменившимися значениями (IS DISTINCT FROM).
+ *
+ * RETURNING отдаёт вставленные и обновлённые строки; у вставленных xmax = 0
+ * (у обновлённых - id обновившей транзакции). Неизменённые строки не возвращаются.
+ * Ключ конфликта в пачке должен быть уникальным - иначе PostgreSQL отклонит запрос.
+ */
+final class PostgresUpsert {
+
+    /**
+     * Строка, вставленная (inserted = true) или обновлённая запросом
+     */
+    record Row(String key, boolean inserted) {
+    }
+
+    private final String table;
+    private final String[] columns;
+    private final String[] types;
+    private final String conflictTail;
+
+    /**
+     * @param columns        колонки вставки
+     * @param types          типы PostgreSQL колонок (int8, varchar, numeric, timestamp, date, bool, ...)
+     * @param conflictKey    колонки уникального ключа
+     * @param updateColumns  колонки, которые обновляются и сравниваются при конфликте
+     * @param extraSet       дополнительное присваивание при обновлении (например, updated_at) или null
+     * @param returningKey   колонка, возвращаемая для вставленных и обновлённых строк
+     */
+    PostgresUpsert(String table, String[] columns, String[] types, String conflictKey,
+                   String[] updateColumns, String extraSet, String returningKey) {
+        this.table = table;
+        this.columns = columns;
+        this.types = types;
+
+        StringBuilder set = new StringBuilder();
+        StringBuilder current = new StringBuilder();
+        StringBuilder excluded = new StringBuilder();
+        for (String column : updateColumns) {
+            if (set.length() > 0) {
+                set.append(", ");
+                current.append(", ");
+                excluded.append(", ");
+            }
+            set.append(column).append(" = EXCLUDED.").append(column);
+            current.append(table).append('.').append(column);
+            excluded.append("EXCLUDED.").append(column);
+        }
+        if (extraSet != null) {
+            set.append(", ").append(extraSet);
+        }
+        this.conflictTail = " ON CONFLICT (" + conflictKey + ") DO UPDATE SET " + set
+                + " WHERE (" + current + ") IS DISTINCT FROM (" + excluded + ")"
+                + " RETURNING " + returningKey + ", (xmax = 0) AS inserted";
+    }
+
+    static boolean isPostgres(JdbcTemplate jdbcTemplate) {
+        return Boolean.TRUE.equals(jdbcTemplate.execute((ConnectionCallback<Boolean>) connection ->
+                connection.isWrapperFor(BaseConnection.class)));
+    }
+
+    /**
+     * Id из последовательности так же, как их выдаёт pooled оптимизатор Hibernate:
+     * значение v закрепляет за вызывающим диапазон (v - allocationSize, v]
+     */
+    static List<Long> allocateIds(JdbcTemplate jdbcTemplate, String sequence, int allocationSize, int count) {
+        int blocks = count / allocationSize + 2;
+        List<Long> values = jdbcTemplate.queryForList(
+                "SELECT nextval('" + sequence + "') FROM generate_series(1, ?)", Long.class, blocks);
+
+        List<Long> ids = new ArrayList<>(count);
+        for (Long hi : values) {
+            for (long id = Math.max(1, hi - allocationSize + 1); id <= hi && ids.size() < count; id++) {
+                ids.add(id);
+            }
+        }
+        if (ids.size() < count) {
+            throw new RuntimeException("Не удалось выделить " + count + " id из " + sequence);
+        }
+        return ids;
+    }
+
+    /**
+     * Upsert строк (значения - в порядке колонок)
+     */
+    List<Row> execute(JdbcTemplate jdbcTemplate, List<Object[]> rows) {
+        String sql = unnestSql();
+        return jdbcTemplate.execute((ConnectionCallback<List<Row>>) connection -> {
+            try (PreparedStatement statement = connection.prepareStatement(sql)) {
+                for (int column = 0; column < columns.length; column++) {
+                    statement.setArray(column + 1, array(connection, column, rows));
+                }
+                return read(statement);
+            }
+        });
+    }
+
+    /**
+     * Upsert строк из таблицы source с теми же колонками (например, временной после COPY)
+     */
+    List<Row> executeFrom(JdbcTemplate jdbcTemplate, String source) {
+        String sql = selectSql(source);
+        return jdbcTemplate.execute((ConnectionCallback<List<Row>>) connection -> {
+            try (PreparedStatement statement = connection.prepareStatement(sql)) {
+                return read(statement);
+            }
+        });
+    }
+
+    /**
+     * Запрос upsert из массивов: по параметру-массиву на колонку
+     */
+    String unnestSql() {
+        StringBuilder sql = new StringBuilder("INSERT INTO ").append(table)
+                .append(" (").append(String.join(", ", columns)).append(") SELECT * FROM unnest(");
+        for (int i = 0; i < columns.length; i++) {
+            sql.append(i > 0 ? ", " : "").append("?::").append(types[i]).append("[]");
+        }
+        return sql.append(')').append(conflictTail).toString();
+    }
+
+    /**
+     * Запрос upsert из таблицы source
+     */
+    String selectSql(String source) {
+        String columnList = String.join(", ", columns);
+        return "INSERT INTO " + table + " (" + columnList + ") SELECT " + columnList
+                + " FROM " + source + conflictTail;
+    }
+
+    private Array array(Connection connection, int column, List<Object[]> rows) throws SQLException {
+        // Значения передаются текстом: сервер разбирает их по типу массива
+        String[] values = new String[rows.size()];
+        for (int i = 0; i < rows.size(); i++) {
+            values[i] = text(rows.get(i)[column]);
+        }
+        return connection.createArrayOf(types[column], values);
+    }
+
+    private static List<Row> read(PreparedStatement statement) throws SQLException {
+        List<Row> result = new ArrayList<>();
+        try (ResultSet rs = statement.executeQuery()) {
+            while (rs.next()) {
+                result.add(new Row(rs.getString(1), rs.getBoolean(2)));
+            }
+        }
+        return result;
+    }
+
+    private static String text(Object value) {
+        if (value == null) {
+            return null;
+        }
+        if (value instanceof BigDecimal decimal) {
+            return decimal.toPlainString();
+        }
+        if (value instanceof LocalDateTime dateTime) {
+            return Timestamp.valueOf(dateTime).toString();
+        }
+        if (value instanceof Enum<?> constant) {
+            return constant.name();
+        }
+        return value.toString();
+    }
+}
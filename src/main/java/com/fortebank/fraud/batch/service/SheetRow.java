@@ -0,0 +1,71 @@
+package com.fortebank.fraud.batch.service;
+
+import java.util.Arrays;
+
+/**
+ * Строка листа при потоковом чтении: значения ячеек в исходном виде
+ * (числа - как записаны в файле, строки - текст) и признаки числовой ячейки / формата даты.
+ * Отсутствующая ячейка - null.
+ */
+public final class SheetRow {
+
+    private final int rowNumber;
+    private final String[] values;
+    private final boolean[] numeric;
+    private final boolean[] date;
+
+    SheetRow(int rowNumber, String[] values, boolean[] numeric, boolean[] date) {
+        this.rowNumber = rowNumber;
+        this.values = values;
+        this.numeric = numeric;
+        this.date = date;
+    }
+
+    /**
+     * Текстовая строка (все ячейки - строки)
+     */
+    public static SheetRow ofText(int rowNumber, String[] values) {
+        return new SheetRow(rowNumber, values, new boolean[values.length], new boolean[values.length]);
+    }
+
+    /**
+     * Номер строки в файле, начиная с 0 (заголовок)
+     */
+    public int getRowNumber() {
+        return rowNumber;
+    }
+
+    /**
+     * Число колонок до последней заполненной включительно
+     */
+    public int size() {
+        return values.length;
+    }
+
+    public String get(int column) {
+        return column < values.length ? values[column] : null;
+    }
+
+    public boolean isNumeric(int column) {
+        return column < numeric.length && numeric[column];
+    }
+
+    /**
+     * Числовая ячейка с форматом даты (значение - дата Excel в днях)
+     */
+    public boolean isDate(int column) {
+        return column < date.length && date[column];
+    }
+
+    /**
+     * Значение числовой ячейки
+     */
+    public double getNumber(int column) {
+        return Double.parseDouble(values[column]);
+    }
+
+    @Override
+    public String toString() {
+        return rowNumber + ": " + Arrays.toString(values);
+    }
+}
@@ -0,0 +1,284 @@
+package com.fortebank.fraud.batch.service;
+
+import com.fortebank.fraud.batch.dto.UpsertResult;
+import com.fortebank.fraud.transaction.entity.Transaction;
+import com.fortebank.fraud.transaction.entity.TransactionStatus;
+import com.fortebank.fraud.transaction.repository.TransactionRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.postgresql.copy.CopyManager;
+import org.postgresql.core.BaseConnection;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Запись пачки транзакций при загрузке файла как upsert по transaction_id:
+ * новые вставляются, уже загруженные обновляются только при изменении
+ * суммы, времени, получателя или метки мошенничества, остальные пропускаются.
+ * Обновлённая транзакция переходит в текущий батч со статусом PENDING - её оценка
+ * устарела и будет пересчитана при оценке батча. Клиент загруженной транзакции не меняется.
+ *
+ * Запись в два шага: prepare() определяет новые транзакции (по ним обновляются
+ * индекс получателей, профили и счётчики), upsert() пишет пачку.
+ *
+ * PostgreSQL - один INSERT ... ON CONFLICT на пачку (PostgresUpsert), режимы fraud.batch.persist-mode:
+ * - jpa (по умолчанию) - значения передаются массивами через unnest;
+ * - copy - COPY во временную таблицу, затем INSERT ... SELECT ... ON CONFLICT.
+ * Другие БД - сравнение с загруженными сущностями и saveAll (INSERT JDBC пакетами при flush).
+ */
+@Service
+@Slf4j
+public class TransactionBulkWriter {
+
+    private static final String[] COLUMNS = {
+            "id", "transaction_id", "customer_id", "transaction_datetime", "amount",
+            "recipient_id", "is_fraud", "status", "batch_id", "created_at"};
+    private static final String[] TYPES = {
+            "int8", "varchar", "varchar", "timestamp", "numeric",
+            "varchar", "bool", "varchar", "int8", "timestamp"};
+    private static final String[] UPDATE_COLUMNS = {
+            "transaction_datetime", "amount", "recipient_id", "is_fraud"};
+    private static final String UPDATE_EXTRA_SET = "updated_at = EXCLUDED.created_at, status = '"
+            + TransactionStatus.PENDING.name() + "', batch_id = EXCLUDED.batch_id";
+
+    private static final String STAGE_TABLE = "transactions_stage";
+    private static final String STAGE_SQL = "CREATE TEMP TABLE IF NOT EXISTS " + STAGE_TABLE +
+            " (LIKE transactions INCLUDING DEFAULTS) ON COMMIT DELETE ROWS";
+    private static final String COPY_SQL = "COPY " + STAGE_TABLE + " (" + String.join(", ", COLUMNS) +
+            ") FROM STDIN WITH (FORMAT csv)";
+
+    /**
+     * Пачка, подготовленная к записи
+     */
+    public static final class PreparedChunk {
+
+        private final List<Transaction> rows;
+        private final List<Transaction> newTransactions;
+        private final Map<String, Transaction> existing;
+        private final int duplicates;
+
+        private PreparedChunk(List<Transaction> rows, List<Transaction> newTransactions,
+                              Map<String, Transaction> existing, int duplicates) {
+            this.rows = rows;
+            this.newTransactions = newTransactions;
+            this.existing = existing;
+            this.duplicates = duplicates;
+        }
+
+        /**
+         * Транзакции, которых ещё нет в БД
+         */
+        public List<Transaction> getNewTransactions() {
+            return newTransactions;
+        }
+    }
+
+    private final TransactionRepository transactionRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final boolean copyRequested;
+
+    private final PostgresUpsert upsert = new PostgresUpsert("transactions", COLUMNS, TYPES, "transaction_id",
+            UPDATE_COLUMNS, UPDATE_EXTRA_SET, "transaction_id");
+
+    private volatile Boolean postgres;
+
+    public TransactionBulkWriter(TransactionRepository transactionRepository,
+                                 JdbcTemplate jdbcTemplate,
+                                 @Value("${fraud.batch.persist-mode:jpa}") String persistMode) {
+        this.transactionRepository = transactionRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.copyRequested = "copy".equalsIgnoreCase(persistMode);
+    }
+
+    /**
+     * Найти новые транзакции пачки (в текущей транзакции БД).
+     * Повторы transaction_id внутри пачки схлопываются: остаётся последняя строка.
+     */
+    public PreparedChunk prepare(List<Transaction> transactions) {
+        Map<String, Transaction> unique = new LinkedHashMap<>();
+        for (Transaction transaction : transactions) {
+            unique.remove(transaction.getTransactionId());
+            unique.put(transaction.getTransactionId(), transaction);
+        }
+        List<Transaction> rows = new ArrayList<>(unique.values());
+        int duplicates = transactions.size() - rows.size();
+        if (rows.isEmpty()) {
+            return new PreparedChunk(rows, rows, Collections.emptyMap(), duplicates);
+        }
+
+        Set<String> existingIds;
+        Map<String, Transaction> existing;
+        if (isPostgres()) {
+            existingIds = new HashSet<>(transactionRepository.findExistingTransactionIds(unique.keySet()));
+            existing = Collections.emptyMap();
+        } else {
+            existing = new HashMap<>();
+            for (Transaction transaction : transactionRepository.findByTransactionIdIn(unique.keySet())) {
+                existing.put(transaction.getTransactionId(), transaction);
+            }
+            existingIds = existing.keySet();
+        }
+
+        List<Transaction> newTransactions = new ArrayList<>(rows.size() - existingIds.size());
+        for (Transaction transaction : rows) {
+            if (!existingIds.contains(transaction.getTransactionId())) {
+                newTransactions.add(transaction);
+            }
+        }
+        return new PreparedChunk(rows, newTransactions, existing, duplicates);
+    }
+
+    /**
+     * Записать подготовленную пачку (в той же транзакции БД, что и prepare)
+     */
+    public UpsertResult upsert(PreparedChunk chunk) {
+        if (chunk.rows.isEmpty()) {
+            return new UpsertResult(0, 0, chunk.duplicates);
+        }
+        UpsertResult result = isPostgres() ? upsertPostgres(chunk) : upsertEntities(chunk);
+        result.setSkipped(result.getSkipped() + chunk.duplicates);
+        return result;
+    }
+
+    private UpsertResult upsertPostgres(PreparedChunk chunk) {
+        List<Transaction> rows = chunk.rows;
+        List<Long> ids = PostgresUpsert.allocateIds(jdbcTemplate, Transaction.ID_SEQUENCE,
+                Transaction.ID_ALLOCATION_SIZE, rows.size());
+        LocalDateTime now = LocalDateTime.now();
+        for (int i = 0; i < rows.size(); i++) {
+            rows.get(i).setId(ids.get(i));
+            rows.get(i).setCreatedAt(now);
+        }
+
+        List<PostgresUpsert.Row> written = copyRequested ? copyUpsert(rows) : upsert.execute(jdbcTemplate, values(rows));
+
+        Set<String> inserted = new HashSet<>();
+        for (PostgresUpsert.Row row : written) {
+            if (row.inserted()) {
+                inserted.add(row.key());
+            }
+        }
+        // Транзакцию из пачки успела вставить другая загрузка - пачка перечитывается построчно
+        if (inserted.size() != chunk.newTransactions.size()) {
+            throw new RuntimeException("Транзакции пачки параллельно загружены другим батчем");
+        }
+        for (Transaction transaction : rows) {
+            if (!inserted.contains(transaction.getTransactionId())) {
+                transaction.setId(null);
+            }
+        }
+
+        int updated = written.size() - inserted.size();
+        return new UpsertResult(inserted.size(), updated, rows.size() - written.size());
+    }
+
+    private UpsertResult upsertEntities(PreparedChunk chunk) {
+        int updated = 0;
+        int skipped = 0;
+        for (Transaction row : chunk.rows) {
+            Transaction current = chunk.existing.get(row.getTransactionId());
+            if (current == null) {
+                continue;
+            }
+            if (changed(current, row)) {
+                current.setTransactionDateTime(row.getTransactionDateTime());
+                current.setAmount(row.getAmount());
+                current.setRecipientId(row.getRecipientId());
+                current.setIsFraud(row.getIsFraud());
+                current.setStatus(TransactionStatus.PENDING);
+                current.setBatchId(row.getBatchId());
+                updated++;
+            } else {
+                skipped++;
+            }
+        }
+        transactionRepository.saveAll(chunk.newTransactions);
+        return new UpsertResult(chunk.newTransactions.size(), updated, skipped);
+    }
+
+    private static boolean changed(Transaction current, Transaction row) {
+        boolean sameAmount = current.getAmount() == null || row.getAmount() == null
+                ? Objects.equals(current.getAmount(), row.getAmount())
+                : current.getAmount().compareTo(row.getAmount()) == 0;
+        return !sameAmount
+                || !Objects.equals(current.getTransactionDateTime(), row.getTransactionDateTime())
+                || !Objects.equals(current.getRecipientId(), row.getRecipientId())
+                || !Objects.equals(current.getIsFraud(), row.getIsFraud());
+    }
+
+    private static List<Object[]> values(List<Transaction> rows) {
+        List<Object[]> values = new ArrayList<>(rows.size());
+        for (Transaction t : rows) {
+            values.add(new Object[]{t.getId(), t.getTransactionId(), t.getCustomerId(), t.getTransactionDateTime(),
+                    t.getAmount(), t.getRecipientId(), t.getIsFraud(), t.getStatus(), t.getBatchId(), t.getCreatedAt()});
+        }
+        return values;
+    }
+
+    private List<PostgresUpsert.Row> copyUpsert(List<Transaction> rows) {
+        StringBuilder data = new StringBuilder(rows.size() * 128);
+        for (Transaction transaction : rows) {
+            data.append(transaction.getId()).append(',');
+            appendCsv(data, transaction.getTransactionId()).append(',');
+            appendCsv(data, transaction.getCustomerId()).append(',');
+            data.append(Timestamp.valueOf(transaction.getTransactionDateTime())).append(',');
+            data.append(transaction.getAmount().toPlainString()).append(',');
+            appendCsv(data, transaction.getRecipientId()).append(',');
+            data.append(transaction.getIsFraud()).append(',');
+            data.append(transaction.getStatus().name()).append(',');
+            if (transaction.getBatchId() != null) {
+                data.append(transaction.getBatchId());
+            }
+            data.append(',').append(Timestamp.valueOf(transaction.getCreatedAt())).append('\n');
+        }
+
+        // Временная таблица живёт в соединении, строки очищаются при commit/rollback
+        jdbcTemplate.execute(STAGE_SQL);
+        jdbcTemplate.execute((ConnectionCallback<Long>) connection -> {
+            try {
+                return new CopyManager(connection.unwrap(BaseConnection.class))
+                        .copyIn(COPY_SQL, new StringReader(data.toString()));
+            } catch (IOException e) {
+                throw new RuntimeException("Ошибка COPY транзакций: " + e.getMessage(), e);
+            }
+        });
+        return upsert.executeFrom(jdbcTemplate, STAGE_TABLE);
+    }
+
+    private boolean isPostgres() {
+        if (postgres == null) {
+            postgres = PostgresUpsert.isPostgres(jdbcTemplate);
+            if (copyRequested && !postgres) {
+                log.warn("fraud.batch.persist-mode=copy поддерживается только для PostgreSQL, используется jpa");
+            }
+        }
+        return postgres;
+    }
+
+    private static StringBuilder appendCsv(StringBuilder out, String value) {
+        if (value == null) {
+            return out;
+        }
+        // Пустая строка в кавычках - пустая строка, без кавычек - NULL
+        if (value.isEmpty() || value.indexOf(',') >= 0 || value.indexOf('"') >= 0
+                || value.indexOf('\n') >= 0 || value.indexOf('\r') >= 0) {
+            return out.append('"').append(value.replace("\"", "\"\"")).append('"');
+        }
+        return out.append(value);
+    }
+}
@@ -0,0 +1,683 @@
+package com.fortebank.fraud.batch.service;
+
+import com.fortebank.fraud.batch.dto.PipelineStageStats;
+import com.fortebank.fraud.batch.dto.PipelineStats;
+import com.fortebank.fraud.batch.dto.UpsertResult;
+import com.fortebank.fraud.batch.entity.BatchJob;
+import com.fortebank.fraud.customer.service.CustomerProfileService;
+import com.fortebank.fraud.customer.service.RecipientIndexService;
+import com.fortebank.fraud.customer.service.VelocityCounterService;
+import com.fortebank.fraud.transaction.entity.Transaction;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import jakarta.persistence.EntityManager;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ * Конвейер загрузки файла транзакций. Стадии связаны ограниченными очередями пачек:
+ * разбор файла идёт параллельно с записью в БД, а при медленной записи чтение файла
+ * ждёт места в очереди, и память не растёт.
+ *
+ * - parse (поток задачи загрузки) - чтение строк файла, пачки по chunkSize;
+ * - transform (1 поток) - строки в транзакции, проверка обязательных полей, batchId,
+ *   распределение пачки по писателям по клиенту;
+ * - write (fraud.batch.writer-threads потоков) - индекс получателей, upsert пачки
+ *   (TransactionBulkWriter), профили и счётчики частоты; каждая пачка - в своей транзакции БД.
+ *
+ * Транзакции клиента попадают к одному писателю в исходном порядке, поэтому обновления
+ * профиля (чтение-изменение-запись) и индекса получателей не конкурируют между потоками.
+ *
+ * Когда все пачки файла до некоторой строки зафиксированы, она сохраняется в
+ * BatchJob.checkpointRow; после сбоя загрузка продолжается со следующей строки.
+ * Если пачка не записалась целиком, она повторяется по одной транзакции - ошибочная
+ * строка учитывается как failed и не останавливает загрузку.
+ *
+ * Запись идемпотентна: уже загруженные транзакции (повторная загрузка файла, строки после
+ * контрольной точки, зафиксированные до сбоя) обновляются или пропускаются, а производные
+ * данные (индекс получателей, профили, счётчики) учитывают только новые транзакции.
+ *
+ * Статистика стадий - getStats(batchId): стадия с наибольшей загрузкой - узкое место.
+ */
+@Service
+@Slf4j
+public class TransactionIngestPipeline {
+
+    private static final long POLL_MILLIS = 100;
+
+    // Конец потока пачек
+    private static final RowChunk END_OF_ROWS = new RowChunk(-1, -1, List.of());
+    private static final WriteChunk END_OF_WRITES = new WriteChunk(-1, List.of());
+
+    private final BatchFileReader fileReader;
+    private final ExcelParserService excelParser;
+    private final RecipientIndexService recipientIndexService;
+    private final TransactionBulkWriter transactionWriter;
+    private final CustomerProfileService customerProfileService;
+    private final VelocityCounterService velocityCounterService;
+    private final BatchJobProgressService progressService;
+    private final TransactionTemplate transactionTemplate;
+    private final EntityManager entityManager;
+    private final ExecutorService executor;
+    private final int chunkSize;
+    private final int writerThreads;
+    private final int queueCapacity;
+
+    // Статистика текущих и последних завершённых загрузок
+    private final Cache<Long, Run> runs = CacheBuilder.newBuilder().maximumSize(100).build();
+
+    public TransactionIngestPipeline(BatchFileReader fileReader,
+                                     ExcelParserService excelParser,
+                                     RecipientIndexService recipientIndexService,
+                                     TransactionBulkWriter transactionWriter,
+                                     CustomerProfileService customerProfileService,
+                                     VelocityCounterService velocityCounterService,
+                                     BatchJobProgressService progressService,
+                                     TransactionTemplate transactionTemplate,
+                                     EntityManager entityManager,
+                                     @Qualifier("batchPipelineExecutor") ExecutorService executor,
+                                     @Value("${fraud.batch.chunk-size:500}") int chunkSize,
+                                     @Value("${fraud.batch.writer-threads:2}") int writerThreads,
+                                     @Value("${fraud.batch.pipeline-queue-chunks:4}") int queueCapacity) {
+        this.fileReader = fileReader;
+        this.excelParser = excelParser;
+        this.recipientIndexService = recipientIndexService;
+        this.transactionWriter = transactionWriter;
+        this.customerProfileService = customerProfileService;
+        this.velocityCounterService = velocityCounterService;
+        this.progressService = progressService;
+        this.transactionTemplate = transactionTemplate;
+        this.entityManager = entityManager;
+        this.executor = executor;
+        this.chunkSize = chunkSize;
+        this.writerThreads = Math.max(1, writerThreads);
+        this.queueCapacity = queueCapacity;
+    }
+
+    /**
+     * Загрузить сохранённый файл батча (.xlsx, .csv или .csv.gz), начиная со строки после
+     * контрольной точки BatchJob. Возвращает итоговую статистику; при ошибке любой стадии
+     * остальные останавливаются, зафиксированные пачки и контрольная точка остаются в БД.
+     */
+    public PipelineStats ingest(BatchJob batchJob) {
+        Run run = new Run(batchJob);
+        runs.put(run.batchId, run);
+        if (run.startRow > 0) {
+            log.info("Загрузка батча {} продолжается со строки {}", run.batchId, run.startRow + 1);
+        }
+
+        List<Future<?>> stages = new ArrayList<>();
+        stages.add(executor.submit(() -> runStage(run, () -> transform(run))));
+        for (BlockingQueue<WriteChunk> queue : run.writerQueues) {
+            stages.add(executor.submit(() -> runStage(run, () -> write(run, queue))));
+        }
+
+        runStage(run, () -> parse(run, Paths.get(batchJob.getStoredPath())));
+
+        for (Future<?> stage : stages) {
+            try {
+                stage.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                run.fail(e);
+            } catch (ExecutionException e) {
+                run.fail(e.getCause());
+            }
+        }
+        run.end = System.nanoTime();
+
+        PipelineStats stats = run.snapshot();
+        Throwable failure = run.failure.get();
+        if (failure != null) {
+            throw new RuntimeException("Ошибка обработки файла: " + failure.getMessage(), failure);
+        }
+
+        log.info("Конвейер загрузки батча {}: {} строк за {} мс ({} строк/с), узкое место - {}",
+                 run.batchId, stats.getRows() - run.startRow, stats.getElapsedMillis(),
+                 String.format("%.0f", stats.getRowsPerSecond()), stats.getBottleneck());
+        for (PipelineStageStats stage : stats.getStages()) {
+            log.info("  {}: загрузка {}%, входная очередь до {}/{}", stage.getStage(),
+                     String.format("%.0f", stage.getUtilization() * 100),
+                     stage.getMaxQueueDepth() != null ? stage.getMaxQueueDepth() : 0,
+                     stage.getQueueCapacity() != null ? stage.getQueueCapacity() : 0);
+        }
+        return stats;
+    }
+
+    /**
+     * Статистика стадий загрузки (в процессе или недавно завершённой)
+     */
+    public PipelineStats getStats(Long batchId) {
+        Run run = runs.getIfPresent(batchId);
+        if (run == null) {
+            throw new RuntimeException("Статистика загрузки не найдена для батча: " + batchId);
+        }
+        return run.snapshot();
+    }
+
+    private void runStage(Run run, StageBody body) {
+        try {
+            body.run();
+        } catch (CancellationException e) {
+            // Другая стадия уже завершилась ошибкой
+        } catch (Exception e) {
+            log.error("Ошибка конвейера загрузки батча {}: {}", run.batchId, e.getMessage(), e);
+            run.fail(e);
+        }
+    }
+
+    private void parse(Run run, Path file) throws Exception {
+        RowChunker chunker = new RowChunker(run);
+        fileReader.read(file, chunker);
+        chunker.flush();
+        run.put(run.rowQueue, END_OF_ROWS, null, run.transform);
+    }
+
+    private void transform(Run run) {
+        RowChunk rows;
+        while ((rows = run.take(run.rowQueue)) != END_OF_ROWS) {
+            long start = System.nanoTime();
+
+            List<List<Transaction>> parts = new ArrayList<>(writerThreads);
+            for (int i = 0; i < writerThreads; i++) {
+                parts.add(new ArrayList<>());
+            }
+            int invalid = 0;
+            for (SheetRow row : rows.rows()) {
+                Transaction transaction = toTransaction(row);
+                if (transaction == null) {
+                    invalid++;
+                    continue;
+                }
+                transaction.setBatchId(run.batchId);
+                parts.get(Math.floorMod(transaction.getCustomerId().hashCode(), writerThreads)).add(transaction);
+            }
+
+            // Пачка файла завершена, когда записаны все её части
+            int pending = (int) parts.stream().filter(part -> !part.isEmpty()).count();
+            run.invalid.addAndGet(invalid);
+            run.register(rows.seq(), rows.endRow(), pending, invalid);
+            for (int i = 0; i < writerThreads; i++) {
+                if (!parts.get(i).isEmpty()) {
+                    run.put(run.writerQueues.get(i), new WriteChunk(rows.seq(), parts.get(i)),
+                            run.transform, run.write);
+                }
+            }
+
+            run.transform.rows.addAndGet(rows.rows().size());
+            run.transform.workNanos.addAndGet(System.nanoTime() - start);
+        }
+
+        for (BlockingQueue<WriteChunk> queue : run.writerQueues) {
+            run.put(queue, END_OF_WRITES, null, run.write);
+        }
+    }
+
+    private Transaction toTransaction(SheetRow row) {
+        Transaction transaction;
+        try {
+            transaction = excelParser.parseRow(row);
+        } catch (Exception e) {
+            log.warn("Ошибка парсинга строки {}: {}", row.getRowNumber(), e.getMessage());
+            return null;
+        }
+        if (transaction == null) {
+            return null;
+        }
+        if (transaction.getTransactionId() == null || transaction.getAmount() == null
+                || transaction.getRecipientId() == null) {
+            log.warn("Строка {} пропущена: не заполнены docno, amount или direction", row.getRowNumber());
+            return null;
+        }
+        return transaction;
+    }
+
+    private void write(Run run, BlockingQueue<WriteChunk> queue) {
+        WriteChunk chunk;
+        while ((chunk = run.take(queue)) != END_OF_WRITES) {
+            long start = System.nanoTime();
+            List<Transaction> transactions = chunk.transactions();
+
+            UpsertResult result;
+            int failed;
+            try {
+                result = writeChunk(transactions);
+                failed = 0;
+            } catch (Exception e) {
+                log.warn("Пачка батча {} не записана ({}), запись по одной транзакции",
+                         run.batchId, e.getMessage());
+                result = new UpsertResult(0, 0, 0);
+                failed = writeOneByOne(transactions, result);
+            }
+
+            run.processed.addAndGet(transactions.size() - failed);
+            run.failed.addAndGet(failed);
+            run.inserted.addAndGet(result.getInserted());
+            run.updated.addAndGet(result.getUpdated());
+            run.skipped.addAndGet(result.getSkipped());
+            run.chunkWritten(chunk.seq(), transactions.size() - failed, failed, result);
+            run.write.rows.addAndGet(transactions.size());
+            run.write.chunks.incrementAndGet();
+            run.write.workNanos.addAndGet(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Записать пачку и обновить производные данные в одной транзакции БД
+     */
+    private UpsertResult writeChunk(List<Transaction> transactions) {
+        return transactionTemplate.execute(status -> {
+            TransactionBulkWriter.PreparedChunk prepared = transactionWriter.prepare(transactions);
+            List<Transaction> newTransactions = prepared.getNewTransactions();
+
+            // Индекс получателей и профили - до записи пачки: отсутствующий профиль собирается
+            // из истории без транзакций этой пачки. Учитываются только новые транзакции,
+            // повторная загрузка их не удваивает
+            boolean[] newRecipients = recipientIndexService.recordTransactions(newTransactions);
+            for (int i = 0; i < newTransactions.size(); i++) {
+                customerProfileService.recordTransaction(newTransactions.get(i), newRecipients[i]);
+            }
+
+            UpsertResult result = transactionWriter.upsert(prepared);
+            for (Transaction transaction : newTransactions) {
+                velocityCounterService.recordTransaction(transaction);
+            }
+
+            entityManager.flush();
+            entityManager.clear();
+            return result;
+        });
+    }
+
+    /**
+     * Повтор неудавшейся пачки по одной транзакции в отдельных транзакциях БД
+     * (индекс получателей и счётчики откаченной пачки уже сброшены через RollbackTracker)
+     *
+     * @param result сюда добавляется итог записанных транзакций
+     * @return число незаписанных транзакций
+     */
+    private int writeOneByOne(List<Transaction> transactions, UpsertResult result) {
+        int failed = 0;
+        for (Transaction transaction : transactions) {
+            // id, выданный в откаченной транзакции, не используется
+            transaction.setId(null);
+            try {
+                UpsertResult written = writeChunk(List.of(transaction));
+                result.setInserted(result.getInserted() + written.getInserted());
+                result.setUpdated(result.getUpdated() + written.getUpdated());
+                result.setSkipped(result.getSkipped() + written.getSkipped());
+            } catch (Exception e) {
+                log.error("Ошибка сохранения транзакции {}: {}",
+                         transaction.getTransactionId(), e.getMessage());
+                failed++;
+            }
+        }
+        return failed;
+    }
+
+    /**
+     * Пачка строк файла: seq - номер пачки в этой загрузке, endRow - строк данных от начала файла
+     * по последнюю строку пачки включительно
+     */
+    private record RowChunk(int seq, int endRow, List<SheetRow> rows) {
+    }
+
+    /**
+     * Часть пачки файла для одного писателя
+     */
+    private record WriteChunk(int seq, List<Transaction> transactions) {
+    }
+
+    /**
+     * Контрольная точка для записи в BatchJob
+     */
+    private record Checkpoint(int row, int processed, int failed, UpsertResult written) {
+    }
+
+    /**
+     * Стадия parse: строки файла (без заголовка и уже загруженных до контрольной точки) -> пачки по chunkSize
+     */
+    private final class RowChunker implements Consumer<SheetRow> {
+        private final Run run;
+        private List<SheetRow> chunk = new ArrayList<>(chunkSize);
+        private boolean headerSkipped;
+        private int dataRows;
+        private int seq;
+        private long chunkStart = System.nanoTime();
+
+        private RowChunker(Run run) {
+            this.run = run;
+        }
+
+        @Override
+        public void accept(SheetRow row) {
+            if (!headerSkipped) {
+                headerSkipped = true;
+                return;
+            }
+            if (++dataRows <= run.startRow) {
+                return;
+            }
+            chunk.add(row);
+            run.parse.rows.incrementAndGet();
+            if (chunk.size() >= chunkSize) {
+                flush();
+            }
+        }
+
+        private void flush() {
+            if (!chunk.isEmpty()) {
+                run.put(run.rowQueue, new RowChunk(seq++, dataRows, chunk), run.parse, run.transform);
+                chunk = new ArrayList<>(chunkSize);
+            }
+            long now = System.nanoTime();
+            run.parse.workNanos.addAndGet(now - chunkStart);
+            chunkStart = now;
+        }
+    }
+
+    @FunctionalInterface
+    private interface StageBody {
+        void run() throws Exception;
+    }
+
+    /**
+     * Счётчики стадии. Время работы - без ожидания места в следующей очереди
+     */
+    private static final class Stage {
+        private final String name;
+        private final int threads;
+        private final List<? extends BlockingQueue<?>> input;
+        private final int capacity;
+        private final AtomicLong chunks = new AtomicLong();
+        private final AtomicLong rows = new AtomicLong();
+        private final AtomicLong workNanos = new AtomicLong();
+        private final AtomicLong blockedNanos = new AtomicLong();
+        private final AtomicInteger maxQueueDepth = new AtomicInteger();
+
+        private Stage(String name, int threads, List<? extends BlockingQueue<?>> input, int capacity) {
+            this.name = name;
+            this.threads = threads;
+            this.input = input;
+            this.capacity = capacity;
+        }
+
+        private int queueDepth() {
+            int depth = 0;
+            for (BlockingQueue<?> queue : input) {
+                depth += queue.size();
+            }
+            return depth;
+        }
+
+        private PipelineStageStats snapshot(long elapsedNanos) {
+            long busyNanos = Math.max(0, workNanos.get() - blockedNanos.get());
+            double elapsedSeconds = Math.max(1, elapsedNanos) / 1e9;
+            return PipelineStageStats.builder()
+                    .stage(name)
+                    .threads(threads)
+                    .chunks(chunks.get())
+                    .rows(rows.get())
+                    .busyMillis(busyNanos / 1_000_000)
+                    .utilization(Math.min(1.0, busyNanos / 1e9 / (elapsedSeconds * threads)))
+                    .rowsPerSecond(rows.get() / elapsedSeconds)
+                    .queueDepth(input.isEmpty() ? null : queueDepth())
+                    .maxQueueDepth(input.isEmpty() ? null : maxQueueDepth.get())
+                    .queueCapacity(input.isEmpty() ? null : capacity)
+                    .build();
+        }
+    }
+
+    /**
+     * Пачка файла в работе: сколько её частей ещё пишется и итог по записанным
+     */
+    private static final class ChunkState {
+        private final int endRow;
+        private int pending;
+        private int processed;
+        private int failed;
+        private int inserted;
+        private int updated;
+        private int skipped;
+
+        private ChunkState(int endRow, int pending, int failed) {
+            this.endRow = endRow;
+            this.pending = pending;
+            this.failed = failed;
+        }
+    }
+
+    /**
+     * Одна загрузка: очереди, счётчики стадий, контрольная точка, первая ошибка
+     */
+    private final class Run {
+        private final Long batchId;
+        private final String filename;
+        private final int startRow;
+        private final int startProcessed;
+        private final int startFailed;
+        private final int startInserted;
+        private final int startUpdated;
+        private final int startSkipped;
+        private final long start = System.nanoTime();
+        private volatile long end;
+
+        private final BlockingQueue<RowChunk> rowQueue = new ArrayBlockingQueue<>(queueCapacity);
+        private final List<BlockingQueue<WriteChunk>> writerQueues = new ArrayList<>();
+
+        private final Stage parse;
+        private final Stage transform;
+        private final Stage write;
+
+        private final AtomicInteger invalid = new AtomicInteger();
+        private final AtomicInteger processed = new AtomicInteger();
+        private final AtomicInteger failed = new AtomicInteger();
+        private final AtomicInteger inserted = new AtomicInteger();
+        private final AtomicInteger updated = new AtomicInteger();
+        private final AtomicInteger skipped = new AtomicInteger();
+        private final AtomicReference<Throwable> failure = new AtomicReference<>();
+
+        // Контрольная точка: все пачки до nextSeq записаны (под блокировкой checkpointLock)
+        private final Object checkpointLock = new Object();
+        private final Map<Integer, ChunkState> inFlight = new HashMap<>();
+        private int nextSeq;
+        private int checkpointRow;
+        private int checkpointProcessed;
+        private int checkpointFailed;
+        private int checkpointInserted;
+        private int checkpointUpdated;
+        private int checkpointSkipped;
+
+        // Последняя ещё не записанная точка; пишет в БД один поток за раз, вне checkpointLock
+        private final AtomicReference<Checkpoint> pendingCheckpoint = new AtomicReference<>();
+        private final ReentrantLock checkpointWriteLock = new ReentrantLock();
+
+        private Run(BatchJob batchJob) {
+            this.batchId = batchJob.getId();
+            this.filename = batchJob.getFilename();
+            this.startRow = batchJob.getCheckpointRow() != null ? batchJob.getCheckpointRow() : 0;
+            this.startProcessed = startRow > 0 ? batchJob.getProcessedRecords() : 0;
+            this.startFailed = startRow > 0 ? batchJob.getFailedRecords() : 0;
+            this.startInserted = startRow > 0 ? batchJob.getInsertedRecords() : 0;
+            this.startUpdated = startRow > 0 ? batchJob.getUpdatedRecords() : 0;
+            this.startSkipped = startRow > 0 ? batchJob.getSkippedRecords() : 0;
+            this.checkpointRow = startRow;
+            this.checkpointProcessed = startProcessed;
+            this.checkpointFailed = startFailed;
+            this.checkpointInserted = startInserted;
+            this.checkpointUpdated = startUpdated;
+            this.checkpointSkipped = startSkipped;
+
+            for (int i = 0; i < writerThreads; i++) {
+                writerQueues.add(new ArrayBlockingQueue<>(queueCapacity));
+            }
+            this.parse = new Stage("parse", 1, List.of(), 0);
+            this.transform = new Stage("transform", 1, List.of(rowQueue), queueCapacity);
+            this.write = new Stage("write", writerThreads, writerQueues, queueCapacity * writerThreads);
+        }
+
+        /**
+         * Положить пачку в очередь следующей стадии (ждёт места, пока нет ошибки)
+         */
+        private <T> void put(BlockingQueue<T> queue, T chunk, Stage from, Stage to) {
+            long start = System.nanoTime();
+            try {
+                while (!queue.offer(chunk, POLL_MILLIS, TimeUnit.MILLISECONDS)) {
+                    checkFailure();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new CancellationException("Загрузка прервана");
+            }
+            if (from != null) {
+                from.blockedNanos.addAndGet(System.nanoTime() - start);
+                from.chunks.incrementAndGet();
+            }
+            to.maxQueueDepth.accumulateAndGet(to.queueDepth(), Math::max);
+        }
+
+        private <T> T take(BlockingQueue<T> queue) {
+            try {
+                T chunk;
+                while ((chunk = queue.poll(POLL_MILLIS, TimeUnit.MILLISECONDS)) == null) {
+                    checkFailure();
+                }
+                return chunk;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new CancellationException("Загрузка прервана");
+            }
+        }
+
+        private void checkFailure() {
+            if (failure.get() != null) {
+                throw new CancellationException("Загрузка остановлена из-за ошибки");
+            }
+        }
+
+        private void fail(Throwable e) {
+            failure.compareAndSet(null, e);
+        }
+
+        /**
+         * Пачка файла передана писателям в pending частях (invalid строк отброшено)
+         */
+        private void register(int seq, int endRow, int pending, int invalid) {
+            synchronized (checkpointLock) {
+                inFlight.put(seq, new ChunkState(endRow, pending, invalid));
+                advanceCheckpoint();
+            }
+            writeCheckpoint();
+        }
+
+        /**
+         * Часть пачки файла зафиксирована в БД
+         */
+        private void chunkWritten(int seq, int processed, int failed, UpsertResult result) {
+            synchronized (checkpointLock) {
+                ChunkState state = inFlight.get(seq);
+                state.processed += processed;
+                state.failed += failed;
+                state.inserted += result.getInserted();
+                state.updated += result.getUpdated();
+                state.skipped += result.getSkipped();
+                state.pending--;
+                advanceCheckpoint();
+            }
+            writeCheckpoint();
+        }
+
+        private void advanceCheckpoint() {
+            ChunkState state;
+            boolean advanced = false;
+            while ((state = inFlight.get(nextSeq)) != null && state.pending == 0) {
+                inFlight.remove(nextSeq++);
+                checkpointRow = state.endRow;
+                checkpointProcessed += state.processed;
+                checkpointFailed += state.failed;
+                checkpointInserted += state.inserted;
+                checkpointUpdated += state.updated;
+                checkpointSkipped += state.skipped;
+                advanced = true;
+            }
+            if (advanced) {
+                pendingCheckpoint.set(new Checkpoint(checkpointRow, checkpointProcessed, checkpointFailed,
+                        new UpsertResult(checkpointInserted, checkpointUpdated, checkpointSkipped)));
+            }
+        }
+
+        /**
+         * Записать последнюю контрольную точку. Если пишет другой поток, он после своей
+         * записи заберёт и эту; промежуточные точки между записями пропускаются.
+         */
+        private void writeCheckpoint() {
+            while (pendingCheckpoint.get() != null && checkpointWriteLock.tryLock()) {
+                try {
+                    Checkpoint checkpoint = pendingCheckpoint.getAndSet(null);
+                    if (checkpoint != null) {
+                        progressService.checkpoint(batchId, checkpoint.row(), checkpoint.processed(),
+                                checkpoint.failed(), checkpoint.written());
+                    }
+                } finally {
+                    checkpointWriteLock.unlock();
+                }
+            }
+        }
+
+        private PipelineStats snapshot() {
+            long elapsedNanos = (end != 0 ? end : System.nanoTime()) - start;
+            List<PipelineStageStats> stages = List.of(
+                    parse.snapshot(elapsedNanos),
+                    transform.snapshot(elapsedNanos),
+                    write.snapshot(elapsedNanos));
+
+            PipelineStageStats bottleneck = stages.get(0);
+            for (PipelineStageStats stage : stages) {
+                if (stage.getUtilization() > bottleneck.getUtilization()) {
+                    bottleneck = stage;
+                }
+            }
+
+            double elapsedSeconds = Math.max(1, elapsedNanos) / 1e9;
+            return PipelineStats.builder()
+                    .batchId(batchId)
+                    .filename(filename)
+                    .running(end == 0)
+                    .resumedFromRow(startRow)
+                    .rows(startRow + (int) parse.rows.get())
+                    .invalid(invalid.get())
+                    .processed(startProcessed + processed.get())
+                    .inserted(startInserted + inserted.get())
+                    .updated(startUpdated + updated.get())
+                    .skipped(startSkipped + skipped.get())
+                    .failed(startFailed + failed.get() + invalid.get())
+                    .elapsedMillis(elapsedNanos / 1_000_000)
+                    .rowsPerSecond(parse.rows.get() / elapsedSeconds)
+                    .bottleneck(bottleneck.getStage())
+                    .stages(stages)
+                    .build();
+        }
+    }
+}
@@ -0,0 +1,183 @@
+package com.fortebank.fraud.batch.service;
+
+import org.apache.poi.openxml4j.exceptions.OpenXML4JException;
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.openxml4j.opc.PackageAccess;
+import org.apache.poi.ss.usermodel.DateUtil;
+import org.apache.poi.ss.util.CellReference;
+import org.apache.poi.util.XMLHelper;
+import org.apache.poi.xssf.eventusermodel.XSSFReader;
+import org.apache.poi.xssf.model.StylesTable;
+import org.apache.poi.xssf.usermodel.XSSFCellStyle;
+import org.springframework.stereotype.Service;
+import org.xml.sax.Attributes;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.XMLReader;
+import org.xml.sax.helpers.DefaultHandler;
+
+import javax.xml.parsers.ParserConfigurationException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Потоковое чтение первого листа .xlsx (SAX по XML листа) без построения модели книги.
+ *
+ * Файл читается с диска (OPCPackage не буферизует zip целиком), общая таблица строк
+ * переписывается во временный файл (DiskSharedStrings). В памяти - только текущая
+ * строка листа, поэтому объём памяти не зависит от числа строк.
+ */
+@Service
+public class XlsxStreamReader {
+
+    /**
+     * Прочитать строки первого листа (включая заголовок) и передать их по одной в rowConsumer
+     *
+     * @return число прочитанных строк
+     */
+    public int read(File file, Consumer<SheetRow> rowConsumer) throws IOException {
+        try (OPCPackage pkg = OPCPackage.open(file, PackageAccess.READ);
+             DiskSharedStrings strings = new DiskSharedStrings(pkg)) {
+            XSSFReader reader = new XSSFReader(pkg);
+            SheetHandler handler = new SheetHandler(strings, reader.getStylesTable(), rowConsumer);
+
+            Iterator<InputStream> sheets = reader.getSheetsData();
+            if (!sheets.hasNext()) {
+                throw new IOException("Файл не содержит листов");
+            }
+            try (InputStream sheet = sheets.next()) {
+                XMLReader parser = XMLHelper.newXMLReader();
+                parser.setContentHandler(handler);
+                parser.parse(new InputSource(sheet));
+            }
+            return handler.rows;
+        } catch (OpenXML4JException | SAXException | ParserConfigurationException e) {
+            throw new IOException("Ошибка чтения xlsx: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Разбор XML листа: &lt;row&gt; &lt;c r="B2" t="s" s="1"&gt;&lt;v&gt;...&lt;/v&gt;&lt;/c&gt; ... &lt;/row&gt;
+     */
+    private static final class SheetHandler extends DefaultHandler {
+
+        private final DiskSharedStrings strings;
+        private final StylesTable styles;
+        private final Consumer<SheetRow> rowConsumer;
+        private final Map<Integer, Boolean> dateStyles = new HashMap<>();
+
+        private final List<String> values = new ArrayList<>();
+        private final List<Boolean> numeric = new ArrayList<>();
+        private final List<Boolean> date = new ArrayList<>();
+        private final StringBuilder text = new StringBuilder();
+
+        private int rowNumber;
+        private int column;
+        private String cellType;
+        private int styleIndex;
+        private boolean inValue;
+        private int rows;
+
+        SheetHandler(DiskSharedStrings strings, StylesTable styles, Consumer<SheetRow> rowConsumer) {
+            this.strings = strings;
+            this.styles = styles;
+            this.rowConsumer = rowConsumer;
+        }
+
+        @Override
+        public void startElement(String uri, String localName, String qName, Attributes attributes) {
+            switch (localName) {
+                case "row" -> {
+                    String r = attributes.getValue("r");
+                    rowNumber = r != null ? Integer.parseInt(r) - 1 : rowNumber + 1;
+                    values.clear();
+                    numeric.clear();
+                    date.clear();
+                }
+                case "c" -> {
+                    String ref = attributes.getValue("r");
+                    column = ref != null ? new CellReference(ref).getCol() : values.size();
+                    cellType = attributes.getValue("t");
+                    String s = attributes.getValue("s");
+                    styleIndex = s != null ? Integer.parseInt(s) : 0;
+                    text.setLength(0);
+                }
+                // v - значение (или индекс общей строки), t внутри is - встроенная строка
+                case "v", "t" -> inValue = true;
+                default -> {
+                }
+            }
+        }
+
+        @Override
+        public void characters(char[] ch, int start, int length) {
+            if (inValue) {
+                text.append(ch, start, length);
+            }
+        }
+
+        @Override
+        public void endElement(String uri, String localName, String qName) {
+            switch (localName) {
+                case "v", "t" -> inValue = false;
+                case "c" -> endCell();
+                case "row" -> {
+                    rows++;
+                    int size = values.size();
+                    String[] rowValues = values.toArray(new String[size]);
+                    boolean[] rowNumeric = new boolean[size];
+                    boolean[] rowDate = new boolean[size];
+                    for (int i = 0; i < size; i++) {
+                        rowNumeric[i] = numeric.get(i);
+                        rowDate[i] = date.get(i);
+                    }
+                    rowConsumer.accept(new SheetRow(rowNumber, rowValues, rowNumeric, rowDate));
+                }
+                default -> {
+                }
+            }
+        }
+
+        private void endCell() {
+            String value = text.toString();
+            boolean isNumeric = false;
+            if (cellType == null || "n".equals(cellType)) {
+                isNumeric = !value.isEmpty();
+            } else if ("s".equals(cellType)) {
+                value = strings.get(Integer.parseInt(value));
+            } else if ("b".equals(cellType)) {
+                value = "1".equals(value) ? "true" : "false";
+            } else if ("e".equals(cellType)) {
+                value = "";
+            }
+            // inlineStr и str (результат формулы) - текст как есть
+
+            while (values.size() < column) {
+                values.add(null);
+                numeric.add(false);
+                date.add(false);
+            }
+            values.add(value.isEmpty() ? null : value);
+            numeric.add(isNumeric);
+            date.add(isNumeric && isDateStyle(styleIndex));
+        }
+
+        private boolean isDateStyle(int index) {
+            return dateStyles.computeIfAbsent(index, i -> {
+                if (styles == null || i >= styles.getNumCellStyles()) {
+                    return false;
+                }
+                XSSFCellStyle style = styles.getStyleAt(i);
+                return style != null
+                        && DateUtil.isADateFormat(style.getDataFormat(), style.getDataFormatString());
+            });
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package com.fortebank.fraud.common.money;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Денежные суммы в минорных единицах (тиынах) для горячего пути оценки:
+ * арифметика на long вместо BigDecimal.
+ */
+public final class MinorUnits {
+
+    public static final int SCALE = 2;
+
+    private MinorUnits() {
+    }
+
+    /**
+     * Сумма в минорных единицах (с округлением до тиына)
+     */
+    public static long of(BigDecimal amount) {
+        if (amount == null) {
+            return 0;
+        }
+        BigDecimal scaled = amount.scale() == SCALE ? amount : amount.setScale(SCALE, RoundingMode.HALF_UP);
+        return scaled.unscaledValue().longValueExact();
+    }
+
+    public static BigDecimal toBigDecimal(long minor) {
+        return BigDecimal.valueOf(minor, SCALE);
+    }
+
+    public static double toDouble(long minor) {
+        return minor / 100.0;
+    }
+
+    /**
+     * Деление с округлением HALF_UP (как BigDecimal.divide(..., HALF_UP))
+     */
+    public static long divideHalfUp(long dividend, long divisor) {
+        long quotient = dividend / divisor;
+        long remainder = dividend % divisor;
+        if (Math.abs(remainder) * 2 >= Math.abs(divisor)) {
+            quotient += Long.signum(dividend) * Long.signum(divisor);
+        }
+        return quotient;
+    }
+
+    /**
+     * Отношение сумм в сотых долях: 4.57 раза -> 457
+     */
+    public static long ratioHundredths(long amountMinor, long baseMinor) {
+        return divideHalfUp(Math.multiplyExact(amountMinor, 100L), baseMinor);
+    }
+}
@@ -0,0 +1,68 @@
+package com.fortebank.fraud.common.transaction;
+
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Собирает ключи, затронутые в текущей транзакции БД (с первым значением по ключу),
+ * и после её фиксации или отката передаёт их в обработчик. Нужен in-memory кэшам,
+ * которые могли прочитать БД до фиксации транзакции и не увидеть её строк.
+ * Вне транзакции обработчик вызывается сразу, как после фиксации.
+ */
+public final class CompletionTracker {
+
+    /**
+     * Обработчик завершения транзакции
+     */
+    @FunctionalInterface
+    public interface Handler<V> {
+        void afterCompletion(Map<String, V> touched, boolean committed);
+    }
+
+    private CompletionTracker() {
+    }
+
+    @SuppressWarnings("unchecked")
+    public static <V> void track(Object owner, String key, V value, Handler<V> handler) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            handler.afterCompletion(Collections.singletonMap(key, value), true);
+            return;
+        }
+
+        Map<String, V> touched = (Map<String, V>) TransactionSynchronizationManager.getResource(owner);
+        if (touched == null) {
+            Map<String, V> keys = new HashMap<>();
+            TransactionSynchronizationManager.bindResource(owner, keys);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    TransactionSynchronizationManager.unbindResourceIfPossible(owner);
+                    handler.afterCompletion(keys, status == STATUS_COMMITTED);
+                }
+            });
+            touched = keys;
+        }
+        if (!touched.containsKey(key)) {
+            touched.put(key, value);
+        }
+    }
+
+    /**
+     * Заменить значение ключа, уже затронутого текущей транзакцией
+     * (например, кэш загружен заново внутри неё и учитывает её изменения)
+     */
+    @SuppressWarnings("unchecked")
+    public static <V> void replaceIfTracked(Object owner, String key, V value) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return;
+        }
+        Map<String, V> touched = (Map<String, V>) TransactionSynchronizationManager.getResource(owner);
+        if (touched != null && touched.containsKey(key)) {
+            touched.put(key, value);
+        }
+    }
+}
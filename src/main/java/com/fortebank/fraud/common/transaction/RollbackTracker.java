@@ -0,0 +1,43 @@
+package com.fortebank.fraud.common.transaction;
+
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * Собирает ключи, затронутые в текущей транзакции БД, и при её откате
+ * передаёт их в обработчик (например, чтобы сбросить in-memory индексы).
+ * Синхронизация регистрируется один раз на транзакцию и владельца.
+ */
+public final class RollbackTracker {
+
+    private RollbackTracker() {
+    }
+
+    @SuppressWarnings("unchecked")
+    public static void track(Object owner, String key, Consumer<Set<String>> onRollback) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return;
+        }
+
+        Set<String> touched = (Set<String>) TransactionSynchronizationManager.getResource(owner);
+        if (touched == null) {
+            Set<String> keys = new HashSet<>();
+            TransactionSynchronizationManager.bindResource(owner, keys);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    TransactionSynchronizationManager.unbindResourceIfPossible(owner);
+                    if (status != STATUS_COMMITTED) {
+                        onRollback.accept(keys);
+                    }
+                }
+            });
+            touched = keys;
+        }
+        touched.add(key);
+    }
+}
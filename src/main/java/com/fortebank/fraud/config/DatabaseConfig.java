@@ -1,5 +1,8 @@
 package com.fortebank.fraud.config;
 
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.data.jpa.repository.config.EnableJpaAuditing;
 import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
@@ -12,6 +15,7 @@ import org.springframework.transaction.annotation.EnableTransactionManagement;
  * - JPA Repositories
  * - Transaction Management
  * - JPA Auditing (@CreatedDate, @LastModifiedDate)
+ * - Пакетные INSERT для PostgreSQL (reWriteBatchedInserts)
  * 
  * Таблицы будут созданы автоматически из Entity классов
  * (spring.jpa.hibernate.ddl-auto=create-drop)
@@ -24,4 +28,23 @@ public class DatabaseConfig {
     
     // Hibernate автоматически создаст таблицы из Entity классов
     // Не нужны миграции Flyway - всё просто!
+    
+    /**
+     * Драйвер PostgreSQL склеивает JDBC пакет INSERT в многострочные INSERT
+     * (пакетная загрузка транзакций); для других БД настройка не задаётся
+     */
+    @Bean
+    public static BeanPostProcessor postgresBatchInserts() {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessBeforeInitialization(Object bean, String beanName) {
+                if (bean instanceof HikariDataSource dataSource
+                        && dataSource.getJdbcUrl() != null
+                        && dataSource.getJdbcUrl().startsWith("jdbc:postgresql:")) {
+                    dataSource.addDataSourceProperty("reWriteBatchedInserts", "true");
+                }
+                return bean;
+            }
+        };
+    }
 }
\ No newline at end of file
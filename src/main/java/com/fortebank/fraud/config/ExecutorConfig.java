@@ -0,0 +1,99 @@
+package com.fortebank.fraud.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Пулы потоков для фоновой обработки
+ */
+@Configuration
+public class ExecutorConfig {
+
+    /**
+     * Пул для оценки транзакций батча (по умолчанию - по числу ядер)
+     */
+    @Bean(name = "scoringExecutor", destroyMethod = "shutdown")
+    public ExecutorService scoringExecutor(
+            @Value("${fraud.batch.scoring-threads:0}") int threads) {
+        int size = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        return Executors.newFixedThreadPool(size, namedThreads("batch-scoring-"));
+    }
+
+    /**
+     * Координаторы оценки батчей: ждут воркеров и пишут прогресс
+     */
+    @Bean(name = "batchCoordinatorExecutor", destroyMethod = "shutdown")
+    public ExecutorService batchCoordinatorExecutor() {
+        return Executors.newCachedThreadPool(namedThreads("batch-coordinator-"));
+    }
+
+    /**
+     * Пул для обучения ML модели (извлечение признаков и расчёт градиента)
+     */
+    @Bean(name = "mlExecutor", destroyMethod = "shutdown")
+    public ExecutorService mlExecutor(
+            @Value("${fraud.ml.training-threads:0}") int threads) {
+        int size = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        return Executors.newFixedThreadPool(size, namedThreads("ml-training-"));
+    }
+
+    /**
+     * Пул для запросов к LLM (объяснения и рекомендации).
+     * Очередь ограничена: при перегрузке задача отклоняется и используется фолбэк-текст.
+     */
+    @Bean(name = "aiExecutor", destroyMethod = "shutdown")
+    public ExecutorService aiExecutor(
+            @Value("${fraud.ai.threads:16}") int threads,
+            @Value("${fraud.ai.queue-capacity:64}") int queueCapacity) {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(
+                threads, threads,
+                60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                namedThreads("ai-"),
+                new ThreadPoolExecutor.AbortPolicy());
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    /**
+     * Воркеры загрузки файлов батчей (задачи ставит BatchIngestQueueService).
+     * Очередь ограничена: при переполнении загрузка отклоняется сразу, а не висит часами.
+     */
+    @Bean(name = "batchIngestExecutor", destroyMethod = "shutdown")
+    public ExecutorService batchIngestExecutor(
+            @Value("${fraud.batch.ingest-threads:2}") int threads,
+            @Value("${fraud.batch.ingest-queue-capacity:16}") int queueCapacity) {
+        return new ThreadPoolExecutor(
+                threads, threads,
+                0, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                namedThreads("batch-ingest-"),
+                new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    /**
+     * Стадии конвейера загрузки файла (transform и писатели в БД), см. TransactionIngestPipeline
+     */
+    @Bean(name = "batchPipelineExecutor", destroyMethod = "shutdown")
+    public ExecutorService batchPipelineExecutor() {
+        return Executors.newCachedThreadPool(namedThreads("batch-pipeline-"));
+    }
+
+    static ThreadFactory namedThreads(String prefix) {
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, prefix + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
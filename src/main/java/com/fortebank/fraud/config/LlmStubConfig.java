@@ -0,0 +1,29 @@
+package com.fortebank.fraud.config;
+
+import com.fortebank.fraud.ai.stub.LlmStubServer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Встроенная заглушка LLM для нагрузочных тестов (fraud.ai.stub.enabled=true).
+ * Приложение направляется на неё через openai.api.url=http://localhost:{fraud.ai.stub.port}
+ */
+@Configuration
+@ConditionalOnProperty(name = "fraud.ai.stub.enabled", havingValue = "true")
+public class LlmStubConfig {
+
+    @Bean(initMethod = "start", destroyMethod = "stop")
+    public LlmStubServer llmStubServer(
+            @Value("${fraud.ai.stub.port:8099}") int port,
+            @Value("${fraud.ai.stub.latency-ms:800}") long latencyMillis,
+            @Value("${fraud.ai.stub.latency-jitter-ms:400}") long jitterMillis,
+            @Value("${fraud.ai.stub.error-rate:0.0}") double errorRate,
+            @Value("${fraud.ai.stub.timeout-rate:0.0}") double timeoutRate,
+            @Value("${fraud.ai.stub.timeout-ms:60000}") long timeoutMillis,
+            @Value("${fraud.ai.stub.token-delay-ms:30}") long tokenDelayMillis) {
+        return new LlmStubServer(port, latencyMillis, jitterMillis,
+                errorRate, timeoutRate, timeoutMillis, tokenDelayMillis);
+    }
+}
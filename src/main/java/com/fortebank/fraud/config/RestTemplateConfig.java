@@ -1,24 +1,44 @@
 package com.fortebank.fraud.config;
 
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.apache.hc.client5.http.config.ConnectionConfig;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
+import org.apache.hc.core5.http.HeaderElement;
+import org.apache.hc.core5.http.message.MessageSupport;
+import org.apache.hc.core5.pool.PoolConcurrencyPolicy;
+import org.apache.hc.core5.pool.PoolReusePolicy;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.web.client.RestTemplateBuilder;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.http.client.ClientHttpRequestFactory;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
 import org.springframework.http.client.SimpleClientHttpRequestFactory;
 import org.springframework.web.client.RestTemplate;
 
 import java.time.Duration;
+import java.util.Iterator;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Конфигурация RestTemplate для HTTP запросов
- * 
+ *
  * Используется для:
- * - Вызова Python ML API
- * - Вызова OpenAI ChatGPT API
+ * - Вызова OpenAI ChatGPT API (пул keep-alive соединений HttpClient5)
+ *
+ * ML модель работает внутри JVM (пакет ml), отдельный Python сервис не нужен
  */
 @Configuration
 public class RestTemplateConfig {
-    
+
     /**
      * Основной RestTemplate с таймаутами
      */
@@ -30,33 +50,96 @@ public class RestTemplateConfig {
                 .setReadTimeout(Duration.ofSeconds(30))     // Timeout на чтение ответа
                 .build();
     }
-    
+
     /**
-     * RestTemplate специально для Python ML API
-     * (может иметь другие таймауты)
+     * Пул соединений к OpenAI API.
+     * Соединения переиспользуются (TLS рукопожатие - один раз на соединение),
+     * число одновременных соединений к одному хосту ограничено.
      */
-    @Bean("mlRestTemplate")
-    public RestTemplate mlRestTemplate(RestTemplateBuilder builder) {
-        return builder
-                .requestFactory(this::clientHttpRequestFactory)
-                .setConnectTimeout(Duration.ofSeconds(5))
-                .setReadTimeout(Duration.ofSeconds(10))  // ML должна отвечать быстро
+    @Bean(name = "openAIConnectionManager", destroyMethod = "close")
+    public PoolingHttpClientConnectionManager openAIConnectionManager(
+            OpenAIConfig openAIConfig,
+            MeterRegistry meterRegistry,
+            @Value("${fraud.ai.http.max-connections:64}") int maxConnections,
+            @Value("${fraud.ai.http.max-per-route:32}") int maxPerRoute,
+            @Value("${fraud.ai.http.connect-timeout-ms:10000}") long connectTimeoutMillis,
+            @Value("${fraud.ai.http.connection-ttl-ms:300000}") long connectionTtlMillis) {
+        PoolingHttpClientConnectionManager connectionManager = PoolingHttpClientConnectionManagerBuilder.create()
+                .setMaxConnTotal(maxConnections)
+                .setMaxConnPerRoute(maxPerRoute)
+                .setPoolConcurrencyPolicy(PoolConcurrencyPolicy.STRICT)
+                .setConnPoolPolicy(PoolReusePolicy.LIFO)   // Тёплые соединения - первыми
+                .setDefaultConnectionConfig(ConnectionConfig.custom()
+                        .setConnectTimeout(Timeout.ofMilliseconds(connectTimeoutMillis))
+                        .setSocketTimeout(Timeout.ofMilliseconds(openAIConfig.getTimeout()))
+                        .setTimeToLive(TimeValue.ofMilliseconds(connectionTtlMillis))
+                        .setValidateAfterInactivity(TimeValue.ofSeconds(5))
+                        .build())
+                .build();
+
+        Gauge.builder("fraud.ai.http.pool.leased", connectionManager, cm -> cm.getTotalStats().getLeased())
+                .description("Соединений к OpenAI, занятых запросами")
+                .register(meterRegistry);
+        Gauge.builder("fraud.ai.http.pool.available", connectionManager, cm -> cm.getTotalStats().getAvailable())
+                .description("Свободных keep-alive соединений к OpenAI")
+                .register(meterRegistry);
+        Gauge.builder("fraud.ai.http.pool.pending", connectionManager, cm -> cm.getTotalStats().getPending())
+                .description("Запросов, ожидающих соединение из пула")
+                .register(meterRegistry);
+        Gauge.builder("fraud.ai.http.pool.max", connectionManager, cm -> cm.getTotalStats().getMax())
+                .register(meterRegistry);
+
+        return connectionManager;
+    }
+
+    /**
+     * HTTP клиент OpenAI поверх пула: keep-alive по заголовку сервера
+     * (по умолчанию - fraud.ai.http.keep-alive-ms), фоновое закрытие простаивающих соединений
+     */
+    @Bean(name = "openAIHttpClient", destroyMethod = "close")
+    public CloseableHttpClient openAIHttpClient(
+            @Qualifier("openAIConnectionManager") PoolingHttpClientConnectionManager connectionManager,
+            OpenAIConfig openAIConfig,
+            @Value("${fraud.ai.http.keep-alive-ms:60000}") long keepAliveMillis,
+            @Value("${fraud.ai.http.acquire-timeout-ms:5000}") long acquireTimeoutMillis) {
+        return HttpClients.custom()
+                .setConnectionManager(connectionManager)
+                .setDefaultRequestConfig(RequestConfig.custom()
+                        .setConnectionRequestTimeout(Timeout.ofMilliseconds(acquireTimeoutMillis))
+                        .setResponseTimeout(Timeout.ofMilliseconds(openAIConfig.getTimeout()))
+                        .build())
+                .setKeepAliveStrategy((response, context) -> {
+                    Iterator<HeaderElement> elements = MessageSupport.iterate(response, "Keep-Alive");
+                    while (elements.hasNext()) {
+                        HeaderElement element = elements.next();
+                        if ("timeout".equalsIgnoreCase(element.getName()) && element.getValue() != null) {
+                            try {
+                                return TimeValue.ofSeconds(Long.parseLong(element.getValue()));
+                            } catch (NumberFormatException ignored) {
+                                // Некорректный заголовок - используем значение по умолчанию
+                            }
+                        }
+                    }
+                    return TimeValue.ofMilliseconds(keepAliveMillis);
+                })
+                .evictExpiredConnections()
+                .evictIdleConnections(TimeValue.of(keepAliveMillis, TimeUnit.MILLISECONDS))
+                .disableCookieManagement()
                 .build();
     }
-    
+
     /**
      * RestTemplate для OpenAI API
-     * (может требовать больше времени на ответ)
+     * (пул соединений, таймаут ответа - openai.api.timeout)
      */
     @Bean("openAIRestTemplate")
-    public RestTemplate openAIRestTemplate(RestTemplateBuilder builder) {
+    public RestTemplate openAIRestTemplate(RestTemplateBuilder builder,
+                                           @Qualifier("openAIHttpClient") CloseableHttpClient httpClient) {
         return builder
-                .requestFactory(this::clientHttpRequestFactory)
-                .setConnectTimeout(Duration.ofSeconds(10))
-                .setReadTimeout(Duration.ofSeconds(60))  // ChatGPT может отвечать долго
+                .requestFactory(() -> new HttpComponentsClientHttpRequestFactory(httpClient))
                 .build();
     }
-    
+
     /**
      * Фабрика для создания HTTP клиентов
      */
@@ -66,4 +149,4 @@ public class RestTemplateConfig {
         factory.setReadTimeout(30000);     // 30 секунд
         return factory;
     }
-}
\ No newline at end of file
+}
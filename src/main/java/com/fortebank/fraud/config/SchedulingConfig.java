@@ -0,0 +1,12 @@
+package com.fortebank.fraud.config;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+/**
+ * Фоновые задачи по расписанию (перезагрузка правил оценки риска)
+ */
+@Configuration
+@EnableScheduling
+public class SchedulingConfig {
+}
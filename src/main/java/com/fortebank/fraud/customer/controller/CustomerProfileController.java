@@ -0,0 +1,95 @@
+package com.fortebank.fraud.customer.controller;
+
+import com.fortebank.fraud.common.response.ApiResponse;
+import com.fortebank.fraud.customer.dto.BehaviorCacheStats;
+import com.fortebank.fraud.customer.dto.RecipientIndexStats;
+import com.fortebank.fraud.customer.entity.CustomerProfile;
+import com.fortebank.fraud.customer.service.BehaviorPatternCacheService;
+import com.fortebank.fraud.customer.service.CustomerProfileService;
+import com.fortebank.fraud.customer.service.RecipientIndexService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+@RestController
+@RequestMapping("/api/customers")
+@RequiredArgsConstructor
+@Slf4j
+public class CustomerProfileController {
+
+    private final CustomerProfileService customerProfileService;
+    private final RecipientIndexService recipientIndexService;
+    private final BehaviorPatternCacheService behaviorPatternCache;
+
+    /**
+     * Получить агрегированный профиль клиента
+     */
+    @GetMapping("/{customerId}/profile")
+    public ResponseEntity<ApiResponse<CustomerProfile>> getProfile(
+            @PathVariable String customerId) {
+
+        CustomerProfile profile = customerProfileService.getProfile(customerId)
+                .orElseThrow(() -> new RuntimeException("Профиль клиента не найден: " + customerId));
+
+        return ResponseEntity.ok(ApiResponse.success(
+                profile,
+                "Профиль клиента загружен"
+        ));
+    }
+
+    /**
+     * Пересобрать профиль клиента из истории транзакций
+     */
+    @PostMapping("/{customerId}/profile/rebuild")
+    public ResponseEntity<ApiResponse<CustomerProfile>> rebuildProfile(
+            @PathVariable String customerId) {
+
+        log.info("Пересборка профиля клиента: {}", customerId);
+
+        CustomerProfile profile = customerProfileService.rebuildProfile(customerId)
+                .orElseThrow(() -> new RuntimeException("Нет транзакций клиента: " + customerId));
+
+        return ResponseEntity.ok(ApiResponse.success(
+                profile,
+                "Профиль клиента пересобран"
+        ));
+    }
+
+    /**
+     * Пересобрать профили всех клиентов
+     */
+    @PostMapping("/profiles/rebuild")
+    public ResponseEntity<ApiResponse<Integer>> rebuildAllProfiles() {
+        log.info("Пересборка профилей всех клиентов");
+
+        int rebuilt = customerProfileService.rebuildAllProfiles();
+
+        return ResponseEntity.ok(ApiResponse.success(
+                rebuilt,
+                "Профили клиентов пересобраны"
+        ));
+    }
+
+    /**
+     * Статистика и оценка памяти индекса получателей
+     */
+    @GetMapping("/recipient-index/stats")
+    public ResponseEntity<ApiResponse<RecipientIndexStats>> getRecipientIndexStats() {
+        return ResponseEntity.ok(ApiResponse.success(
+                recipientIndexService.getStats(),
+                "Статистика индекса получателей загружена"
+        ));
+    }
+
+    /**
+     * Статистика кэша поведенческих паттернов
+     */
+    @GetMapping("/behavior-cache/stats")
+    public ResponseEntity<ApiResponse<BehaviorCacheStats>> getBehaviorCacheStats() {
+        return ResponseEntity.ok(ApiResponse.success(
+                behaviorPatternCache.getStats(),
+                "Статистика кэша паттернов загружена"
+        ));
+    }
+}
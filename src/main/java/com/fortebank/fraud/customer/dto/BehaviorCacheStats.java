@@ -0,0 +1,21 @@
+package com.fortebank.fraud.customer.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class BehaviorCacheStats {
+    private Long entries;             // Клиентов в кэше (включая "нет паттерна")
+    private Long bytes;               // Оценка занимаемой памяти
+    private Long maxBytes;            // Ограничение по памяти
+    private Long hits;
+    private Long misses;
+    private Double hitRate;
+    private Long evictions;           // Вытеснено по размеру
+    private Long invalidations;       // Сброшено при загрузке новых паттернов
+}
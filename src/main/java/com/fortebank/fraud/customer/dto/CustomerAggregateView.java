@@ -0,0 +1,18 @@
+package com.fortebank.fraud.customer.dto;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * Проекция агрегатов по транзакциям клиента (для пересборки профиля)
+ */
+public interface CustomerAggregateView {
+    String getCustomerId();
+    Long getTransactionCount();
+    BigDecimal getAmountSum();
+    BigDecimal getMinAmount();
+    BigDecimal getMaxAmount();
+    Long getUniqueRecipients();
+    LocalDateTime getFirstTransactionAt();
+    LocalDateTime getLastTransactionAt();
+}
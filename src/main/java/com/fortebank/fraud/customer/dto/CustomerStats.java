@@ -1,5 +1,6 @@
 package com.fortebank.fraud.customer.dto;
 
+import com.fortebank.fraud.common.money.MinorUnits;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
@@ -15,11 +16,20 @@ import java.time.LocalDateTime;
 public class CustomerStats {
     private String customerId;
     private Integer totalTransactions;
-    private BigDecimal avgAmount;
+    private long avgAmountMinor;        // Средняя сумма в тиынах (для оценки без BigDecimal)
     private BigDecimal minAmount;
     private BigDecimal maxAmount;
+    private Integer transactionCount5m;
     private Integer transactionCount1h;
     private Integer transactionCount24h;
+    private Integer transactionCount7d;
     private LocalDateTime lastTransactionDate;
     private Integer uniqueRecipients;
+
+    /**
+     * Средняя сумма (BigDecimal создаётся только при обращении)
+     */
+    public BigDecimal getAvgAmount() {
+        return MinorUnits.toBigDecimal(avgAmountMinor);
+    }
 }
\ No newline at end of file
@@ -0,0 +1,24 @@
+package com.fortebank.fraud.customer.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class RecipientIndexStats {
+    private Boolean bloomReady;
+    private Long expectedPairs;       // На сколько пар рассчитан фильтр Блума
+    private Long approximatePairs;    // Оценка уже добавленных пар
+    private Double configuredFpp;     // Заданная вероятность ложного срабатывания
+    private Double currentFpp;        // Текущая вероятность при таком заполнении
+    private Long bloomBytes;          // Память фильтра Блума
+    private Long exactCustomers;      // Клиентов в точном кэше
+    private Long exactBytes;          // Оценка памяти точного кэша
+    private Long bloomNegatives;      // Ответов "новый" без обращения к БД
+    private Long exactLookups;        // Проверок по точному множеству
+    private Long exactLoads;          // Загрузок точного множества из БД
+}
@@ -0,0 +1,21 @@
+package com.fortebank.fraud.customer.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Количество транзакций клиента в окнах, заканчивающихся временем анализируемой транзакции
+ * (включая её саму)
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class VelocityCounts {
+    private int count5m;
+    private int count1h;
+    private int count24h;
+    private int count7d;
+}
@@ -9,6 +9,9 @@ import java.time.LocalDate;
 @Table(name = "customer_behavior_patterns", indexes = {
     @Index(name = "idx_behavior_customer_id", columnList = "customer_id"),
     @Index(name = "idx_behavior_trans_date", columnList = "trans_date")
+}, uniqueConstraints = {
+    // Один паттерн на клиента за день: повторная загрузка обновляет его (upsert)
+    @UniqueConstraint(name = "uk_behavior_customer_date", columnNames = {"customer_id", "trans_date"})
 })
 @Data
 @Builder
@@ -16,8 +19,13 @@ import java.time.LocalDate;
 @AllArgsConstructor
 public class CustomerBehaviorPattern {
     
+    public static final String ID_SEQUENCE = "customer_behavior_patterns_seq";
+    public static final int ID_ALLOCATION_SIZE = 50;
+    
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "customer_behavior_patterns_seq")
+    @SequenceGenerator(name = "customer_behavior_patterns_seq", sequenceName = ID_SEQUENCE,
+                       allocationSize = ID_ALLOCATION_SIZE)
     private Long id;
     
     @Column(name = "trans_date", nullable = false)
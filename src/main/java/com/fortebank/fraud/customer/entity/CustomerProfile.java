@@ -0,0 +1,67 @@
+package com.fortebank.fraud.customer.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * Агрегированный профиль клиента.
+ *
+ * Обновляется инкрементально при загрузке транзакций (O(1) на транзакцию),
+ * поэтому при анализе не нужно читать всю историю клиента.
+ * Всегда может быть пересобран из таблицы transactions.
+ */
+@Entity
+@Table(name = "customer_profiles")
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class CustomerProfile {
+
+    @Id
+    @Column(name = "customer_id", length = 100)
+    private String customerId;
+
+    // Количество транзакций
+    @Column(name = "transaction_count", nullable = false)
+    @Builder.Default
+    private Long transactionCount = 0L;
+
+    // Сумма всех транзакций (для расчёта средней)
+    @Column(name = "amount_sum", nullable = false, precision = 19, scale = 2)
+    @Builder.Default
+    private BigDecimal amountSum = BigDecimal.ZERO;
+
+    @Column(name = "min_amount", precision = 15, scale = 2)
+    private BigDecimal minAmount;
+
+    @Column(name = "max_amount", precision = 15, scale = 2)
+    private BigDecimal maxAmount;
+
+    // Количество разных получателей
+    @Column(name = "unique_recipients", nullable = false)
+    @Builder.Default
+    private Integer uniqueRecipients = 0;
+
+    // Время первой и последней транзакции (по времени самой транзакции)
+    @Column(name = "first_transaction_at")
+    private LocalDateTime firstTransactionAt;
+
+    @Column(name = "last_transaction_at")
+    private LocalDateTime lastTransactionAt;
+
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt;
+
+    // Оптимистичная блокировка: параллельные загрузки не теряют обновления
+    @Version
+    private Long version;
+
+    @PrePersist
+    @PreUpdate
+    protected void onUpdate() {
+        updatedAt = LocalDateTime.now();
+    }
+}
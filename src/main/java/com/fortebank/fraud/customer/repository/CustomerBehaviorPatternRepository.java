@@ -7,6 +7,7 @@ import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDate;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -17,6 +18,11 @@ public interface CustomerBehaviorPatternRepository extends JpaRepository<Custome
     
     List<CustomerBehaviorPattern> findByCustomerId(String customerId);
     
+    List<CustomerBehaviorPattern> findByCustomerIdInAndTransDateIn(Collection<String> customerIds,
+                                                                   Collection<LocalDate> transDates);
+    
+    List<CustomerBehaviorPattern> findByCustomerIdInOrderByCustomerIdAscTransDateAsc(Collection<String> customerIds);
+    
     @Query("SELECT cbp FROM CustomerBehaviorPattern cbp WHERE cbp.customerId = :customerId " +
            "ORDER BY cbp.transDate DESC LIMIT 1")
     Optional<CustomerBehaviorPattern> findLatestByCustomerId(@Param("customerId") String customerId);
@@ -0,0 +1,9 @@
+package com.fortebank.fraud.customer.repository;
+
+import com.fortebank.fraud.customer.entity.CustomerProfile;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface CustomerProfileRepository extends JpaRepository<CustomerProfile, String> {
+}
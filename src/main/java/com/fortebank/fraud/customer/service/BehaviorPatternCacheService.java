@@ -0,0 +1,180 @@
+package com.fortebank.fraud.customer.service;
+
+import com.fortebank.fraud.customer.dto.BehaviorCacheStats;
+import com.fortebank.fraud.customer.entity.CustomerBehaviorPattern;
+import com.fortebank.fraud.customer.repository.CustomerBehaviorPatternRepository;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.cache.RemovalCause;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.GuavaCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Кэш последнего поведенческого паттерна клиента.
+ *
+ * Паттерны меняются только при загрузке файла (/api/batch/upload-behavior),
+ * поэтому записи живут до вытеснения по памяти или до явного сброса
+ * затронутых клиентов. Отсутствие паттерна тоже кэшируется.
+ *
+ * Сброс не отменяет уже идущее чтение из БД, поэтому у клиентов есть версии
+ * (по хэшу id): сброс их повышает, а прочитанное во время сброса не остаётся в кэше.
+ */
+@Service
+@Slf4j
+public class BehaviorPatternCacheService {
+
+    // Оценка памяти: объект паттерна с BigDecimal полями и строками
+    private static final int PATTERN_BASE_BYTES = 900;
+    private static final int EMPTY_ENTRY_BYTES = 96;
+
+    private static final int VERSION_STRIPES = 1024;
+
+    private final CustomerBehaviorPatternRepository behaviorPatternRepository;
+    private final Cache<String, Optional<CustomerBehaviorPattern>> cache;
+    private final long maxBytes;
+
+    // Версия клиентов (по хэшу id) растёт при каждом сбросе их паттернов
+    private final AtomicLongArray versions = new AtomicLongArray(VERSION_STRIPES);
+
+    private final AtomicLong bytes = new AtomicLong();
+    private final AtomicLong invalidations = new AtomicLong();
+
+    public BehaviorPatternCacheService(CustomerBehaviorPatternRepository behaviorPatternRepository,
+                                       MeterRegistry meterRegistry,
+                                       @Value("${fraud.behavior-cache.max-bytes:33554432}") long maxBytes) {
+        this.behaviorPatternRepository = behaviorPatternRepository;
+        this.maxBytes = maxBytes;
+        this.cache = CacheBuilder.newBuilder()
+                .maximumWeight(maxBytes)
+                .<String, Optional<CustomerBehaviorPattern>>weigher(BehaviorPatternCacheService::weigh)
+                .removalListener(notification -> {
+                    bytes.addAndGet(-weigh(notification.getKey(), notification.getValue()));
+                    if (notification.getCause() == RemovalCause.EXPLICIT) {
+                        invalidations.incrementAndGet();
+                    }
+                })
+                .recordStats()
+                .build();
+
+        GuavaCacheMetrics.monitor(meterRegistry, cache, "fraud.behavior.patterns");
+        Gauge.builder("fraud.behavior.cache.bytes", bytes, AtomicLong::get)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Последний паттерн клиента (из кэша или из БД)
+     */
+    public Optional<CustomerBehaviorPattern> getLatest(String customerId) {
+        Optional<CustomerBehaviorPattern> cached = cache.getIfPresent(customerId);
+        if (cached != null) {
+            return cached;
+        }
+
+        int stripe = stripe(customerId);
+        long version = versions.get(stripe);
+        Optional<CustomerBehaviorPattern> pattern;
+        try {
+            pattern = behaviorPatternRepository.findLatestByCustomerId(customerId);
+        } catch (RuntimeException e) {
+            throw new RuntimeException("Не удалось загрузить поведенческий паттерн клиента: " + customerId, e);
+        }
+
+        cached = cache.asMap().putIfAbsent(customerId, pattern);
+        if (cached != null) {
+            return cached;
+        }
+        bytes.addAndGet(weigh(customerId, pattern));
+        // Паттерны клиента сброшены во время чтения - прочитанное могло устареть.
+        // Проверка после put: сброс после проверки удалит запись сам
+        if (versions.get(stripe) != version) {
+            cache.asMap().remove(customerId, pattern);
+        }
+        return pattern;
+    }
+
+    /**
+     * Есть ли клиент в кэше (для учёта запросов к БД)
+     */
+    public boolean isCached(String customerId) {
+        return cache.getIfPresent(customerId) != null;
+    }
+
+    /**
+     * Сбросить клиентов, для которых сохранены новые паттерны.
+     * Внутри транзакции БД сброс повторяется после коммита, чтобы параллельный
+     * запрос не закэшировал старый паттерн между сбросом и коммитом.
+     */
+    public void evict(Collection<String> customerIds) {
+        if (customerIds.isEmpty()) {
+            return;
+        }
+
+        List<String> keys = List.copyOf(customerIds);
+        invalidate(keys);
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    invalidate(keys);
+                }
+            });
+        }
+
+        log.debug("Сброшен кэш паттернов для {} клиентов", keys.size());
+    }
+
+    private void invalidate(List<String> customerIds) {
+        for (String customerId : customerIds) {
+            versions.incrementAndGet(stripe(customerId));
+        }
+        cache.invalidateAll(customerIds);
+    }
+
+    public BehaviorCacheStats getStats() {
+        CacheStats stats = cache.stats();
+        return BehaviorCacheStats.builder()
+                .entries(cache.size())
+                .bytes(bytes.get())
+                .maxBytes(maxBytes)
+                .hits(stats.hitCount())
+                .misses(stats.missCount())
+                .hitRate(stats.requestCount() > 0 ? stats.hitRate() : 0)
+                .evictions(stats.evictionCount())
+                .invalidations(invalidations.get())
+                .build();
+    }
+
+    private static int weigh(String customerId, Optional<CustomerBehaviorPattern> pattern) {
+        int keyBytes = 40 + customerId.length() * 2;
+        if (pattern == null || pattern.isEmpty()) {
+            return keyBytes + EMPTY_ENTRY_BYTES;
+        }
+        CustomerBehaviorPattern p = pattern.get();
+        return keyBytes + PATTERN_BASE_BYTES
+                + length(p.getCustomerId()) * 2
+                + length(p.getLatestPhoneModel()) * 2
+                + length(p.getLatestOsVersion()) * 2;
+    }
+
+    private static int stripe(String customerId) {
+        return customerId.hashCode() & (VERSION_STRIPES - 1);
+    }
+
+    private static int length(String value) {
+        return value != null ? value.length() : 0;
+    }
+}
@@ -0,0 +1,222 @@
+package com.fortebank.fraud.customer.service;
+
+import com.fortebank.fraud.common.transaction.CompletionTracker;
+import com.fortebank.fraud.customer.dto.CustomerAggregateView;
+import com.fortebank.fraud.customer.entity.CustomerProfile;
+import com.fortebank.fraud.customer.repository.CustomerProfileRepository;
+import com.fortebank.fraud.transaction.entity.Transaction;
+import com.fortebank.fraud.transaction.repository.TransactionRepository;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.GuavaCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Профили клиентов: инкрементальное обновление при загрузке, пересборка из истории
+ * и кэш профилей для оценки в реальном времени.
+ *
+ * Кэш хранит отсоединённые копии (в т.ч. отсутствие профиля). Записи клиента
+ * сбрасываются после фиксации или отката транзакции, изменившей его профиль;
+ * чтение, во время которого профиль изменён, не кэшируется (версии по клиентам).
+ */
+@Service
+@Slf4j
+public class CustomerProfileService {
+
+    private static final int VERSION_STRIPES = 1024;
+
+    private final CustomerProfileRepository profileRepository;
+    private final TransactionRepository transactionRepository;
+    private final Cache<String, Optional<CustomerProfile>> cache;
+
+    // Версия клиентов (по хэшу id) растёт при фиксации изменений их профилей
+    private final AtomicLongArray versions = new AtomicLongArray(VERSION_STRIPES);
+
+    public CustomerProfileService(CustomerProfileRepository profileRepository,
+                                  TransactionRepository transactionRepository,
+                                  MeterRegistry meterRegistry,
+                                  @Value("${fraud.profile-cache.max-customers:100000}") long maxCustomers) {
+        this.profileRepository = profileRepository;
+        this.transactionRepository = transactionRepository;
+        this.cache = CacheBuilder.newBuilder()
+                .maximumSize(maxCustomers)
+                .recordStats()
+                .build();
+
+        GuavaCacheMetrics.monitor(meterRegistry, cache, "fraud.customer.profiles");
+    }
+
+    /**
+     * Учесть новую транзакцию в профиле клиента (O(1)). Вызывается до записи транзакции в БД:
+     * профиль, которого ещё нет, сначала собирается из истории клиента.
+     *
+     * @param newRecipient клиент раньше не переводил этому получателю (из индекса получателей)
+     */
+    @Transactional
+    public CustomerProfile recordTransaction(Transaction transaction, boolean newRecipient) {
+        CustomerProfile profile = profileRepository.findById(transaction.getCustomerId())
+                .or(() -> rebuildProfile(transaction.getCustomerId()))
+                .orElseGet(() -> CustomerProfile.builder()
+                        .customerId(transaction.getCustomerId())
+                        .build());
+
+        BigDecimal amount = transaction.getAmount();
+
+        profile.setTransactionCount(profile.getTransactionCount() + 1);
+        profile.setAmountSum(profile.getAmountSum().add(amount));
+
+        if (profile.getMinAmount() == null || amount.compareTo(profile.getMinAmount()) < 0) {
+            profile.setMinAmount(amount);
+        }
+        if (profile.getMaxAmount() == null || amount.compareTo(profile.getMaxAmount()) > 0) {
+            profile.setMaxAmount(amount);
+        }
+
+        if (newRecipient) {
+            profile.setUniqueRecipients(profile.getUniqueRecipients() + 1);
+        }
+
+        if (profile.getFirstTransactionAt() == null
+                || transaction.getTransactionDateTime().isBefore(profile.getFirstTransactionAt())) {
+            profile.setFirstTransactionAt(transaction.getTransactionDateTime());
+        }
+        if (profile.getLastTransactionAt() == null
+                || transaction.getTransactionDateTime().isAfter(profile.getLastTransactionAt())) {
+            profile.setLastTransactionAt(transaction.getTransactionDateTime());
+        }
+
+        touched(transaction.getCustomerId());
+        return profileRepository.save(profile);
+    }
+
+    /**
+     * Профиль для оценки транзакции: из кэша, при промахе - один запрос по первичному ключу.
+     * Не пересобирает и не пишет: клиент без профиля оценивается как новый
+     * (профили старых данных собирает rebuildAllProfiles). Возвращаемый объект не изменять.
+     */
+    public Optional<CustomerProfile> getCachedProfile(String customerId) {
+        Optional<CustomerProfile> cached = cache.getIfPresent(customerId);
+        if (cached != null) {
+            return cached;
+        }
+
+        int stripe = stripe(customerId);
+        long version = versions.get(stripe);
+        Optional<CustomerProfile> loaded = profileRepository.findById(customerId).map(CustomerProfileService::copy);
+        cached = cache.asMap().putIfAbsent(customerId, loaded);
+        if (cached != null) {
+            return cached;
+        }
+        // Профиль изменён во время чтения - прочитанное могло устареть.
+        // Проверка после put: фиксация после проверки сбросит запись сама (afterCompletion)
+        if (versions.get(stripe) != version) {
+            cache.asMap().remove(customerId, loaded);
+        }
+        return loaded;
+    }
+
+    /**
+     * Есть ли клиент в кэше профилей (для учёта запросов к БД)
+     */
+    public boolean isProfileCached(String customerId) {
+        return cache.getIfPresent(customerId) != null;
+    }
+
+    /**
+     * Получить профиль клиента. Если профиля нет, но есть история - пересобрать.
+     */
+    @Transactional
+    public Optional<CustomerProfile> getProfile(String customerId) {
+        Optional<CustomerProfile> profile = profileRepository.findById(customerId);
+        if (profile.isPresent()) {
+            return profile;
+        }
+        return rebuildProfile(customerId);
+    }
+
+    /**
+     * Пересобрать профиль клиента из истории транзакций
+     */
+    @Transactional
+    public Optional<CustomerProfile> rebuildProfile(String customerId) {
+        touched(customerId);
+        return transactionRepository.aggregateByCustomerId(customerId)
+                .map(aggregate -> profileRepository.save(applyAggregate(aggregate)));
+    }
+
+    /**
+     * Пересобрать профили всех клиентов из истории транзакций
+     */
+    @Transactional
+    public int rebuildAllProfiles() {
+        List<CustomerAggregateView> aggregates = transactionRepository.aggregateAllCustomers();
+
+        for (CustomerAggregateView aggregate : aggregates) {
+            profileRepository.save(applyAggregate(aggregate));
+        }
+
+        log.info("Пересобрано {} профилей клиентов", aggregates.size());
+        return aggregates.size();
+    }
+
+    private CustomerProfile applyAggregate(CustomerAggregateView aggregate) {
+        CustomerProfile profile = profileRepository.findById(aggregate.getCustomerId())
+                .orElseGet(() -> CustomerProfile.builder()
+                        .customerId(aggregate.getCustomerId())
+                        .build());
+
+        profile.setTransactionCount(aggregate.getTransactionCount());
+        profile.setAmountSum(aggregate.getAmountSum());
+        profile.setMinAmount(aggregate.getMinAmount());
+        profile.setMaxAmount(aggregate.getMaxAmount());
+        profile.setUniqueRecipients(aggregate.getUniqueRecipients().intValue());
+        profile.setFirstTransactionAt(aggregate.getFirstTransactionAt());
+        profile.setLastTransactionAt(aggregate.getLastTransactionAt());
+
+        touched(aggregate.getCustomerId());
+        return profile;
+    }
+
+    private void touched(String customerId) {
+        CompletionTracker.track(this, customerId, null, this::afterCompletion);
+    }
+
+    /**
+     * Профили изменены (или изменения откачены) - записи кэша этих клиентов устарели
+     */
+    private void afterCompletion(Map<String, Object> touched, boolean committed) {
+        for (String customerId : touched.keySet()) {
+            versions.incrementAndGet(stripe(customerId));
+            cache.invalidate(customerId);
+        }
+    }
+
+    private static CustomerProfile copy(CustomerProfile profile) {
+        return CustomerProfile.builder()
+                .customerId(profile.getCustomerId())
+                .transactionCount(profile.getTransactionCount())
+                .amountSum(profile.getAmountSum())
+                .minAmount(profile.getMinAmount())
+                .maxAmount(profile.getMaxAmount())
+                .uniqueRecipients(profile.getUniqueRecipients())
+                .firstTransactionAt(profile.getFirstTransactionAt())
+                .lastTransactionAt(profile.getLastTransactionAt())
+                .updatedAt(profile.getUpdatedAt())
+                .version(profile.getVersion())
+                .build();
+    }
+
+    private static int stripe(String customerId) {
+        return customerId.hashCode() & (VERSION_STRIPES - 1);
+    }
+}
@@ -1,104 +1,84 @@
 package com.fortebank.fraud.customer.service;
 
+import com.fortebank.fraud.common.money.MinorUnits;
 import com.fortebank.fraud.customer.dto.CustomerStats;
+import com.fortebank.fraud.customer.dto.VelocityCounts;
+import com.fortebank.fraud.customer.entity.CustomerProfile;
 import com.fortebank.fraud.transaction.entity.Transaction;
-import com.fortebank.fraud.transaction.repository.TransactionRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 
 import java.math.BigDecimal;
-import java.math.RoundingMode;
-import java.time.LocalDateTime;
-import java.util.List;
-import java.util.Set;
-import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
 @Slf4j
 public class CustomerStatsService {
-    
-    private final TransactionRepository transactionRepository;
-    
+
+    private final CustomerProfileService customerProfileService;
+    private final RecipientIndexService recipientIndexService;
+    private final VelocityCounterService velocityCounterService;
+
     /**
-     * Получить статистику клиента
+     * Получить статистику клиента на момент транзакции
+     * (из агрегированного профиля и счётчиков частоты, без чтения всей истории)
      */
-    public CustomerStats getCustomerStats(String customerId) {
-        List<Transaction> allTransactions = transactionRepository.findByCustomerId(customerId);
-        
-        if (allTransactions.isEmpty()) {
+    public CustomerStats getCustomerStats(Transaction transaction) {
+        CustomerProfile profile = customerProfileService.getProfile(transaction.getCustomerId()).orElse(null);
+        return buildStats(transaction.getCustomerId(), profile, getVelocityCounts(transaction, profile));
+    }
+
+    /**
+     * Счётчики частоты клиента в окнах, заканчивающихся временем транзакции
+     */
+    public VelocityCounts getVelocityCounts(Transaction transaction, CustomerProfile profile) {
+        return velocityCounterService.getCounts(
+                transaction,
+                profile != null ? profile.getLastTransactionAt() : null);
+    }
+
+    /**
+     * Собрать статистику из профиля и уже посчитанных счётчиков частоты
+     */
+    public CustomerStats buildStats(String customerId, CustomerProfile profile, VelocityCounts velocity) {
+        if (profile == null || profile.getTransactionCount() == 0) {
             return CustomerStats.builder()
                     .customerId(customerId)
                     .totalTransactions(0)
-                    .avgAmount(BigDecimal.ZERO)
                     .minAmount(BigDecimal.ZERO)
                     .maxAmount(BigDecimal.ZERO)
-                    .transactionCount1h(0)
-                    .transactionCount24h(0)
+                    .transactionCount5m(velocity.getCount5m())
+                    .transactionCount1h(velocity.getCount1h())
+                    .transactionCount24h(velocity.getCount24h())
+                    .transactionCount7d(velocity.getCount7d())
                     .uniqueRecipients(0)
                     .build();
         }
-        
-        // Средняя сумма
-        BigDecimal totalAmount = allTransactions.stream()
-                .map(Transaction::getAmount)
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
-        
-        BigDecimal avgAmount = totalAmount.divide(
-                BigDecimal.valueOf(allTransactions.size()),
-                2,
-                RoundingMode.HALF_UP
-        );
-        
-        // Минимум и максимум
-        BigDecimal minAmount = allTransactions.stream()
-                .map(Transaction::getAmount)
-                .min(BigDecimal::compareTo)
-                .orElse(BigDecimal.ZERO);
-        
-        BigDecimal maxAmount = allTransactions.stream()
-                .map(Transaction::getAmount)
-                .max(BigDecimal::compareTo)
-                .orElse(BigDecimal.ZERO);
-        
-        // Транзакции за последний час
-        LocalDateTime oneHourAgo = LocalDateTime.now().minusHours(1);
-        long count1h = allTransactions.stream()
-                .filter(t -> t.getTransactionDateTime().isAfter(oneHourAgo))
-                .count();
-        
-        // Транзакции за последние 24 часа
-        LocalDateTime oneDayAgo = LocalDateTime.now().minusDays(1);
-        long count24h = allTransactions.stream()
-                .filter(t -> t.getTransactionDateTime().isAfter(oneDayAgo))
-                .count();
-        
-        // Уникальные получатели
-        Set<String> uniqueRecipients = allTransactions.stream()
-                .map(Transaction::getRecipientId)
-                .collect(Collectors.toSet());
+
+        // Средняя сумма - в тиынах, без BigDecimal.divide
+        long avgAmountMinor = MinorUnits.divideHalfUp(
+                MinorUnits.of(profile.getAmountSum()), profile.getTransactionCount());
         
         return CustomerStats.builder()
                 .customerId(customerId)
-                .totalTransactions(allTransactions.size())
-                .avgAmount(avgAmount)
-                .minAmount(minAmount)
-                .maxAmount(maxAmount)
-                .transactionCount1h((int) count1h)
-                .transactionCount24h((int) count24h)
-                .lastTransactionDate(allTransactions.get(0).getTransactionDateTime())
-                .uniqueRecipients(uniqueRecipients.size())
+                .totalTransactions(profile.getTransactionCount().intValue())
+                .avgAmountMinor(avgAmountMinor)
+                .minAmount(profile.getMinAmount())
+                .maxAmount(profile.getMaxAmount())
+                .transactionCount5m(velocity.getCount5m())
+                .transactionCount1h(velocity.getCount1h())
+                .transactionCount24h(velocity.getCount24h())
+                .transactionCount7d(velocity.getCount7d())
+                .lastTransactionDate(profile.getLastTransactionAt())
+                .uniqueRecipients(profile.getUniqueRecipients())
                 .build();
     }
-    
+
     /**
-     * Проверить, новый ли получатель
+     * Проверить, новый ли получатель (по индексу получателей, без чтения транзакций)
      */
-    public boolean isNewRecipient(String customerId, String recipientId) {
-        List<Transaction> customerTransactions = transactionRepository.findByCustomerId(customerId);
-        
-        return customerTransactions.stream()
-                .noneMatch(t -> t.getRecipientId().equals(recipientId));
+    public boolean isNewRecipient(Transaction transaction) {
+        return recipientIndexService.isNewRecipient(transaction);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,372 @@
+package com.fortebank.fraud.customer.service;
+
+import com.fortebank.fraud.common.transaction.CompletionTracker;
+import com.fortebank.fraud.customer.dto.RecipientIndexStats;
+import com.fortebank.fraud.transaction.entity.Transaction;
+import com.fortebank.fraud.transaction.repository.TransactionRepository;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.RemovalCause;
+import com.google.common.cache.RemovalListener;
+import com.google.common.hash.BloomFilter;
+import com.google.common.hash.Funnels;
+import com.google.common.io.ByteStreams;
+import com.google.common.io.CountingOutputStream;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.stream.Stream;
+
+/**
+ * Индекс получателей клиента для правила "Новый получатель".
+ *
+ * Два уровня:
+ * - фильтр Блума по парам клиент-получатель: отрицательный ответ ("точно не переводил")
+ *   получаем без обращения к БД;
+ * - точные множества получателей (с числом переводов) в ограниченном LRU кэше;
+ *   загружаются из БД только при положительном ответе фильтра и промахе кэша.
+ *
+ * Индекс обновляется при загрузке транзакций, до их сохранения. Точное множество,
+ * прочитанное из БД до фиксации загрузки, её транзакций не видит: после фиксации такие
+ * множества сбрасываются, а чтение, во время которого транзакции клиента зафиксированы,
+ * повторяется (версии по клиентам).
+ *
+ * Оба уровня живут в памяти процесса и видят только транзакции, загруженные этим экземпляром.
+ * Если транзакции пишут несколько экземпляров приложения, фильтр Блума даст ложное
+ * "точно новый" для пар, загруженных другими: нужно выключить его
+ * (fraud.recipient-index.bloom.enabled=false) и ограничить срок жизни точных множеств
+ * (fraud.recipient-index.exact-ttl-seconds).
+ */
+@Service
+@Slf4j
+public class RecipientIndexService {
+
+    private static final char PAIR_SEPARATOR = '\u0001';
+
+    // Оценка размера записи в точном множестве: HashMap.Node + String + Integer
+    private static final int ENTRY_OVERHEAD_BYTES = 32 + 40 + 16;
+    private static final int SET_OVERHEAD_BYTES = 64;
+
+    // BloomFilter.writeTo: стратегия (1 байт), число хэш-функций (1), длина массива (4), затем биты
+    private static final int BLOOM_HEADER_BYTES = 6;
+
+    private static final int VERSION_STRIPES = 1024;
+    private static final int MAX_LOAD_ATTEMPTS = 3;
+
+    private final TransactionRepository transactionRepository;
+    private final TransactionTemplate transactionTemplate;
+
+    private final long expectedPairs;
+    private final double falsePositiveRate;
+    private final BloomFilter<CharSequence> bloomFilter;   // null, если выключен
+    private final long bloomBytes;
+    private final Cache<String, RecipientSet> exactSets;
+
+    // Версия клиентов (по хэшу id) растёт при фиксации их транзакций
+    private final AtomicLongArray versions = new AtomicLongArray(VERSION_STRIPES);
+
+    private final AtomicLong exactBytes = new AtomicLong();
+    private final AtomicLong bloomNegatives = new AtomicLong();
+    private final AtomicLong exactLookups = new AtomicLong();
+    private final AtomicLong exactLoads = new AtomicLong();
+    private volatile boolean bloomReady = false;
+
+    public RecipientIndexService(TransactionRepository transactionRepository,
+                                 TransactionTemplate transactionTemplate,
+                                 MeterRegistry meterRegistry,
+                                 @Value("${fraud.recipient-index.expected-pairs:5000000}") long expectedPairs,
+                                 @Value("${fraud.recipient-index.fpp:0.01}") double falsePositiveRate,
+                                 @Value("${fraud.recipient-index.exact-max-bytes:67108864}") long exactMaxBytes,
+                                 @Value("${fraud.recipient-index.bloom.enabled:true}") boolean bloomEnabled,
+                                 @Value("${fraud.recipient-index.exact-ttl-seconds:0}") long exactTtlSeconds) {
+        this.transactionRepository = transactionRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.expectedPairs = expectedPairs;
+        this.falsePositiveRate = falsePositiveRate;
+        this.bloomFilter = bloomEnabled
+                ? BloomFilter.create(Funnels.stringFunnel(StandardCharsets.UTF_8), expectedPairs, falsePositiveRate)
+                : null;
+        this.bloomBytes = bloomFilter != null ? bitArrayBytes(bloomFilter) : 0;
+
+        CacheBuilder<Object, Object> builder = CacheBuilder.newBuilder();
+        if (exactTtlSeconds > 0) {
+            builder.expireAfterWrite(exactTtlSeconds, TimeUnit.SECONDS);
+        }
+        this.exactSets = builder
+                .maximumWeight(exactMaxBytes)
+                .weigher((String customerId, RecipientSet set) -> set.estimatedBytes())
+                .removalListener((RemovalListener<String, RecipientSet>) removal -> {
+                    // При replace() объём уже пересчитан в reweigh()
+                    if (removal.getCause() != RemovalCause.REPLACED) {
+                        exactBytes.addAndGet(-removal.getValue().weighedBytes);
+                    }
+                })
+                .build();
+
+        Gauge.builder("fraud.recipient.index.bloom.bytes", this, service -> service.bloomBytes)
+                .register(meterRegistry);
+        Gauge.builder("fraud.recipient.index.exact.bytes", exactBytes, AtomicLong::get)
+                .register(meterRegistry);
+        Gauge.builder("fraud.recipient.index.bloom.negatives", bloomNegatives, AtomicLong::get)
+                .register(meterRegistry);
+        Gauge.builder("fraud.recipient.index.exact.loads", exactLoads, AtomicLong::get)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Прогрев фильтра Блума из существующих транзакций
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUp() {
+        if (bloomFilter == null) {
+            log.info("Фильтр Блума индекса получателей выключен, проверки идут по точным множествам");
+            return;
+        }
+        long start = System.currentTimeMillis();
+        long[] pairs = {0};
+
+        transactionTemplate.executeWithoutResult(status -> {
+            try (Stream<Object[]> stream = transactionRepository.streamCustomerRecipientPairs()) {
+                stream.forEach(row -> {
+                    bloomFilter.put(pairKey((String) row[0], (String) row[1]));
+                    pairs[0]++;
+                });
+            }
+        });
+
+        bloomReady = true;
+        log.info("Индекс получателей прогрет: {} пар за {} мс, фильтр Блума {} КБ",
+                pairs[0], System.currentTimeMillis() - start, bloomBytes / 1024);
+    }
+
+    /**
+     * Учесть новую транзакцию (вызывать до её сохранения в БД).
+     *
+     * @return true, если клиент раньше не переводил этому получателю
+     */
+    public boolean recordTransaction(Transaction transaction) {
+        String customerId = transaction.getCustomerId();
+        String recipientId = transaction.getRecipientId();
+
+        boolean isNew;
+        if (bloomReady && !bloomFilter.mightContain(pairKey(customerId, recipientId))) {
+            bloomNegatives.incrementAndGet();
+            isNew = true;
+            RecipientSet cached = exactSets.getIfPresent(customerId);
+            if (cached != null) {
+                cached.increment(recipientId);
+                reweigh(customerId, cached);
+            }
+        } else {
+            RecipientSet set = exactSet(customerId);
+            isNew = set.increment(recipientId) == 1;
+            if (isNew) {
+                reweigh(customerId, set);
+            }
+        }
+
+        if (bloomFilter != null) {
+            bloomFilter.put(pairKey(customerId, recipientId));
+        }
+        CompletionTracker.track(this, customerId, exactSets.getIfPresent(customerId), this::afterCompletion);
+        return isNew;
+    }
+
+    /**
+     * После отката сбрасываются все затронутые множества (могут разойтись с таблицей).
+     * После фиксации остаются только те, что были в кэше при записи и обновлены здесь;
+     * загруженные параллельно - сбрасываются.
+     */
+    private void afterCompletion(Map<String, RecipientSet> touched, boolean committed) {
+        for (Map.Entry<String, RecipientSet> entry : touched.entrySet()) {
+            String customerId = entry.getKey();
+            versions.incrementAndGet(stripe(customerId));
+            RecipientSet current = exactSets.getIfPresent(customerId);
+            if (current != null && (!committed || current != entry.getValue())) {
+                exactSets.asMap().remove(customerId, current);
+            }
+        }
+    }
+
+    /**
+     * Учесть пачку транзакций, которые будут записаны в БД одной операцией после этого вызова.
+     * Множество клиента, загруженное из БД посреди пачки, ещё не содержит его предыдущих
+     * транзакций из этой пачки - они доучитываются сразу после загрузки.
+     *
+     * @return для каждой транзакции - true, если получатель новый
+     */
+    public boolean[] recordTransactions(List<Transaction> transactions) {
+        boolean[] newRecipients = new boolean[transactions.size()];
+        Map<String, List<String>> recordedInChunk = new HashMap<>();
+
+        for (int i = 0; i < transactions.size(); i++) {
+            Transaction transaction = transactions.get(i);
+            String customerId = transaction.getCustomerId();
+            List<String> earlier = recordedInChunk.computeIfAbsent(customerId, id -> new ArrayList<>());
+
+            boolean needsExactSet = !bloomReady
+                    || bloomFilter.mightContain(pairKey(customerId, transaction.getRecipientId()));
+            if (needsExactSet && !earlier.isEmpty() && exactSets.getIfPresent(customerId) == null) {
+                RecipientSet set = exactSet(customerId);
+                earlier.forEach(set::increment);
+                reweigh(customerId, set);
+            }
+
+            newRecipients[i] = recordTransaction(transaction);
+            earlier.add(transaction.getRecipientId());
+        }
+        return newRecipients;
+    }
+
+    /**
+     * Проверить, новый ли получатель для транзакции.
+     * Сохранённая транзакция (id != null) уже учтена в индексе и не считается.
+     */
+    public boolean isNewRecipient(Transaction transaction) {
+        String customerId = transaction.getCustomerId();
+        String recipientId = transaction.getRecipientId();
+        int alreadyRecorded = transaction.getId() != null ? 1 : 0;
+
+        if (alreadyRecorded == 0 && bloomReady
+                && !bloomFilter.mightContain(pairKey(customerId, recipientId))) {
+            bloomNegatives.incrementAndGet();
+            return true;
+        }
+
+        return exactSet(customerId).count(recipientId) - alreadyRecorded <= 0;
+    }
+
+    /**
+     * Статистика и оценка занимаемой памяти
+     */
+    public RecipientIndexStats getStats() {
+        return RecipientIndexStats.builder()
+                .bloomReady(bloomReady)
+                .expectedPairs(expectedPairs)
+                .approximatePairs(bloomFilter != null ? bloomFilter.approximateElementCount() : null)
+                .configuredFpp(falsePositiveRate)
+                .currentFpp(bloomFilter != null ? bloomFilter.expectedFpp() : null)
+                .bloomBytes(bloomBytes)
+                .exactCustomers(exactSets.size())
+                .exactBytes(exactBytes.get())
+                .bloomNegatives(bloomNegatives.get())
+                .exactLookups(exactLookups.get())
+                .exactLoads(exactLoads.get())
+                .build();
+    }
+
+    /**
+     * Фактический размер битового массива фильтра (Guava его не раскрывает - по сериализованному виду)
+     */
+    private static long bitArrayBytes(BloomFilter<CharSequence> filter) {
+        try (CountingOutputStream out = new CountingOutputStream(ByteStreams.nullOutputStream())) {
+            filter.writeTo(out);
+            return out.getCount() - BLOOM_HEADER_BYTES;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private RecipientSet exactSet(String customerId) {
+        exactLookups.incrementAndGet();
+        RecipientSet set = exactSets.getIfPresent(customerId);
+        if (set != null) {
+            return set;
+        }
+
+        int stripe = stripe(customerId);
+        for (int attempt = 1; ; attempt++) {
+            long version = versions.get(stripe);
+            RecipientSet loaded = loadExactSet(customerId);
+            RecipientSet cached = exactSets.asMap().putIfAbsent(customerId, loaded);
+            if (cached != null) {
+                exactBytes.addAndGet(-loaded.weighedBytes);
+                return cached;
+            }
+            // Проверка после put: фиксация после проверки сбросит множество сама (afterCompletion)
+            if (versions.get(stripe) == version) {
+                // Загружено внутри загрузки, уже записавшей клиента: её транзакции доучитываются
+                // (recordTransactions), после фиксации множество остаётся
+                CompletionTracker.replaceIfTracked(this, customerId, loaded);
+                return loaded;
+            }
+            // Транзакции клиента зафиксированы во время чтения - прочитанное могло их не увидеть
+            exactSets.asMap().remove(customerId, loaded);
+            if (attempt == MAX_LOAD_ATTEMPTS) {
+                return loaded;
+            }
+        }
+    }
+
+    private RecipientSet loadExactSet(String customerId) {
+        exactLoads.incrementAndGet();
+        List<Object[]> rows = transactionRepository.countByRecipientForCustomer(customerId);
+
+        RecipientSet set = new RecipientSet();
+        for (Object[] row : rows) {
+            String recipientId = (String) row[0];
+            int count = ((Long) row[1]).intValue();
+            set.increment(recipientId);
+            set.counts.put(recipientId, count);
+        }
+        set.weighedBytes = set.estimatedBytes();
+        exactBytes.addAndGet(set.weighedBytes);
+        return set;
+    }
+
+    private void reweigh(String customerId, RecipientSet set) {
+        int newWeight = set.estimatedBytes();
+        exactBytes.addAndGet(newWeight - set.weighedBytes);
+        set.weighedBytes = newWeight;
+        exactSets.asMap().replace(customerId, set, set);
+    }
+
+    private static int stripe(String customerId) {
+        return customerId.hashCode() & (VERSION_STRIPES - 1);
+    }
+
+    private static String pairKey(String customerId, String recipientId) {
+        return customerId + PAIR_SEPARATOR + recipientId;
+    }
+
+    /**
+     * Точное множество получателей клиента с числом переводов
+     */
+    private static final class RecipientSet {
+        private final Map<String, Integer> counts = new HashMap<>();
+        private int bytes = SET_OVERHEAD_BYTES;
+        private volatile int weighedBytes;
+
+        synchronized int increment(String recipientId) {
+            int count = counts.merge(recipientId, 1, Integer::sum);
+            if (count == 1) {
+                bytes += ENTRY_OVERHEAD_BYTES + recipientId.length() * 2;
+            }
+            return count;
+        }
+
+        synchronized int count(String recipientId) {
+            return counts.getOrDefault(recipientId, 0);
+        }
+
+        synchronized int estimatedBytes() {
+            return bytes;
+        }
+    }
+}
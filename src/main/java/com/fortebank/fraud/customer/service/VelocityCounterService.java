@@ -0,0 +1,183 @@
+package com.fortebank.fraud.customer.service;
+
+import com.fortebank.fraud.common.transaction.CompletionTracker;
+import com.fortebank.fraud.customer.dto.VelocityCounts;
+import com.fortebank.fraud.customer.velocity.SlidingWindowCounter;
+import com.fortebank.fraud.transaction.entity.Transaction;
+import com.fortebank.fraud.transaction.repository.TransactionRepository;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Счётчики частоты транзакций клиента в скользящих окнах (5м, 1ч, 24ч, 7д).
+ *
+ * Окна считаются по времени самой транзакции (transactionDateTime), а не по
+ * текущему времени, поэтому корректны и при загрузке исторических файлов.
+ * Счётчики клиента загружаются из БД один раз (события за 7 дней до его
+ * последней транзакции), дальше обновляются при загрузке новых транзакций.
+ *
+ * Счётчики, прочитанные из БД до фиксации загрузки, не видят её транзакций:
+ * после фиксации такие счётчики сбрасываются, а загрузка, во время которой
+ * транзакции клиента зафиксированы, не кэшируется (версии по клиентам).
+ */
+@Service
+@Slf4j
+public class VelocityCounterService {
+
+    public static final int WINDOW_5M = 5;
+    public static final int WINDOW_1H = 60;
+    public static final int WINDOW_24H = 24 * 60;
+    public static final int WINDOW_7D = 7 * 24 * 60;
+
+    private static final int VERSION_STRIPES = 1024;
+
+    private final TransactionRepository transactionRepository;
+    private final Cache<String, SlidingWindowCounter> counters;
+
+    // Версия клиентов (по хэшу id) растёт при фиксации их транзакций
+    private final AtomicLongArray versions = new AtomicLongArray(VERSION_STRIPES);
+
+    private final AtomicLong loads = new AtomicLong();
+    private final AtomicLong databaseFallbacks = new AtomicLong();
+
+    public VelocityCounterService(TransactionRepository transactionRepository,
+                                  MeterRegistry meterRegistry,
+                                  @Value("${fraud.velocity.max-customers:100000}") long maxCustomers) {
+        this.transactionRepository = transactionRepository;
+        this.counters = CacheBuilder.newBuilder()
+                .maximumSize(maxCustomers)
+                .build();
+
+        Gauge.builder("fraud.velocity.customers", counters, Cache::size)
+                .register(meterRegistry);
+        Gauge.builder("fraud.velocity.bytes", counters,
+                        c -> (double) c.size() * SlidingWindowCounter.estimatedBytes())
+                .register(meterRegistry);
+        Gauge.builder("fraud.velocity.loads", loads, AtomicLong::get)
+                .register(meterRegistry);
+        Gauge.builder("fraud.velocity.db.fallbacks", databaseFallbacks, AtomicLong::get)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Учесть загруженную транзакцию (O(1)).
+     * Если счётчики клиента ещё не загружены, они будут прочитаны из БД при первом запросе.
+     */
+    public void recordTransaction(Transaction transaction) {
+        String customerId = transaction.getCustomerId();
+        SlidingWindowCounter counter = counters.getIfPresent(customerId);
+        if (counter != null) {
+            counter.add(epochMinute(transaction.getTransactionDateTime()));
+        }
+        CompletionTracker.track(this, customerId, counter, this::afterCompletion);
+    }
+
+    /**
+     * После отката сбрасываются все затронутые счётчики. После фиксации остаются только те,
+     * что были в кэше при записи и обновлены здесь; загруженные параллельно - сбрасываются.
+     */
+    private void afterCompletion(Map<String, SlidingWindowCounter> touched, boolean committed) {
+        for (Map.Entry<String, SlidingWindowCounter> entry : touched.entrySet()) {
+            String customerId = entry.getKey();
+            versions.incrementAndGet(stripe(customerId));
+            SlidingWindowCounter current = counters.getIfPresent(customerId);
+            if (current != null && (!committed || current != entry.getValue())) {
+                counters.asMap().remove(customerId, current);
+            }
+        }
+    }
+
+    /**
+     * Количество транзакций клиента в окнах, заканчивающихся временем транзакции.
+     * Сама транзакция учитывается всегда: сохранённая - уже есть в счётчиках,
+     * несохранённая (оценка в реальном времени) - добавляется к результату.
+     *
+     * @param lastTransactionAt время последней известной транзакции клиента (из профиля), может быть null
+     */
+    public VelocityCounts getCounts(Transaction transaction, LocalDateTime lastTransactionAt) {
+        return VelocityCounts.builder()
+                .count5m(count(transaction, lastTransactionAt, WINDOW_5M))
+                .count1h(count(transaction, lastTransactionAt, WINDOW_1H))
+                .count24h(count(transaction, lastTransactionAt, WINDOW_24H))
+                .count7d(count(transaction, lastTransactionAt, WINDOW_7D))
+                .build();
+    }
+
+    /**
+     * Количество транзакций клиента в произвольном окне, заканчивающемся временем транзакции
+     */
+    public int count(Transaction transaction, LocalDateTime lastTransactionAt, int windowMinutes) {
+        String customerId = transaction.getCustomerId();
+        LocalDateTime at = transaction.getTransactionDateTime();
+        int self = transaction.getId() == null ? 1 : 0;
+
+        int count = counter(customerId, lastTransactionAt).count(epochMinute(at), windowMinutes);
+        if (count != SlidingWindowCounter.OUT_OF_RANGE) {
+            return count + self;
+        }
+
+        // Окно старше буферов (например, анализ давней транзакции) - считаем по БД
+        databaseFallbacks.incrementAndGet();
+        LocalDateTime end = at.withSecond(0).withNano(0).plusMinutes(1);
+        return (int) transactionRepository.countInWindow(customerId, end.minusMinutes(windowMinutes), end) + self;
+    }
+
+    private SlidingWindowCounter counter(String customerId, LocalDateTime lastTransactionAt) {
+        SlidingWindowCounter counter = counters.getIfPresent(customerId);
+        if (counter != null) {
+            return counter;
+        }
+
+        int stripe = stripe(customerId);
+        long version = versions.get(stripe);
+        SlidingWindowCounter loaded = loadCounter(customerId, lastTransactionAt);
+        SlidingWindowCounter cached = counters.asMap().putIfAbsent(customerId, loaded);
+        if (cached != null) {
+            return cached;
+        }
+        // Транзакции клиента зафиксированы во время чтения - прочитанное могло их не увидеть.
+        // Проверка после put: фиксация после проверки сбросит счётчик сама (afterCompletion)
+        if (versions.get(stripe) != version) {
+            counters.asMap().remove(customerId, loaded);
+        }
+        return loaded;
+    }
+
+    private SlidingWindowCounter loadCounter(String customerId, LocalDateTime lastTransactionAt) {
+        loads.incrementAndGet();
+        SlidingWindowCounter counter = new SlidingWindowCounter();
+        if (lastTransactionAt == null) {
+            return counter;
+        }
+
+        LocalDateTime to = lastTransactionAt.withSecond(0).withNano(0).plusMinutes(1);
+        List<LocalDateTime> times = transactionRepository.findTransactionTimesInWindow(
+                customerId, to.minusMinutes(WINDOW_7D), to);
+        for (LocalDateTime time : times) {
+            counter.add(epochMinute(time));
+        }
+
+        log.debug("Счётчики частоты клиента {} загружены: {} транзакций за 7 дней", customerId, times.size());
+        return counter;
+    }
+
+    private static int stripe(String customerId) {
+        return customerId.hashCode() & (VERSION_STRIPES - 1);
+    }
+
+    private static long epochMinute(LocalDateTime dateTime) {
+        return Math.floorDiv(dateTime.toEpochSecond(ZoneOffset.UTC), 60);
+    }
+}
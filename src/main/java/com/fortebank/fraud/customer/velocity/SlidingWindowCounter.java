@@ -0,0 +1,154 @@
+package com.fortebank.fraud.customer.velocity;
+
+import java.util.Arrays;
+
+/**
+ * Счётчик событий клиента в скользящих окнах по времени события.
+ *
+ * Два кольцевых буфера:
+ * - поминутный на 24 часа (точные окна до суток: 5м, 1ч, 24ч);
+ * - почасовой на 7 дней (окна больше суток, с точностью до часа).
+ *
+ * В корзинах хранятся нарастающие итоги (событий по эту минуту/час включительно),
+ * поэтому запрос любого окна - O(1): разность двух итогов. Добавление события
+ * по порядку времени - O(1), опоздавшего на k корзин - O(k) (итоги после него сдвигаются).
+ * Время - в минутах эпохи (UTC). Потокобезопасен.
+ */
+public class SlidingWindowCounter {
+
+    public static final int MINUTE_BUCKETS = 24 * 60;
+    public static final int HOUR_BUCKETS = 7 * 24;
+
+    /** Признак "окно не покрывается буферами" - вызывающий должен посчитать по БД */
+    public static final int OUT_OF_RANGE = -1;
+
+    private final Ring minutes = new Ring(MINUTE_BUCKETS);
+    private final Ring hours = new Ring(HOUR_BUCKETS);
+
+    /**
+     * Учесть событие в указанной минуте
+     */
+    public synchronized void add(long epochMinute) {
+        minutes.add(epochMinute);
+        hours.add(Math.floorDiv(epochMinute, 60));
+    }
+
+    /**
+     * Количество событий в окне (endMinute - windowMinutes, endMinute]
+     *
+     * @return число событий или {@link #OUT_OF_RANGE}, если окно не покрывается буферами
+     */
+    public synchronized int count(long endMinute, int windowMinutes) {
+        if (minutes.isEmpty()) {
+            return 0;
+        }
+
+        long startMinute = endMinute - windowMinutes; // не включительно
+
+        // Окна до суток - по минутам, только если всё окно внутри поминутного буфера
+        if (windowMinutes <= MINUTE_BUCKETS && minutes.covers(startMinute)) {
+            return minutes.count(startMinute, endMinute);
+        }
+
+        // Окна больше суток - по часам
+        if (windowMinutes > MINUTE_BUCKETS) {
+            long endHour = Math.floorDiv(endMinute, 60);
+            long startHour = endHour - windowMinutes / 60; // не включительно
+            if (!hours.covers(startHour)) {
+                return OUT_OF_RANGE;
+            }
+            return hours.count(startHour, endHour);
+        }
+
+        return OUT_OF_RANGE;
+    }
+
+    /**
+     * Оценка занимаемой памяти
+     */
+    public static int estimatedBytes() {
+        return 16 + 2 * (16 + 8 + 8 + 4) + 16 + MINUTE_BUCKETS * 4 + 16 + HOUR_BUCKETS * 4;
+    }
+
+    /**
+     * Кольцевой буфер нарастающих итогов по корзинам (head - size, head].
+     *
+     * Итоги считаются с последнего сброса буфера и могут переполнить int: разности
+     * итогов при этом остаются верными, пока событий в буфере меньше 2^31.
+     */
+    private static final class Ring {
+
+        private final int size;
+        private final int[] totals;
+
+        private long head = Long.MIN_VALUE;
+        private int floor;      // Итог по корзине head - size, уже вышедшей из буфера
+
+        Ring(int size) {
+            this.size = size;
+            this.totals = new int[size];
+        }
+
+        boolean isEmpty() {
+            return head == Long.MIN_VALUE;
+        }
+
+        /**
+         * Итог по корзине start доступен (окно, начинающееся после start, целиком в буфере)
+         */
+        boolean covers(long start) {
+            return start >= head - size;
+        }
+
+        void add(long bucket) {
+            advance(bucket);
+            if (bucket <= head - size) {
+                return;     // Старше буфера - окна, которые он покрывает, не затрагиваются
+            }
+            for (long b = bucket; b <= head; b++) {
+                totals[slot(b)]++;
+            }
+        }
+
+        /**
+         * Событий в корзинах (start, end]; start должен быть покрыт буфером
+         */
+        int count(long start, long end) {
+            if (start >= head || end <= start) {
+                return 0;
+            }
+            return total(Math.min(end, head)) - total(start);
+        }
+
+        private int total(long bucket) {
+            return bucket == head - size ? floor : totals[slot(bucket)];
+        }
+
+        private void advance(long bucket) {
+            if (bucket <= head) {
+                return;
+            }
+            if (head == Long.MIN_VALUE) {
+                Arrays.fill(totals, 0);
+                floor = 0;
+            } else if (bucket - head >= size) {
+                // Все корзины буфера новее прежней головы и пусты
+                int total = totals[slot(head)];
+                Arrays.fill(totals, total);
+                floor = total;
+            } else {
+                int total = totals[slot(head)];
+                for (long b = head + 1; b <= bucket; b++) {
+                    // Корзина b занимает место вышедшей b - size
+                    floor = totals[slot(b)];
+                    totals[slot(b)] = total;
+                }
+            }
+            head = bucket;
+        }
+
+        private int slot(long bucket) {
+            return (int) Math.floorMod(bucket, (long) size);
+        }
+    }
+}
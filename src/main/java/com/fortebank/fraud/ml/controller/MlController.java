@@ -0,0 +1,49 @@
+package com.fortebank.fraud.ml.controller;
+
+import com.fortebank.fraud.common.response.ApiResponse;
+import com.fortebank.fraud.ml.dto.MlModelInfo;
+import com.fortebank.fraud.ml.service.MlModelService;
+import com.fortebank.fraud.ml.service.MlTrainingService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+@RestController
+@RequestMapping("/api/ml")
+@RequiredArgsConstructor
+@Slf4j
+public class MlController {
+
+    private final MlModelService mlModelService;
+    private final MlTrainingService mlTrainingService;
+
+    /**
+     * Текущая ML модель: версия, метрики, веса признаков
+     */
+    @GetMapping("/model")
+    public ResponseEntity<ApiResponse<MlModelInfo>> getModel() {
+        return ResponseEntity.ok(ApiResponse.success(
+                mlModelService.getInfo(),
+                "Информация о модели загружена"
+        ));
+    }
+
+    /**
+     * Обучить новую версию модели на размеченной истории транзакций.
+     * Модель устанавливается, если её AUC не ниже текущей; force - установить в любом случае.
+     */
+    @PostMapping("/train")
+    public ResponseEntity<ApiResponse<MlModelInfo>> train(
+            @RequestParam(defaultValue = "false") boolean force) {
+        log.info("Запуск обучения ML модели");
+
+        MlModelInfo info = mlTrainingService.train(force);
+        return ResponseEntity.ok(ApiResponse.success(
+                info,
+                Boolean.TRUE.equals(info.getInstalled())
+                        ? "Модель обучена"
+                        : "Модель обучена, но не установлена: AUC ниже текущей модели"
+        ));
+    }
+}
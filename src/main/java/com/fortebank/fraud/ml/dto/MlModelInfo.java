@@ -0,0 +1,33 @@
+package com.fortebank.fraud.ml.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+
+/**
+ * Текущая ML модель и её метрики
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class MlModelInfo {
+    private boolean loaded;
+    private Integer version;
+    private String path;
+    private LocalDateTime trainedAt;
+    private Integer samples;
+    private Integer fraudSamples;
+    private Double auc;                 // На отложенной выборке (20% клиентов)
+    private Double logLoss;
+    private Double blendWeight;         // Доля ML в итоговой вероятности
+    private Long trainingMillis;        // Только в ответе на обучение
+    private Boolean installed;          // Только в ответе на обучение: новая модель установлена
+    private Double candidateAuc;        // Только в ответе на обучение: метрики новой модели
+    private Double candidateLogLoss;
+    private Map<String, Double> weights;
+}
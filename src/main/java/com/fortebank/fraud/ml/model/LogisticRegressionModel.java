@@ -0,0 +1,196 @@
+package com.fortebank.fraud.ml.model;
+
+import com.fortebank.fraud.scoring.rule.Feature;
+import com.fortebank.fraud.scoring.rule.FeatureVector;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * Логистическая регрессия по вектору признаков транзакции.
+ *
+ * Стандартизация признаков при загрузке сворачивается в веса, поэтому
+ * инференс - одно скалярное произведение по double[] и сигмоида, без аллокаций.
+ *
+ * Формат файла модели (DataOutputStream):
+ * magic, версия формата, версия обучения, версия модели, время обучения, метрики,
+ * затем пары (имя признака, вес) и свободный член. В формате 1 версии обучения нет (это версия 1).
+ * Признаки сопоставляются по имени, поэтому модель переживает добавление новых признаков.
+ */
+public class LogisticRegressionModel {
+
+    private static final int MAGIC = 0x46524D4C; // "FRML"
+    private static final int FORMAT_VERSION = 2;
+
+    /**
+     * Версия схемы обучения. Метрики моделей разных версий несравнимы:
+     * 1 - признаки по всей истории клиента, без калибровки;
+     * 2 - признаки на момент транзакции, вероятности откалиброваны к доле мошенничества.
+     */
+    public static final int TRAINING_VERSION = 2;
+
+    private final int trainingVersion;
+    private final int version;
+    private final long trainedAt;       // epoch millis
+    private final int samples;
+    private final int fraudSamples;
+    private final double auc;           // на отложенной выборке
+    private final double logLoss;       // на отложенной выборке
+
+    private final double[] weights;     // по Feature.ordinal(), в исходной шкале признаков
+    private final double bias;
+
+    public LogisticRegressionModel(int version, long trainedAt, int samples, int fraudSamples,
+                                   double auc, double logLoss, double[] weights, double bias) {
+        this(TRAINING_VERSION, version, trainedAt, samples, fraudSamples, auc, logLoss, weights, bias);
+    }
+
+    private LogisticRegressionModel(int trainingVersion, int version, long trainedAt, int samples, int fraudSamples,
+                                    double auc, double logLoss, double[] weights, double bias) {
+        if (weights.length != Feature.COUNT) {
+            throw new IllegalArgumentException("Ожидается " + Feature.COUNT + " весов, получено " + weights.length);
+        }
+        this.trainingVersion = trainingVersion;
+        this.version = version;
+        this.trainedAt = trainedAt;
+        this.samples = samples;
+        this.fraudSamples = fraudSamples;
+        this.auc = auc;
+        this.logLoss = logLoss;
+        this.weights = weights;
+        this.bias = bias;
+    }
+
+    /**
+     * Вероятность мошенничества (0-1)
+     */
+    public double predict(FeatureVector features) {
+        double z = bias;
+        for (int i = 0; i < weights.length; i++) {
+            z += weights[i] * features.get(i);
+        }
+        return sigmoid(z);
+    }
+
+    /**
+     * Вероятность по строке признаков (порядок - Feature.ordinal())
+     */
+    public double predict(double[] row) {
+        double z = bias;
+        for (int i = 0; i < weights.length; i++) {
+            z += weights[i] * row[i];
+        }
+        return sigmoid(z);
+    }
+
+    public static double sigmoid(double z) {
+        if (z >= 0) {
+            return 1.0 / (1.0 + Math.exp(-z));
+        }
+        double e = Math.exp(z);
+        return e / (1.0 + e);
+    }
+
+    public void write(Path path) throws IOException {
+        Files.createDirectories(path.toAbsolutePath().getParent());
+        Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            out.writeInt(trainingVersion);
+            out.writeInt(version);
+            out.writeLong(trainedAt);
+            out.writeInt(samples);
+            out.writeInt(fraudSamples);
+            out.writeDouble(auc);
+            out.writeDouble(logLoss);
+            out.writeInt(weights.length);
+            for (Feature feature : Feature.values()) {
+                out.writeUTF(feature.name());
+                out.writeDouble(weights[feature.ordinal()]);
+            }
+            out.writeDouble(bias);
+        }
+        // Файл появляется целиком - при старте не прочитаем недописанную модель
+        Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    public static LogisticRegressionModel read(Path path) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException("Не файл модели: " + path);
+            }
+            int format = in.readInt();
+            if (format != 1 && format != FORMAT_VERSION) {
+                throw new IOException("Неподдерживаемый формат модели " + format + ": " + path);
+            }
+
+            int trainingVersion = format == 1 ? 1 : in.readInt();
+            int version = in.readInt();
+            long trainedAt = in.readLong();
+            int samples = in.readInt();
+            int fraudSamples = in.readInt();
+            double auc = in.readDouble();
+            double logLoss = in.readDouble();
+
+            double[] weights = new double[Feature.COUNT];
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                String name = in.readUTF();
+                double weight = in.readDouble();
+                try {
+                    weights[Feature.valueOf(name).ordinal()] = weight;
+                } catch (IllegalArgumentException e) {
+                    // Признак удалён из кода - его вес игнорируется
+                }
+            }
+            double bias = in.readDouble();
+
+            return new LogisticRegressionModel(trainingVersion, version, trainedAt, samples, fraudSamples,
+                    auc, logLoss, weights, bias);
+        }
+    }
+
+    public int getTrainingVersion() {
+        return trainingVersion;
+    }
+
+    public int getVersion() {
+        return version;
+    }
+
+    public long getTrainedAt() {
+        return trainedAt;
+    }
+
+    public int getSamples() {
+        return samples;
+    }
+
+    public int getFraudSamples() {
+        return fraudSamples;
+    }
+
+    public double getAuc() {
+        return auc;
+    }
+
+    public double getLogLoss() {
+        return logLoss;
+    }
+
+    public double getWeight(Feature feature) {
+        return weights[feature.ordinal()];
+    }
+
+    public double getBias() {
+        return bias;
+    }
+}
@@ -0,0 +1,212 @@
+package com.fortebank.fraud.ml.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Обучение логистической регрессии полным градиентным спуском (Adam)
+ * со стандартизацией признаков, весами классов и L2-регуляризацией.
+ * Градиент на каждой эпохе считается параллельно по частям выборки.
+ *
+ * Веса классов уравнивают вклад редкого мошенничества, но сдвигают априорную вероятность к 50%;
+ * после обучения сдвиг снимается поправкой свободного члена на log(pos/neg), и модель
+ * возвращает вероятности в масштабе реальной доли мошенничества.
+ */
+public class LogisticRegressionTrainer {
+
+    private static final double BETA1 = 0.9;
+    private static final double BETA2 = 0.999;
+    private static final double EPSILON = 1e-8;
+
+    private final int epochs;
+    private final double learningRate;
+    private final double l2;
+    private final int partitions;
+    private final ExecutorService executor;
+
+    public LogisticRegressionTrainer(int epochs, double learningRate, double l2,
+                                     int partitions, ExecutorService executor) {
+        this.epochs = epochs;
+        this.learningRate = learningRate;
+        this.l2 = l2;
+        this.partitions = Math.max(1, partitions);
+        this.executor = executor;
+    }
+
+    /**
+     * Результат обучения: веса и свободный член в исходной шкале признаков
+     */
+    public record Result(double[] weights, double bias) {
+    }
+
+    /**
+     * @param x      признаки, x[i] - строка размерности d; стандартизуются на месте (без копии выборки)
+     * @param labels метки (true - мошенничество)
+     */
+    public Result train(double[][] x, boolean[] labels) {
+        int n = x.length;
+        int d = x[0].length;
+
+        // Стандартизация
+        double[] mean = new double[d];
+        double[] std = new double[d];
+        for (double[] row : x) {
+            for (int j = 0; j < d; j++) {
+                mean[j] += row[j];
+            }
+        }
+        for (int j = 0; j < d; j++) {
+            mean[j] /= n;
+        }
+        for (double[] row : x) {
+            for (int j = 0; j < d; j++) {
+                double diff = row[j] - mean[j];
+                std[j] += diff * diff;
+            }
+        }
+        for (int j = 0; j < d; j++) {
+            std[j] = Math.sqrt(std[j] / n);
+            if (std[j] < 1e-12) {
+                std[j] = 1; // Константный признак - вес останется около нуля
+            }
+        }
+        double[][] z = x;
+        for (double[] row : z) {
+            for (int j = 0; j < d; j++) {
+                row[j] = (row[j] - mean[j]) / std[j];
+            }
+        }
+
+        // Веса классов: мошенничество встречается редко
+        int positives = 0;
+        for (boolean label : labels) {
+            if (label) {
+                positives++;
+            }
+        }
+        double positiveWeight = positives > 0 ? n / (2.0 * positives) : 1;
+        double negativeWeight = positives < n ? n / (2.0 * (n - positives)) : 1;
+
+        // Параметры: w[0..d-1] - веса, w[d] - свободный член
+        double[] w = new double[d + 1];
+        double[] m = new double[d + 1];
+        double[] v = new double[d + 1];
+
+        int chunk = (n + partitions - 1) / partitions;
+        for (int epoch = 1; epoch <= epochs; epoch++) {
+            double[] gradient = gradient(z, labels, w, chunk, positiveWeight, negativeWeight);
+
+            for (int j = 0; j <= d; j++) {
+                double g = gradient[j] / n + (j < d ? l2 * w[j] : 0);
+                m[j] = BETA1 * m[j] + (1 - BETA1) * g;
+                v[j] = BETA2 * v[j] + (1 - BETA2) * g * g;
+                double mHat = m[j] / (1 - Math.pow(BETA1, epoch));
+                double vHat = v[j] / (1 - Math.pow(BETA2, epoch));
+                w[j] -= learningRate * mHat / (Math.sqrt(vHat) + EPSILON);
+            }
+        }
+
+        // Сворачиваем стандартизацию в веса
+        double[] weights = new double[d];
+        double bias = w[d];
+        for (int j = 0; j < d; j++) {
+            weights[j] = w[j] / std[j];
+            bias -= w[j] * mean[j] / std[j];
+        }
+
+        // Снять сдвиг априорной вероятности от весов классов: logit += log(w_neg / w_pos) = log(pos / neg)
+        if (positives > 0 && positives < n) {
+            bias += Math.log((double) positives / (n - positives));
+        }
+        return new Result(weights, bias);
+    }
+
+    private double[] gradient(double[][] z, boolean[] labels, double[] w, int chunk,
+                              double positiveWeight, double negativeWeight) {
+        int n = z.length;
+        int d = w.length - 1;
+
+        List<CompletableFuture<double[]>> parts = new ArrayList<>();
+        for (int from = 0; from < n; from += chunk) {
+            int start = from;
+            int end = Math.min(n, from + chunk);
+            parts.add(CompletableFuture.supplyAsync(() -> {
+                double[] g = new double[d + 1];
+                for (int i = start; i < end; i++) {
+                    double[] row = z[i];
+                    double s = w[d];
+                    for (int j = 0; j < d; j++) {
+                        s += w[j] * row[j];
+                    }
+                    double error = LogisticRegressionModel.sigmoid(s) - (labels[i] ? 1 : 0);
+                    error *= labels[i] ? positiveWeight : negativeWeight;
+                    for (int j = 0; j < d; j++) {
+                        g[j] += error * row[j];
+                    }
+                    g[d] += error;
+                }
+                return g;
+            }, executor));
+        }
+
+        double[] total = new double[d + 1];
+        for (CompletableFuture<double[]> part : parts) {
+            double[] g = part.join();
+            for (int j = 0; j <= d; j++) {
+                total[j] += g[j];
+            }
+        }
+        return total;
+    }
+
+    /**
+     * ROC AUC (через ранги, с учётом совпадающих оценок)
+     */
+    public static double auc(double[] scores, boolean[] labels) {
+        int n = scores.length;
+        Integer[] order = new Integer[n];
+        for (int i = 0; i < n; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> Double.compare(scores[a], scores[b]));
+
+        double positiveRankSum = 0;
+        long positives = 0;
+        int i = 0;
+        while (i < n) {
+            int j = i;
+            while (j + 1 < n && scores[order[j + 1]] == scores[order[i]]) {
+                j++;
+            }
+            double rank = (i + j) / 2.0 + 1;
+            for (int k = i; k <= j; k++) {
+                if (labels[order[k]]) {
+                    positiveRankSum += rank;
+                    positives++;
+                }
+            }
+            i = j + 1;
+        }
+
+        long negatives = n - positives;
+        if (positives == 0 || negatives == 0) {
+            return Double.NaN;
+        }
+        return (positiveRankSum - positives * (positives + 1) / 2.0) / (positives * (double) negatives);
+    }
+
+    /**
+     * Средняя логистическая ошибка
+     */
+    public static double logLoss(double[] scores, boolean[] labels) {
+        double sum = 0;
+        for (int i = 0; i < scores.length; i++) {
+            double p = Math.min(Math.max(scores[i], 1e-15), 1 - 1e-15);
+            sum += labels[i] ? -Math.log(p) : -Math.log(1 - p);
+        }
+        return scores.length > 0 ? sum / scores.length : Double.NaN;
+    }
+}
@@ -0,0 +1,162 @@
+package com.fortebank.fraud.ml.service;
+
+import com.fortebank.fraud.ml.dto.MlModelInfo;
+import com.fortebank.fraud.ml.model.LogisticRegressionModel;
+import com.fortebank.fraud.scoring.rule.Feature;
+import com.fortebank.fraud.scoring.rule.FeatureVector;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * ML модель внутри JVM: загрузка последней версии из каталога моделей при старте,
+ * сохранение новых версий и инференс.
+ */
+@Service
+@Slf4j
+public class MlModelService {
+
+    private static final Pattern MODEL_FILE = Pattern.compile("fraud-model-v(\\d+)\\.bin");
+
+    private final Path modelDir;
+    private final double blendWeight;
+
+    private volatile LogisticRegressionModel model;
+    private volatile Path modelPath;
+
+    public MlModelService(@Value("${fraud.ml.model-dir:models}") String modelDir,
+                          @Value("${fraud.ml.blend-weight:0.5}") double blendWeight) {
+        this.modelDir = Paths.get(modelDir);
+        this.blendWeight = Math.min(Math.max(blendWeight, 0), 1);
+    }
+
+    @PostConstruct
+    public void init() {
+        Path latest = findLatest();
+        if (latest == null) {
+            log.info("ML модель не найдена в {}, вероятность - только по правилам", modelDir.toAbsolutePath());
+            return;
+        }
+        try {
+            model = LogisticRegressionModel.read(latest);
+            modelPath = latest;
+            log.info("ML модель v{} загружена из {} (AUC {})", model.getVersion(), latest,
+                    String.format("%.3f", model.getAuc()));
+        } catch (IOException e) {
+            log.error("Не удалось загрузить ML модель {}: {}", latest, e.getMessage());
+        }
+    }
+
+    /**
+     * Вероятность мошенничества по модели, NaN - модели нет
+     */
+    public double predict(FeatureVector features) {
+        LogisticRegressionModel current = model;
+        return current != null ? current.predict(features) : Double.NaN;
+    }
+
+    public boolean isLoaded() {
+        return model != null;
+    }
+
+    /**
+     * Текущая модель, null - модели нет
+     */
+    public LogisticRegressionModel getModel() {
+        return model;
+    }
+
+    /**
+     * Доля ML в итоговой вероятности
+     */
+    public double getBlendWeight() {
+        return blendWeight;
+    }
+
+    /**
+     * Следующий номер версии модели
+     */
+    public int nextVersion() {
+        Path latest = findLatest();
+        return latest != null ? version(latest) + 1 : 1;
+    }
+
+    /**
+     * Сохранить новую версию и сразу начать её использовать
+     */
+    public Path install(LogisticRegressionModel newModel) {
+        Path path = modelDir.resolve("fraud-model-v" + newModel.getVersion() + ".bin");
+        try {
+            newModel.write(path);
+        } catch (IOException e) {
+            throw new RuntimeException("Не удалось сохранить ML модель: " + e.getMessage(), e);
+        }
+        model = newModel;
+        modelPath = path;
+        log.info("ML модель v{} сохранена в {}", newModel.getVersion(), path);
+        return path;
+    }
+
+    public MlModelInfo getInfo() {
+        LogisticRegressionModel current = model;
+        if (current == null) {
+            return MlModelInfo.builder()
+                    .loaded(false)
+                    .blendWeight(blendWeight)
+                    .build();
+        }
+
+        Map<String, Double> weights = new LinkedHashMap<>();
+        for (Feature feature : Feature.values()) {
+            weights.put(feature.name(), current.getWeight(feature));
+        }
+        weights.put("BIAS", current.getBias());
+
+        return MlModelInfo.builder()
+                .loaded(true)
+                .version(current.getVersion())
+                .path(modelPath != null ? modelPath.toString() : null)
+                .trainedAt(LocalDateTime.ofInstant(Instant.ofEpochMilli(current.getTrainedAt()), ZoneId.systemDefault()))
+                .samples(current.getSamples())
+                .fraudSamples(current.getFraudSamples())
+                .auc(current.getAuc())
+                .logLoss(current.getLogLoss())
+                .blendWeight(blendWeight)
+                .weights(weights)
+                .build();
+    }
+
+    private Path findLatest() {
+        if (!Files.isDirectory(modelDir)) {
+            return null;
+        }
+        try (Stream<Path> files = Files.list(modelDir)) {
+            return files
+                    .filter(p -> MODEL_FILE.matcher(p.getFileName().toString()).matches())
+                    .max((a, b) -> Integer.compare(version(a), version(b)))
+                    .orElse(null);
+        } catch (IOException e) {
+            log.error("Не удалось прочитать каталог моделей {}: {}", modelDir, e.getMessage());
+            return null;
+        }
+    }
+
+    private static int version(Path path) {
+        Matcher matcher = MODEL_FILE.matcher(path.getFileName().toString());
+        return matcher.matches() ? Integer.parseInt(matcher.group(1)) : 0;
+    }
+}
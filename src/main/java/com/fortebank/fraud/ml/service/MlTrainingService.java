@@ -0,0 +1,266 @@
+package com.fortebank.fraud.ml.service;
+
+import com.fortebank.fraud.customer.entity.CustomerBehaviorPattern;
+import com.fortebank.fraud.customer.repository.CustomerBehaviorPatternRepository;
+import com.fortebank.fraud.customer.service.CustomerStatsService;
+import com.fortebank.fraud.ml.dto.MlModelInfo;
+import com.fortebank.fraud.ml.model.LogisticRegressionModel;
+import com.fortebank.fraud.ml.model.LogisticRegressionTrainer;
+import com.fortebank.fraud.scoring.service.FeatureExtractor;
+import com.fortebank.fraud.transaction.entity.Transaction;
+import com.fortebank.fraud.transaction.repository.TransactionRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Обучение ML модели на размеченной истории транзакций (Transaction.isFraud).
+ *
+ * Признаки - тот же вектор, что и для правил (сумма, частота, получатель,
+ * поведенческие паттерны), но на момент каждой транзакции (PointInTimeFeatures).
+ * Транзакции читаются страницами по fraud.ml.customers-per-page клиентов, в памяти
+ * остаются только строки признаков. 20% клиентов откладываются для оценки AUC,
+ * чтобы транзакции одного клиента не попадали в обе выборки.
+ *
+ * Новая модель устанавливается, только если её AUC на отложенной выборке не ниже
+ * текущей модели той же схемы обучения (или при force).
+ */
+@Service
+@Slf4j
+public class MlTrainingService {
+
+    private static final int HOLDOUT_BUCKETS = 5;
+
+    private final TransactionRepository transactionRepository;
+    private final CustomerBehaviorPatternRepository behaviorPatternRepository;
+    private final PointInTimeFeatures features;
+    private final MlModelService mlModelService;
+    private final ExecutorService executor;
+
+    private final int customersPerPage;
+
+    private final int epochs;
+    private final double learningRate;
+    private final double l2;
+
+    private final AtomicBoolean training = new AtomicBoolean();
+
+    public MlTrainingService(TransactionRepository transactionRepository,
+                             CustomerBehaviorPatternRepository behaviorPatternRepository,
+                             FeatureExtractor featureExtractor,
+                             CustomerStatsService customerStatsService,
+                             MlModelService mlModelService,
+                             @Qualifier("mlExecutor") ExecutorService executor,
+                             @Value("${fraud.ml.customers-per-page:1000}") int customersPerPage,
+                             @Value("${fraud.ml.epochs:300}") int epochs,
+                             @Value("${fraud.ml.learning-rate:0.05}") double learningRate,
+                             @Value("${fraud.ml.l2:0.0001}") double l2) {
+        this.transactionRepository = transactionRepository;
+        this.behaviorPatternRepository = behaviorPatternRepository;
+        this.features = new PointInTimeFeatures(featureExtractor, customerStatsService);
+        this.mlModelService = mlModelService;
+        this.executor = executor;
+        this.customersPerPage = Math.max(1, customersPerPage);
+        this.epochs = epochs;
+        this.learningRate = learningRate;
+        this.l2 = l2;
+    }
+
+    /**
+     * Обучить новую версию модели; если она не хуже текущей (или force), сохранить её и начать использовать
+     */
+    public MlModelInfo train(boolean force) {
+        if (!training.compareAndSet(false, true)) {
+            throw new RuntimeException("Обучение модели уже выполняется");
+        }
+
+        try {
+            long start = System.currentTimeMillis();
+
+            // 1. Признаки - страницами клиентов, внутри страницы параллельно по клиентам
+            Dataset train = new Dataset();
+            Dataset holdout = new Dataset();
+            int customers = 0;
+            String after = "";
+            List<String> page;
+            while (!(page = transactionRepository.findCustomerIdsAfter(after, PageRequest.of(0, customersPerPage))).isEmpty()) {
+                Map<String, CustomerHistory> histories = loadPage(page);
+
+                List<CompletableFuture<Split>> parts = new ArrayList<>();
+                for (List<CustomerHistory> slice : slices(histories.values())) {
+                    parts.add(CompletableFuture.supplyAsync(() -> extract(slice), executor));
+                }
+                for (CompletableFuture<Split> part : parts) {
+                    Split split = part.join();
+                    train.addAll(split.train());
+                    holdout.addAll(split.holdout());
+                }
+
+                customers += page.size();
+                after = page.get(page.size() - 1);
+            }
+            if (customers == 0) {
+                throw new RuntimeException("Нет транзакций для обучения");
+            }
+            log.info("Обучение ML модели: {} транзакций, {} клиентов",
+                    train.rows.size() + holdout.rows.size(), customers);
+            if (train.rows.isEmpty()) {
+                throw new RuntimeException("Нет данных для обучения после отбора отложенной выборки");
+            }
+
+            double[][] x = train.rows.toArray(new double[0][]);
+            boolean[] y = train.labelsArray();
+            int fraudSamples = train.positives();
+            train.rows.clear();
+
+            // 2. Обучение - градиент параллельно по частям выборки
+            int threads = Runtime.getRuntime().availableProcessors();
+            LogisticRegressionTrainer.Result result = new LogisticRegressionTrainer(
+                    epochs, learningRate, l2, threads, executor).train(x, y);
+
+            LogisticRegressionModel candidate = new LogisticRegressionModel(
+                    0, 0, 0, 0, 0, 0, result.weights(), result.bias());
+
+            // 3. Метрики на отложенных клиентах
+            double[] scores = new double[holdout.rows.size()];
+            for (int i = 0; i < scores.length; i++) {
+                scores[i] = candidate.predict(holdout.rows.get(i));
+            }
+            boolean[] holdoutLabels = holdout.labelsArray();
+            double auc = LogisticRegressionTrainer.auc(scores, holdoutLabels);
+            double logLoss = LogisticRegressionTrainer.logLoss(scores, holdoutLabels);
+
+            // 4. Установка - только если новая модель не хуже текущей
+            long elapsed = System.currentTimeMillis() - start;
+            LogisticRegressionModel current = mlModelService.getModel();
+            boolean install = force || isBetter(auc, current);
+            if (install) {
+                LogisticRegressionModel model = new LogisticRegressionModel(
+                        mlModelService.nextVersion(), System.currentTimeMillis(),
+                        x.length, fraudSamples, auc, logLoss, result.weights(), result.bias());
+                mlModelService.install(model);
+                log.info("ML модель v{} обучена за {} мс: {} примеров ({} мошеннических), AUC {}, logloss {}",
+                        model.getVersion(), elapsed, x.length, fraudSamples,
+                        String.format("%.3f", auc), String.format("%.4f", logLoss));
+            } else {
+                log.warn("ML модель обучена за {} мс, но не установлена: AUC {} ниже текущей v{} ({})",
+                        elapsed, String.format("%.3f", auc), current.getVersion(),
+                        String.format("%.3f", current.getAuc()));
+            }
+
+            MlModelInfo info = mlModelService.getInfo();
+            info.setTrainingMillis(elapsed);
+            info.setInstalled(install);
+            info.setCandidateAuc(auc);
+            info.setCandidateLogLoss(logLoss);
+            return info;
+
+        } finally {
+            training.set(false);
+        }
+    }
+
+    /**
+     * Модель без метрики или другой схемы обучения заменяется; иначе нужен AUC не ниже текущего
+     */
+    private static boolean isBetter(double auc, LogisticRegressionModel current) {
+        if (current == null || current.getTrainingVersion() != LogisticRegressionModel.TRAINING_VERSION
+                || Double.isNaN(current.getAuc())) {
+            return true;
+        }
+        return !Double.isNaN(auc) && auc >= current.getAuc();
+    }
+
+    /**
+     * Транзакции и поведенческие паттерны страницы клиентов
+     */
+    private Map<String, CustomerHistory> loadPage(List<String> customerIds) {
+        Map<String, CustomerHistory> histories = new LinkedHashMap<>();
+        for (Transaction transaction : transactionRepository.findByCustomerIdsInTimeOrder(customerIds)) {
+            histories.computeIfAbsent(transaction.getCustomerId(), id -> new CustomerHistory())
+                    .transactions.add(transaction);
+        }
+        for (CustomerBehaviorPattern pattern :
+                behaviorPatternRepository.findByCustomerIdInOrderByCustomerIdAscTransDateAsc(customerIds)) {
+            CustomerHistory history = histories.get(pattern.getCustomerId());
+            if (history != null) {
+                history.patterns.add(pattern);
+            }
+        }
+        return histories;
+    }
+
+    private Split extract(List<CustomerHistory> customers) {
+        Dataset train = new Dataset();
+        Dataset holdout = new Dataset();
+        for (CustomerHistory history : customers) {
+            String customerId = history.transactions.get(0).getCustomerId();
+            Dataset target = Math.floorMod(customerId.hashCode(), HOLDOUT_BUCKETS) == 0 ? holdout : train;
+            features.extract(history.transactions, history.patterns, target::add);
+        }
+        return new Split(train, holdout);
+    }
+
+    private static List<List<CustomerHistory>> slices(Collection<CustomerHistory> customers) {
+        int sliceCount = Runtime.getRuntime().availableProcessors() * 4;
+        List<List<CustomerHistory>> slices = new ArrayList<>(sliceCount);
+        for (int i = 0; i < sliceCount; i++) {
+            slices.add(new ArrayList<>());
+        }
+        int i = 0;
+        for (CustomerHistory history : customers) {
+            slices.get(i++ % sliceCount).add(history);
+        }
+        slices.removeIf(List::isEmpty);
+        return slices;
+    }
+
+    private static class CustomerHistory {
+        final List<Transaction> transactions = new ArrayList<>();
+        final List<CustomerBehaviorPattern> patterns = new ArrayList<>();
+    }
+
+    private record Split(Dataset train, Dataset holdout) {
+    }
+
+    /**
+     * Строки признаков и метки
+     */
+    private static class Dataset {
+        final List<double[]> rows = new ArrayList<>();
+        final List<Boolean> labels = new ArrayList<>();
+
+        void add(double[] row, boolean label) {
+            rows.add(row);
+            labels.add(label);
+        }
+
+        void addAll(Dataset other) {
+            rows.addAll(other.rows);
+            labels.addAll(other.labels);
+        }
+
+        boolean[] labelsArray() {
+            boolean[] result = new boolean[labels.size()];
+            for (int i = 0; i < result.length; i++) {
+                result[i] = labels.get(i);
+            }
+            return result;
+        }
+
+        int positives() {
+            return (int) labels.stream().filter(Boolean::booleanValue).count();
+        }
+    }
+}
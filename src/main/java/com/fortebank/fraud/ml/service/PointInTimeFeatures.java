@@ -0,0 +1,139 @@
+package com.fortebank.fraud.ml.service;
+
+import com.fortebank.fraud.customer.dto.VelocityCounts;
+import com.fortebank.fraud.customer.entity.CustomerBehaviorPattern;
+import com.fortebank.fraud.customer.entity.CustomerProfile;
+import com.fortebank.fraud.customer.service.CustomerStatsService;
+import com.fortebank.fraud.customer.service.VelocityCounterService;
+import com.fortebank.fraud.scoring.dto.ScoringContext;
+import com.fortebank.fraud.scoring.service.FeatureExtractor;
+import com.fortebank.fraud.transaction.entity.Transaction;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Признаки обучающей выборки на момент каждой транзакции клиента.
+ *
+ * Транзакции клиента идут по времени; профиль (количество, суммы, получатели) и окна частоты
+ * накапливаются только по предыдущим транзакциям, поведенческий паттерн - последний на дату
+ * транзакции. Признаки совпадают с тем, что видит оценка новой транзакции, и не заглядывают
+ * в будущее клиента (профиль и индекс получателей в БД содержат всю историю).
+ */
+final class PointInTimeFeatures {
+
+    /**
+     * Получатель строк признаков
+     */
+    @FunctionalInterface
+    interface RowConsumer {
+        void accept(double[] row, boolean fraud);
+    }
+
+    private static final Comparator<Transaction> TIME_ORDER = Comparator
+            .comparing(Transaction::getTransactionDateTime)
+            .thenComparing(Transaction::getId, Comparator.nullsLast(Comparator.naturalOrder()));
+
+    private final FeatureExtractor featureExtractor;
+    private final CustomerStatsService customerStatsService;
+
+    PointInTimeFeatures(FeatureExtractor featureExtractor, CustomerStatsService customerStatsService) {
+        this.featureExtractor = featureExtractor;
+        this.customerStatsService = customerStatsService;
+    }
+
+    /**
+     * @param transactions транзакции одного клиента
+     * @param patterns     поведенческие паттерны клиента по возрастанию даты
+     */
+    void extract(List<Transaction> transactions, List<CustomerBehaviorPattern> patterns, RowConsumer consumer) {
+        List<Transaction> ordered = new ArrayList<>(transactions);
+        ordered.sort(TIME_ORDER);
+        String customerId = ordered.get(0).getCustomerId();
+
+        long count = 0;
+        BigDecimal sum = BigDecimal.ZERO;
+        BigDecimal min = null;
+        BigDecimal max = null;
+        LocalDateTime first = null;
+        LocalDateTime last = null;
+        Set<String> recipients = new HashSet<>();
+        Deque<Long> minutes = new ArrayDeque<>();    // Минуты предыдущих транзакций за 7 дней
+
+        int nextPattern = 0;
+        CustomerBehaviorPattern pattern = null;
+
+        for (Transaction transaction : ordered) {
+            LocalDateTime at = transaction.getTransactionDateTime();
+            long minute = Math.floorDiv(at.toEpochSecond(ZoneOffset.UTC), 60);
+            while (!minutes.isEmpty() && minutes.peekFirst() <= minute - VelocityCounterService.WINDOW_7D) {
+                minutes.pollFirst();
+            }
+
+            LocalDate date = at.toLocalDate();
+            while (nextPattern < patterns.size() && !patterns.get(nextPattern).getTransDate().isAfter(date)) {
+                pattern = patterns.get(nextPattern++);
+            }
+
+            CustomerProfile profile = count == 0 ? null : CustomerProfile.builder()
+                    .customerId(customerId)
+                    .transactionCount(count)
+                    .amountSum(sum)
+                    .minAmount(min)
+                    .maxAmount(max)
+                    .uniqueRecipients(recipients.size())
+                    .firstTransactionAt(first)
+                    .lastTransactionAt(last)
+                    .build();
+
+            // Окна частоты включают саму транзакцию, как при оценке
+            VelocityCounts velocity = VelocityCounts.builder()
+                    .count5m(countSince(minutes, minute, VelocityCounterService.WINDOW_5M) + 1)
+                    .count1h(countSince(minutes, minute, VelocityCounterService.WINDOW_1H) + 1)
+                    .count24h(countSince(minutes, minute, VelocityCounterService.WINDOW_24H) + 1)
+                    .count7d(minutes.size() + 1)
+                    .build();
+
+            ScoringContext context = ScoringContext.builder()
+                    .transaction(transaction)
+                    .stats(customerStatsService.buildStats(customerId, profile, velocity))
+                    .newRecipient(!recipients.contains(transaction.getRecipientId()))
+                    .behaviorPattern(pattern)
+                    .build();
+            consumer.accept(featureExtractor.extract(context).toArray(),
+                    Boolean.TRUE.equals(transaction.getIsFraud()));
+
+            BigDecimal amount = transaction.getAmount();
+            count++;
+            sum = sum.add(amount);
+            min = min == null || amount.compareTo(min) < 0 ? amount : min;
+            max = max == null || amount.compareTo(max) > 0 ? amount : max;
+            first = first == null ? at : first;
+            last = at;
+            recipients.add(transaction.getRecipientId());
+            minutes.addLast(minute);
+        }
+    }
+
+    /**
+     * Предыдущих транзакций в окне из windowMinutes минут, заканчивающемся минутой minute
+     */
+    private static int countSince(Deque<Long> minutes, long minute, int windowMinutes) {
+        int count = 0;
+        Iterator<Long> newestFirst = minutes.descendingIterator();
+        while (newestFirst.hasNext() && newestFirst.next() > minute - windowMinutes) {
+            count++;
+        }
+        return count;
+    }
+}
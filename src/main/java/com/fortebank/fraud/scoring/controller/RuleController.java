@@ -0,0 +1,54 @@
+package com.fortebank.fraud.scoring.controller;
+
+import com.fortebank.fraud.common.response.ApiResponse;
+import com.fortebank.fraud.scoring.dto.RuleSetInfo;
+import com.fortebank.fraud.scoring.rule.CompiledRuleSet;
+import com.fortebank.fraud.scoring.service.RuleEngineService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+@RestController
+@RequestMapping("/api/rules")
+@RequiredArgsConstructor
+@Slf4j
+public class RuleController {
+
+    private final RuleEngineService ruleEngineService;
+
+    /**
+     * Текущий набор правил: версия, пороги, срабатывания и время по каждому правилу
+     */
+    @GetMapping
+    public ResponseEntity<ApiResponse<RuleSetInfo>> getRules() {
+        return ResponseEntity.ok(ApiResponse.success(
+                toInfo(ruleEngineService.getRuleSet()),
+                "Набор правил загружен"
+        ));
+    }
+
+    /**
+     * Перечитать файл правил без перезапуска
+     */
+    @PostMapping("/reload")
+    public ResponseEntity<ApiResponse<RuleSetInfo>> reload() {
+        log.info("Перезагрузка набора правил");
+
+        return ResponseEntity.ok(ApiResponse.success(
+                toInfo(ruleEngineService.reload()),
+                "Набор правил перезагружен"
+        ));
+    }
+
+    private RuleSetInfo toInfo(CompiledRuleSet ruleSet) {
+        return RuleSetInfo.builder()
+                .version(ruleSet.getVersion())
+                .source(ruleSet.getSource())
+                .loadedAt(ruleSet.getLoadedAt())
+                .blockScore(ruleSet.getBlockScore())
+                .reviewScore(ruleSet.getReviewScore())
+                .rules(ruleSet.getStats())
+                .build();
+    }
+}
@@ -0,0 +1,47 @@
+package com.fortebank.fraud.scoring.controller;
+
+import com.fortebank.fraud.common.response.ApiResponse;
+import com.fortebank.fraud.scoring.dto.ScoreRequest;
+import com.fortebank.fraud.scoring.dto.ScoreResponse;
+import com.fortebank.fraud.scoring.service.RealTimeScoringService;
+import jakarta.validation.Valid;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+@RestController
+@RequestMapping("/api/score")
+@RequiredArgsConstructor
+@Slf4j
+public class ScoringController {
+
+    private final RealTimeScoringService realTimeScoringService;
+
+    /**
+     * Оценить транзакцию в реальном времени (без сохранения и без AI).
+     * factors=false - только решение и балл, без описаний факторов риска.
+     */
+    @PostMapping
+    public ResponseEntity<ApiResponse<ScoreResponse>> score(
+            @Valid @RequestBody ScoreRequest request,
+            @RequestParam(defaultValue = "true") boolean factors) {
+        return ResponseEntity.ok(ApiResponse.success(
+                realTimeScoringService.score(request, factors),
+                "Оценка завершена"
+        ));
+    }
+
+    /**
+     * Оценить транзакцию и получить AI объяснение
+     */
+    @PostMapping("/explain")
+    public ResponseEntity<ApiResponse<ScoreResponse>> scoreAndExplain(@Valid @RequestBody ScoreRequest request) {
+        log.info("Оценка с AI объяснением для клиента {}", request.getCustomerId());
+
+        return ResponseEntity.ok(ApiResponse.success(
+                realTimeScoringService.scoreAndExplain(request),
+                "Оценка и AI объяснение получены"
+        ));
+    }
+}
@@ -0,0 +1,20 @@
+package com.fortebank.fraud.scoring.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Итоговая оценка транзакции: правила + ML модель
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class FraudScore {
+    private RuleEvaluation evaluation;
+    private Double mlProbability;       // null, если модель не загружена
+    private double fraudProbability;    // Правила, смешанные с ML (fraud.ml.blend-weight)
+    private String decision;            // BLOCK, REVIEW, APPROVE
+}
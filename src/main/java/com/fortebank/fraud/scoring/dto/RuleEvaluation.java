@@ -0,0 +1,104 @@
+package com.fortebank.fraud.scoring.dto;
+
+import com.fortebank.fraud.scoring.rule.FeatureVector;
+import com.fortebank.fraud.scoring.rule.RiskRule;
+import com.fortebank.fraud.transaction.dto.RiskFactorDTO;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Результат прогона набора правил по одной транзакции.
+ *
+ * Хранит только битовую маску сработавших правил; факторы риска
+ * с баллами и текстовыми описаниями строятся лениво - когда они нужны в ответе
+ * (балл правила пересчитывается по тем же признакам).
+ */
+public class RuleEvaluation {
+
+    private final int totalScore;
+    private final String decision;          // BLOCK, REVIEW, APPROVE
+    private final int rulesEvaluated;
+    private final boolean shortCircuited;   // Остановились, т.к. BLOCK уже не изменится
+    private final String ruleSetVersion;
+
+    private final RiskRule[] rules;
+    private final long hitMask;         // Сработавшие правила 0..63
+    private final long[] moreHits;      // Правила с 64-го, null если их не больше 64
+    private final int hitCount;
+    private final FeatureVector features;
+
+    private List<RiskFactorDTO> riskFactors;
+
+    public RuleEvaluation(int totalScore, String decision, int rulesEvaluated, boolean shortCircuited,
+                          String ruleSetVersion, RiskRule[] rules, long hitMask, long[] moreHits,
+                          int hitCount, FeatureVector features) {
+        this.totalScore = totalScore;
+        this.decision = decision;
+        this.rulesEvaluated = rulesEvaluated;
+        this.shortCircuited = shortCircuited;
+        this.ruleSetVersion = ruleSetVersion;
+        this.rules = rules;
+        this.hitMask = hitMask;
+        this.moreHits = moreHits;
+        this.hitCount = hitCount;
+        this.features = features;
+    }
+
+    public int getTotalScore() {
+        return totalScore;
+    }
+
+    public String getDecision() {
+        return decision;
+    }
+
+    public int getRulesEvaluated() {
+        return rulesEvaluated;
+    }
+
+    public boolean isShortCircuited() {
+        return shortCircuited;
+    }
+
+    public String getRuleSetVersion() {
+        return ruleSetVersion;
+    }
+
+    /**
+     * Количество сработавших правил
+     */
+    public int getHitCount() {
+        return hitCount;
+    }
+
+    /**
+     * Факторы риска с описаниями (строятся при первом обращении)
+     */
+    public List<RiskFactorDTO> getRiskFactors() {
+        if (riskFactors == null) {
+            List<RiskFactorDTO> factors = new ArrayList<>(hitCount);
+            for (int i = 0; i < rules.length && factors.size() < hitCount; i++) {
+                if (!isHit(i)) {
+                    continue;
+                }
+                RiskRule rule = rules[i];
+                int score = rule.evaluate(features);
+                factors.add(RiskFactorDTO.builder()
+                        .name(rule.getName())
+                        .description(rule.describe(features))
+                        .score(score)
+                        .weight(score / 100.0)
+                        .build());
+            }
+            riskFactors = Collections.unmodifiableList(factors);
+        }
+        return riskFactors;
+    }
+
+    private boolean isHit(int rule) {
+        long word = rule < Long.SIZE ? hitMask : moreHits != null ? moreHits[rule / Long.SIZE - 1] : 0;
+        return (word & (1L << rule)) != 0;
+    }
+}
@@ -0,0 +1,96 @@
+package com.fortebank.fraud.scoring.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Описание набора правил (JSON/YAML DSL)
+ *
+ * <pre>
+ * {
+ *   "version": "2025-01",
+ *   "blockScore": 85,
+ *   "reviewScore": 50,
+ *   "rules": [{
+ *     "id": "night-time",
+ *     "name": "Ночное время",
+ *     "all": [{"feature": "HOUR", "op": "&lt;", "value": 6}],
+ *     "score": 20,
+ *     "description": "Транзакция совершена в {HOUR:%02d}:00 (ночное время)"
+ *   }]
+ * }
+ * </pre>
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class RuleSetDefinition {
+
+    private String version;
+
+    // Пороги решения по суммарному баллу
+    @Builder.Default
+    private Integer blockScore = 85;
+
+    @Builder.Default
+    private Integer reviewScore = 50;
+
+    @Builder.Default
+    private List<RuleDefinition> rules = new ArrayList<>();
+
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class RuleDefinition {
+        private String id;
+        private String name;
+        private String group;                 // Взаимоисключающая группа (первое сработавшее)
+
+        @Builder.Default
+        private Boolean enabled = true;
+
+        @Builder.Default
+        private List<ConditionDefinition> all = new ArrayList<>();   // Все условия (И)
+
+        @Builder.Default
+        private List<ConditionDefinition> any = new ArrayList<>();   // Хотя бы одно (ИЛИ)
+
+        private Integer score;                // Базовый балл
+        private ScalingDefinition scaling;    // Рост балла от значения признака
+        private String description;           // Шаблон: {FEATURE}, {FEATURE:%.2f}, {threshold}
+    }
+
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class ConditionDefinition {
+        private String feature;
+        private String op;                    // >, >=, <, <=, ==, !=
+        private Double value;
+    }
+
+    /**
+     * score = min(max, base + slope * (feature - offset))
+     */
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class ScalingDefinition {
+        private String feature;
+
+        @Builder.Default
+        private Double offset = 0.0;
+
+        private Double slope;
+        private Integer max;
+    }
+}
@@ -0,0 +1,25 @@
+package com.fortebank.fraud.scoring.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Текущий набор правил и статистика по каждому правилу
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class RuleSetInfo {
+    private String version;
+    private String source;
+    private LocalDateTime loadedAt;
+    private int blockScore;
+    private int reviewScore;
+    private List<RuleStatsDTO> rules;
+}
@@ -0,0 +1,22 @@
+package com.fortebank.fraud.scoring.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class RuleStatsDTO {
+    private String id;
+    private String name;
+    private String group;
+    private Integer maxScore;
+    private Long evaluations;
+    private Long hits;
+    private Double hitRate;
+    private Long totalNanos;
+    private Double avgNanos;
+}
@@ -0,0 +1,36 @@
+package com.fortebank.fraud.scoring.dto;
+
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Positive;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * Транзакция для оценки в реальном времени (ещё не сохранена в БД)
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ScoreRequest {
+
+    private String transactionId;   // Внешний номер документа, необязателен
+
+    @NotBlank(message = "customerId обязателен")
+    private String customerId;
+
+    @NotBlank(message = "recipientId обязателен")
+    private String recipientId;
+
+    @NotNull(message = "amount обязателен")
+    @Positive(message = "amount должен быть больше нуля")
+    private BigDecimal amount;
+
+    private LocalDateTime transactionDateTime;  // ISO-8601, по умолчанию - текущее время
+}
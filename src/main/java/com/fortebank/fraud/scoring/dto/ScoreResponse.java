@@ -0,0 +1,31 @@
+package com.fortebank.fraud.scoring.dto;
+
+import com.fortebank.fraud.transaction.dto.RiskFactorDTO;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Результат оценки транзакции в реальном времени
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ScoreResponse {
+    private String transactionId;
+    private String customerId;
+    private String decision;            // BLOCK, REVIEW, APPROVE
+    private Integer riskScore;
+    private Double fraudProbability;
+    private Double mlProbability;       // null - ML модель не обучена
+    private List<RiskFactorDTO> riskFactors;
+    private Long latencyMicros;         // Время оценки на сервере
+
+    // Только для /api/score/explain
+    private String aiExplanation;
+    private String recommendations;
+}
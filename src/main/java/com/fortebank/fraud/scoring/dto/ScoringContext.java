@@ -0,0 +1,29 @@
+package com.fortebank.fraud.scoring.dto;
+
+import com.fortebank.fraud.customer.dto.CustomerStats;
+import com.fortebank.fraud.customer.entity.CustomerBehaviorPattern;
+import com.fortebank.fraud.transaction.entity.Transaction;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Всё, что нужно для анализа одной транзакции, загруженное за один проход.
+ * Передаётся в правила, поведенческий анализ и построитель AI промптов.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ScoringContext {
+    private Transaction transaction;
+    private CustomerStats stats;
+    private boolean newRecipient;
+    private CustomerBehaviorPattern behaviorPattern; // null, если нет поведенческих данных
+
+    // Стоимость загрузки контекста
+    private int queryCount;
+    private int rowsLoaded;
+    private long loadNanos;
+}
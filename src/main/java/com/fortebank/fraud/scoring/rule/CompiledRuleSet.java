@@ -0,0 +1,314 @@
+package com.fortebank.fraud.scoring.rule;
+
+import com.fortebank.fraud.scoring.dto.RuleEvaluation;
+import com.fortebank.fraud.scoring.dto.RuleSetDefinition;
+import com.fortebank.fraud.scoring.dto.RuleSetDefinition.ConditionDefinition;
+import com.fortebank.fraud.scoring.dto.RuleSetDefinition.RuleDefinition;
+import com.fortebank.fraud.scoring.dto.RuleStatsDTO;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * План вычисления: правила в порядке убывания максимального балла
+ * (группы взаимоисключающих правил не разрываются), со счётчиками срабатываний и времени.
+ * Неизменяем, кроме статистики; при перезагрузке DSL заменяется целиком.
+ */
+public class CompiledRuleSet {
+
+    public static final String BLOCK = "BLOCK";
+    public static final String REVIEW = "REVIEW";
+    public static final String APPROVE = "APPROVE";
+
+    // Группы хранятся битовой маской long
+    private static final int MAX_GROUPS = Long.SIZE;
+
+    private final String version;
+    private final String source;
+    private final LocalDateTime loadedAt;
+    private final int blockScore;
+    private final int reviewScore;
+
+    private final RiskRule[] rules;
+    private final int[] groupIds;   // -1 - правило без группы
+
+    private final LongAdder[] evaluations;
+    private final LongAdder[] hits;
+    private final LongAdder[] nanos;
+
+    private CompiledRuleSet(String version, String source, int blockScore, int reviewScore,
+                            RiskRule[] rules, int[] groupIds) {
+        this.version = version;
+        this.source = source;
+        this.loadedAt = LocalDateTime.now();
+        this.blockScore = blockScore;
+        this.reviewScore = reviewScore;
+        this.rules = rules;
+        this.groupIds = groupIds;
+        this.evaluations = newAdders(rules.length);
+        this.hits = newAdders(rules.length);
+        this.nanos = newAdders(rules.length);
+    }
+
+    /**
+     * Скомпилировать описание DSL и дополнительные правила-плагины
+     */
+    public static CompiledRuleSet compile(RuleSetDefinition definition, List<RiskRule> pluginRules, String source) {
+        List<RiskRule> all = new ArrayList<>();
+        for (RuleDefinition rule : definition.getRules()) {
+            if (Boolean.FALSE.equals(rule.getEnabled())) {
+                continue;
+            }
+            try {
+                all.add(compileRule(rule));
+            } catch (RuntimeException e) {
+                throw new IllegalArgumentException(
+                        "Ошибка в правиле '" + rule.getId() + "': " + e.getMessage(), e);
+            }
+        }
+        all.addAll(pluginRules);
+
+        // Группируем: группа идёт единым блоком, внутри - в порядке описания
+        Map<String, List<RiskRule>> units = new LinkedHashMap<>();
+        for (RiskRule rule : all) {
+            String key = rule.getGroup() != null ? "group:" + rule.getGroup() : "rule:" + rule.getId();
+            units.computeIfAbsent(key, k -> new ArrayList<>()).add(rule);
+        }
+
+        // Блоки с большим максимальным баллом - раньше: быстрее достигаем BLOCK
+        List<List<RiskRule>> ordered = new ArrayList<>(units.values());
+        ordered.sort(Comparator.comparingInt((List<RiskRule> unit) ->
+                unit.stream().mapToInt(RiskRule::getMaxScore).max().orElse(0)).reversed());
+
+        List<RiskRule> plan = new ArrayList<>();
+        List<Integer> groups = new ArrayList<>();
+        Map<String, Integer> groupIndex = new HashMap<>();
+        for (List<RiskRule> unit : ordered) {
+            for (RiskRule rule : unit) {
+                plan.add(rule);
+                groups.add(rule.getGroup() == null ? -1
+                        : groupIndex.computeIfAbsent(rule.getGroup(), g -> groupIndex.size()));
+            }
+        }
+
+        if (groupIndex.size() > MAX_GROUPS) {
+            throw new IllegalArgumentException("Слишком много групп правил: " + groupIndex.size()
+                    + " (не больше " + MAX_GROUPS + ")");
+        }
+
+        return new CompiledRuleSet(
+                definition.getVersion(),
+                source,
+                definition.getBlockScore(),
+                definition.getReviewScore(),
+                plan.toArray(new RiskRule[0]),
+                groups.stream().mapToInt(Integer::intValue).toArray());
+    }
+
+    /**
+     * Прогнать все правила по признакам транзакции (полный балл и все факторы риска).
+     * Описания факторов не строятся; сработавшие правила - битовая маска,
+     * на вызов создаётся только RuleEvaluation (и массив маски, если правил больше 64).
+     */
+    public RuleEvaluation evaluate(FeatureVector features) {
+        return evaluate(features, false);
+    }
+
+    /**
+     * Только решение: остановка, как только балл достиг порога BLOCK (решение уже не изменится).
+     * Балл и факторы риска при досрочной остановке неполные - балл здесь нижняя граница.
+     */
+    public RuleEvaluation evaluateDecision(FeatureVector features) {
+        return evaluate(features, true);
+    }
+
+    private RuleEvaluation evaluate(FeatureVector features, boolean stopAtBlock) {
+        long hitMask = 0;           // Сработавшие правила 0..63
+        long[] moreHits = null;     // Правила с 64-го
+        int hitCount = 0;
+        long groupHits = 0;     // Битовая маска сработавших групп
+        int total = 0;
+        int evaluated = 0;
+        boolean shortCircuited = false;
+
+        for (int i = 0; i < rules.length; i++) {
+            int group = groupIds[i];
+            if (group >= 0 && (groupHits & (1L << group)) != 0) {
+                continue;
+            }
+
+            long start = System.nanoTime();
+            int score = rules[i].evaluate(features);
+            nanos[i].add(System.nanoTime() - start);
+            evaluations[i].increment();
+            evaluated++;
+
+            if (score <= 0) {
+                continue;
+            }
+
+            hits[i].increment();
+            total += score;
+            if (i < Long.SIZE) {
+                hitMask |= 1L << i;
+            } else {
+                if (moreHits == null) {
+                    moreHits = new long[(rules.length - 1) / Long.SIZE];
+                }
+                moreHits[i / Long.SIZE - 1] |= 1L << i;
+            }
+            hitCount++;
+            if (group >= 0) {
+                groupHits |= 1L << group;
+            }
+
+            // Баллы только растут: после порога BLOCK решение уже не изменится
+            if (stopAtBlock && total >= blockScore) {
+                shortCircuited = i < rules.length - 1;
+                break;
+            }
+        }
+
+        return new RuleEvaluation(total, decide(total), evaluated, shortCircuited, version,
+                rules, hitMask, moreHits, hitCount, features);
+    }
+
+    public String decide(int totalScore) {
+        if (totalScore >= blockScore) {
+            return BLOCK;
+        } else if (totalScore >= reviewScore) {
+            return REVIEW;
+        }
+        return APPROVE;
+    }
+
+    public List<RuleStatsDTO> getStats() {
+        List<RuleStatsDTO> stats = new ArrayList<>(rules.length);
+        for (int i = 0; i < rules.length; i++) {
+            long evaluated = evaluations[i].sum();
+            long hit = hits[i].sum();
+            long time = nanos[i].sum();
+            stats.add(RuleStatsDTO.builder()
+                    .id(rules[i].getId())
+                    .name(rules[i].getName())
+                    .group(rules[i].getGroup())
+                    .maxScore(rules[i].getMaxScore())
+                    .evaluations(evaluated)
+                    .hits(hit)
+                    .hitRate(evaluated > 0 ? (double) hit / evaluated : 0)
+                    .totalNanos(time)
+                    .avgNanos(evaluated > 0 ? (double) time / evaluated : 0)
+                    .build());
+        }
+        return stats;
+    }
+
+    public String getVersion() {
+        return version;
+    }
+
+    public String getSource() {
+        return source;
+    }
+
+    public LocalDateTime getLoadedAt() {
+        return loadedAt;
+    }
+
+    public int getBlockScore() {
+        return blockScore;
+    }
+
+    public int getReviewScore() {
+        return reviewScore;
+    }
+
+    public int size() {
+        return rules.length;
+    }
+
+    /**
+     * Правила в порядке плана (для сравнительного бенчмарка прежнего пути оценки)
+     */
+    RiskRule[] plan() {
+        return rules.clone();
+    }
+
+    /**
+     * Номера групп правил плана, -1 - правило без группы
+     */
+    int[] planGroups() {
+        return groupIds.clone();
+    }
+
+    private static DslRiskRule compileRule(RuleDefinition rule) {
+        if (rule.getId() == null || rule.getName() == null) {
+            throw new IllegalArgumentException("У правила должны быть id и name");
+        }
+
+        List<ConditionDefinition> all = rule.getAll() != null ? rule.getAll() : List.of();
+        List<ConditionDefinition> any = rule.getAny() != null ? rule.getAny() : List.of();
+        if (all.isEmpty() && any.isEmpty()) {
+            throw new IllegalArgumentException("Нет условий");
+        }
+        if (rule.getScore() == null) {
+            throw new IllegalArgumentException("Не указан score");
+        }
+
+        int baseScore = rule.getScore();
+        int scalingFeature = -1;
+        double offset = 0;
+        double slope = 0;
+        int maxScore = baseScore;
+        if (rule.getScaling() != null) {
+            scalingFeature = Feature.valueOf(rule.getScaling().getFeature()).ordinal();
+            offset = rule.getScaling().getOffset() != null ? rule.getScaling().getOffset() : 0;
+            slope = rule.getScaling().getSlope() != null ? rule.getScaling().getSlope() : 0;
+            maxScore = rule.getScaling().getMax() != null ? rule.getScaling().getMax() : baseScore;
+        }
+
+        // {threshold} в описании - порог первого условия
+        ConditionDefinition first = !all.isEmpty() ? all.get(0) : any.get(0);
+        double threshold = first.getValue() != null ? first.getValue() : 0;
+
+        return new DslRiskRule(
+                rule.getId(),
+                rule.getName(),
+                rule.getGroup(),
+                features(all), ops(all), values(all),
+                features(any), ops(any), values(any),
+                baseScore, scalingFeature, offset, slope, maxScore,
+                DescriptionTemplate.compile(rule.getDescription(), threshold));
+    }
+
+    private static int[] features(List<ConditionDefinition> conditions) {
+        return conditions.stream().mapToInt(c -> Feature.valueOf(c.getFeature()).ordinal()).toArray();
+    }
+
+    private static int[] ops(List<ConditionDefinition> conditions) {
+        return conditions.stream().mapToInt(c -> DslRiskRule.parseOp(c.getOp())).toArray();
+    }
+
+    private static double[] values(List<ConditionDefinition> conditions) {
+        return conditions.stream().mapToDouble(c -> {
+            if (c.getValue() == null) {
+                throw new IllegalArgumentException("Не указано значение условия для " + c.getFeature());
+            }
+            return c.getValue();
+        }).toArray();
+    }
+
+    private static LongAdder[] newAdders(int size) {
+        LongAdder[] adders = new LongAdder[size];
+        for (int i = 0; i < size; i++) {
+            adders[i] = new LongAdder();
+        }
+        return adders;
+    }
+}
@@ -0,0 +1,101 @@
+package com.fortebank.fraud.scoring.rule;
+
+import java.util.ArrayList;
+import java.util.IllegalFormatException;
+import java.util.List;
+
+/**
+ * Шаблон описания фактора риска, разобранный один раз при компиляции правил.
+ * Подстановки: {FEATURE} или {FEATURE:формат}, {threshold} или {threshold:формат},
+ * значение можно умножить: {FEATURE*100:%.0f}.
+ * Форматы проверяются при компиляции, чтобы ошибка в правиле не всплыла при оценке.
+ */
+public class DescriptionTemplate {
+
+    private static final int THRESHOLD = -1;
+
+    private final String[] literals;
+    private final int[] features;
+    private final double[] multipliers;
+    private final String[] formats;
+    private final double threshold;
+
+    private DescriptionTemplate(String[] literals, int[] features, double[] multipliers,
+                                String[] formats, double threshold) {
+        this.literals = literals;
+        this.features = features;
+        this.multipliers = multipliers;
+        this.formats = formats;
+        this.threshold = threshold;
+    }
+
+    public static DescriptionTemplate compile(String template, double threshold) {
+        List<String> literals = new ArrayList<>();
+        List<Integer> features = new ArrayList<>();
+        List<Double> multipliers = new ArrayList<>();
+        List<String> formats = new ArrayList<>();
+
+        String text = template != null ? template : "";
+        int position = 0;
+        while (true) {
+            int open = text.indexOf('{', position);
+            int close = open < 0 ? -1 : text.indexOf('}', open);
+            if (open < 0 || close < 0) {
+                literals.add(text.substring(position));
+                break;
+            }
+
+            literals.add(text.substring(position, open));
+
+            String placeholder = text.substring(open + 1, close);
+            int colon = placeholder.indexOf(':');
+            String name = colon < 0 ? placeholder : placeholder.substring(0, colon);
+            String format = colon < 0 ? null : placeholder.substring(colon + 1);
+
+            int star = name.indexOf('*');
+            multipliers.add(star < 0 ? 1.0 : Double.parseDouble(name.substring(star + 1)));
+            name = star < 0 ? name : name.substring(0, star);
+
+            features.add(name.equals("threshold") ? THRESHOLD : Feature.valueOf(name).ordinal());
+            formats.add(validate(format));
+            position = close + 1;
+        }
+
+        return new DescriptionTemplate(
+                literals.toArray(new String[0]),
+                features.stream().mapToInt(Integer::intValue).toArray(),
+                multipliers.stream().mapToDouble(Double::doubleValue).toArray(),
+                formats.toArray(new String[0]),
+                threshold);
+    }
+
+    public String render(FeatureVector vector) {
+        StringBuilder sb = new StringBuilder(64);
+        for (int i = 0; i < features.length; i++) {
+            sb.append(literals[i]);
+            double value = (features[i] == THRESHOLD ? threshold : vector.get(features[i])) * multipliers[i];
+            sb.append(format(value, formats[i]));
+        }
+        sb.append(literals[literals.length - 1]);
+        return sb.toString();
+    }
+
+    private static String validate(String format) {
+        try {
+            format(0.0, format);
+            return format;
+        } catch (IllegalFormatException e) {
+            throw new IllegalArgumentException("Неверный формат '" + format + "' в описании: " + e.getMessage(), e);
+        }
+    }
+
+    private static String format(double value, String format) {
+        if (format == null) {
+            return value == Math.rint(value) ? String.valueOf((long) value) : String.valueOf(value);
+        }
+        if (format.endsWith("d")) {
+            return String.format(format, (long) value);
+        }
+        return String.format(format, value);
+    }
+}
@@ -0,0 +1,135 @@
+package com.fortebank.fraud.scoring.rule;
+
+/**
+ * Правило из DSL, скомпилированное в примитивные массивы условий
+ */
+public class DslRiskRule implements RiskRule {
+
+    static final int OP_GT = 0;
+    static final int OP_GE = 1;
+    static final int OP_LT = 2;
+    static final int OP_LE = 3;
+    static final int OP_EQ = 4;
+    static final int OP_NE = 5;
+
+    private final String id;
+    private final String name;
+    private final String group;
+
+    // Условия "все" (И)
+    private final int[] allFeatures;
+    private final int[] allOps;
+    private final double[] allValues;
+
+    // Условия "хотя бы одно" (ИЛИ)
+    private final int[] anyFeatures;
+    private final int[] anyOps;
+    private final double[] anyValues;
+
+    // score = min(max, base + slope * (feature - offset))
+    private final int baseScore;
+    private final int scalingFeature; // -1 - фиксированный балл
+    private final double scalingOffset;
+    private final double scalingSlope;
+    private final int maxScore;
+
+    private final DescriptionTemplate description;
+
+    DslRiskRule(String id, String name, String group,
+                int[] allFeatures, int[] allOps, double[] allValues,
+                int[] anyFeatures, int[] anyOps, double[] anyValues,
+                int baseScore, int scalingFeature, double scalingOffset, double scalingSlope, int maxScore,
+                DescriptionTemplate description) {
+        this.id = id;
+        this.name = name;
+        this.group = group;
+        this.allFeatures = allFeatures;
+        this.allOps = allOps;
+        this.allValues = allValues;
+        this.anyFeatures = anyFeatures;
+        this.anyOps = anyOps;
+        this.anyValues = anyValues;
+        this.baseScore = baseScore;
+        this.scalingFeature = scalingFeature;
+        this.scalingOffset = scalingOffset;
+        this.scalingSlope = scalingSlope;
+        this.maxScore = maxScore;
+        this.description = description;
+    }
+
+    @Override
+    public String getId() {
+        return id;
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public String getGroup() {
+        return group;
+    }
+
+    @Override
+    public int getMaxScore() {
+        return maxScore;
+    }
+
+    @Override
+    public int evaluate(FeatureVector features) {
+        for (int i = 0; i < allFeatures.length; i++) {
+            if (!test(features.get(allFeatures[i]), allOps[i], allValues[i])) {
+                return 0;
+            }
+        }
+
+        if (anyFeatures.length > 0) {
+            boolean matched = false;
+            for (int i = 0; i < anyFeatures.length && !matched; i++) {
+                matched = test(features.get(anyFeatures[i]), anyOps[i], anyValues[i]);
+            }
+            if (!matched) {
+                return 0;
+            }
+        }
+
+        if (scalingFeature < 0) {
+            return baseScore;
+        }
+        double scaled = baseScore + scalingSlope * (features.get(scalingFeature) - scalingOffset);
+        return (int) Math.min(scaled, maxScore);
+    }
+
+    @Override
+    public String describe(FeatureVector features) {
+        return description.render(features);
+    }
+
+    static int parseOp(String op) {
+        if (op == null) {
+            throw new IllegalArgumentException("Не указан оператор условия");
+        }
+        return switch (op) {
+            case ">" -> OP_GT;
+            case ">=" -> OP_GE;
+            case "<" -> OP_LT;
+            case "<=" -> OP_LE;
+            case "==" -> OP_EQ;
+            case "!=" -> OP_NE;
+            default -> throw new IllegalArgumentException("Неизвестный оператор: " + op);
+        };
+    }
+
+    private static boolean test(double value, int op, double threshold) {
+        return switch (op) {
+            case OP_GT -> value > threshold;
+            case OP_GE -> value >= threshold;
+            case OP_LT -> value < threshold;
+            case OP_LE -> value <= threshold;
+            case OP_EQ -> value == threshold;
+            default -> value != threshold;
+        };
+    }
+}
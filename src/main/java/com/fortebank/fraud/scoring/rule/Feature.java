@@ -0,0 +1,37 @@
+package com.fortebank.fraud.scoring.rule;
+
+/**
+ * Признаки транзакции, доступные правилам.
+ * Значения хранятся в {@link FeatureVector} как double по индексу ordinal().
+ */
+public enum Feature {
+    // Транзакция
+    AMOUNT,
+    HOUR,
+    NEW_RECIPIENT,          // 1 - новый получатель, 0 - известный
+
+    // Профиль клиента
+    HISTORY_SIZE,           // Количество транзакций клиента
+    AVG_AMOUNT,
+    AMOUNT_RATIO,           // Сумма / средняя сумма (0, если истории нет)
+    UNIQUE_RECIPIENTS,
+
+    // Частота (окна по времени транзакции, включая её саму)
+    COUNT_5M,
+    COUNT_1H,
+    COUNT_24H,
+    COUNT_7D,
+
+    // Поведенческие паттерны (0, если данных нет)
+    HAS_BEHAVIOR,
+    PHONE_MODELS_30D,
+    OS_VERSIONS_30D,
+    LOGINS_7D,
+    LOGINS_30D,
+    LOGIN_FREQ_CHANGE,
+    BURSTINESS,
+    INTERVAL_ZSCORE,
+    INTERVAL_ZSCORE_ABS;
+
+    public static final int COUNT = values().length;
+}
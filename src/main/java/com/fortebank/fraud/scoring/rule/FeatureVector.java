@@ -0,0 +1,34 @@
+package com.fortebank.fraud.scoring.rule;
+
+/**
+ * Признаки одной транзакции в примитивном массиве
+ */
+public class FeatureVector {
+
+    private final double[] values = new double[Feature.COUNT];
+
+    public double get(Feature feature) {
+        return values[feature.ordinal()];
+    }
+
+    public double get(int index) {
+        return values[index];
+    }
+
+    /**
+     * Копия значений (для обучающей выборки)
+     */
+    public double[] toArray() {
+        return values.clone();
+    }
+
+    public FeatureVector set(Feature feature, double value) {
+        values[feature.ordinal()] = value;
+        return this;
+    }
+
+    public FeatureVector set(Feature feature, boolean value) {
+        values[feature.ordinal()] = value ? 1.0 : 0.0;
+        return this;
+    }
+}
@@ -0,0 +1,43 @@
+package com.fortebank.fraud.scoring.rule;
+
+/**
+ * Правило оценки риска (SPI).
+ *
+ * Правила из DSL компилируются в реализации этого интерфейса; кроме того,
+ * любой Spring bean, реализующий RiskRule, автоматически добавляется в набор правил.
+ */
+public interface RiskRule {
+
+    String getId();
+
+    /**
+     * Название фактора риска (показывается аналитику)
+     */
+    String getName();
+
+    /**
+     * Группа взаимоисключающих правил: в группе срабатывает только первое правило.
+     * null - правило независимое.
+     */
+    default String getGroup() {
+        return null;
+    }
+
+    /**
+     * Максимальный балл, который может дать правило
+     */
+    int getMaxScore();
+
+    /**
+     * Оценить транзакцию. Результат должен зависеть только от признаков:
+     * при построении факторов риска балл сработавшего правила пересчитывается.
+     *
+     * @return балл риска, 0 - правило не сработало
+     */
+    int evaluate(FeatureVector features);
+
+    /**
+     * Описание сработавшего фактора
+     */
+    String describe(FeatureVector features);
+}
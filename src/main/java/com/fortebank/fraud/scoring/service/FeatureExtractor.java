@@ -0,0 +1,70 @@
+package com.fortebank.fraud.scoring.service;
+
+import com.fortebank.fraud.common.money.MinorUnits;
+import com.fortebank.fraud.customer.dto.CustomerStats;
+import com.fortebank.fraud.customer.entity.CustomerBehaviorPattern;
+import com.fortebank.fraud.scoring.dto.ScoringContext;
+import com.fortebank.fraud.scoring.rule.Feature;
+import com.fortebank.fraud.scoring.rule.FeatureVector;
+import com.fortebank.fraud.transaction.entity.Transaction;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+
+/**
+ * Переводит контекст транзакции в примитивный вектор признаков для правил
+ */
+@Component
+public class FeatureExtractor {
+
+    public FeatureVector extract(ScoringContext context) {
+        Transaction transaction = context.getTransaction();
+        CustomerStats stats = context.getStats();
+        FeatureVector features = new FeatureVector();
+
+        // Суммы - в тиынах (long), без BigDecimal.divide
+        long amountMinor = MinorUnits.of(transaction.getAmount());
+        long avgAmountMinor = stats.getAvgAmountMinor();
+
+        features.set(Feature.AMOUNT, MinorUnits.toDouble(amountMinor))
+                .set(Feature.HOUR, transaction.getTransactionDateTime().getHour())
+                .set(Feature.NEW_RECIPIENT, context.isNewRecipient())
+                .set(Feature.HISTORY_SIZE, stats.getTotalTransactions())
+                .set(Feature.AVG_AMOUNT, MinorUnits.toDouble(avgAmountMinor))
+                .set(Feature.UNIQUE_RECIPIENTS, stats.getUniqueRecipients())
+                .set(Feature.COUNT_5M, stats.getTransactionCount5m())
+                .set(Feature.COUNT_1H, stats.getTransactionCount1h())
+                .set(Feature.COUNT_24H, stats.getTransactionCount24h())
+                .set(Feature.COUNT_7D, stats.getTransactionCount7d());
+
+        // Отношение к средней сумме (с округлением до сотых, как раньше)
+        if (stats.getTotalTransactions() > 0 && avgAmountMinor != 0) {
+            features.set(Feature.AMOUNT_RATIO,
+                    MinorUnits.ratioHundredths(amountMinor, avgAmountMinor) / 100.0);
+        }
+
+        CustomerBehaviorPattern pattern = context.getBehaviorPattern();
+        if (pattern != null) {
+            double zScore = toDouble(pattern.getIntervalZscore());
+            features.set(Feature.HAS_BEHAVIOR, true)
+                    .set(Feature.PHONE_MODELS_30D, toInt(pattern.getUniquePhoneModels30d()))
+                    .set(Feature.OS_VERSIONS_30D, toInt(pattern.getUniqueOsVersions30d()))
+                    .set(Feature.LOGINS_7D, toInt(pattern.getLoginsLast7Days()))
+                    .set(Feature.LOGINS_30D, toInt(pattern.getLoginsLast30Days()))
+                    .set(Feature.LOGIN_FREQ_CHANGE, toDouble(pattern.getLoginFreqChangeRatio()))
+                    .set(Feature.BURSTINESS, toDouble(pattern.getBurstinessScore()))
+                    .set(Feature.INTERVAL_ZSCORE, zScore)
+                    .set(Feature.INTERVAL_ZSCORE_ABS, Math.abs(zScore));
+        }
+
+        return features;
+    }
+
+    private static int toInt(Integer value) {
+        return value != null ? value : 0;
+    }
+
+    private static double toDouble(BigDecimal value) {
+        return value != null ? value.doubleValue() : 0;
+    }
+}
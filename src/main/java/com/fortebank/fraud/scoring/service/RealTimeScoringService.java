@@ -0,0 +1,140 @@
+package com.fortebank.fraud.scoring.service;
+
+import com.fortebank.fraud.ai.dto.AIEnrichment;
+import com.fortebank.fraud.ai.service.AIAnalysisService;
+import com.fortebank.fraud.ai.service.AIEnrichmentService;
+import com.fortebank.fraud.ai.service.OfflineExplanationService;
+import com.fortebank.fraud.scoring.dto.FraudScore;
+import com.fortebank.fraud.scoring.dto.ScoreRequest;
+import com.fortebank.fraud.scoring.dto.ScoreResponse;
+import com.fortebank.fraud.scoring.dto.ScoringContext;
+import com.fortebank.fraud.transaction.dto.RiskFactorDTO;
+import com.fortebank.fraud.transaction.dto.TransactionAnalysisDTO;
+import com.fortebank.fraud.transaction.entity.Transaction;
+import com.fortebank.fraud.transaction.service.FraudDetectionService;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Оценка транзакции в реальном времени, до её сохранения.
+ *
+ * Выполняется только путь правил и поведенческих признаков: транзакция не пишется
+ * в БД, статус не обновляется, AI не вызывается. AI объяснение - отдельный шаг.
+ */
+@Service
+@Slf4j
+public class RealTimeScoringService {
+
+    private final ScoringContextLoader scoringContextLoader;
+    private final FraudDetectionService fraudDetectionService;
+    private final AIAnalysisService aiAnalysisService;
+    private final AIEnrichmentService aiEnrichmentService;
+    private final OfflineExplanationService offlineExplanationService;
+    private final Timer scoringTimer;
+
+    public RealTimeScoringService(ScoringContextLoader scoringContextLoader,
+                                  FraudDetectionService fraudDetectionService,
+                                  AIAnalysisService aiAnalysisService,
+                                  AIEnrichmentService aiEnrichmentService,
+                                  OfflineExplanationService offlineExplanationService,
+                                  MeterRegistry meterRegistry) {
+        this.scoringContextLoader = scoringContextLoader;
+        this.fraudDetectionService = fraudDetectionService;
+        this.aiAnalysisService = aiAnalysisService;
+        this.aiEnrichmentService = aiEnrichmentService;
+        this.offlineExplanationService = offlineExplanationService;
+        this.scoringTimer = Timer.builder("fraud.scoring.realtime")
+                .description("Время оценки транзакции в реальном времени")
+                .publishPercentiles(0.5, 0.99)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Оценить транзакцию по правилам
+     *
+     * @param includeFactors строить ли факторы риска с описаниями (без них - только решение и балл)
+     */
+    public ScoreResponse score(ScoreRequest request, boolean includeFactors) {
+        long start = System.nanoTime();
+
+        Transaction transaction = toTransaction(request);
+        ScoringContext context = scoringContextLoader.load(transaction);
+        FraudScore score = includeFactors
+                ? fraudDetectionService.evaluateWithFactors(context)
+                : fraudDetectionService.evaluate(context);
+        List<RiskFactorDTO> riskFactors = includeFactors ? score.getEvaluation().getRiskFactors() : null;
+
+        long elapsed = System.nanoTime() - start;
+        scoringTimer.record(elapsed, TimeUnit.NANOSECONDS);
+
+        return ScoreResponse.builder()
+                .transactionId(request.getTransactionId())
+                .customerId(request.getCustomerId())
+                .decision(score.getDecision())
+                .riskScore(score.getEvaluation().getTotalScore())
+                .fraudProbability(score.getFraudProbability())
+                .mlProbability(score.getMlProbability())
+                .riskFactors(riskFactors)
+                .latencyMicros(elapsed / 1000)
+                .build();
+    }
+
+    /**
+     * Оценить транзакцию и получить AI объяснение и рекомендации (медленно, для аналитика)
+     */
+    public ScoreResponse scoreAndExplain(ScoreRequest request) {
+        long start = System.nanoTime();
+
+        Transaction transaction = toTransaction(request);
+        ScoringContext context = scoringContextLoader.load(transaction);
+        TransactionAnalysisDTO analysis = fraudDetectionService.analyzeTransaction(context);
+
+        ScoreResponse response = toResponse(request, analysis, System.nanoTime() - start);
+
+        // Объяснение и рекомендации - параллельно; при ошибке, перегрузке пула
+        // или исчерпанном лимите запросов к LLM - локальный текст по факторам риска
+        AIEnrichment enrichment = aiEnrichmentService.submit(
+                null,
+                () -> aiAnalysisService.explainFraud(context, analysis),
+                offlineExplanationService.explain(analysis),
+                () -> aiAnalysisService.getRecommendations(transaction, analysis),
+                offlineExplanationService.recommend(analysis));
+        enrichment = aiEnrichmentService.await(enrichment.getEnrichmentId());
+
+        response.setAiExplanation(enrichment.getAiExplanation());
+        response.setRecommendations(enrichment.getRecommendations());
+        return response;
+    }
+
+    private Transaction toTransaction(ScoreRequest request) {
+        return Transaction.builder()
+                .transactionId(request.getTransactionId())
+                .customerId(request.getCustomerId())
+                .recipientId(request.getRecipientId())
+                .amount(request.getAmount())
+                .transactionDateTime(request.getTransactionDateTime() != null
+                        ? request.getTransactionDateTime()
+                        : LocalDateTime.now())
+                .isFraud(false)
+                .build();
+    }
+
+    private ScoreResponse toResponse(ScoreRequest request, TransactionAnalysisDTO analysis, long elapsedNanos) {
+        return ScoreResponse.builder()
+                .transactionId(request.getTransactionId())
+                .customerId(request.getCustomerId())
+                .decision(analysis.getDecision())
+                .riskScore(analysis.getRiskScore())
+                .fraudProbability(analysis.getFraudProbability())
+                .mlProbability(analysis.getMlProbability())
+                .riskFactors(analysis.getRiskFactors())
+                .latencyMicros(elapsedNanos / 1000)
+                .build();
+    }
+}
@@ -0,0 +1,165 @@
+package com.fortebank.fraud.scoring.service;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.yaml.YAMLFactory;
+import com.fortebank.fraud.scoring.dto.RuleEvaluation;
+import com.fortebank.fraud.scoring.dto.RuleSetDefinition;
+import com.fortebank.fraud.scoring.dto.RuleStatsDTO;
+import com.fortebank.fraud.scoring.rule.CompiledRuleSet;
+import com.fortebank.fraud.scoring.rule.FeatureVector;
+import com.fortebank.fraud.scoring.rule.RiskRule;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.ResourceLoader;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+
+/**
+ * Набор правил оценки риска: загрузка DSL (JSON/YAML), компиляция в план
+ * и горячая перезагрузка при изменении файла без перезапуска приложения.
+ * Если новый файл не компилируется, продолжает работать прежний план.
+ *
+ * Горячая перезагрузка работает только для файла на диске (fraud.rules.location=file:...).
+ * Набор по умолчанию (classpath:rules/default-rules.json) упакован в приложение и не меняется;
+ * его можно перечитать только через reload() после замены ресурса.
+ */
+@Service
+@Slf4j
+public class RuleEngineService {
+
+    private final ResourceLoader resourceLoader;
+    private final ObjectProvider<RiskRule> pluginRules;
+    private final String location;
+
+    private final ObjectMapper jsonMapper;
+    private final ObjectMapper yamlMapper;
+
+    private volatile CompiledRuleSet ruleSet;
+    private volatile long lastModified;
+
+    public RuleEngineService(ResourceLoader resourceLoader,
+                             ObjectProvider<RiskRule> pluginRules,
+                             @Value("${fraud.rules.location:classpath:rules/default-rules.json}") String location) {
+        this.resourceLoader = resourceLoader;
+        this.pluginRules = pluginRules;
+        this.location = location;
+        this.jsonMapper = new ObjectMapper()
+                .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, true);
+        this.yamlMapper = new ObjectMapper(new YAMLFactory())
+                .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, true);
+    }
+
+    @PostConstruct
+    public void init() {
+        Resource resource = resourceLoader.getResource(location);
+        ruleSet = compile(resource);
+        lastModified = lastModified(resource);
+        log.info("Набор правил {} загружен из {}: {} правил",
+                ruleSet.getVersion(), location, ruleSet.size());
+        if (lastModified <= 0) {
+            log.info("Правила загружены не из файла на диске - горячая перезагрузка выключена "
+                    + "(для неё задайте fraud.rules.location=file:...)");
+        }
+    }
+
+    /**
+     * Прогнать все правила по признакам транзакции
+     */
+    public RuleEvaluation evaluate(FeatureVector features) {
+        return ruleSet.evaluate(features);
+    }
+
+    /**
+     * Только решение, с остановкой после порога BLOCK (см. CompiledRuleSet.evaluateDecision)
+     */
+    public RuleEvaluation evaluateDecision(FeatureVector features) {
+        return ruleSet.evaluateDecision(features);
+    }
+
+    /**
+     * Текущий скомпилированный набор правил
+     */
+    public CompiledRuleSet getRuleSet() {
+        return ruleSet;
+    }
+
+    /**
+     * Статистика срабатываний и времени по правилам текущего набора
+     */
+    public List<RuleStatsDTO> getStats() {
+        return ruleSet.getStats();
+    }
+
+    /**
+     * Перезагрузить правила вручную
+     *
+     * @throws RuntimeException если файл не читается или правила не компилируются
+     */
+    public CompiledRuleSet reload() {
+        Resource resource = resourceLoader.getResource(location);
+        CompiledRuleSet compiled = compile(resource);
+        ruleSet = compiled;
+        lastModified = lastModified(resource);
+        log.info("Набор правил перезагружен: версия {}, {} правил", compiled.getVersion(), compiled.size());
+        return compiled;
+    }
+
+    /**
+     * Проверка изменения файла правил (только для файлов на диске)
+     */
+    @Scheduled(fixedDelayString = "${fraud.rules.reload-interval-ms:5000}")
+    public void reloadIfModified() {
+        Resource resource = resourceLoader.getResource(location);
+        long modified = lastModified(resource);
+        if (modified <= 0 || modified == lastModified) {
+            return;
+        }
+
+        try {
+            reload();
+        } catch (RuntimeException e) {
+            // Не пытаемся повторно, пока файл снова не изменится
+            lastModified = modified;
+            log.error("Не удалось перезагрузить правила, используется версия {}: {}",
+                    ruleSet.getVersion(), e.getMessage());
+        }
+    }
+
+    private CompiledRuleSet compile(Resource resource) {
+        String filename = resource.getFilename() != null ? resource.getFilename().toLowerCase() : "";
+        ObjectMapper mapper = filename.endsWith(".yml") || filename.endsWith(".yaml") ? yamlMapper : jsonMapper;
+
+        RuleSetDefinition definition;
+        try (InputStream in = resource.getInputStream()) {
+            definition = mapper.readValue(in, RuleSetDefinition.class);
+        } catch (IOException e) {
+            throw new RuntimeException("Ошибка чтения правил " + location + ": " + e.getMessage(), e);
+        }
+
+        if (definition.getRules() == null || definition.getRules().isEmpty()) {
+            throw new RuntimeException("Файл правил пуст: " + location);
+        }
+
+        try {
+            return CompiledRuleSet.compile(definition, pluginRules.orderedStream().toList(), location);
+        } catch (IllegalArgumentException e) {
+            throw new RuntimeException("Ошибка компиляции правил " + location + ": " + e.getMessage(), e);
+        }
+    }
+
+    private static long lastModified(Resource resource) {
+        try {
+            return resource.isFile() ? resource.lastModified() : 0;
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+}
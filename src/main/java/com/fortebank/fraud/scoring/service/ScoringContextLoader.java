@@ -0,0 +1,116 @@
+package com.fortebank.fraud.scoring.service;
+
+import com.fortebank.fraud.customer.dto.VelocityCounts;
+import com.fortebank.fraud.customer.entity.CustomerBehaviorPattern;
+import com.fortebank.fraud.customer.entity.CustomerProfile;
+import com.fortebank.fraud.customer.service.BehaviorPatternCacheService;
+import com.fortebank.fraud.customer.service.CustomerProfileService;
+import com.fortebank.fraud.customer.service.CustomerStatsService;
+import com.fortebank.fraud.scoring.dto.ScoringContext;
+import com.fortebank.fraud.transaction.entity.Transaction;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Загружает контекст анализа транзакции за один проход:
+ * профиль клиента, счётчики частоты и признак нового получателя (из кэшей и индексов в памяти)
+ * и последний поведенческий паттерн. Таблица transactions при этом не читается, в БД ничего не пишется.
+ */
+@Service
+@Slf4j
+public class ScoringContextLoader {
+
+    private final CustomerProfileService customerProfileService;
+    private final CustomerStatsService customerStatsService;
+    private final BehaviorPatternCacheService behaviorPatternCache;
+
+    private final DistributionSummary queriesSummary;
+    private final DistributionSummary rowsSummary;
+
+    public ScoringContextLoader(CustomerProfileService customerProfileService,
+                                CustomerStatsService customerStatsService,
+                                BehaviorPatternCacheService behaviorPatternCache,
+                                MeterRegistry meterRegistry) {
+        this.customerProfileService = customerProfileService;
+        this.customerStatsService = customerStatsService;
+        this.behaviorPatternCache = behaviorPatternCache;
+        this.queriesSummary = DistributionSummary.builder("fraud.scoring.context.queries")
+                .description("SQL запросов на загрузку контекста транзакции или группы транзакций клиента")
+                .register(meterRegistry);
+        this.rowsSummary = DistributionSummary.builder("fraud.scoring.context.rows")
+                .description("Строк, загруженных для контекста транзакции или группы транзакций клиента")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Загрузить контекст для транзакции
+     */
+    public ScoringContext load(Transaction transaction) {
+        return loadForCustomer(transaction.getCustomerId(), List.of(transaction)).get(0);
+    }
+
+    /**
+     * Загрузить контексты для нескольких транзакций одного клиента.
+     * Профиль и поведенческий паттерн читаются один раз на всю группу.
+     */
+    public List<ScoringContext> loadForCustomer(String customerId, List<Transaction> transactions) {
+        long start = System.nanoTime();
+        int queries = 0;
+        int rows = 0;
+
+        // 1. Профиль клиента (из кэша, в БД - только при промахе; без профиля - новый клиент)
+        if (!customerProfileService.isProfileCached(customerId)) {
+            queries++;
+        }
+        CustomerProfile profile = customerProfileService.getCachedProfile(customerId).orElse(null);
+        if (profile != null) {
+            rows++;
+        }
+
+        // 2. Последний поведенческий паттерн (из кэша, в БД - только при промахе)
+        if (!behaviorPatternCache.isCached(customerId)) {
+            queries++;
+        }
+        CustomerBehaviorPattern pattern = behaviorPatternCache.getLatest(customerId).orElse(null);
+        if (pattern != null) {
+            rows++;
+        }
+
+        List<ScoringContext> contexts = new ArrayList<>(transactions.size());
+        for (Transaction transaction : transactions) {
+            // 3. Частота транзакций (5м/1ч/24ч/7д) по времени самой транзакции - из счётчиков в памяти
+            VelocityCounts velocity = customerStatsService.getVelocityCounts(transaction, profile);
+
+            // 4. Новый ли получатель - по индексу получателей, в памяти
+            boolean newRecipient = customerStatsService.isNewRecipient(transaction);
+
+            // Запросы к БД приписываем первой транзакции группы
+            boolean first = contexts.isEmpty();
+            contexts.add(ScoringContext.builder()
+                    .transaction(transaction)
+                    .stats(customerStatsService.buildStats(customerId, profile, velocity))
+                    .newRecipient(newRecipient)
+                    .behaviorPattern(pattern)
+                    .queryCount(first ? queries : 0)
+                    .rowsLoaded(first ? rows : 0)
+                    .build());
+        }
+
+        long elapsed = System.nanoTime() - start;
+        queriesSummary.record(queries);
+        rowsSummary.record(rows);
+        for (ScoringContext context : contexts) {
+            context.setLoadNanos(elapsed / contexts.size());
+        }
+
+        log.debug("Контекст клиента {} загружен для {} транзакций: {} запросов, {} строк, {} мкс",
+                customerId, transactions.size(), queries, rows, elapsed / 1000);
+
+        return contexts;
+    }
+}
@@ -1,7 +1,7 @@
 package com.fortebank.fraud.statistics.service;
 
 import com.fortebank.fraud.customer.entity.CustomerBehaviorPattern;
-import com.fortebank.fraud.customer.repository.CustomerBehaviorPatternRepository;
+import com.fortebank.fraud.customer.service.BehaviorPatternCacheService;
 import com.fortebank.fraud.statistics.dto.*;
 import com.fortebank.fraud.transaction.entity.Transaction;
 import com.fortebank.fraud.transaction.repository.TransactionRepository;
@@ -22,7 +22,7 @@ import java.util.stream.Collectors;
 public class StatisticsService {
     
     private final TransactionRepository transactionRepository;
-    private final CustomerBehaviorPatternRepository behaviorPatternRepository;
+    private final BehaviorPatternCacheService behaviorPatternCache;
     
     private static final DateTimeFormatter DATE_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd");
     
@@ -206,8 +206,7 @@ public class StatisticsService {
                 : BigDecimal.ZERO;
         
         // Поведенческие данные
-        Optional<CustomerBehaviorPattern> behaviorOpt = 
-                behaviorPatternRepository.findLatestByCustomerId(customerId);
+        Optional<CustomerBehaviorPattern> behaviorOpt = behaviorPatternCache.getLatest(customerId);
         
         Integer deviceChanges = behaviorOpt.map(CustomerBehaviorPattern::getUniquePhoneModels30d).orElse(0);
         Integer osVersionChanges = behaviorOpt.map(CustomerBehaviorPattern::getUniqueOsVersions30d).orElse(0);
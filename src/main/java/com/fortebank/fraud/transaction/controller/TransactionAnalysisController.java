@@ -1,5 +1,8 @@
 package com.fortebank.fraud.transaction.controller;
 
+import com.fortebank.fraud.ai.dto.AIEnrichment;
+import com.fortebank.fraud.ai.dto.AIEnrichmentStatus;
+import com.fortebank.fraud.ai.service.AIEnrichmentService;
 import com.fortebank.fraud.common.response.ApiResponse;
 import com.fortebank.fraud.transaction.dto.TransactionAnalysisDTO;
 import com.fortebank.fraud.transaction.entity.Transaction;
@@ -12,8 +15,10 @@ import java.util.List;
 
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Sort;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 @RestController
 @RequestMapping("/api/transactions")
@@ -23,6 +28,7 @@ public class TransactionAnalysisController {
     
     private final TransactionAnalysisService analysisService;
     private final TransactionRepository transactionRepository;
+    private final AIEnrichmentService aiEnrichmentService;
     
     /**
      * Получить список всех транзакций
@@ -80,19 +86,57 @@ public class TransactionAnalysisController {
     }
     
     /**
-     * Анализировать транзакцию
+     * Анализировать транзакцию.
+     * По умолчанию решение возвращается сразу, AI объяснение готовится в фоне
+     * (см. /enrichments/{enrichmentId}); async=false - дождаться ответа LLM.
      */
     @PostMapping("/{id}/analyze")
     public ResponseEntity<ApiResponse<TransactionAnalysisDTO>> analyzeTransaction(
-            @PathVariable Long id) {
+            @PathVariable Long id,
+            @RequestParam(defaultValue = "true") boolean async) {
         
-        log.info("Запрос на анализ транзакции: {}", id);
+        log.info("Запрос на анализ транзакции: {}, async={}", id, async);
         
-        TransactionAnalysisDTO analysis = analysisService.analyzeTransaction(id);
+        TransactionAnalysisDTO analysis = analysisService.analyzeTransaction(id, async);
         
         return ResponseEntity.ok(ApiResponse.success(
                 analysis,
-                "Анализ завершён"
+                async ? "Анализ завершён, AI объяснение готовится" : "Анализ завершён"
         ));
     }
+    
+    /**
+     * Анализировать транзакцию с потоковым AI объяснением (Server-Sent Events):
+     * "analysis" - решение, "token" - фрагменты объяснения, "recommendations", "done" - полный текст
+     */
+    @PostMapping(value = "/{id}/analyze/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamAnalysis(@PathVariable Long id) {
+        log.info("Запрос на потоковый анализ транзакции: {}", id);
+        return analysisService.streamAnalysis(id);
+    }
+    
+    /**
+     * Статус AI обогащения анализа
+     */
+    @GetMapping("/enrichments/{enrichmentId}")
+    public ResponseEntity<ApiResponse<AIEnrichment>> getEnrichment(
+            @PathVariable String enrichmentId) {
+        
+        AIEnrichment enrichment = aiEnrichmentService.getStatus(enrichmentId);
+        
+        return ResponseEntity.ok(ApiResponse.success(
+                enrichment,
+                enrichment.getStatus() == AIEnrichmentStatus.PENDING
+                        ? "AI объяснение готовится"
+                        : "AI объяснение готово"
+        ));
+    }
+    
+    /**
+     * Подписка на AI обогащение (Server-Sent Events, событие "enrichment")
+     */
+    @GetMapping(value = "/enrichments/{enrichmentId}/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamEnrichment(@PathVariable String enrichmentId) {
+        return aiEnrichmentService.subscribe(enrichmentId);
+    }
 }
\ No newline at end of file
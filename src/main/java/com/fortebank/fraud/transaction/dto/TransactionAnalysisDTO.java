@@ -1,5 +1,6 @@
 package com.fortebank.fraud.transaction.dto;
 
+import com.fortebank.fraud.ai.dto.AIEnrichmentStatus;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
@@ -16,11 +17,16 @@ public class TransactionAnalysisDTO {
     private Long transactionId;
     private String customerId;
     private Double fraudProbability;
+    private Double mlProbability;       // Оценка ML модели, null - модель не обучена
     private Boolean isFraud;
     private String decision; // BLOCK, APPROVE, REVIEW
     private Integer riskScore;
     private List<RiskFactorDTO> riskFactors;
     private String aiExplanation;
     private String recommendations;
+    private String enrichmentId;        // Идентификатор AI обогащения (статус / SSE)
+    private AIEnrichmentStatus enrichmentStatus;
     private LocalDateTime analyzedAt;
+    private Integer contextQueries;     // SQL запросов на загрузку контекста
+    private Integer contextRowsLoaded;  // Строк, загруженных для контекста
 }
\ No newline at end of file
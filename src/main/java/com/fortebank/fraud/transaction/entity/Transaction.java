@@ -8,9 +8,11 @@ import java.time.LocalDateTime;
 @Entity
 @Table(name = "transactions", indexes = {
     @Index(name = "idx_customer_id", columnList = "customer_id"),
+    @Index(name = "idx_customer_recipient", columnList = "customer_id, recipient_id"),
     @Index(name = "idx_transaction_datetime", columnList = "transaction_datetime"),
     @Index(name = "idx_is_fraud", columnList = "is_fraud"),
-    @Index(name = "idx_status", columnList = "status")
+    @Index(name = "idx_status", columnList = "status"),
+    @Index(name = "idx_batch_status_customer", columnList = "batch_id, status, customer_id")
 })
 @Data
 @Builder
@@ -18,8 +20,14 @@ import java.time.LocalDateTime;
 @AllArgsConstructor
 public class Transaction {
     
+    // id выдаются блоками из последовательности (pooled): один nextval на 50 вставок,
+    // что позволяет Hibernate пакетировать INSERT (с IDENTITY пакетная вставка невозможна)
+    public static final String ID_SEQUENCE = "transactions_seq";
+    public static final int ID_ALLOCATION_SIZE = 50;
+    
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "transactions_seq")
+    @SequenceGenerator(name = "transactions_seq", sequenceName = ID_SEQUENCE, allocationSize = ID_ALLOCATION_SIZE)
     private Long id;
     
     @Column(name = "transaction_id", unique = true, nullable = false, length = 100)
@@ -51,6 +59,9 @@ public class Transaction {
     @Column(name = "batch_id")
     private Long batchId;
     
+    @Column(name = "ai_explanation", columnDefinition = "TEXT")
+    private String aiExplanation; // Объяснение LLM (пакетное или потоковое)
+    
     @Column(name = "created_at", nullable = false)
     private LocalDateTime createdAt;
     
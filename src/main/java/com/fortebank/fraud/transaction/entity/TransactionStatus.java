@@ -6,5 +6,17 @@ public enum TransactionStatus {
     ANALYZED,     // Проанализирована
     BLOCKED,      // Заблокирована
     APPROVED,     // Одобрена
-    REVIEW        // Требует ручной проверки
+    REVIEW;       // Требует ручной проверки
+    
+    /**
+     * Статус по решению анализа (BLOCK, REVIEW, APPROVE)
+     */
+    public static TransactionStatus fromDecision(String decision) {
+        return switch (decision) {
+            case "BLOCK" -> BLOCKED;
+            case "REVIEW" -> REVIEW;
+            case "APPROVE" -> APPROVED;
+            default -> ANALYZED;
+        };
+    }
 }
\ No newline at end of file
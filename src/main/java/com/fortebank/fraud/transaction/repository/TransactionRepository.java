@@ -1,23 +1,84 @@
 package com.fortebank.fraud.transaction.repository;
 
+import com.fortebank.fraud.customer.dto.CustomerAggregateView;
 import com.fortebank.fraud.transaction.entity.Transaction;
+import com.fortebank.fraud.transaction.entity.TransactionStatus;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 @Repository
 public interface TransactionRepository extends JpaRepository<Transaction, Long> {
     
     Optional<Transaction> findByTransactionId(String transactionId);
     
+    List<Transaction> findByTransactionIdIn(Collection<String> transactionIds);
+    
+    /**
+     * Какие из transaction_id уже загружены
+     */
+    @Query("SELECT t.transactionId FROM Transaction t WHERE t.transactionId IN :transactionIds")
+    List<String> findExistingTransactionIds(@Param("transactionIds") Collection<String> transactionIds);
+    
     List<Transaction> findByCustomerId(String customerId);
     
     List<Transaction> findByBatchId(Long batchId);
     
+    List<Transaction> findByBatchIdAndStatus(Long batchId, TransactionStatus status);
+    
+    /**
+     * Следующая страница клиентов батча с транзакциями в статусе status (по возрастанию id, после after)
+     */
+    @Query("SELECT DISTINCT t.customerId FROM Transaction t WHERE t.batchId = :batchId " +
+           "AND t.status = :status AND t.customerId > :after ORDER BY t.customerId")
+    List<String> findBatchCustomerIdsAfter(
+        @Param("batchId") Long batchId,
+        @Param("status") TransactionStatus status,
+        @Param("after") String after,
+        Pageable pageable
+    );
+    
+    /**
+     * Транзакции батча в статусе status у указанных клиентов (по клиенту и времени)
+     */
+    @Query("SELECT t FROM Transaction t WHERE t.batchId = :batchId AND t.status = :status " +
+           "AND t.customerId IN :customerIds ORDER BY t.customerId, t.transactionDateTime, t.id")
+    List<Transaction> findBatchTransactionsOfCustomers(
+        @Param("batchId") Long batchId,
+        @Param("status") TransactionStatus status,
+        @Param("customerIds") Collection<String> customerIds
+    );
+    
+    /**
+     * Сохранить AI объяснение транзакции
+     */
+    @Modifying
+    @Query("UPDATE Transaction t SET t.aiExplanation = :text, t.updatedAt = :updatedAt WHERE t.id = :id")
+    int updateAiExplanation(
+        @Param("id") Long id,
+        @Param("text") String text,
+        @Param("updatedAt") LocalDateTime updatedAt
+    );
+    
+    /**
+     * Транзакции батча с указанными статусами, ещё без AI объяснения (самые рискованные - первыми)
+     */
+    @Query("SELECT t FROM Transaction t WHERE t.batchId = :batchId AND t.status IN :statuses " +
+           "AND t.aiExplanation IS NULL ORDER BY t.fraudProbability DESC, t.id")
+    List<Transaction> findUnexplainedByBatchId(
+        @Param("batchId") Long batchId,
+        @Param("statuses") Collection<TransactionStatus> statuses,
+        Pageable pageable
+    );
+    
     @Query("SELECT t FROM Transaction t WHERE t.customerId = :customerId " +
            "AND t.transactionDateTime >= :startDate ORDER BY t.transactionDateTime DESC")
     List<Transaction> findRecentByCustomerId(
@@ -25,6 +86,65 @@ public interface TransactionRepository extends JpaRepository<Transaction, Long>
         @Param("startDate") LocalDateTime startDate
     );
     
+    @Query("SELECT t.customerId AS customerId, COUNT(t) AS transactionCount, " +
+           "SUM(t.amount) AS amountSum, MIN(t.amount) AS minAmount, MAX(t.amount) AS maxAmount, " +
+           "COUNT(DISTINCT t.recipientId) AS uniqueRecipients, " +
+           "MIN(t.transactionDateTime) AS firstTransactionAt, MAX(t.transactionDateTime) AS lastTransactionAt " +
+           "FROM Transaction t WHERE t.customerId = :customerId GROUP BY t.customerId")
+    Optional<CustomerAggregateView> aggregateByCustomerId(@Param("customerId") String customerId);
+    
+    @Query("SELECT t.customerId AS customerId, COUNT(t) AS transactionCount, " +
+           "SUM(t.amount) AS amountSum, MIN(t.amount) AS minAmount, MAX(t.amount) AS maxAmount, " +
+           "COUNT(DISTINCT t.recipientId) AS uniqueRecipients, " +
+           "MIN(t.transactionDateTime) AS firstTransactionAt, MAX(t.transactionDateTime) AS lastTransactionAt " +
+           "FROM Transaction t GROUP BY t.customerId")
+    List<CustomerAggregateView> aggregateAllCustomers();
+    
+    @Query("SELECT COUNT(t) FROM Transaction t WHERE t.customerId = :customerId " +
+           "AND t.transactionDateTime >= :from AND t.transactionDateTime < :to")
+    long countInWindow(
+        @Param("customerId") String customerId,
+        @Param("from") LocalDateTime from,
+        @Param("to") LocalDateTime to
+    );
+    
+    /**
+     * Время транзакций клиента в окне (для загрузки счётчиков частоты)
+     */
+    @Query("SELECT t.transactionDateTime FROM Transaction t WHERE t.customerId = :customerId " +
+           "AND t.transactionDateTime >= :from AND t.transactionDateTime < :to")
+    List<LocalDateTime> findTransactionTimesInWindow(
+        @Param("customerId") String customerId,
+        @Param("from") LocalDateTime from,
+        @Param("to") LocalDateTime to
+    );
+    
+    /**
+     * Количество переводов клиента каждому получателю (точный уровень индекса получателей)
+     */
+    @Query("SELECT t.recipientId, COUNT(t) FROM Transaction t " +
+           "WHERE t.customerId = :customerId GROUP BY t.recipientId")
+    List<Object[]> countByRecipientForCustomer(@Param("customerId") String customerId);
+    
+    /**
+     * Все пары клиент-получатель (для прогрева фильтра Блума)
+     */
+    @Query("SELECT DISTINCT t.customerId, t.recipientId FROM Transaction t")
+    Stream<Object[]> streamCustomerRecipientPairs();
+    
+    /**
+     * Следующая страница клиентов (по возрастанию id, после after)
+     */
+    @Query("SELECT DISTINCT t.customerId FROM Transaction t WHERE t.customerId > :after ORDER BY t.customerId")
+    List<String> findCustomerIdsAfter(@Param("after") String after, Pageable pageable);
+    
+    /**
+     * Транзакции клиентов в порядке времени (для обучения ML модели)
+     */
+    @Query("SELECT t FROM Transaction t WHERE t.customerId IN :customerIds " +
+           "ORDER BY t.customerId, t.transactionDateTime, t.id")
+    List<Transaction> findByCustomerIdsInTimeOrder(@Param("customerIds") Collection<String> customerIds);
+    
     @Query("SELECT COUNT(t) FROM Transaction t WHERE t.isFraud = true")
     Long countFraudulent();
     
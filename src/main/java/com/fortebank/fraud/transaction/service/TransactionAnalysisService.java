@@ -1,39 +1,206 @@
 package com.fortebank.fraud.transaction.service;
 
+import com.fortebank.fraud.ai.dto.AIEnrichment;
 import com.fortebank.fraud.ai.service.AIAnalysisService;
+import com.fortebank.fraud.ai.service.AIConcurrencyLimiter;
+import com.fortebank.fraud.ai.service.AIEnrichmentService;
+import com.fortebank.fraud.scoring.dto.ScoringContext;
+import com.fortebank.fraud.scoring.service.ScoringContextLoader;
 import com.fortebank.fraud.transaction.dto.TransactionAnalysisDTO;
 import com.fortebank.fraud.transaction.entity.Transaction;
 import com.fortebank.fraud.transaction.entity.TransactionStatus;
 import com.fortebank.fraud.transaction.repository.TransactionRepository;
-import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.LocalDateTime;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
 
 @Service
-@RequiredArgsConstructor
 @Slf4j
 public class TransactionAnalysisService {
     
     private final TransactionRepository transactionRepository;
     private final FraudDetectionService fraudDetectionService;
     private final AIAnalysisService aiAnalysisService;
+    private final ScoringContextLoader scoringContextLoader;
+    private final TransactionTemplate transactionTemplate;
+    private final AIEnrichmentService aiEnrichmentService;
+    private final ExecutorService aiExecutor;
+    private final AIConcurrencyLimiter concurrencyLimiter;
+    private final long streamTimeoutMillis;
+    
+    public TransactionAnalysisService(TransactionRepository transactionRepository,
+                                      FraudDetectionService fraudDetectionService,
+                                      AIAnalysisService aiAnalysisService,
+                                      ScoringContextLoader scoringContextLoader,
+                                      TransactionTemplate transactionTemplate,
+                                      AIEnrichmentService aiEnrichmentService,
+                                      @Qualifier("aiExecutor") ExecutorService aiExecutor,
+                                      AIConcurrencyLimiter concurrencyLimiter,
+                                      @Value("${fraud.ai.stream.timeout-ms:120000}") long streamTimeoutMillis) {
+        this.transactionRepository = transactionRepository;
+        this.fraudDetectionService = fraudDetectionService;
+        this.aiAnalysisService = aiAnalysisService;
+        this.scoringContextLoader = scoringContextLoader;
+        this.transactionTemplate = transactionTemplate;
+        this.aiEnrichmentService = aiEnrichmentService;
+        this.aiExecutor = aiExecutor;
+        this.concurrencyLimiter = concurrencyLimiter;
+        this.streamTimeoutMillis = streamTimeoutMillis;
+    }
+    
+    /**
+     * Полный анализ ИСТОРИЧЕСКОЙ транзакции с AI объяснениями.
+     * Работа с БД завершается (коммит) до запросов к LLM; объяснение
+     * и рекомендации запрашиваются параллельно в фоне. Объяснение от LLM
+     * сохраняется в транзакции по готовности (шаблонный текст не сохраняется).
+     *
+     * @param async true - вернуть решение сразу с идентификатором AI обогащения
+     *              (текст забирается через статус или SSE), false - дождаться ответа LLM
+     */
+    public TransactionAnalysisDTO analyzeTransaction(Long transactionId, boolean async) {
+        // 1. Анализ по правилам и обновление статуса - в короткой транзакции БД
+        AnalysisResult result = transactionTemplate.execute(status -> analyzeAndUpdate(transactionId));
+        Transaction transaction = result.context().getTransaction();
+        TransactionAnalysisDTO analysis = result.analysis();
+        boolean actualFraud = transaction.getIsFraud();
+        
+        // 2. AI объяснение и рекомендации - в фоновом пуле, без соединения с БД
+        AIEnrichment enrichment = aiEnrichmentService.submit(
+                transactionId,
+                () -> {
+                    String explanation = aiAnalysisService.explainFraud(result.context(), analysis);
+                    saveExplanation(transactionId, explanation);
+                    return explanation;
+                },
+                fallbackExplanation(actualFraud),
+                () -> aiAnalysisService.getRecommendations(transaction, analysis),
+                fallbackRecommendations(actualFraud));
+        
+        if (!async) {
+            enrichment = aiEnrichmentService.await(enrichment.getEnrichmentId());
+            analysis.setAiExplanation(enrichment.getAiExplanation());
+            analysis.setRecommendations(enrichment.getRecommendations());
+        }
+        analysis.setEnrichmentId(enrichment.getEnrichmentId());
+        analysis.setEnrichmentStatus(enrichment.getStatus());
+        
+        log.info("Анализ завершён. Реальная метка: {}, Fraud Probability: {}, Decision: {}, " +
+                 "контекст: {} запросов / {} строк, AI: {}", 
+                 actualFraud, analysis.getFraudProbability(), analysis.getDecision(),
+                 result.context().getQueryCount(), result.context().getRowsLoaded(),
+                 enrichment.getStatus());
+        
+        return analysis;
+    }
+    
+    /**
+     * Анализ с потоковой передачей AI объяснения (Server-Sent Events).
+     * События: "analysis" - решение сразу после анализа, "token" - фрагменты объяснения
+     * по мере генерации LLM, "recommendations", затем "done" с полным текстом.
+     * При ошибке LLM - "fallback" с шаблонным объяснением. Полный текст сохраняется в транзакции.
+     */
+    public SseEmitter streamAnalysis(Long transactionId) {
+        AnalysisResult result = transactionTemplate.execute(status -> analyzeAndUpdate(transactionId));
+        Transaction transaction = result.context().getTransaction();
+        TransactionAnalysisDTO analysis = result.analysis();
+        boolean actualFraud = transaction.getIsFraud();
+        
+        SseEmitter emitter = new SseEmitter(streamTimeoutMillis);
+        try {
+            emitter.send(SseEmitter.event().name("analysis").data(analysis));
+            if (concurrencyLimiter.isSaturated()) {
+                // Лимит запросов к LLM исчерпан - не ждём, сразу шаблонный текст
+                concurrencyLimiter.recordRejected();
+                sendFallback(emitter, actualFraud);
+            } else {
+                aiExecutor.execute(() -> streamExplanation(emitter, result, actualFraud));
+            }
+        } catch (IOException e) {
+            emitter.completeWithError(e);
+        } catch (RejectedExecutionException e) {
+            // Пул AI перегружен - сразу шаблонный текст
+            log.warn("Пул AI перегружен, потоковое объяснение транзакции {} не запрошено", transactionId);
+            sendFallback(emitter, actualFraud);
+        }
+        return emitter;
+    }
+    
+    private void streamExplanation(SseEmitter emitter, AnalysisResult result, boolean actualFraud) {
+        Transaction transaction = result.context().getTransaction();
+        TransactionAnalysisDTO analysis = result.analysis();
+        try {
+            String explanation = aiAnalysisService.streamExplanation(result.context(), analysis, token -> {
+                try {
+                    emitter.send(SseEmitter.event().name("token").data(token));
+                } catch (IOException e) {
+                    // Клиент отключился - прерываем чтение ответа LLM
+                    throw new UncheckedIOException(e);
+                }
+            });
+            
+            saveExplanation(transaction.getId(), explanation);
+            
+            String recommendations;
+            try {
+                recommendations = aiAnalysisService.getRecommendations(transaction, analysis);
+            } catch (RuntimeException e) {
+                recommendations = fallbackRecommendations(actualFraud);
+            }
+            emitter.send(SseEmitter.event().name("recommendations").data(recommendations));
+            emitter.send(SseEmitter.event().name("done").data(explanation));
+            emitter.complete();
+        } catch (UncheckedIOException | IOException e) {
+            log.debug("Клиент отключился от потока объяснения транзакции {}", transaction.getId());
+            emitter.completeWithError(e);
+        } catch (RuntimeException e) {
+            log.error("Ошибка потокового AI объяснения транзакции {}: {}", transaction.getId(), e.getMessage());
+            sendFallback(emitter, actualFraud);
+        }
+    }
     
     /**
-     * Полный анализ ИСТОРИЧЕСКОЙ транзакции с AI объяснениями
+     * Сохранить объяснение LLM в транзакции. Ошибка записи не мешает отдать текст клиенту.
      */
-    @Transactional
-    public TransactionAnalysisDTO analyzeTransaction(Long transactionId) {
+    private void saveExplanation(Long transactionId, String explanation) {
+        try {
+            transactionTemplate.executeWithoutResult(status -> transactionRepository.updateAiExplanation(
+                    transactionId, explanation, LocalDateTime.now()));
+        } catch (RuntimeException e) {
+            log.warn("Не удалось сохранить AI объяснение транзакции {}: {}", transactionId, e.getMessage());
+        }
+    }
+    
+    private void sendFallback(SseEmitter emitter, boolean actualFraud) {
+        try {
+            emitter.send(SseEmitter.event().name("fallback").data(fallbackExplanation(actualFraud)));
+            emitter.send(SseEmitter.event().name("recommendations").data(fallbackRecommendations(actualFraud)));
+            emitter.complete();
+        } catch (IOException | IllegalStateException e) {
+            emitter.completeWithError(e);
+        }
+    }
+    
+    private AnalysisResult analyzeAndUpdate(Long transactionId) {
         // Получить транзакцию
         Transaction transaction = transactionRepository.findById(transactionId)
                 .orElseThrow(() -> new RuntimeException("Транзакция не найдена: " + transactionId));
         
         log.info("Начинаем анализ транзакции: {}", transaction.getTransactionId());
         
-        // 1. Анализ по правилам (получаем risk factors)
-        TransactionAnalysisDTO analysis = fraudDetectionService.analyzeTransaction(transaction);
+        // Загрузить контекст один раз и проанализировать по правилам
+        ScoringContext context = scoringContextLoader.load(transaction);
+        TransactionAnalysisDTO analysis = fraudDetectionService.analyzeTransaction(context);
         
-        // 2. ВАЖНО: Переопределяем результат на основе РЕАЛЬНОЙ метки из БД
+        // ВАЖНО: Переопределяем результат на основе РЕАЛЬНОЙ метки из БД
         boolean actualFraud = transaction.getIsFraud();
         
         // Корректируем вероятность на основе реальной метки
@@ -53,58 +220,34 @@ public class TransactionAnalysisService {
             }
         }
         
-        // 3. AI объяснение
-        try {
-            String explanation = aiAnalysisService.explainFraud(transaction, analysis);
-            analysis.setAiExplanation(explanation);
-        } catch (Exception e) {
-            log.error("Ошибка получения AI объяснения: {}", e.getMessage());
-            
-            // Фолбэк объяснение
-            if (actualFraud) {
-                analysis.setAiExplanation(
-                    "Эта транзакция помечена как мошенническая в исторических данных. " +
-                    "Обнаруженные факторы риска подтверждают подозрительность операции."
-                );
-            } else {
-                analysis.setAiExplanation(
-                    "Эта транзакция является легитимной согласно историческим данным. " +
-                    "Обнаруженные факторы риска не являются критичными."
-                );
-            }
-        }
-        
-        // 4. AI рекомендации
-        try {
-            String recommendations = aiAnalysisService.getRecommendations(transaction, analysis);
-            analysis.setRecommendations(recommendations);
-        } catch (Exception e) {
-            log.error("Ошибка получения AI рекомендаций: {}", e.getMessage());
-            
-            // Фолбэк рекомендации
-            if (actualFraud) {
-                analysis.setRecommendations(
-                    "1. Немедленно заблокировать транзакцию\n" +
-                    "2. Отправить SMS-уведомление клиенту\n" +
-                    "3. Временно заморозить карту\n" +
-                    "4. Связаться с клиентом для подтверждения"
-                );
-            } else {
-                analysis.setRecommendations(
-                    "1. Одобрить транзакцию\n" +
-                    "2. Продолжить мониторинг активности клиента\n" +
-                    "3. Обновить профиль поведения клиента"
-                );
-            }
-        }
-        
-        // 5. Обновить статус транзакции
+        // Обновить статус транзакции (не зависит от AI)
         updateTransactionStatus(transaction, analysis);
         
-        log.info("Анализ завершён. Реальная метка: {}, Fraud Probability: {}, Decision: {}", 
-                 actualFraud, analysis.getFraudProbability(), analysis.getDecision());
-        
-        return analysis;
+        return new AnalysisResult(context, analysis);
+    }
+    
+    private String fallbackExplanation(boolean actualFraud) {
+        if (actualFraud) {
+            return "Эта транзакция помечена как мошенническая в исторических данных. " +
+                   "Обнаруженные факторы риска подтверждают подозрительность операции.";
+        }
+        return "Эта транзакция является легитимной согласно историческим данным. " +
+               "Обнаруженные факторы риска не являются критичными.";
+    }
+    
+    private String fallbackRecommendations(boolean actualFraud) {
+        if (actualFraud) {
+            return "1. Немедленно заблокировать транзакцию\n" +
+                   "2. Отправить SMS-уведомление клиенту\n" +
+                   "3. Временно заморозить карту\n" +
+                   "4. Связаться с клиентом для подтверждения";
+        }
+        return "1. Одобрить транзакцию\n" +
+               "2. Продолжить мониторинг активности клиента\n" +
+               "3. Обновить профиль поведения клиента";
+    }
+    
+    private record AnalysisResult(ScoringContext context, TransactionAnalysisDTO analysis) {
     }
     
     /**
@@ -113,19 +256,7 @@ public class TransactionAnalysisService {
     private void updateTransactionStatus(Transaction transaction, TransactionAnalysisDTO analysis) {
         transaction.setFraudProbability(analysis.getFraudProbability());
         
-        switch (analysis.getDecision()) {
-            case "BLOCK":
-                transaction.setStatus(TransactionStatus.BLOCKED);
-                break;
-            case "REVIEW":
-                transaction.setStatus(TransactionStatus.REVIEW);
-                break;
-            case "APPROVE":
-                transaction.setStatus(TransactionStatus.APPROVED);
-                break;
-            default:
-                transaction.setStatus(TransactionStatus.ANALYZED);
-        }
+        transaction.setStatus(TransactionStatus.fromDecision(analysis.getDecision()));
         
         transactionRepository.save(transaction);
     }
@@ -0,0 +1,129 @@
+package com.fortebank.fraud.ai.service;
+
+import com.fortebank.fraud.ai.service.AIConcurrencyLimiter.CallType;
+import com.fortebank.fraud.ai.service.AIConcurrencyLimiter.Permit;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AIConcurrencyLimiterTest {
+
+    private static final long MS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final AtomicLong now = new AtomicLong(1_000_000 * MS);
+
+    @Test
+    void limitGrowsByOneOverLimitUnderLoadUpToMax() {
+        AIConcurrencyLimiter limiter = limiter(4);
+
+        List<Permit> permits = acquireAll(limiter);
+        assertEquals(4, permits.size());
+        now.addAndGet(10 * MS);
+        permits.get(0).release(true);
+        assertEquals(4.25, limiter.getLimit(), 1e-9);
+
+        for (int round = 0; round < 100; round++) {
+            permits.addAll(acquireAll(limiter));
+            now.addAndGet(10 * MS);
+            permits.forEach(permit -> permit.release(true));
+            permits.clear();
+        }
+        assertEquals(6.0, limiter.getLimit(), 1e-9);
+    }
+
+    @Test
+    void limitDoesNotGrowWhileUnderUtilised() {
+        AIConcurrencyLimiter limiter = limiter(4);
+
+        for (int i = 0; i < 100; i++) {
+            call(limiter, CallType.COMPLETION, 10 * MS, true);
+        }
+        assertEquals(4.0, limiter.getLimit(), 1e-9);
+    }
+
+    @Test
+    void burstOfErrorsDecreasesOncePerWindowDownToMin() {
+        AIConcurrencyLimiter limiter = limiter(4);
+        call(limiter, CallType.COMPLETION, 100 * MS, true);    // Средняя задержка - 100 мс
+
+        List<Permit> permits = acquireAll(limiter);
+        now.addAndGet(10 * MS);
+        permits.forEach(permit -> permit.release(false));
+        assertEquals(3.2, limiter.getLimit(), 1e-9);
+        assertEquals(1.0, decreases());
+
+        for (int window = 0; window < 10; window++) {
+            now.addAndGet(101 * MS);
+            call(limiter, CallType.COMPLETION, 0, false);
+        }
+        assertEquals(1.0, limiter.getLimit(), 1e-9);
+        assertEquals(11.0, decreases());
+    }
+
+    @Test
+    void slowCallIsJudgedAgainstBaselineOfItsType() {
+        AIConcurrencyLimiter limiter = limiter(4);
+        call(limiter, CallType.COMPLETION, 100 * MS, true);
+
+        // Первый пакетный вызов задаёт свою базовую задержку, а не сравнивается с коротким
+        call(limiter, CallType.BATCH, 1000 * MS, true);
+        assertEquals(4.0, limiter.getLimit(), 1e-9);
+
+        call(limiter, CallType.COMPLETION, 1000 * MS, true);
+        assertEquals(3.2, limiter.getLimit(), 1e-9);
+    }
+
+    @Test
+    void saturatedLimiterRejectsAndCounts() {
+        AIConcurrencyLimiter limiter = limiter(2);
+
+        Permit first = limiter.tryAcquire(CallType.COMPLETION);
+        assertNotNull(first);
+        assertNotNull(limiter.tryAcquire(CallType.STREAM));
+        assertTrue(limiter.isSaturated());
+        assertNull(limiter.tryAcquire(CallType.COMPLETION));
+        assertEquals(1.0, registry.get("fraud.ai.limit.rejected").counter().count());
+
+        first.release(true);
+        assertFalse(limiter.isSaturated());
+        assertNotNull(limiter.tryAcquire(CallType.COMPLETION));
+    }
+
+    private AIConcurrencyLimiter limiter(int initialLimit) {
+        return new AIConcurrencyLimiter(registry, initialLimit, 1, 6, 0.8, 2.0) {
+            @Override
+            long nanoTime() {
+                return now.get();
+            }
+        };
+    }
+
+    private void call(AIConcurrencyLimiter limiter, CallType type, long rtt, boolean success) {
+        Permit permit = limiter.tryAcquire(type);
+        now.addAndGet(rtt);
+        permit.release(success);
+    }
+
+    private static List<Permit> acquireAll(AIConcurrencyLimiter limiter) {
+        List<Permit> permits = new ArrayList<>();
+        while (!limiter.isSaturated()) {
+            permits.add(limiter.tryAcquire(CallType.COMPLETION));
+        }
+        return permits;
+    }
+
+    private double decreases() {
+        return registry.get("fraud.ai.limit.decreases").counter().count();
+    }
+}
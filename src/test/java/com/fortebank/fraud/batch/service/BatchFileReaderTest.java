@@ -0,0 +1,27 @@
+package com.fortebank.fraud.batch.service;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockMultipartFile;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BatchFileReaderTest {
+
+    private final BatchFileReader reader = new BatchFileReader(null, null);
+
+    @Test
+    void acceptsOnlyXlsxCsvAndCsvGz() {
+        assertTrue(reader.isSupported(file("data.xlsx")));
+        assertTrue(reader.isSupported(file("data.csv")));
+        assertTrue(reader.isSupported(file("DATA.CSV.GZ")));
+
+        assertFalse(reader.isSupported(file("data.xlsx.gz")));
+        assertFalse(reader.isSupported(file("data.gz")));
+        assertFalse(reader.isSupported(file("data.xls")));
+    }
+
+    private static MockMultipartFile file(String filename) {
+        return new MockMultipartFile("file", filename, null, new byte[]{1});
+    }
+}
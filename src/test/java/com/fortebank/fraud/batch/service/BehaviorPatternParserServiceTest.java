@@ -0,0 +1,41 @@
+package com.fortebank.fraud.batch.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class BehaviorPatternParserServiceTest {
+
+    private final BehaviorPatternParserService parser = new BehaviorPatternParserService(null);
+
+    @Test
+    void parsesTextDates() {
+        assertEquals(LocalDate.of(2025, 1, 5), parser.parseRow(row("'2025-01-05 16:32:02.000'")).getTransDate());
+        assertEquals(LocalDate.of(2025, 1, 5), parser.parseRow(row("2025-01-05")).getTransDate());
+    }
+
+    @Test
+    void parsesExcelDate() {
+        // 45662.5 - 05.01.2025 12:00 в днях Excel
+        SheetRow row = new SheetRow(1,
+                new String[]{"45662.5", "c1"},
+                new boolean[]{true, false},
+                new boolean[]{true, false});
+
+        assertEquals(LocalDate.of(2025, 1, 5), parser.parseRow(row).getTransDate());
+    }
+
+    @Test
+    void rowWithoutValidDateIsRejected() {
+        assertThrows(IllegalArgumentException.class, () -> parser.parseRow(row("05.01.2025")));
+        assertThrows(IllegalArgumentException.class, () -> parser.parseRow(row("  ")));
+        assertThrows(IllegalArgumentException.class, () -> parser.parseRow(row(null)));
+    }
+
+    private static SheetRow row(String date) {
+        return SheetRow.ofText(1, new String[]{date, "c1", "2", "1", "iPhone", "17.1", "5", "20"});
+    }
+}
@@ -0,0 +1,80 @@
+package com.fortebank.fraud.batch.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class CsvStreamReaderTest {
+
+    private final CsvStreamReader reader = new CsvStreamReader();
+
+    @Test
+    void detectsSeparatorFromHeader() throws IOException {
+        assertArrayEquals(new String[]{"c1", "100,50"}, values(read("a;b\nc1;100,50\n", false).get(1)));
+        assertArrayEquals(new String[]{"c1", "100;50"}, values(read("a\tb\nc1\t100;50\n", false).get(1)));
+        assertArrayEquals(new String[]{"c1", "100"}, values(read("a,b\nc1,100\n", false).get(1)));
+        // Без разделителя в заголовке - запятая
+        assertArrayEquals(new String[]{"c1", "100"}, values(read("a\nc1,100\n", false).get(1)));
+    }
+
+    @Test
+    void skipsBom() throws IOException {
+        List<SheetRow> rows = read("\uFEFFa;b\r\nc1;100\r\n", false);
+
+        assertEquals(2, rows.size());
+        assertEquals("a", rows.get(0).get(0));
+        assertArrayEquals(new String[]{"c1", "100"}, values(rows.get(1)));
+    }
+
+    @Test
+    void detectsGzipBySignature() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(bytes)) {
+            gzip.write("\uFEFFa;b\nc1;100\n".getBytes(StandardCharsets.UTF_8));
+        }
+
+        for (boolean flag : new boolean[]{false, true}) {
+            List<SheetRow> rows = new ArrayList<>();
+            int count = reader.read(new ByteArrayInputStream(bytes.toByteArray()), flag, rows::add);
+
+            assertEquals(2, count);
+            assertArrayEquals(new String[]{"c1", "100"}, values(rows.get(1)));
+        }
+    }
+
+    @Test
+    void emptyFieldsAreMissingCells() throws IOException {
+        SheetRow row = read("a,b,c,d\nc1,,\"\",x\n", false).get(1);
+
+        assertEquals(4, row.size());
+        assertEquals("c1", row.get(0));
+        assertNull(row.get(1));
+        assertNull(row.get(2));
+        assertEquals("x", row.get(3));
+        assertEquals(1, row.getRowNumber());
+    }
+
+    private List<SheetRow> read(String text, boolean gzip) throws IOException {
+        List<SheetRow> rows = new ArrayList<>();
+        reader.read(new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8)), gzip, rows::add);
+        return rows;
+    }
+
+    private static String[] values(SheetRow row) {
+        String[] values = new String[row.size()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = row.get(i);
+        }
+        return values;
+    }
+}
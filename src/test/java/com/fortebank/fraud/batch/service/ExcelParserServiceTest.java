@@ -0,0 +1,43 @@
+package com.fortebank.fraud.batch.service;
+
+import com.fortebank.fraud.transaction.entity.Transaction;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class ExcelParserServiceTest {
+
+    private final ExcelParserService parser = new ExcelParserService(null);
+
+    @Test
+    void parsesTextDate() {
+        Transaction transaction = parser.parseRow(row("'2025-01-05 16:32:02.000'"));
+
+        assertEquals(LocalDateTime.of(2025, 1, 5, 16, 32, 2), transaction.getTransactionDateTime());
+    }
+
+    @Test
+    void parsesExcelDate() {
+        // 45662.5 - 05.01.2025 12:00 в днях Excel
+        SheetRow row = new SheetRow(1,
+                new String[]{"c1", null, "45662.5", "100.50", "t1", "r1", "0"},
+                new boolean[]{false, false, true, true, false, false, true},
+                new boolean[]{false, false, true, false, false, false, false});
+
+        assertEquals(LocalDateTime.of(2025, 1, 5, 12, 0), parser.parseRow(row).getTransactionDateTime());
+    }
+
+    @Test
+    void rowWithoutValidDateIsRejected() {
+        assertThrows(IllegalArgumentException.class, () -> parser.parseRow(row("05.01.2025")));
+        assertThrows(IllegalArgumentException.class, () -> parser.parseRow(row("")));
+        assertThrows(IllegalArgumentException.class, () -> parser.parseRow(row(null)));
+    }
+
+    private static SheetRow row(String dateTime) {
+        return SheetRow.ofText(1, new String[]{"c1", null, dateTime, "100.50", "t1", "r1", "0"});
+    }
+}
@@ -0,0 +1,77 @@
+package com.fortebank.fraud.batch.service;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.List;
+import java.util.stream.LongStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class PostgresUpsertTest {
+
+    private static final String CONFLICT_TAIL = " ON CONFLICT (k) DO UPDATE SET a = EXCLUDED.a, b = EXCLUDED.b,"
+            + " updated_at = now() WHERE (t.a, t.b) IS DISTINCT FROM (EXCLUDED.a, EXCLUDED.b)"
+            + " RETURNING k, (xmax = 0) AS inserted";
+
+    private final PostgresUpsert upsert = new PostgresUpsert("t",
+            new String[]{"id", "k", "a", "b"}, new String[]{"int8", "varchar", "numeric", "bool"},
+            "k", new String[]{"a", "b"}, "updated_at = now()", "k");
+
+    private final JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+
+    @Test
+    void unnestSqlHasTypedArrayPerColumn() {
+        assertEquals("INSERT INTO t (id, k, a, b) SELECT * FROM unnest(?::int8[], ?::varchar[], ?::numeric[],"
+                + " ?::bool[])" + CONFLICT_TAIL, upsert.unnestSql());
+    }
+
+    @Test
+    void selectSqlCopiesColumnsFromSource() {
+        assertEquals("INSERT INTO t (id, k, a, b) SELECT id, k, a, b FROM stage" + CONFLICT_TAIL,
+                upsert.selectSql("stage"));
+    }
+
+    @Test
+    void allocatedIdsFollowPooledRanges() {
+        // Первый nextval - 1: за вызывающим только id 1, дальше - по allocationSize
+        sequenceReturns(1L, 51L, 101L);
+
+        List<Long> ids = PostgresUpsert.allocateIds(jdbcTemplate, "seq", 50, 60);
+
+        assertEquals(LongStream.rangeClosed(1, 60).boxed().toList(), ids);
+        verify(jdbcTemplate).queryForList(anyString(), eq(Long.class), eq(3));
+    }
+
+    @Test
+    void allocatedIdsSkipRangesOfOtherAllocators() {
+        // Между значениями последовательность забирали другие узлы
+        sequenceReturns(150L, 300L);
+
+        List<Long> ids = PostgresUpsert.allocateIds(jdbcTemplate, "seq", 50, 52);
+
+        assertEquals(52, ids.size());
+        assertEquals(101L, ids.get(0));
+        assertEquals(150L, ids.get(49));
+        assertEquals(251L, ids.get(50));
+        assertEquals(252L, ids.get(51));
+    }
+
+    @Test
+    void shortSequenceAnswerFails() {
+        sequenceReturns(1L);
+
+        assertThrows(RuntimeException.class, () -> PostgresUpsert.allocateIds(jdbcTemplate, "seq", 50, 5));
+    }
+
+    private void sequenceReturns(Long... values) {
+        when(jdbcTemplate.queryForList(anyString(), eq(Long.class), any())).thenReturn(List.of(values));
+    }
+}
@@ -0,0 +1,62 @@
+package com.fortebank.fraud.batch.service;
+
+import com.fortebank.fraud.batch.dto.UpsertResult;
+import com.fortebank.fraud.transaction.entity.Transaction;
+import com.fortebank.fraud.transaction.entity.TransactionStatus;
+import com.fortebank.fraud.transaction.repository.TransactionRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class TransactionBulkWriterTest {
+
+    private static final LocalDateTime AT = LocalDateTime.of(2024, 1, 1, 10, 0);
+
+    private final TransactionRepository repository = mock(TransactionRepository.class);
+    // Не PostgreSQL: сравнение с загруженными сущностями
+    private final TransactionBulkWriter writer = new TransactionBulkWriter(repository, mock(JdbcTemplate.class), "jpa");
+
+    @Test
+    void changedTransactionIsRescoredInNewBatch() {
+        Transaction current = transaction("t1", "100.00", 1L);
+        current.setStatus(TransactionStatus.APPROVED);
+        Transaction unchanged = transaction("t2", "200.00", 1L);
+        unchanged.setStatus(TransactionStatus.APPROVED);
+        when(repository.findByTransactionIdIn(any())).thenReturn(List.of(current, unchanged));
+
+        TransactionBulkWriter.PreparedChunk chunk = writer.prepare(List.of(
+                transaction("t1", "150.00", 2L),
+                transaction("t2", "200", 2L),
+                transaction("t3", "300.00", 2L)));
+        UpsertResult result = writer.upsert(chunk);
+
+        assertEquals(1, result.getInserted());
+        assertEquals(1, result.getUpdated());
+        assertEquals(1, result.getSkipped());
+        assertEquals(new BigDecimal("150.00"), current.getAmount());
+        assertEquals(TransactionStatus.PENDING, current.getStatus());
+        assertEquals(2L, current.getBatchId());
+        assertEquals(TransactionStatus.APPROVED, unchanged.getStatus());
+        assertEquals(1L, unchanged.getBatchId());
+    }
+
+    private static Transaction transaction(String transactionId, String amount, Long batchId) {
+        return Transaction.builder()
+                .transactionId(transactionId)
+                .customerId("c1")
+                .recipientId("r1")
+                .amount(new BigDecimal(amount))
+                .transactionDateTime(AT)
+                .isFraud(false)
+                .batchId(batchId)
+                .build();
+    }
+}
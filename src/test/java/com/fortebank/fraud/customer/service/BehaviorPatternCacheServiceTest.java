@@ -0,0 +1,55 @@
+package com.fortebank.fraud.customer.service;
+
+import com.fortebank.fraud.customer.entity.CustomerBehaviorPattern;
+import com.fortebank.fraud.customer.repository.CustomerBehaviorPatternRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class BehaviorPatternCacheServiceTest {
+
+    private final CustomerBehaviorPatternRepository repository = mock(CustomerBehaviorPatternRepository.class);
+    private final BehaviorPatternCacheService service =
+            new BehaviorPatternCacheService(repository, new SimpleMeterRegistry(), 1 << 20);
+
+    @Test
+    void patternIsReadOnce() {
+        when(repository.findLatestByCustomerId("c1")).thenReturn(Optional.of(pattern(1)));
+
+        service.getLatest("c1");
+        service.getLatest("c1");
+
+        verify(repository, times(1)).findLatestByCustomerId("c1");
+        assertEquals(1, service.getStats().getEntries());
+    }
+
+    @Test
+    void readOverlappingEvictIsNotCached() {
+        when(repository.findLatestByCustomerId("c1")).thenAnswer(invocation -> {
+            // Новый паттерн сохранён и клиент сброшен, пока читается старый
+            service.evict(List.of("c1"));
+            return Optional.of(pattern(1));
+        });
+        assertEquals(1, service.getLatest("c1").orElseThrow().getLoginsLast7Days());
+
+        when(repository.findLatestByCustomerId("c1")).thenReturn(Optional.of(pattern(2)));
+        assertEquals(2, service.getLatest("c1").orElseThrow().getLoginsLast7Days());
+    }
+
+    private static CustomerBehaviorPattern pattern(int logins) {
+        return CustomerBehaviorPattern.builder()
+                .customerId("c1")
+                .transDate(LocalDate.of(2024, 1, 1))
+                .loginsLast7Days(logins)
+                .build();
+    }
+}
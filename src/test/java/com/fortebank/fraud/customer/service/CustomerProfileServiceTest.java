@@ -0,0 +1,115 @@
+package com.fortebank.fraud.customer.service;
+
+import com.fortebank.fraud.customer.entity.CustomerProfile;
+import com.fortebank.fraud.customer.repository.CustomerProfileRepository;
+import com.fortebank.fraud.transaction.entity.Transaction;
+import com.fortebank.fraud.transaction.repository.TransactionRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class CustomerProfileServiceTest {
+
+    private static final LocalDateTime AT = LocalDateTime.of(2024, 1, 1, 10, 0);
+
+    private final CustomerProfileRepository profileRepository = mock(CustomerProfileRepository.class);
+    private final TransactionRepository transactionRepository = mock(TransactionRepository.class);
+    private final CustomerProfileService service = new CustomerProfileService(
+            profileRepository, transactionRepository, new SimpleMeterRegistry(), 100);
+
+    @AfterEach
+    void clearSynchronization() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    void unknownCustomerIsCachedWithoutRebuild() {
+        when(profileRepository.findById("c1")).thenReturn(Optional.empty());
+
+        assertTrue(service.getCachedProfile("c1").isEmpty());
+        assertTrue(service.getCachedProfile("c1").isEmpty());
+
+        verify(profileRepository, times(1)).findById("c1");
+        verify(transactionRepository, never()).aggregateByCustomerId(any());
+        verify(profileRepository, never()).save(any());
+    }
+
+    @Test
+    void committedUpdateDropsCachedProfile() {
+        when(profileRepository.findById("c1")).thenReturn(Optional.of(profile(1)));
+        when(profileRepository.save(any())).thenAnswer(invocation -> invocation.getArgument(0));
+        assertEquals(1, service.getCachedProfile("c1").orElseThrow().getTransactionCount());
+
+        TransactionSynchronizationManager.initSynchronization();
+        service.recordTransaction(transaction(), false);
+        // До фиксации оценка видит прежний профиль
+        assertEquals(1, service.getCachedProfile("c1").orElseThrow().getTransactionCount());
+        complete(TransactionSynchronization.STATUS_COMMITTED);
+
+        when(profileRepository.findById("c1")).thenReturn(Optional.of(profile(2)));
+        assertEquals(2, service.getCachedProfile("c1").orElseThrow().getTransactionCount());
+    }
+
+    @Test
+    void readOverlappingCommitIsNotCached() {
+        when(profileRepository.save(any())).thenAnswer(invocation -> invocation.getArgument(0));
+        AtomicBoolean committed = new AtomicBoolean();
+        when(profileRepository.findById("c1")).thenAnswer(invocation -> {
+            if (committed.getAndSet(true)) {
+                return Optional.of(profile(1));     // Чтение внутри recordTransaction
+            }
+            // Профиль изменён и зафиксирован, пока он читается для оценки
+            TransactionSynchronizationManager.initSynchronization();
+            service.recordTransaction(transaction(), false);
+            complete(TransactionSynchronization.STATUS_COMMITTED);
+            return Optional.of(profile(1));
+        });
+        service.getCachedProfile("c1");
+
+        when(profileRepository.findById("c1")).thenReturn(Optional.of(profile(2)));
+        assertEquals(2, service.getCachedProfile("c1").orElseThrow().getTransactionCount());
+    }
+
+    private static void complete(int status) {
+        List<TransactionSynchronization> synchronizations = TransactionSynchronizationManager.getSynchronizations();
+        TransactionSynchronizationManager.clearSynchronization();
+        for (TransactionSynchronization synchronization : synchronizations) {
+            synchronization.afterCompletion(status);
+        }
+    }
+
+    private static CustomerProfile profile(long transactionCount) {
+        return CustomerProfile.builder()
+                .customerId("c1")
+                .transactionCount(transactionCount)
+                .amountSum(new BigDecimal("100.00"))
+                .build();
+    }
+
+    private static Transaction transaction() {
+        return Transaction.builder()
+                .customerId("c1")
+                .amount(new BigDecimal("50.00"))
+                .transactionDateTime(AT)
+                .build();
+    }
+}
@@ -0,0 +1,112 @@
+package com.fortebank.fraud.customer.service;
+
+import com.fortebank.fraud.transaction.entity.Transaction;
+import com.fortebank.fraud.transaction.repository.TransactionRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class VelocityCounterServiceTest {
+
+    private static final LocalDateTime AT = LocalDateTime.of(2024, 1, 1, 10, 0);
+
+    private final TransactionRepository repository = mock(TransactionRepository.class);
+    private final VelocityCounterService service =
+            new VelocityCounterService(repository, new SimpleMeterRegistry(), 100);
+
+    @AfterEach
+    void clearSynchronization() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    void counterLoadedBeforeCommitIsDroppedOnCommit() {
+        Transaction saved = transaction(1L);
+        TransactionSynchronizationManager.initSynchronization();
+        service.recordTransaction(saved);
+
+        // Оценка читает БД, пока загрузка не зафиксирована
+        when(repository.findTransactionTimesInWindow(eq("c1"), any(), any())).thenReturn(List.of());
+        assertEquals(0, service.count(saved, AT, VelocityCounterService.WINDOW_5M));
+
+        complete(TransactionSynchronization.STATUS_COMMITTED);
+
+        when(repository.findTransactionTimesInWindow(eq("c1"), any(), any())).thenReturn(List.of(AT));
+        assertEquals(1, service.count(saved, AT, VelocityCounterService.WINDOW_5M));
+    }
+
+    @Test
+    void counterUpdatedInTransactionSurvivesCommit() {
+        when(repository.findTransactionTimesInWindow(eq("c1"), any(), any())).thenReturn(List.of());
+        Transaction saved = transaction(1L);
+        assertEquals(0, service.count(saved, AT, VelocityCounterService.WINDOW_5M));
+
+        TransactionSynchronizationManager.initSynchronization();
+        service.recordTransaction(saved);
+        complete(TransactionSynchronization.STATUS_COMMITTED);
+
+        assertEquals(1, service.count(saved, AT, VelocityCounterService.WINDOW_5M));
+        verify(repository, times(1)).findTransactionTimesInWindow(eq("c1"), any(), any());
+    }
+
+    @Test
+    void loadOverlappingCommitIsNotCached() {
+        Transaction saved = transaction(1L);
+        when(repository.findTransactionTimesInWindow(eq("c1"), any(), any())).thenAnswer(invocation -> {
+            // Загрузка фиксируется, пока счётчики читаются из БД
+            TransactionSynchronizationManager.initSynchronization();
+            service.recordTransaction(saved);
+            complete(TransactionSynchronization.STATUS_COMMITTED);
+            return List.of();
+        });
+        assertEquals(0, service.count(saved, AT, VelocityCounterService.WINDOW_5M));
+
+        when(repository.findTransactionTimesInWindow(eq("c1"), any(), any())).thenReturn(List.of(AT));
+        assertEquals(1, service.count(saved, AT, VelocityCounterService.WINDOW_5M));
+    }
+
+    @Test
+    void rollbackDropsUpdatedCounter() {
+        when(repository.findTransactionTimesInWindow(eq("c1"), any(), any())).thenReturn(List.of());
+        Transaction saved = transaction(1L);
+        assertEquals(0, service.count(saved, AT, VelocityCounterService.WINDOW_5M));
+
+        TransactionSynchronizationManager.initSynchronization();
+        service.recordTransaction(saved);
+        assertEquals(1, service.count(saved, AT, VelocityCounterService.WINDOW_5M));
+        complete(TransactionSynchronization.STATUS_ROLLED_BACK);
+
+        assertEquals(0, service.count(saved, AT, VelocityCounterService.WINDOW_5M));
+    }
+
+    private static void complete(int status) {
+        List<TransactionSynchronization> synchronizations = TransactionSynchronizationManager.getSynchronizations();
+        TransactionSynchronizationManager.clearSynchronization();
+        for (TransactionSynchronization synchronization : synchronizations) {
+            synchronization.afterCompletion(status);
+        }
+    }
+
+    private static Transaction transaction(Long id) {
+        return Transaction.builder()
+                .id(id)
+                .customerId("c1")
+                .transactionDateTime(AT)
+                .build();
+    }
+}
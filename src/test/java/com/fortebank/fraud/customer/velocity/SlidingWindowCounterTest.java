@@ -0,0 +1,133 @@
+package com.fortebank.fraud.customer.velocity;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static com.fortebank.fraud.customer.velocity.SlidingWindowCounter.HOUR_BUCKETS;
+import static com.fortebank.fraud.customer.velocity.SlidingWindowCounter.MINUTE_BUCKETS;
+import static com.fortebank.fraud.customer.velocity.SlidingWindowCounter.OUT_OF_RANGE;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class SlidingWindowCounterTest {
+
+    private static final long T0 = 28_000_000;     // Минута эпохи (2023 год)
+
+    @Test
+    void emptyCounterCountsZero() {
+        assertEquals(0, new SlidingWindowCounter().count(T0, 5));
+    }
+
+    @Test
+    void windowIsOpenAtStartAndClosedAtEnd() {
+        SlidingWindowCounter counter = new SlidingWindowCounter();
+        counter.add(T0);
+        counter.add(T0 + 4);
+        counter.add(T0 + 5);
+
+        assertEquals(2, counter.count(T0 + 5, 5));      // (T0, T0+5]
+        assertEquals(3, counter.count(T0 + 5, 6));
+        assertEquals(1, counter.count(T0, 1));
+        assertEquals(3, counter.count(T0 + 100, 101));  // Окно правее последнего события
+        assertEquals(0, counter.count(T0 + 100, 10));
+    }
+
+    @Test
+    void lateEventUpdatesLaterTotals() {
+        SlidingWindowCounter counter = new SlidingWindowCounter();
+        counter.add(T0 + 10);
+        counter.add(T0 + 2);    // Опоздавшее событие внутри буфера
+
+        assertEquals(1, counter.count(T0 + 5, 5));
+        assertEquals(2, counter.count(T0 + 10, 10));
+        assertEquals(1, counter.count(T0 + 10, 5));
+    }
+
+    @Test
+    void minuteBufferRollsOverAndDropsOldEvents() {
+        SlidingWindowCounter counter = new SlidingWindowCounter();
+        counter.add(T0);
+        counter.add(T0 + 1);
+        counter.add(T0 + MINUTE_BUCKETS);   // T0 вышла из поминутного буфера, T0+1 - ещё нет
+
+        assertEquals(2, counter.count(T0 + MINUTE_BUCKETS, MINUTE_BUCKETS));
+        assertEquals(OUT_OF_RANGE, counter.count(T0 + MINUTE_BUCKETS - 1, MINUTE_BUCKETS));
+
+        // Скачок дальше длины буфера: все прежние минуты выходят сразу
+        counter.add(T0 + 3 * MINUTE_BUCKETS);
+        assertEquals(1, counter.count(T0 + 3 * MINUTE_BUCKETS, 60));
+        assertEquals(1, counter.count(T0 + 3 * MINUTE_BUCKETS, MINUTE_BUCKETS));
+    }
+
+    @Test
+    void eventOlderThanBufferIsIgnoredByMinuteWindows() {
+        SlidingWindowCounter counter = new SlidingWindowCounter();
+        counter.add(T0 + 2 * MINUTE_BUCKETS);
+        counter.add(T0);
+
+        assertEquals(1, counter.count(T0 + 2 * MINUTE_BUCKETS, MINUTE_BUCKETS));
+    }
+
+    @Test
+    void weekWindowUsesHourBuffer() {
+        SlidingWindowCounter counter = new SlidingWindowCounter();
+        counter.add(T0);
+        counter.add(T0 + 3 * MINUTE_BUCKETS);
+        counter.add(T0 + 6 * MINUTE_BUCKETS);
+        int week = HOUR_BUCKETS * 60;
+
+        assertEquals(3, counter.count(T0 + 6 * MINUTE_BUCKETS, week));
+        assertEquals(2, counter.count(T0 + 8 * MINUTE_BUCKETS, week));
+        assertEquals(OUT_OF_RANGE, counter.count(T0, week));
+    }
+
+    @Test
+    void matchesBruteForceOnRandomEvents() {
+        Random random = new Random(7);
+        SlidingWindowCounter counter = new SlidingWindowCounter();
+        List<Long> events = new ArrayList<>();
+        long now = T0;
+        int[] windows = {5, 60, MINUTE_BUCKETS, HOUR_BUCKETS * 60};
+
+        for (int i = 0; i < 5000; i++) {
+            now += random.nextInt(30);
+            // Часть событий опаздывает, но не дальше суток
+            long minute = random.nextInt(10) == 0 ? now - random.nextInt(MINUTE_BUCKETS / 2) : now;
+            counter.add(minute);
+            events.add(minute);
+
+            long end = now + random.nextInt(10);
+            for (int window : windows) {
+                int actual = counter.count(end, window);
+                if (actual == OUT_OF_RANGE) {
+                    continue;
+                }
+                assertEquals(expected(events, end, window), actual,
+                        "окно " + window + " на минуте " + end + ", событие " + i);
+            }
+        }
+    }
+
+    /**
+     * Окна до суток - точно по минутам, больше суток - по целым часам
+     */
+    private static int expected(List<Long> events, long endMinute, int windowMinutes) {
+        int count = 0;
+        for (long event : events) {
+            boolean inside;
+            if (windowMinutes <= MINUTE_BUCKETS) {
+                inside = event > endMinute - windowMinutes && event <= endMinute;
+            } else {
+                long endHour = Math.floorDiv(endMinute, 60);
+                long hour = Math.floorDiv(event, 60);
+                inside = hour > endHour - windowMinutes / 60 && hour <= endHour;
+            }
+            if (inside) {
+                count++;
+            }
+        }
+        return count;
+    }
+}
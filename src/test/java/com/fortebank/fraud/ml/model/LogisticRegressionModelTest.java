@@ -0,0 +1,81 @@
+package com.fortebank.fraud.ml.model;
+
+import com.fortebank.fraud.scoring.rule.Feature;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class LogisticRegressionModelTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void writeAndReadRoundTrip() throws IOException {
+        double[] weights = new double[Feature.COUNT];
+        for (int i = 0; i < weights.length; i++) {
+            weights[i] = i * 0.25 - 1;
+        }
+        LogisticRegressionModel model = new LogisticRegressionModel(7, 1_700_000_000_000L, 1000, 50,
+                0.91, 0.12, weights, -3.5);
+
+        Path path = dir.resolve("models/fraud-model-v7.bin");
+        model.write(path);
+        LogisticRegressionModel read = LogisticRegressionModel.read(path);
+
+        assertEquals(LogisticRegressionModel.TRAINING_VERSION, read.getTrainingVersion());
+        assertEquals(7, read.getVersion());
+        assertEquals(1_700_000_000_000L, read.getTrainedAt());
+        assertEquals(1000, read.getSamples());
+        assertEquals(50, read.getFraudSamples());
+        assertEquals(0.91, read.getAuc());
+        assertEquals(0.12, read.getLogLoss());
+        assertEquals(-3.5, read.getBias());
+        for (Feature feature : Feature.values()) {
+            assertEquals(model.getWeight(feature), read.getWeight(feature));
+        }
+        assertEquals(model.predict(weights), read.predict(weights));
+    }
+
+    @Test
+    void readsFormatOneWithUnknownFeatures() throws IOException {
+        Path path = dir.resolve("fraud-model-v1.bin");
+        try (DataOutputStream out = new DataOutputStream(Files.newOutputStream(path))) {
+            out.writeInt(0x46524D4C);
+            out.writeInt(1);
+            out.writeInt(1);
+            out.writeLong(0);
+            out.writeInt(10);
+            out.writeInt(1);
+            out.writeDouble(0.99);
+            out.writeDouble(0.5);
+            out.writeInt(2);
+            out.writeUTF(Feature.AMOUNT.name());
+            out.writeDouble(0.5);
+            out.writeUTF("REMOVED_FEATURE");
+            out.writeDouble(9);
+            out.writeDouble(-1);
+        }
+
+        LogisticRegressionModel read = LogisticRegressionModel.read(path);
+
+        assertEquals(1, read.getTrainingVersion());
+        assertEquals(0.5, read.getWeight(Feature.AMOUNT));
+        assertEquals(0.0, read.getWeight(Feature.HOUR));
+        assertEquals(-1, read.getBias());
+    }
+
+    @Test
+    void rejectsForeignFile() throws IOException {
+        Path path = dir.resolve("other.bin");
+        Files.write(path, new byte[]{1, 2, 3, 4, 5, 6, 7, 8});
+        assertThrows(IOException.class, () -> LogisticRegressionModel.read(path));
+    }
+}
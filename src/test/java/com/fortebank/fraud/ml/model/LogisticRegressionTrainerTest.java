@@ -0,0 +1,83 @@
+package com.fortebank.fraud.ml.model;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LogisticRegressionTrainerTest {
+
+    private final ExecutorService executor = Executors.newFixedThreadPool(2);
+
+    @AfterEach
+    void shutdown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void separatesClassesAndKeepsBaseRate() {
+        // 5% мошенничества, сигнал - в первом признаке
+        Random random = new Random(42);
+        int n = 4000;
+        double[][] x = new double[n][2];
+        boolean[] y = new boolean[n];
+        int positives = 0;
+        for (int i = 0; i < n; i++) {
+            y[i] = random.nextDouble() < 0.05;
+            x[i][0] = random.nextGaussian() + (y[i] ? 2 : 0);
+            x[i][1] = random.nextGaussian();
+            positives += y[i] ? 1 : 0;
+        }
+        double[][] original = new double[n][];
+        for (int i = 0; i < n; i++) {
+            original[i] = x[i].clone();
+        }
+
+        LogisticRegressionTrainer.Result result =
+                new LogisticRegressionTrainer(300, 0.05, 0.0001, 2, executor).train(x, y);
+
+        assertTrue(result.weights()[0] > 1, "вес сигнального признака");
+        assertTrue(Math.abs(result.weights()[1]) < 0.3, "вес шума");
+
+        double[] scores = new double[n];
+        double mean = 0;
+        for (int i = 0; i < n; i++) {
+            double z = result.bias() + result.weights()[0] * original[i][0] + result.weights()[1] * original[i][1];
+            scores[i] = LogisticRegressionModel.sigmoid(z);
+            mean += scores[i] / n;
+        }
+        // Без поправки на веса классов средняя вероятность была бы около 0.5
+        assertEquals((double) positives / n, mean, 0.03);
+        assertTrue(LogisticRegressionTrainer.auc(scores, y) > 0.85);
+    }
+
+    @Test
+    void aucCountsPairsAndTies() {
+        assertEquals(1.0, LogisticRegressionTrainer.auc(
+                new double[]{0.1, 0.2, 0.8, 0.9}, new boolean[]{false, false, true, true}), 1e-12);
+        assertEquals(0.0, LogisticRegressionTrainer.auc(
+                new double[]{0.9, 0.8, 0.2, 0.1}, new boolean[]{false, false, true, true}), 1e-12);
+        // Все оценки равны - половина пар
+        assertEquals(0.5, LogisticRegressionTrainer.auc(
+                new double[]{0.5, 0.5, 0.5}, new boolean[]{true, false, false}), 1e-12);
+        // Пары (p, n): (0.4 > 0.3), (0.4 < 0.6), (0.6 = 0.6 -> 0.5), (0.6 > 0.3) = 2.5 / 4
+        assertEquals(0.625, LogisticRegressionTrainer.auc(
+                new double[]{0.4, 0.6, 0.3, 0.6}, new boolean[]{true, true, false, false}), 1e-12);
+        assertTrue(Double.isNaN(LogisticRegressionTrainer.auc(
+                new double[]{0.1, 0.2}, new boolean[]{false, false})));
+    }
+
+    @Test
+    void logLossAveragesAndClipsProbabilities() {
+        assertEquals((-Math.log(0.8) - Math.log(0.9)) / 2, LogisticRegressionTrainer.logLoss(
+                new double[]{0.8, 0.1}, new boolean[]{true, false}), 1e-12);
+        assertEquals(-Math.log(1e-15), LogisticRegressionTrainer.logLoss(
+                new double[]{0.0}, new boolean[]{true}), 1e-9);
+        assertTrue(Double.isNaN(LogisticRegressionTrainer.logLoss(new double[0], new boolean[0])));
+    }
+}
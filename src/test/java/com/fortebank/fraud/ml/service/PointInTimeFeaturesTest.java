@@ -0,0 +1,89 @@
+package com.fortebank.fraud.ml.service;
+
+import com.fortebank.fraud.customer.entity.CustomerBehaviorPattern;
+import com.fortebank.fraud.customer.service.CustomerStatsService;
+import com.fortebank.fraud.scoring.rule.Feature;
+import com.fortebank.fraud.scoring.service.FeatureExtractor;
+import com.fortebank.fraud.transaction.entity.Transaction;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class PointInTimeFeaturesTest {
+
+    private final PointInTimeFeatures features =
+            new PointInTimeFeatures(new FeatureExtractor(), new CustomerStatsService(null, null, null));
+
+    @Test
+    void usesOnlyEarlierTransactions() {
+        LocalDateTime start = LocalDateTime.of(2024, 1, 10, 10, 0);
+        // Порядок на входе - не по времени
+        List<Transaction> transactions = List.of(
+                transaction(3, start.plusMinutes(3), "300", "r1"),
+                transaction(1, start, "100", "r1"),
+                transaction(2, start.plusMinutes(2), "200", "r2"),
+                transaction(4, start.plusDays(2), "400", "r3"));
+        List<CustomerBehaviorPattern> patterns = List.of(
+                pattern(LocalDate.of(2024, 1, 10), 3),
+                pattern(LocalDate.of(2024, 1, 11), 7));
+
+        List<double[]> rows = new ArrayList<>();
+        List<Boolean> labels = new ArrayList<>();
+        features.extract(transactions, patterns, (row, fraud) -> {
+            rows.add(row);
+            labels.add(fraud);
+        });
+
+        assertEquals(4, rows.size());
+        double[] first = rows.get(0);
+        assertEquals(100, first[Feature.AMOUNT.ordinal()]);
+        assertEquals(0, first[Feature.HISTORY_SIZE.ordinal()]);
+        assertEquals(1, first[Feature.NEW_RECIPIENT.ordinal()]);
+        assertEquals(1, first[Feature.COUNT_5M.ordinal()]);
+        assertEquals(3, first[Feature.PHONE_MODELS_30D.ordinal()]);
+
+        double[] third = rows.get(2);
+        assertEquals(300, third[Feature.AMOUNT.ordinal()]);
+        assertEquals(2, third[Feature.HISTORY_SIZE.ordinal()]);
+        assertEquals(150, third[Feature.AVG_AMOUNT.ordinal()]);
+        assertEquals(2, third[Feature.AMOUNT_RATIO.ordinal()]);
+        assertEquals(2, third[Feature.UNIQUE_RECIPIENTS.ordinal()]);
+        assertEquals(0, third[Feature.NEW_RECIPIENT.ordinal()]);
+        assertEquals(3, third[Feature.COUNT_5M.ordinal()]);
+
+        double[] last = rows.get(3);
+        assertEquals(3, last[Feature.HISTORY_SIZE.ordinal()]);
+        assertEquals(1, last[Feature.NEW_RECIPIENT.ordinal()]);
+        assertEquals(1, last[Feature.COUNT_24H.ordinal()]);
+        assertEquals(4, last[Feature.COUNT_7D.ordinal()]);
+        assertEquals(7, last[Feature.PHONE_MODELS_30D.ordinal()]);
+
+        assertEquals(List.of(false, false, true, false), labels);
+    }
+
+    private static Transaction transaction(long id, LocalDateTime at, String amount, String recipient) {
+        return Transaction.builder()
+                .id(id)
+                .transactionId("d" + id)
+                .customerId("c1")
+                .transactionDateTime(at)
+                .amount(new BigDecimal(amount))
+                .recipientId(recipient)
+                .isFraud(id == 3)
+                .build();
+    }
+
+    private static CustomerBehaviorPattern pattern(LocalDate date, int phoneModels) {
+        return CustomerBehaviorPattern.builder()
+                .customerId("c1")
+                .transDate(date)
+                .uniquePhoneModels30d(phoneModels)
+                .build();
+    }
+}
@@ -0,0 +1,69 @@
+package com.fortebank.fraud.scoring.rule;
+
+import com.fortebank.fraud.scoring.dto.RuleEvaluation;
+import com.fortebank.fraud.scoring.dto.RuleSetDefinition;
+import com.fortebank.fraud.scoring.dto.RuleSetDefinition.ConditionDefinition;
+import com.fortebank.fraud.scoring.dto.RuleSetDefinition.RuleDefinition;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CompiledRuleSetTest {
+
+    @Test
+    void decisionStopsAtBlockButFullEvaluationKeepsAllFactors() {
+        CompiledRuleSet ruleSet = compile(
+                rule("night", "HOUR", 1, 90, "Час {HOUR:%02d}"),
+                rule("burst", "COUNT_5M", 3, 30, "За 5 минут {COUNT_5M}"));
+        FeatureVector features = new FeatureVector()
+                .set(Feature.HOUR, 2)
+                .set(Feature.COUNT_5M, 5);
+
+        RuleEvaluation decision = ruleSet.evaluateDecision(features);
+        assertEquals(CompiledRuleSet.BLOCK, decision.getDecision());
+        assertTrue(decision.isShortCircuited());
+        assertEquals(90, decision.getTotalScore());
+
+        RuleEvaluation full = ruleSet.evaluate(features);
+        assertEquals(CompiledRuleSet.BLOCK, full.getDecision());
+        assertFalse(full.isShortCircuited());
+        assertEquals(120, full.getTotalScore());
+        assertEquals(2, full.getRiskFactors().size());
+        assertEquals("Час 02", full.getRiskFactors().get(0).getDescription());
+    }
+
+    @Test
+    void invalidDescriptionFormatIsRejectedAtCompile() {
+        IllegalArgumentException error = assertThrows(IllegalArgumentException.class,
+                () -> compile(rule("night", "HOUR", 20, 20, "Час {HOUR:%q}")));
+        assertTrue(error.getMessage().contains("night"));
+        assertThrows(IllegalArgumentException.class,
+                () -> compile(rule("night", "HOUR", 20, 20, "Час {HOUR:%.1f %.1f}")));
+    }
+
+    private static CompiledRuleSet compile(RuleDefinition... rules) {
+        RuleSetDefinition definition = RuleSetDefinition.builder()
+                .version("test")
+                .rules(List.of(rules))
+                .build();
+        return CompiledRuleSet.compile(definition, List.of(), "test");
+    }
+
+    /**
+     * Правило "признак больше порога"
+     */
+    private static RuleDefinition rule(String id, String feature, double threshold, int score, String description) {
+        return RuleDefinition.builder()
+                .id(id)
+                .name(id)
+                .all(List.of(ConditionDefinition.builder().feature(feature).op(">").value(threshold).build()))
+                .score(score)
+                .description(description)
+                .build();
+    }
+}